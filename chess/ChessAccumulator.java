@@ -0,0 +1,113 @@
+package chess;
+
+import chess.notation.ChessNotation;
+import chess.pieces.ChessPiece;
+import game.utility.Location;
+import game.utility.Properties;
+
+/**
+ * the hidden sums of a ChessNetwork for the pieces of a ChessBoardState, one set per side<br>
+ * - a board state keeps its accumulator up to date as pieces are set and removed (see
+ *   ChessBoardState.getAccumulator): setting or removing a piece adds or takes one row of input
+ *   weights per side, instead of summing the inputs of every piece<br>
+ * - copied with its board state, so a search's copies of a position carry their sums with them
+ *
+ * @author devang
+ */
+public class ChessAccumulator {
+    private final ChessNetwork network;
+    private final Properties   properties;
+    private final short[][]    hidden;
+
+    private ChessAccumulator(ChessNetwork network, Properties properties)
+    {
+        this.network    = network;
+        this.properties = properties;
+        hidden = new short[2][network.getHiddenSize()];
+    }
+
+    /**
+     * builds the accumulator of a board's pieces, summing the inputs of every piece
+     * @param network network of the accumulator
+     * @param bitboards bitboards of the board's pieces
+     * @return newly-created accumulator
+     */
+    static ChessAccumulator build(ChessNetwork network, ChessBitboards bitboards)
+    {
+        ChessAccumulator accumulator = new ChessAccumulator(network,bitboards.getProperties());
+        for (int side = ChessBitboards.WHITE; side <= ChessBitboards.BLACK; side++)
+        {
+            network.clear(accumulator.hidden[side]);
+            for (int color = ChessBitboards.WHITE; color <= ChessBitboards.BLACK; color++)
+            {
+                for (int type = ChessBitboards.PAWN; type < ChessBitboards.NUM_TYPES; type++)
+                {
+                    for (long pieces = bitboards.getPieces(color,type); pieces != 0; pieces &= pieces - 1)
+                    {
+                        int square = Long.numberOfTrailingZeros(pieces);
+                        network.add(accumulator.hidden[side],ChessNetwork.getInput(side,color,type,square));
+                    }
+                }
+            }
+        }
+        return accumulator;
+    }
+
+    ChessAccumulator copy()
+    {
+        ChessAccumulator newAccumulator = new ChessAccumulator(network,properties);
+        for (int side = ChessBitboards.WHITE; side <= ChessBitboards.BLACK; side++)
+        {
+            System.arraycopy(hidden[side],0,newAccumulator.hidden[side],0,hidden[side].length);
+        }
+        return newAccumulator;
+    }
+
+    /**
+     * adds a piece set on a location (kept in step with ChessBoardState.setPiece)
+     */
+    void setPiece(Location location, ChessPiece piece)
+    {
+        int square = ChessNotation.getSquare(location,properties);
+        int color  = ChessBitboards.getColorIndex(piece.getColor());
+        int type   = ChessBitboards.getType(piece);
+        for (int side = ChessBitboards.WHITE; side <= ChessBitboards.BLACK; side++)
+        {
+            network.add(hidden[side],ChessNetwork.getInput(side,color,type,square));
+        }
+    }
+
+    /**
+     * takes away a piece removed from a location (kept in step with ChessBoardState.removePiece)
+     */
+    void removePiece(Location location, ChessPiece piece)
+    {
+        int square = ChessNotation.getSquare(location,properties);
+        int color  = ChessBitboards.getColorIndex(piece.getColor());
+        int type   = ChessBitboards.getType(piece);
+        for (int side = ChessBitboards.WHITE; side <= ChessBitboards.BLACK; side++)
+        {
+            network.subtract(hidden[side],ChessNetwork.getInput(side,color,type,square));
+        }
+    }
+
+    ChessNetwork getNetwork()
+    {
+        return network;
+    }
+
+    Properties getProperties()
+    {
+        return properties;
+    }
+
+    /**
+     * gets the hidden sums seen from one side
+     * @param side ChessBitboards.WHITE or BLACK
+     * @return hidden sums of the side (not to be changed)
+     */
+    public short[] getHidden(int side)
+    {
+        return hidden[side];
+    }
+}
@@ -0,0 +1,411 @@
+package chess;
+
+import chess.notation.ChessNotation;
+import chess.pieces.ChessPiece;
+import chess.pieces.PieceBishop;
+import chess.pieces.PieceKnight;
+import chess.pieces.PiecePawn;
+import chess.pieces.PieceQueen;
+import chess.pieces.PieceRook;
+import game.utility.Location;
+import game.utility.Properties;
+import game.utility.Properties.PlayerColor;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * the pieces of a ChessBoardState as bitboards: one 64-bit mask per color and type of piece,
+ * bit n set for a piece on square n (0 a1 through 63 h8, see ChessNotation)<br>
+ * - a board state keeps its own bitboards up to date as pieces are set and removed (see
+ *   ChessBoardState.getBitboards), so a check test is a mask test and a snapshot is a copy<br>
+ * - the attacks of pawns, knights and kings are looked up in tables; the attacks of bishops,
+ *   rooks and queens walk their rays up to the first occupied square<br>
+ * - only standard 8x8 boards have bitboards (see create)<br>
+ * - the zobrist key of the pieces is kept in step too (see getPieceKey), so a search hashing
+ *   each node does not scan the board
+ *
+ * @author devang
+ */
+public class ChessBitboards {
+    public static final int PAWN      = 0;
+    public static final int KNIGHT    = 1;
+    public static final int BISHOP    = 2;
+    public static final int ROOK      = 3;
+    public static final int QUEEN     = 4;
+    public static final int KING      = 5;
+    public static final int NUM_TYPES = 6;
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    private static final long[]    KNIGHT_ATTACKS = new long[ChessNotation.NUM_SQUARES];
+    private static final long[]    KING_ATTACKS   = new long[ChessNotation.NUM_SQUARES];
+    private static final long[][]  PAWN_ATTACKS   = new long[2][ChessNotation.NUM_SQUARES];
+    // squares along each ray from each square, nearest first: bishop rays 0-3, rook rays 4-7
+    private static final int[][][] RAYS           = new int[8][ChessNotation.NUM_SQUARES][];
+    private static final int[][]   RAY_STEPS      = { {1,1}, {1,-1}, {-1,1}, {-1,-1}, {1,0}, {-1,0}, {0,1}, {0,-1} };
+
+    static
+    {
+        int[][] knightSteps = { {1,2}, {2,1}, {2,-1}, {1,-2}, {-1,-2}, {-2,-1}, {-2,1}, {-1,2} };
+        for (int square = 0; square < ChessNotation.NUM_SQUARES; square++)
+        {
+            int file = ChessNotation.getFile(square);
+            int rank = ChessNotation.getRank(square);
+            for (int[] step : knightSteps)
+            {
+                KNIGHT_ATTACKS[square] |= getBit(file + step[0],rank + step[1]);
+            }
+            for (int r = 0; r < RAY_STEPS.length; r++)
+            {
+                KING_ATTACKS[square] |= getBit(file + RAY_STEPS[r][0],rank + RAY_STEPS[r][1]);
+
+                int length = 0;
+                int[] ray = new int[ChessNotation.NUM_FILES];
+                for (int f = file + RAY_STEPS[r][0], k = rank + RAY_STEPS[r][1]; getBit(f,k) != 0; f += RAY_STEPS[r][0], k += RAY_STEPS[r][1])
+                {
+                    ray[length++] = ChessNotation.getSquare(f,k);
+                }
+                RAYS[r][square] = Arrays.copyOf(ray,length);
+            }
+            PAWN_ATTACKS[WHITE][square] = getBit(file-1,rank+1) | getBit(file+1,rank+1);
+            PAWN_ATTACKS[BLACK][square] = getBit(file-1,rank-1) | getBit(file+1,rank-1);
+        }
+    }
+
+    private final long[][]   pieces    = new long[2][NUM_TYPES];
+    private final long[]     occupancy = new long[2];
+    private final Properties properties;
+    // key table the piece key is made of: a table set later (see ChessZobrist.setKeys) is not
+    private final long[]     zobristKeys;
+    private long             pieceKey  = 0L;
+
+    private ChessBitboards(Properties properties, long[] zobristKeys)
+    {
+        this.properties  = properties;
+        this.zobristKeys = zobristKeys;
+    }
+
+    /**
+     * gets a snapshot of the bitboards of a board state, which does not change as the board state does
+     * @param boardState board state of which to get the bitboards
+     * @return newly-created bitboards, or null if the board is not a standard 8x8 board with pieces
+     */
+    public static ChessBitboards create(ChessBoardState boardState)
+    {
+        ChessBitboards bitboards = boardState.getBitboards();
+        return (bitboards == null) ? null : bitboards.copy();
+    }
+
+    /**
+     * builds the bitboards of the pieces on a board, in one pass over the pieces
+     * @param pieceLocations pieces of the board, by location
+     * @param properties properties giving the board's orientation (which squares the locations are)
+     * @return newly-created bitboards
+     */
+    static ChessBitboards build(Map<Location,ChessPiece> pieceLocations, Properties properties)
+    {
+        ChessBitboards bitboards = new ChessBitboards(properties,ChessZobrist.getKeyTable());
+        for (Map.Entry<Location,ChessPiece> entry : pieceLocations.entrySet())
+        {
+            bitboards.setPiece(entry.getKey(),entry.getValue());
+        }
+        return bitboards;
+    }
+
+    private ChessBitboards copy()
+    {
+        ChessBitboards newBitboards = new ChessBitboards(properties,zobristKeys);
+        for (int color = WHITE; color <= BLACK; color++)
+        {
+            System.arraycopy(pieces[color],0,newBitboards.pieces[color],0,NUM_TYPES);
+        }
+        System.arraycopy(occupancy,0,newBitboards.occupancy,0,occupancy.length);
+        newBitboards.pieceKey = pieceKey;
+        return newBitboards;
+    }
+
+    /**
+     * sets a piece on a square, replacing the piece there if any (kept in step with ChessBoardState.setPiece)
+     */
+    void setPiece(Location location, ChessPiece piece)
+    {
+        int square = getSquare(location);
+        clear(square);
+        int color = getColorIndex(piece.getColor());
+        int type  = getType(piece);
+        pieces[color][type] |= 1L << square;
+        occupancy[color] |= 1L << square;
+        pieceKey ^= getZobristKey(zobristKeys,color,type,square);
+    }
+
+    /**
+     * empties a square (kept in step with ChessBoardState.removePiece)
+     */
+    void removePiece(Location location)
+    {
+        clear(getSquare(location));
+    }
+
+    private void clear(int square)
+    {
+        long mask = ~(1L << square);
+        for (int color = WHITE; color <= BLACK; color++)
+        {
+            if ((occupancy[color] & ~mask) == 0) continue;
+            occupancy[color] &= mask;
+            for (int type = PAWN; type < NUM_TYPES; type++)
+            {
+                if ((pieces[color][type] & ~mask) == 0) continue;
+                pieces[color][type] &= mask;
+                pieceKey ^= getZobristKey(zobristKeys,color,type,square);
+            }
+        }
+    }
+
+    /**
+     * gets the key of a piece in a key table: the kinds of ChessZobrist.getPieceKind are numbered
+     * 2*type, plus 1 for white
+     */
+    private static long getZobristKey(long[] keyTable, int color, int type, int square)
+    {
+        int pieceKind = 2*type + ((color == WHITE) ? 1 : 0);
+        return keyTable[ChessNotation.NUM_SQUARES*pieceKind + square];
+    }
+
+    /**
+     * gets the zobrist key of the pieces, the part of ChessZobrist.getKey the pieces make, kept
+     * up to date as pieces are set and removed<br>
+     * - if the key table was replaced since these bitboards were built, the key is made again
+     *   from the pieces with the table now in use
+     * @return key of the pieces
+     */
+    public long getPieceKey()
+    {
+        long[] keyTable = ChessZobrist.getKeyTable();
+        if (keyTable == zobristKeys) return pieceKey;
+
+        long key = 0L;
+        for (int color = WHITE; color <= BLACK; color++)
+        {
+            for (int type = PAWN; type < NUM_TYPES; type++)
+            {
+                for (long bits = pieces[color][type]; bits != 0; bits &= bits - 1)
+                {
+                    key ^= getZobristKey(keyTable,color,type,Long.numberOfTrailingZeros(bits));
+                }
+            }
+        }
+        return key;
+    }
+
+    Properties getProperties()
+    {
+        return properties;
+    }
+
+    public static int getColorIndex(PlayerColor color)
+    {
+        return (color == PlayerColor.WHITE) ? WHITE : BLACK;
+    }
+
+    /**
+     * gets the type of a piece, as numbered here (PAWN through KING)
+     * @param piece piece of which to get the type
+     * @return type of the piece
+     */
+    public static int getType(ChessPiece piece)
+    {
+        if (piece instanceof PiecePawn)   return PAWN;
+        if (piece instanceof PieceKnight) return KNIGHT;
+        if (piece instanceof PieceBishop) return BISHOP;
+        if (piece instanceof PieceRook)   return ROOK;
+        if (piece instanceof PieceQueen)  return QUEEN;
+        return KING;
+    }
+
+    /**
+     * gets the square of a location on the board these bitboards were built from
+     * @param location location on the board
+     * @return square number 0 (a1) through 63 (h8)
+     */
+    public int getSquare(Location location)
+    {
+        return ChessNotation.getSquare(location,properties);
+    }
+
+    public long getPieces(int color, int type)
+    {
+        return pieces[color][type];
+    }
+
+    public long getOccupancy(int color)
+    {
+        return occupancy[color];
+    }
+
+    public long getOccupied()
+    {
+        return occupancy[WHITE] | occupancy[BLACK];
+    }
+
+    /**
+     * gets the type of the piece on a square
+     * @param square square number
+     * @return type of the piece (PAWN through KING), or -1 if the square is empty
+     */
+    public int getType(int square)
+    {
+        long bit = 1L << square;
+        for (int color = WHITE; color <= BLACK; color++)
+        {
+            if ((occupancy[color] & bit) == 0) continue;
+            for (int type = PAWN; type < NUM_TYPES; type++)
+            {
+                if ((pieces[color][type] & bit) != 0) return type;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * gets the color of the piece on a square
+     * @param square square number
+     * @return WHITE or BLACK, or -1 if the square is empty
+     */
+    public int getColor(int square)
+    {
+        long bit = 1L << square;
+        if ((occupancy[WHITE] & bit) != 0) return WHITE;
+        if ((occupancy[BLACK] & bit) != 0) return BLACK;
+        return -1;
+    }
+
+    /**
+     * gets the squares attacked by a piece
+     * @param type type of the piece
+     * @param color color of the piece (for pawns)
+     * @param square square of the piece
+     * @param occupied squares blocking sliding pieces
+     * @return mask of the attacked squares
+     */
+    public static long getAttacks(int type, int color, int square, long occupied)
+    {
+        switch (type)
+        {
+            case PAWN:   return PAWN_ATTACKS[color][square];
+            case KNIGHT: return KNIGHT_ATTACKS[square];
+            case BISHOP: return getSlidingAttacks(square,occupied,0,4);
+            case ROOK:   return getSlidingAttacks(square,occupied,4,8);
+            case QUEEN:  return getSlidingAttacks(square,occupied,0,8);
+            default:     return KING_ATTACKS[square];
+        }
+    }
+
+    /**
+     * gets every square attacked by the pieces of a color
+     * @param color color of the attacking pieces
+     * @return mask of the attacked squares
+     */
+    public long getAttacks(int color)
+    {
+        long occupied = getOccupied();
+        long attacks  = 0;
+        for (int type = PAWN; type < NUM_TYPES; type++)
+        {
+            for (long bits = pieces[color][type]; bits != 0; bits &= bits - 1)
+            {
+                attacks |= getAttacks(type,color,Long.numberOfTrailingZeros(bits),occupied);
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * determines whether a square is attacked by the pieces of a color
+     * @param square square number
+     * @param color color of the attacking pieces
+     * @return true if a piece of the color attacks the square
+     */
+    public boolean isAttacked(int square, int color)
+    {
+        long occupied = getOccupied();
+        return (getAttackers(square,occupied) & occupancy[color]) != 0;
+    }
+
+    /**
+     * determines whether the king of a color is attacked
+     * @param color color of the king
+     * @return true if the king is in check (false if the color has no king)
+     */
+    public boolean isInCheck(int color)
+    {
+        long king = pieces[color][KING];
+        return (king != 0) && isAttacked(Long.numberOfTrailingZeros(king),1 - color);
+    }
+
+    /**
+     * determines whether a piece moving from one square to another would leave its own king
+     * attacked, without changing these bitboards (so a shared board can be tested)<br>
+     * - the moving piece leaves its square, and the captured piece no longer attacks
+     * @param color color of the moving piece
+     * @param from square of the moving piece
+     * @param to destination of the moving piece
+     * @param capture square of the captured piece (the destination, or the passed pawn in
+     *                en-passant), or -1 if the move captures nothing
+     * @return true if the king of the color would be in check (false if the color has no king)
+     */
+    public boolean isInCheckAfterMove(int color, int from, int to, int capture)
+    {
+        long king = pieces[color][KING];
+        if (king == 0) return false;
+
+        long fromBit    = 1L << from;
+        long toBit      = 1L << to;
+        long captureBit = (capture < 0) ? 0 : (1L << capture);
+        int  kingSquare = ((king & fromBit) != 0) ? to : Long.numberOfTrailingZeros(king);
+        long occupied   = (getOccupied() & ~fromBit & ~captureBit) | toBit;
+        long opponents  = occupancy[1 - color] & ~captureBit & ~toBit;
+        return (getAttackers(kingSquare,occupied) & opponents) != 0;
+    }
+
+    /**
+     * gets the pieces of both colors attacking a square, with the board occupied as given<br>
+     * - removing a capturing piece from the occupancy reveals the sliding pieces behind it
+     * @param square attacked square
+     * @param occupied occupied squares (pieces not in it do not attack)
+     * @return mask of the squares of the attacking pieces
+     */
+    public long getAttackers(int square, long occupied)
+    {
+        long diagonal = pieces[WHITE][BISHOP] | pieces[BLACK][BISHOP] | pieces[WHITE][QUEEN] | pieces[BLACK][QUEEN];
+        long straight = pieces[WHITE][ROOK]   | pieces[BLACK][ROOK]   | pieces[WHITE][QUEEN] | pieces[BLACK][QUEEN];
+        long attackers = (PAWN_ATTACKS[BLACK][square] & pieces[WHITE][PAWN])
+                       | (PAWN_ATTACKS[WHITE][square] & pieces[BLACK][PAWN])
+                       | (KNIGHT_ATTACKS[square] & (pieces[WHITE][KNIGHT] | pieces[BLACK][KNIGHT]))
+                       | (KING_ATTACKS[square] & (pieces[WHITE][KING] | pieces[BLACK][KING]))
+                       | (getSlidingAttacks(square,occupied,0,4) & diagonal)
+                       | (getSlidingAttacks(square,occupied,4,8) & straight);
+        return attackers & occupied;
+    }
+
+    private static long getSlidingAttacks(int square, long occupied, int firstRay, int lastRay)
+    {
+        long attacks = 0;
+        for (int r = firstRay; r < lastRay; r++)
+        {
+            for (int target : RAYS[r][square])
+            {
+                attacks |= 1L << target;
+                if ((occupied & (1L << target)) != 0) break;
+            }
+        }
+        return attacks;
+    }
+
+    private static long getBit(int file, int rank)
+    {
+        if ((file < 0) || (file >= ChessNotation.NUM_FILES) || (rank < 0) || (rank >= ChessNotation.NUM_RANKS)) return 0;
+        return 1L << ChessNotation.getSquare(file,rank);
+    }
+}
@@ -1,13 +1,23 @@
 package chess;
 
+import chess.moves.ChessMove;
+import chess.moves.MoveEnPassant;
 import chess.pieces.ChessPiece;
+import chess.pieces.PieceBishop;
 import chess.pieces.PieceKing;
+import chess.pieces.PieceKnight;
+import chess.pieces.PiecePawn;
+import chess.pieces.PieceQueen;
+import chess.pieces.PieceRook;
 import chess.board.ChessBoard;
+import chess.notation.ChessNotation;
+import game.utility.BoardGeometry;
 import game.utility.Location;
 import game.utility.Properties;
 import game.utility.Properties.PlayerColor;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -19,6 +29,10 @@ import java.util.Set;
  * - a copy can be created to test Moves, as in testing if a King is in Check<br>
  * - copies of this board state (deep-copy) can also be made to evaluated<br>
  *   moves in an AI Player (i.e. alpha-beta pruning and tree-representation<br>
+ * - the board's dimensions are its own (see BoardGeometry), shared by its copies<br>
+ * - a standard board also keeps bitboards of its pieces, updated as pieces are set and removed,
+ *   so check tests are mask tests instead of walks along the board (see getBitboards), and
+ *   once evaluated by a network, that network's accumulator (see getAccumulator)
  * 
  * @author devang
  */
@@ -26,18 +40,40 @@ public class ChessBoardState {
     
     private Map<PlayerColor,PieceKing> kings;
     private Map<PieceKing,Location>    kingLocations;
+    protected final BoardGeometry      geometry;
     protected ChessBoard               board;
     protected Set<ChessPiece>          pieces;
     protected Map<Location,ChessPiece> pieceLocations;
+    // built on first use, then kept up to date by setPiece and removePiece; volatile, as a game's
+    // board is read (and so built) by the threads of a search copying it
+    private volatile ChessBitboards    bitboards;
+    private volatile ChessAccumulator  accumulator;
+    // a copy belongs to whoever made it (i.e. a search), so legality tests may move its pieces
+    private boolean                    privateCopy = false;
     
     /**
      * constructor: <br>
      * after calling superclass, initializes the mapping to the king and location of the king
      */
     public ChessBoardState()
+    {
+        this(BoardGeometry.STANDARD);
+    }
+    
+    /**
+     * creates an empty board state of any dimensions
+     * @param geometry dimensions of the board
+     */
+    public ChessBoardState(BoardGeometry geometry)
+    {
+        this(geometry,new ChessBoard(geometry));
+    }
+    
+    private ChessBoardState(BoardGeometry geometry, ChessBoard board)
     {
         super();
-        board          = new ChessBoard();
+        this.geometry  = geometry;
+        this.board     = board;
         pieces         = new HashSet<>();
         pieceLocations = new HashMap<>();
         kings         = new HashMap<>();
@@ -63,9 +99,91 @@ public class ChessBoardState {
                 kingLocations.put((PieceKing)piece,location);
         }
         pieces.add(piece);
-        pieceLocations.put(location,piece);
+        ChessPiece replaced = pieceLocations.put(location,piece);
+        ChessBitboards   pieceBitboards   = bitboards;
+        ChessAccumulator pieceAccumulator = accumulator;
+        if (pieceBitboards != null) pieceBitboards.setPiece(location,piece);
+        if (pieceAccumulator != null)
+        {
+            if (replaced != null) pieceAccumulator.removePiece(location,replaced);
+            pieceAccumulator.setPiece(location,piece);
+        }
+    }
+    
+    /**
+     * sets up the pieces for the start of a standard game<br>
+     * - pieces are placed from white's side of the board (a1 through h8) and then
+     *   set on the locations given by the orientation in the properties
+     * @param properties Properties (directions,dimensions,colors) for the pieces of this game
+     */
+    public void setStandardPieces(Properties properties)
+    {
+        for (int file = 0; file < ChessNotation.NUM_FILES; file++)
+        {
+            setStandardPiece(PiecePawn.create(PlayerColor.WHITE),file,1,properties);
+            setStandardPiece(PiecePawn.create(PlayerColor.BLACK),file,ChessNotation.NUM_RANKS-2,properties);
+            setStandardPiece(createBackRankPiece(file,PlayerColor.WHITE),file,0,properties);
+            setStandardPiece(createBackRankPiece(file,PlayerColor.BLACK),file,ChessNotation.NUM_RANKS-1,properties);
+        }
+    }
+    
+    private void setStandardPiece(ChessPiece piece, int file, int rank, Properties properties)
+    {
+        piece.setProperties(properties);
+        setPiece(piece,ChessNotation.getLocation(ChessNotation.getSquare(file,rank),properties));
+    }
+    
+    private static ChessPiece createBackRankPiece(int file, PlayerColor color)
+    {
+        switch (file)
+        {
+            case 0:
+            case 7:
+                return PieceRook.create(color);
+            case 1:
+            case 6:
+                return PieceKnight.create(color);
+            case 2:
+            case 5:
+                return PieceBishop.create(color);
+            case 3:
+                return PieceQueen.create(color);
+            default:
+                return PieceKing.create(color);
+        }
+    }
+    
+    /**
+     * commits a move the way a game does<br>
+     * - records the move as the most recent move of the game and of the moving piece (for en-passant)<br>
+     * - counts the move for the moving piece (for castling and pawns' two-space moves)<br>
+     * - then commits the move to this board state
+     * @param move move to make
+     * @param gameHistory history of the game in which the move is made (may be null)
+     */
+    public void makeMove(ChessMove move, ChessGameHistory gameHistory)
+    {
+        ChessPiece movePiece = getPiece(move.getFromLocation());
+        if (gameHistory != null)
+            gameHistory.setMostRecentMove(move);
+        movePiece.setMostRecentMove(move);
+        movePiece.setNumMovesMade(movePiece.getNumMovesMade()+1);
+        
+        move.commitMove(this);
     }
     
+    /**
+     * checks whether a move (not yet made) is a capture or a pawn move: no position before it can occur again
+     * @param move move to check
+     * @return true if the move resets the half move clock
+     */
+    public boolean isIrreversible(ChessMove move)
+    {
+        return (getPiece(move.getFromLocation()) instanceof PiecePawn)
+            || !isEmpty(move.getToLocation())
+            || (move instanceof MoveEnPassant);
+    }
+
     /**
      * gets the piece at the location on the board
      * @param location location at which to get a reference to a piece
@@ -84,7 +202,12 @@ public class ChessBoardState {
     public void removePiece(Location location)
     {
         ChessPiece piece = pieceLocations.remove(location);
-        if (piece != null) pieces.remove(piece);
+        if (piece == null) return;
+        pieces.remove(piece);
+        ChessBitboards   pieceBitboards   = bitboards;
+        ChessAccumulator pieceAccumulator = accumulator;
+        if (pieceBitboards != null) pieceBitboards.removePiece(location);
+        if (pieceAccumulator != null) pieceAccumulator.removePiece(location,piece);
     }
     
     /**
@@ -104,13 +227,19 @@ public class ChessBoardState {
         return true;
     }
         
+    public BoardGeometry getGeometry()
+    {
+        return geometry;
+    }
+    
     /**
      * deep-copy of this board state, for analyzing Moves offline
      * @return the copy of the board
      */
     protected ChessBoardState getCopy()
     {
-        ChessBoardState newBoardState = new ChessBoardState();
+        // the board's spaces never change, so copies share them
+        ChessBoardState newBoardState = new ChessBoardState(geometry,board);
         for (Location location : pieceLocations.keySet())
         {
             ChessPiece piece = pieceLocations.get(location);
@@ -118,6 +247,11 @@ public class ChessBoardState {
             ChessPiece newPiece = ChessPiece.copy(piece);
             newBoardState.setPiece(newPiece,newLocation);
         }
+        ChessBitboards   copiedBitboards   = bitboards;
+        ChessAccumulator copiedAccumulator = accumulator;
+        if (copiedBitboards != null) newBoardState.bitboards = ChessBitboards.create(this);
+        if (copiedAccumulator != null) newBoardState.accumulator = copiedAccumulator.copy();
+        newBoardState.privateCopy = true;
         return newBoardState;
     }
     /**
@@ -140,14 +274,165 @@ public class ChessBoardState {
     }
     
     /**
-     * Tests if the king (of the parameter player's color) is in Check
+     * fills a caller-provided list with the valid moves of every piece of one color<br>
+     * - moves are appended, so a search can hand in a reused per-ply buffer
+     *   instead of building a new list at every node
+     * @param playerColor color of the pieces for which to generate moves
+     * @param gameHistory history of the game, used for en-passant
+     * @param validMoves list to which the valid moves are appended
+     */
+    public void addValidMoves(PlayerColor playerColor, ChessGameHistory gameHistory, List<ChessMove> validMoves)
+    {
+        for (Location location : geometry.allLocations())
+        {
+            ChessPiece piece = pieceLocations.get(location);
+            if ((piece != null) && (piece.getColor() == playerColor))
+                piece.addValidMoves(location,this,gameHistory,validMoves);
+        }
+    }
+    
+    /**
+     * tests if a piece moving from one location to another would leave its own king in check<br>
+     * - on a standard board, a test of the bitboards as they would be after the move: nothing
+     *   on this board state changes, so a game's board can be shared with threads copying it<br>
+     * - on other boards, the move is made on a private copy (see copy), tested, and then taken
+     *   back, so a search does not need a deep-copy of the board for every candidate move;
+     *   any other board is tested on a copy
+     * @param from location of the piece to move
+     * @param to destination of the piece
+     * @param captureLocation location of the piece captured by this move (the destination,
+     *                        or the passed pawn in en-passant); may be empty or null
+     * @return true if the king of the moving piece would be in check after the move
+     */
+    public boolean checkAfterMove(Location from, Location to, Location captureLocation)
+    {
+        ChessPiece movingPiece   = pieceLocations.get(from);
+        ChessPiece capturedPiece = null;
+
+        ChessBitboards moveBitboards = getBitboards();
+        if (moveBitboards != null)
+        {
+            int captureSquare = ((captureLocation == null) || isEmpty(captureLocation)) ? -1 : moveBitboards.getSquare(captureLocation);
+            return moveBitboards.isInCheckAfterMove(ChessBitboards.getColorIndex(movingPiece.getColor()),moveBitboards.getSquare(from),
+                                                    moveBitboards.getSquare(to),captureSquare);
+        }
+        if (!privateCopy) return getCopy().checkAfterMove(from,to,captureLocation);
+        
+        removePiece(from);
+        if (captureLocation != null)
+        {
+            capturedPiece = pieceLocations.get(captureLocation);
+            removePiece(captureLocation);
+        }
+        setPiece(movingPiece,to);
+        
+        boolean inCheck = check(movingPiece.getColor());
+        
+        removePiece(to);
+        setPiece(movingPiece,from);
+        if (capturedPiece != null)
+            setPiece(capturedPiece,captureLocation);
+        
+        return inCheck;
+    }
+    
+    /**
+     * gets the location of the king of a color
+     * @param color color of the king
+     * @return location of the king, or null if there is no king of this color on the board
+     */
+    public Location getKingLocation(PlayerColor color)
+    {
+        PieceKing kingPiece = kings.get(color);
+        if (kingPiece == null) return null;
+        return kingLocations.get(kingPiece);
+    }
+    
+    /**
+     * determines if a color still has the right to castle to one side<br>
+     * - the king must be on its original square (e1 or e8) and not yet have moved<br>
+     * - the rook must be on its original corner and not yet have moved<br>
+     * - this is the castling right (as recorded for opening books and positions),
+     *   not whether castling is legal right now
+     * @param color color of the player
+     * @param kingSide true for castling toward the h-file, false for castling toward the a-file
+     * @return true if this color may still castle to that side
+     */
+    public boolean hasCastlingRight(PlayerColor color, boolean kingSide)
+    {
+        PieceKing kingPiece = kings.get(color);
+        if ((kingPiece == null) || kingPiece.hasCastled || (kingPiece.getNumMovesMade() != 0)) return false;
+        
+        Location kingLocation = kingLocations.get(kingPiece);
+        if ((kingLocation == null) || (getPiece(kingLocation) != kingPiece)) return false;
+        
+        int homeRank   = (color == PlayerColor.WHITE) ? 0 : ChessNotation.NUM_RANKS-1;
+        int kingSquare = ChessNotation.getSquare(kingLocation,kingPiece.getProperties());
+        if (kingSquare != ChessNotation.getSquare(4,homeRank)) return false;
+        
+        int rookFile = kingSide ? ChessNotation.NUM_FILES-1 : 0;
+        Location rookLocation = ChessNotation.getLocation(ChessNotation.getSquare(rookFile,homeRank),kingPiece.getProperties());
+        ChessPiece rook = getPiece(rookLocation);
+        return (rook instanceof PieceRook) && (rook.getColor() == color) && (rook.getNumMovesMade() == 0);
+    }
+    
+    /**
+     * gets the bitboards of the pieces on this board, kept up to date as pieces are set and removed<br>
+     * - they change with this board state: ChessBitboards.create takes a snapshot<br>
+     * - rebuilt if the pieces' properties (the board's orientation) have changed since they were built<br>
+     * - built into a local and then published, so threads reading a shared board (i.e. searches
+     *   copying a game's board) each get complete bitboards, whichever of them builds first
+     * @return bitboards of this board, or null if it is not a standard 8x8 board with pieces
+     */
+    public ChessBitboards getBitboards()
+    {
+        if ((geometry != BoardGeometry.STANDARD) || pieceLocations.isEmpty()) return null;
+
+        PieceKing kingPiece = kings.get(PlayerColor.WHITE);
+        if (kingPiece == null) kingPiece = kings.get(PlayerColor.BLACK);
+        Properties properties = (kingPiece != null) ? kingPiece.getProperties() : pieces.iterator().next().getProperties();
+        ChessBitboards builtBitboards = bitboards;
+        if ((builtBitboards == null) || (builtBitboards.getProperties() != properties))
+        {
+            builtBitboards = ChessBitboards.build(pieceLocations,properties);
+            bitboards = builtBitboards;
+        }
+        return builtBitboards;
+    }
+
+    /**
+     * gets the accumulator of a network for the pieces on this board, kept up to date as pieces are
+     * set and removed (see ChessAccumulator)<br>
+     * - rebuilt if it was built for another network, or the board's orientation has changed
+     * @param network network of the accumulator
+     * @return accumulator of this board, or null if it is not a standard 8x8 board with pieces
+     */
+    public ChessAccumulator getAccumulator(ChessNetwork network)
+    {
+        ChessBitboards bitboards = getBitboards();
+        if (bitboards == null) return null;
+        ChessAccumulator builtAccumulator = accumulator;
+        if ((builtAccumulator == null) || (builtAccumulator.getNetwork() != network) || (builtAccumulator.getProperties() != bitboards.getProperties()))
+        {
+            builtAccumulator = ChessAccumulator.build(network,bitboards);
+            accumulator = builtAccumulator;
+        }
+        return builtAccumulator;
+    }
+
+    /**
+     * Tests if the king (of the parameter player's color) is in Check<br>
+     * - on a standard board, one test of the king's square against the opponent's attackers
      * @param color the Player whose king is tested in check
      * @return True if the king is in Check, False otherwise
      */
     public boolean check(PlayerColor color)
     {
         PlayerColor playerColor   = color;
-        PlayerColor opponentColor = Properties.oppositeColor(playerColor);
+        
+        ChessBitboards kingBitboards = getBitboards();
+        if (kingBitboards != null)
+            return kingBitboards.isInCheck(ChessBitboards.getColorIndex(playerColor));
         
         PieceKing kingPiece   = kings.get(playerColor);
         Location kingLocation = kingLocations.get(kingPiece);
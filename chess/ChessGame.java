@@ -12,6 +12,8 @@ import chess.pieces.PieceQueen;
 import chess.pieces.PieceRook;
 import chess.players.ChessPlayerCPU;
 import chess.players.ChessPlayerHuman;
+import chess.notation.ChessNotation;
+import chess.profiling.CommitMoveEvent;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import chess.players.ChessPlayer;
@@ -20,11 +22,11 @@ import game.utility.Properties;
 import game.utility.Properties.Direction;
 import game.utility.Properties.PlayerColor;
 import game.graphics.GraphicsBoard;
+import game.graphics.GraphicsGameListener;
 import static game.utility.Properties.PlayerColor.WHITE;
 import static game.utility.Properties.PlayerColor.BLACK;
-import java.awt.Cursor;
 import java.util.List;
-import javax.swing.JOptionPane;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Overarching Class to establish a Chess Game<br>
@@ -32,7 +34,9 @@ import javax.swing.JOptionPane;
  * - initializes GUI<br>
  * - initializes Network connection for client-server games<br>
  * - maintains the state of the game board and the current player's turn<br>
- * - handles the turn-based game loop
+ * - handles the turn-based game loop<br>
+ * - the game never touches AWT or Swing itself: the GUI (see GraphicsGameListener) subscribes
+ *   to its events as a ChessGameListener, so a game can run headless (see createHeadless)
  * 
  * @author devang
  */
@@ -44,6 +48,7 @@ public class ChessGame {
     protected Properties properties;
     protected ChessPlayer   currentPlayer;
     protected ChessPlayer[] players;
+    protected final List<ChessGameListener> listeners = new CopyOnWriteArrayList<>();
 
     /**
      * not yet implemented
@@ -109,11 +114,54 @@ public class ChessGame {
     }
 
     /**
-     * initializes the GUI for a board game
+     * A Chess Game without a GUI, i.e.) hosted on a server: white moves up the board<br>
+     * - the players are created for the returned game and set with setPlayers,
+     *   then the game is started with initializeGame<br>
+     * - moves, turns and the end of the game are sent to the listeners added with addListener
+     * @return newly-created game, with the pieces set
+     */
+    public static ChessGame createHeadless()
+    {
+        ChessGame game = new ChessGame();
+        
+        game.initializeHistory();
+        game.initializeBoard();
+        game.properties = Properties.init(Direction.UP,Direction.DOWN);
+        game.currentBoardState.setStandardPieces(game.properties);
+        return game;
+    }
+
+    /**
+     * initializes the GUI for a board game, and subscribes it to this game's events
      */
     public void initializeGUI()
     {
         gui = new GraphicsBoard("Chess");
+        addListener(new GraphicsGameListener(gui));
+    }
+    
+    /**
+     * subscribes a listener to this game's events (see ChessGameListener)
+     * @param listener listener to add
+     */
+    public void addListener(ChessGameListener listener)
+    {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(ChessGameListener listener)
+    {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * sets the players of a headless game (see createHeadless)
+     * @param player the player whose properties the board follows (i.e. the local player)
+     * @param opponent the other player
+     */
+    public void setPlayers(ChessPlayer player, ChessPlayer opponent)
+    {
+        players = new ChessPlayer[] { player, opponent };
     }
 
     /**
@@ -183,12 +231,16 @@ public class ChessGame {
             currentPlayer = players[0];
         else
             currentPlayer = players[1];
+        gameHistory.setStartPosition(ChessZobrist.getKey(currentBoardState,currentPlayerColor,gameHistory),0);
         
-        gui.init(currentBoardState,properties);
+        for (ChessGameListener listener : listeners)
+        {
+            listener.gameStarted(this);
+        }
+        firePlayerToMove();
         
-        if ((currentPlayer == players[1]) && (players[1] instanceof ChessPlayerCPU))
-        {            
-            gui.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        if (currentPlayer instanceof ChessPlayerCPU)
+        {
             ((ChessPlayerCPU)currentPlayer).determineMove();
         }
     }
@@ -298,14 +350,15 @@ public class ChessGame {
             currentPlayer = players[1];
         else if (currentPlayer == players[1])
             currentPlayer = players[0];
-                
-        if (currentPlayer instanceof ChessPlayerCPU)
-        {
-            gui.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-        }
-        else
+        
+        firePlayerToMove();
+    }
+    
+    private void firePlayerToMove()
+    {
+        for (ChessGameListener listener : listeners)
         {
-            gui.setCursor(Cursor.getDefaultCursor());
+            listener.playerToMove(this,currentPlayer);
         }
     }
     
@@ -325,72 +378,62 @@ public class ChessGame {
         if (move == null)                 return;
         if (!(move instanceof ChessMove)) return;
         
+        CommitMoveEvent event = new CommitMoveEvent();
+        event.begin();
+
         ChessMove chessMove = (ChessMove)move;
-        if (move instanceof MovePromotion)
+        if ((move instanceof MovePromotion) && (((MovePromotion)chessMove).getNewPieceType() == null))
         {
-            PieceType pieceType = pawnPromotionMenu();
+            PieceType pieceType = choosePromotion(player);
             ((MovePromotion)chessMove).setNewPieceType(pieceType);
         }
         
-        if (true)
-        {   // modify this code block after implementing algebraic notation usage
-            Location moveLocation = chessMove.getFromLocation();
-            ChessPiece movePiece = (ChessPiece)currentBoardState.getPiece(moveLocation);
-            gameHistory.setMostRecentMove(chessMove);
-            movePiece.setMostRecentMove(chessMove);
-            movePiece.setNumMovesMade(movePiece.getNumMovesMade()+1);
-        }
+        boolean irreversible = currentBoardState.isIrreversible(chessMove);
+        currentBoardState.makeMove(chessMove,gameHistory);
+        gameHistory.addPosition(ChessZobrist.getKey(currentBoardState,Properties.oppositeColor(currentPlayerColor),gameHistory),irreversible);
 
-        ((ChessMove)move).commitMove(currentBoardState);
-
-        /*if (player instanceof BoardGamePlayerHuman)
-            ((BoardGamePlayerHuman) player).repaint();
-        */
+        for (ChessGameListener listener : listeners)
+        {
+            listener.moveMade(this,player,chessMove);
+        }
         
         togglePlayer();
 
         persistMove(player,move);
         
-        if (checkGameOver())
+        boolean gameOver = checkGameOver();
+        if (gameOver)
         {
-            if (gameOverWindow())
+            // a mate, even on the move reaching the fifty-move rule; otherwise a draw: by repetition
+            // or the fifty-move rule, or a stalemate (no valid move, not in check)
+            boolean mated = currentBoardState.check(currentPlayerColor) && !hasValidMove();
+            PlayerColor winnerColor = mated ? Properties.oppositeColor(currentPlayerColor) : null;
+            for (ChessGameListener listener : listeners)
             {
-                gui.dispose();
+                listener.gameOver(this,winnerColor);
             }
         }
+
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.playerColor = player.getColor().name();
+            event.move        = ChessNotation.toUci(chessMove,properties);
+            event.gameOver    = gameOver;
+            event.commit();
+        }
     }
     
-    private boolean gameOverWindow()
-    {
-        PlayerColor winnerColor = Properties.oppositeColor(currentPlayerColor);
-        String winnerColorText = "";
-        String gameOverText;
-        
-        if (winnerColor == WHITE) winnerColorText = "WHITE";
-        if (winnerColor == BLACK) winnerColorText = "BLACK";
-        
-        gameOverText = "game over: ";
-        gameOverText+= winnerColorText;
-        gameOverText+=" wins!";
-        
-        boolean result = gameOverWindow(gameOverText);
-        return result;
-    }
-    
-    private PieceType pawnPromotionMenu()
+    /**
+     * asks the listeners for the piece to which a pawn is promoted: a queen if none chooses
+     */
+    private PieceType choosePromotion(ChessPlayer player)
     {
-        Object[] possibleValues = { "queen", "bishop", "knight", "rook" };
-        Object selectedValue = JOptionPane.showInputDialog(null,"pawn promotion", "pawn promotion",
-            JOptionPane.PLAIN_MESSAGE,null,possibleValues, possibleValues[0]);
-        
-        if (selectedValue.equals("queen"))
-            return PieceType.QUEEN;
-        if (selectedValue.equals("bishop"))
-            return PieceType.BISHOP;
-        if (selectedValue.equals("knight"))
-            return PieceType.KNIGHT;
-        if (selectedValue.equals("rook"))
-            return PieceType.ROOK;
+        for (ChessGameListener listener : listeners)
+        {
+            PieceType pieceType = listener.choosePromotion(this,player);
+            if (pieceType != null) return pieceType;
+        }
         return PieceType.QUEEN;
     }
     
@@ -414,16 +457,25 @@ public class ChessGame {
     /**
      * checks if the game is over, an then displays a message if it is<br>
      * end of game established per rules of specific game and piece locations:<br>
-     * - Chess ends when a King cannot legally move to another space<br>
+     * - Chess ends when the player to move has no valid move: checkmate if in check, otherwise stalemate (a draw)<br>
+     * - or in a draw: the position occurred three times, or fifty moves passed without a capture or pawn move<br>
      * @return True if the game is over, False otherwise
      */
     public boolean checkGameOver()
+    {
+        return gameHistory.isDrawn() || !hasValidMove();
+    }
+
+    /**
+     * checks whether the player to move has a valid move
+     */
+    private boolean hasValidMove()
     {
         boolean validMovePossible = false;
 
         ChessBoardState boardState = ChessBoardState.copy(currentBoardState);
         
-        for (Location location : Location.allLocations())
+        for (Location location : boardState.getGeometry().allLocations())
         {
             if (!boardState.isEmpty(location))
             {
@@ -437,8 +489,7 @@ public class ChessGame {
             }
         }
 
-        return !validMovePossible;
-
+        return validMovePossible;
     }
         
     /**
@@ -459,13 +510,14 @@ public class ChessGame {
         return currentPlayer;
     }
     
-    protected boolean gameOverWindow(String gameOverText)
+    public PlayerColor getCurrentPlayerColor()
+    {
+        return currentPlayerColor;
+    }
+    
+    public Properties getProperties()
     {
-        JOptionPane.showMessageDialog(null,
-            gameOverText,
-            "game over",
-            JOptionPane.PLAIN_MESSAGE);
-        return true;
+        return properties;
     }
     /**
      * A Chess Game for 1 player against a Phantom CPU AI-controlled player<br>
@@ -2,6 +2,7 @@ package chess;
 
 import chess.moves.ChessMove;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -9,8 +10,16 @@ import java.util.List;
  * @author devang
  */
 public class ChessGameHistory {
+    public static final int FIFTY_MOVE_PLIES = 100;
+
     List<String> gameHistory;
     private int numMovesMade;
+
+    // zobrist keys of the positions reached (see ChessZobrist), with the plies since the last
+    // capture or pawn move (the half move clock) at each: a stack, pushed and popped by searches
+    private long[] positionKeys   = new long[64];
+    private int[]  halfMoveClocks = new int[64];
+    private int    numPositions   = 0;
     
     // remove this after implementing using algebraic chess notation//
     private ChessMove mostRecentMove = null;                        //
@@ -61,4 +70,113 @@ public class ChessGameHistory {
     {
         return numMovesMade;
     }
+
+    /**
+     * copies the history, for a search to push and pop its positions without changing the game's
+     * @return newly-created copy of the history
+     */
+    public ChessGameHistory copy()
+    {
+        ChessGameHistory copy = new ChessGameHistory();
+        copy.gameHistory.addAll(gameHistory);
+        copy.numMovesMade   = numMovesMade;
+        copy.mostRecentMove = mostRecentMove;
+        copy.positionKeys   = Arrays.copyOf(positionKeys,Math.max(positionKeys.length,numPositions + 64));
+        copy.halfMoveClocks = Arrays.copyOf(halfMoveClocks,copy.positionKeys.length);
+        copy.numPositions   = numPositions;
+        return copy;
+    }
+
+    /**
+     * starts the positions over from a position set up (i.e. from FEN)
+     * @param key zobrist key of the position
+     * @param halfMoveClock plies since the last capture or pawn move
+     */
+    public void setStartPosition(long key, int halfMoveClock)
+    {
+        numPositions = 0;
+        push(key,halfMoveClock);
+    }
+
+    /**
+     * adds the position reached by a move
+     * @param key zobrist key of the position
+     * @param irreversible the move was a capture or a pawn move, which no position before it can repeat
+     */
+    public void addPosition(long key, boolean irreversible)
+    {
+        push(key,(irreversible || (numPositions == 0)) ? 0 : halfMoveClocks[numPositions-1] + 1);
+    }
+
+    /**
+     * removes the last position added, when a search takes back its move
+     */
+    public void removePosition()
+    {
+        if (numPositions > 0) numPositions--;
+    }
+
+    private void push(long key, int halfMoveClock)
+    {
+        if (numPositions == positionKeys.length)
+        {
+            positionKeys   = Arrays.copyOf(positionKeys,2*numPositions);
+            halfMoveClocks = Arrays.copyOf(halfMoveClocks,2*numPositions);
+        }
+        positionKeys[numPositions]   = key;
+        halfMoveClocks[numPositions] = halfMoveClock;
+        numPositions++;
+    }
+
+    public int getNumPositions()
+    {
+        return numPositions;
+    }
+
+    /**
+     * gets the key of the current (last added) position
+     * @return zobrist key of the position, or 0 if no position was added
+     */
+    public long getPositionKey()
+    {
+        return (numPositions == 0) ? 0 : positionKeys[numPositions-1];
+    }
+
+    /**
+     * gets the plies since the last capture or pawn move
+     * @return half move clock of the current position
+     */
+    public int getHalfMoveClock()
+    {
+        return (numPositions == 0) ? 0 : halfMoveClocks[numPositions-1];
+    }
+
+    /**
+     * counts the earlier occurrences of the current position<br>
+     * - only positions since the last capture or pawn move, with the same player to move (every
+     *   other ply), can repeat it: O(half move clock)
+     * @return number of times the current position occurred before
+     */
+    public int countRepetitions()
+    {
+        if (numPositions == 0) return 0;
+        long key   = positionKeys[numPositions-1];
+        int oldest = Math.max(0,numPositions-1 - halfMoveClocks[numPositions-1]);
+        int count  = 0;
+        for (int p = numPositions-3; p >= oldest; p -= 2)
+        {
+            if (positionKeys[p] == key) count++;
+        }
+        return count;
+    }
+
+    /**
+     * checks whether the game is drawn: the current position occurred three times, or fifty moves
+     * (by each player) were made without a capture or pawn move
+     * @return true if the game is drawn by repetition or the fifty-move rule
+     */
+    public boolean isDrawn()
+    {
+        return (getHalfMoveClock() >= FIFTY_MOVE_PLIES) || (countRepetitions() >= 2);
+    }
 }
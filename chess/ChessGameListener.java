@@ -0,0 +1,56 @@
+package chess;
+
+import chess.moves.ChessMove;
+import chess.moves.MovePromotion.PieceType;
+import chess.players.ChessPlayer;
+import game.utility.Properties.PlayerColor;
+
+/**
+ * receives the events of a ChessGame: the GUI (or a server, or a recorder) subscribes to a game
+ * with ChessGame.addListener, so the game itself never touches AWT or Swing<br>
+ * - events are sent on the thread that caused them (a player's input thread or a search thread)
+ *
+ * @author devang
+ */
+public interface ChessGameListener {
+
+    /**
+     * the game has started: the pieces are set and the first player is to move
+     * @param game the game that started
+     */
+    void gameStarted(ChessGame game);
+
+    /**
+     * a move has been made, and the turn has passed to the other player
+     * @param game the game in which the move was made
+     * @param player the player who made the move
+     * @param move the move that was made
+     */
+    void moveMade(ChessGame game, ChessPlayer player, ChessMove move);
+
+    /**
+     * it is a player's turn to move
+     * @param game the game in which the player is to move
+     * @param player the player to move
+     */
+    void playerToMove(ChessGame game, ChessPlayer player);
+
+    /**
+     * the game is over: the player to move is checkmated, or the game is drawn by stalemate,
+     * repetition or the fifty-move rule
+     * @param game the game that is over
+     * @param winnerColor color of the player who made the last move, or null for a draw
+     */
+    void gameOver(ChessGame game, PlayerColor winnerColor);
+
+    /**
+     * asks for the piece to which a player's pawn is promoted, when the move has not chosen one
+     * @param game the game in which the pawn is promoted
+     * @param player the player promoting the pawn
+     * @return the chosen piece, or null to leave the choice to another listener (or a queen)
+     */
+    default PieceType choosePromotion(ChessGame game, ChessPlayer player)
+    {
+        return null;
+    }
+}
@@ -0,0 +1,255 @@
+package chess;
+
+import game.utility.Properties.PlayerColor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * an efficiently updatable neural network (NNUE) evaluating chess positions, quantized to 16-bit
+ * integers<br>
+ * - inputs: one per color, type and square of a piece (768), seen from each side: a side's own
+ *   pieces come first and black's board is flipped, so both sides share the same weights<br>
+ * - a hidden layer per side, whose sums (the accumulator, see ChessAccumulator) are kept by the
+ *   board state and updated as pieces are set and removed, so a move changes a few rows of weights
+ *   instead of the whole layer<br>
+ * - the output adds both hidden layers, clipped to 0..ACTIVATION_MAX, the side to move's first,
+ *   times the output weights, and scales the sum to centipawns for the side to move<br>
+ * - a network file is little-endian: "NNUE", version, hidden size (32-bit), the input weights
+ *   (16-bit, the hidden size per input), hidden biases (16-bit), output weights (16-bit, twice the
+ *   hidden size) and output bias (32-bit); it is memory-mapped and copied into arrays when opened<br>
+ * - the accumulator's add and subtract and the output's dot product are plain loops over arrays,
+ *   left to the JIT to vectorize: the Vector API (jdk.incubator.vector) is an incubator module,
+ *   which every javac and java command building or running the tree would need --add-modules for
+ *
+ * @author devang
+ */
+public class ChessNetwork {
+    public static final String NETWORK_FILE_PROPERTY = "chess.network.file";
+    public static final String DEFAULT_NETWORK_FILE  = "evaluation/network.nnue";
+
+    public static final int MAGIC        = ('N') | ('N' << 8) | ('U' << 16) | ('E' << 24);
+    public static final int VERSION      = 1;
+    public static final int HEADER_SIZE  = 12;
+    public static final int NUM_INPUTS   = 2 * ChessBitboards.NUM_TYPES * 64;
+    // quantization: hidden values are clipped to 0..ACTIVATION_MAX, output weights are scaled by
+    // OUTPUT_WEIGHT_SCALE, and the output by EVALUATION_SCALE centipawns
+    public static final int ACTIVATION_MAX      = 255;
+    public static final int OUTPUT_WEIGHT_SCALE = 64;
+    public static final int EVALUATION_SCALE    = 400;
+
+    private static ChessNetwork defaultNetwork = null;
+    private static boolean      defaultRead    = false;
+
+    private final int     hiddenSize;
+    private final short[] inputWeights;
+    private final short[] hiddenBiases;
+    private final short[] outputWeights;
+    private final int     outputBias;
+
+    /**
+     * creates a network from its quantized weights
+     * @param hiddenSize size of each side's hidden layer
+     * @param inputWeights weights of the inputs, hiddenSize per input, input by input
+     * @param hiddenBiases biases of the hidden layer
+     * @param outputWeights weights of the side to move's hidden layer, then of the other side's
+     * @param outputBias bias of the output
+     */
+    public ChessNetwork(int hiddenSize, short[] inputWeights, short[] hiddenBiases, short[] outputWeights, int outputBias)
+    {
+        if ((inputWeights.length != NUM_INPUTS*hiddenSize) || (hiddenBiases.length != hiddenSize) || (outputWeights.length != 2*hiddenSize))
+            throw new IllegalArgumentException("weights do not match a hidden layer of " + hiddenSize);
+        this.hiddenSize    = hiddenSize;
+        this.inputWeights  = inputWeights;
+        this.hiddenBiases  = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias    = outputBias;
+    }
+
+    /**
+     * reads a network file, memory-mapped
+     * @param networkFile path to a network file
+     * @return newly-created network
+     * @throws IOException if the file cannot be read, or is not a network file
+     */
+    public static ChessNetwork open(Path networkFile) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(networkFile,StandardOpenOption.READ))
+        {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if ((buffer.capacity() < HEADER_SIZE) || (buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION))
+                throw new IOException("not a network file: " + networkFile);
+            int hiddenSize = buffer.getInt();
+            if ((hiddenSize <= 0) || (buffer.capacity() != getFileSize(hiddenSize)))
+                throw new IOException("network file of the wrong size: " + networkFile);
+
+            short[] inputWeights  = new short[NUM_INPUTS*hiddenSize];
+            short[] hiddenBiases  = new short[hiddenSize];
+            short[] outputWeights = new short[2*hiddenSize];
+            buffer.asShortBuffer().get(inputWeights);
+            buffer.position(buffer.position() + 2*inputWeights.length);
+            buffer.asShortBuffer().get(hiddenBiases);
+            buffer.position(buffer.position() + 2*hiddenBiases.length);
+            buffer.asShortBuffer().get(outputWeights);
+            buffer.position(buffer.position() + 2*outputWeights.length);
+            return new ChessNetwork(hiddenSize,inputWeights,hiddenBiases,outputWeights,buffer.getInt());
+        }
+    }
+
+    /**
+     * writes the network to a network file
+     * @param networkFile file to write (replaced if it exists)
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path networkFile) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate((int)getFileSize(hiddenSize)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(hiddenSize);
+        for (short weight : inputWeights)  buffer.putShort(weight);
+        for (short bias : hiddenBiases)    buffer.putShort(bias);
+        for (short weight : outputWeights) buffer.putShort(weight);
+        buffer.putInt(outputBias);
+        try (OutputStream out = Files.newOutputStream(networkFile))
+        {
+            out.write(buffer.array());
+        }
+    }
+
+    private static long getFileSize(int hiddenSize)
+    {
+        return HEADER_SIZE + 2L*(NUM_INPUTS + 1 + 2)*hiddenSize + 4;
+    }
+
+    /**
+     * gets the network shared by all CPU players<br>
+     * - read from the file named by the chess.network.file system property, or evaluation/network.nnue<br>
+     * - if there is no such file there is no network, and positions are evaluated by ChessAI.evaluate
+     * @return the shared network, or null if there is none
+     */
+    public static synchronized ChessNetwork getDefault()
+    {
+        if (!defaultRead)
+        {
+            defaultRead = true;
+            Path networkFile = Paths.get(System.getProperty(NETWORK_FILE_PROPERTY,DEFAULT_NETWORK_FILE));
+            if (Files.isRegularFile(networkFile))
+            {
+                try {
+                    defaultNetwork = open(networkFile);
+                } catch (IOException e) {
+                    String loggerMsg = "network could not be read: " + networkFile;
+                    Logger.getLogger(ChessNetwork.class.getName()).log(Level.WARNING,loggerMsg,e);
+                }
+            }
+        }
+        return defaultNetwork;
+    }
+
+    /**
+     * replaces the network shared by all CPU players
+     * @param network the new shared network, or null to evaluate without a network
+     */
+    public static synchronized void setDefault(ChessNetwork network)
+    {
+        defaultNetwork = network;
+        defaultRead    = true;
+    }
+
+    public int getHiddenSize()
+    {
+        return hiddenSize;
+    }
+
+    /**
+     * gets the input of a piece, as seen from one side
+     * @param side side from which the piece is seen (ChessBitboards.WHITE or BLACK)
+     * @param color color of the piece
+     * @param type type of the piece (ChessBitboards.PAWN through KING)
+     * @param square square of the piece, 0 (a1) through 63 (h8)
+     * @return index of the input
+     */
+    public static int getInput(int side, int color, int type, int square)
+    {
+        int relativeColor  = (color == side) ? 0 : 1;
+        int relativeSquare = (side == ChessBitboards.WHITE) ? square : square ^ 56;
+        return ((relativeColor*ChessBitboards.NUM_TYPES + type) << 6) | relativeSquare;
+    }
+
+    /**
+     * sets a side's hidden sums to the hidden biases
+     */
+    void clear(short[] hidden)
+    {
+        System.arraycopy(hiddenBiases,0,hidden,0,hiddenSize);
+    }
+
+    /**
+     * adds an input's weights to a side's hidden sums
+     */
+    void add(short[] hidden, int input)
+    {
+        int offset = input*hiddenSize;
+        for (int i = 0; i < hiddenSize; i++)
+        {
+            hidden[i] += inputWeights[offset + i];
+        }
+    }
+
+    /**
+     * takes an input's weights from a side's hidden sums
+     */
+    void subtract(short[] hidden, int input)
+    {
+        int offset = input*hiddenSize;
+        for (int i = 0; i < hiddenSize; i++)
+        {
+            hidden[i] -= inputWeights[offset + i];
+        }
+    }
+
+    /**
+     * evaluates a position from its accumulator
+     * @param accumulator hidden sums of the position, for this network
+     * @param colorToMove color of the player to move
+     * @return score for the player to move, in centipawns
+     */
+    public int evaluate(ChessAccumulator accumulator, PlayerColor colorToMove)
+    {
+        int side = ChessBitboards.getColorIndex(colorToMove);
+        long sum = outputBias;
+        sum += dot(accumulator.getHidden(side),0);
+        sum += dot(accumulator.getHidden(1 - side),hiddenSize);
+        return (int)(sum * EVALUATION_SCALE / (ACTIVATION_MAX * OUTPUT_WEIGHT_SCALE));
+    }
+
+    /**
+     * evaluates a board state, with the accumulator it keeps (built on first use)
+     * @param boardState board state to evaluate
+     * @param colorToMove color of the player to move
+     * @return score for the player to move, in centipawns (0 if the board is not a standard board)
+     */
+    public int evaluate(ChessBoardState boardState, PlayerColor colorToMove)
+    {
+        ChessAccumulator accumulator = boardState.getAccumulator(this);
+        return (accumulator == null) ? 0 : evaluate(accumulator,colorToMove);
+    }
+
+    private int dot(short[] hidden, int offset)
+    {
+        int sum = 0;
+        for (int i = 0; i < hiddenSize; i++)
+        {
+            int value = Math.min(Math.max(hidden[i],0),ACTIVATION_MAX);
+            sum += value * outputWeights[offset + i];
+        }
+        return sum;
+    }
+}
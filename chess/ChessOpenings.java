@@ -1,9 +1,275 @@
 package chess;
 
+import chess.moves.ChessMove;
+import chess.moves.MoveCastle;
+import chess.moves.MovePromotion;
+import chess.moves.MovePromotion.PieceType;
+import chess.notation.ChessNotation;
+import game.utility.Location;
+import game.utility.Properties;
+import game.utility.Properties.PlayerColor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 /**
+ * Opening book in the Polyglot binary format<br>
+ * - the book file is a sequence of 16-byte entries, sorted by position key:
+ *   key (8 bytes), move (2 bytes), weight (2 bytes), learn (4 bytes), all big-endian<br>
+ * - the file is memory-mapped and looked up by binary search on the key of a position
+ *   (see ChessZobrist), so a book move is found without searching the position<br>
+ * - when a position has several book moves, one is picked at random in proportion to its weight<br>
+ * - a move is packed as: to-file (bits 0-2), to-rank (3-5), from-file (6-8), from-rank (9-11),
+ *   promotion (12-14: none, knight, bishop, rook, queen); castling is written as king-takes-rook
  *
  * @author devang
  */
 public class ChessOpenings {
-    
+    public static final String BOOK_FILE_PROPERTY = "chess.openings.book";
+    public static final String DEFAULT_BOOK_FILE  = "openings/book.bin";
+    public static final int    ENTRY_SIZE         = 16;
+
+    private static ChessOpenings defaultBook = null;
+
+    private final ByteBuffer entries;
+    private final int        numEntries;
+
+    private ChessOpenings(ByteBuffer entries)
+    {
+        this.entries    = entries;
+        this.numEntries = entries.capacity() / ENTRY_SIZE;
+    }
+
+    /**
+     * creates a book with no entries, for games without a book file
+     * @return empty opening book
+     */
+    public static ChessOpenings empty()
+    {
+        return new ChessOpenings(ByteBuffer.allocate(0));
+    }
+
+    /**
+     * memory-maps a book file<br>
+     * - a book holding Polyglot's key of the starting position is reported if the keys are not
+     *   Polyglot's (see ChessZobrist.hasPolyglotKeys), as none of its positions would be found
+     * @param bookFile path to a Polyglot book file
+     * @return opening book reading from the file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static ChessOpenings open(Path bookFile) throws IOException
+    {
+        ChessOpenings book;
+        try (FileChannel channel = FileChannel.open(bookFile,StandardOpenOption.READ))
+        {
+            long size = channel.size() - (channel.size() % ENTRY_SIZE);
+            book = new ChessOpenings(channel.map(FileChannel.MapMode.READ_ONLY,0,size));
+        }
+        // a book built with Polyglot's keys finds nothing with other keys
+        if ((book.findFirst(ChessZobrist.POLYGLOT_START_KEY) >= 0) && !ChessZobrist.hasPolyglotKeys())
+        {
+            String loggerMsg = bookFile + " was built with Polyglot's zobrist keys: put them in " + ChessZobrist.DEFAULT_KEY_FILE
+                             + " (or name their file with -D" + ChessZobrist.KEY_FILE_PROPERTY + ") to read it";
+            Logger.getLogger(ChessOpenings.class.getName()).log(Level.WARNING,loggerMsg);
+        }
+        return book;
+    }
+
+    /**
+     * gets the book shared by all CPU players<br>
+     * - read from the file named by the chess.openings.book system property, or openings/book.bin<br>
+     * - if there is no such file, the book is empty and every position is searched
+     * @return the shared opening book
+     */
+    public static synchronized ChessOpenings getDefault()
+    {
+        if (defaultBook == null)
+        {
+            Path bookFile = Paths.get(System.getProperty(BOOK_FILE_PROPERTY,DEFAULT_BOOK_FILE));
+            defaultBook = empty();
+            if (Files.isRegularFile(bookFile))
+            {
+                try {
+                    defaultBook = open(bookFile);
+                } catch (IOException e) {
+                    String loggerMsg = "opening book could not be read: " + bookFile;
+                    Logger.getLogger(ChessOpenings.class.getName()).log(Level.WARNING,loggerMsg,e);
+                }
+            }
+        }
+        return defaultBook;
+    }
+
+    /**
+     * replaces the book shared by all CPU players
+     * @param book the new shared opening book
+     */
+    public static synchronized void setDefault(ChessOpenings book)
+    {
+        defaultBook = book;
+    }
+
+    public int size()
+    {
+        return numEntries;
+    }
+
+    public long getKey(int index)
+    {
+        return entries.getLong(index*ENTRY_SIZE);
+    }
+
+    public int getMove(int index)
+    {
+        return entries.getShort(index*ENTRY_SIZE + 8) & 0xFFFF;
+    }
+
+    public int getWeight(int index)
+    {
+        return entries.getShort(index*ENTRY_SIZE + 10) & 0xFFFF;
+    }
+
+    /**
+     * finds the first entry for a key by binary search (keys are ordered as unsigned numbers)
+     * @param key key of a position
+     * @return index of the first entry with this key, or -1 if the position is not in the book
+     */
+    public int findFirst(long key)
+    {
+        int low  = 0;
+        int high = numEntries;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(getKey(middle),key) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        if ((low < numEntries) && (getKey(low) == key)) return low;
+        return -1;
+    }
+
+    /**
+     * picks one of the book moves of a position, at random in proportion to their weights
+     * @param key key of a position
+     * @return packed book move, or -1 if the position is not in the book
+     */
+    public int pickMove(long key)
+    {
+        int first = findFirst(key);
+        if (first < 0) return -1;
+
+        long totalWeight = 0;
+        int  last = first;
+        while ((last < numEntries) && (getKey(last) == key))
+        {
+            totalWeight += getWeight(last);
+            last++;
+        }
+        if (totalWeight == 0) return getMove(first);
+
+        long pick = ThreadLocalRandom.current().nextLong(totalWeight);
+        for (int index = first; index < last; index++)
+        {
+            pick -= getWeight(index);
+            if (pick < 0) return getMove(index);
+        }
+        return getMove(last-1);
+    }
+
+    /**
+     * gets a book move for a position, if the position is in the book
+     * @param boardState state of the board
+     * @param colorToMove color of the player to move
+     * @param gameHistory history of the game, used for en-passant
+     * @return a valid move from the book, or null if the position is not in the book
+     */
+    public ChessMove getBookMove(ChessBoardState boardState, PlayerColor colorToMove, ChessGameHistory gameHistory)
+    {
+        if (numEntries == 0) return null;
+
+        int bookMove = pickMove(ChessZobrist.getKey(boardState,colorToMove,gameHistory));
+        if (bookMove < 0) return null;
+
+        Location kingLocation = boardState.getKingLocation(colorToMove);
+        if (kingLocation == null) return null;
+        Properties properties = boardState.getPiece(kingLocation).getProperties();
+
+        List<ChessMove> validMoves = new ArrayList<>();
+        boardState.addValidMoves(colorToMove,gameHistory,validMoves);
+        return ChessNotation.findMove(getFromSquare(bookMove),getToSquare(bookMove),getPromotionType(bookMove),validMoves,properties);
+    }
+
+    /**
+     * packs a move as in Polyglot books
+     * @param fromSquare square from which the piece moves
+     * @param toSquare square to which the piece moves (the rook's square, for castling)
+     * @param pieceType piece of a pawn-promotion, or null
+     * @return packed move
+     */
+    public static int encodeMove(int fromSquare, int toSquare, PieceType pieceType)
+    {
+        int promotion = 0;
+        if (pieceType != null)
+        {
+            switch (pieceType)
+            {
+                case KNIGHT: promotion = 1; break;
+                case BISHOP: promotion = 2; break;
+                case ROOK:   promotion = 3; break;
+                default:     promotion = 4; break;
+            }
+        }
+        return (promotion << 12) | (fromSquare << 6) | toSquare;
+    }
+
+    public static int getFromSquare(int move)
+    {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int getToSquare(int move)
+    {
+        return move & 0x3F;
+    }
+
+    public static PieceType getPromotionType(int move)
+    {
+        switch ((move >>> 12) & 0x7)
+        {
+            case 1: return PieceType.KNIGHT;
+            case 2: return PieceType.BISHOP;
+            case 3: return PieceType.ROOK;
+            case 4: return PieceType.QUEEN;
+        }
+        return null;
+    }
+
+    /**
+     * packs a valid move as in Polyglot books (castling as king-takes-rook)
+     * @param move valid move
+     * @param properties properties holding the direction white moves on the board
+     * @return packed move
+     */
+    public static int encodeMove(ChessMove move, Properties properties)
+    {
+        int fromSquare = ChessNotation.getSquare(move.getFromLocation(),properties);
+        int toSquare   = ChessNotation.getSquare(move.getToLocation(),properties);
+        PieceType pieceType = null;
+        if (move instanceof MoveCastle)
+            toSquare = (toSquare > fromSquare) ? toSquare + 1 : toSquare - 2;
+        else if (move instanceof MovePromotion)
+            pieceType = (((MovePromotion)move).getNewPieceType() != null) ? ((MovePromotion)move).getNewPieceType() : PieceType.QUEEN;
+        return encodeMove(fromSquare,toSquare,pieceType);
+    }
 }
@@ -0,0 +1,135 @@
+package chess;
+
+import chess.moves.ChessMove;
+import chess.notation.ChessNotation;
+import game.utility.Properties;
+import game.utility.Properties.PlayerColor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a position of a game without a ChessGame (or its GUI): the board state, the game history,
+ * the player to move and the move clocks<br>
+ * - used by headless tools (UCI engine, book builder, tournaments) to set up and play positions<br>
+ * - moves are made as in a ChessGame (see ChessBoardState.makeMove), so en-passant,
+ *   castling and pawns' two-space moves follow the same rules
+ *
+ * @author devang
+ */
+public class ChessPosition {
+    private final Properties       properties;
+    private final ChessBoardState  boardState;
+    private final ChessGameHistory gameHistory;
+    private PlayerColor            colorToMove;
+    private int                    halfMoveClock;
+    private int                    fullMoveNumber;
+
+    /**
+     * creates a position from its parts
+     * @param boardState state of the board
+     * @param gameHistory history of the game
+     * @param colorToMove color of the player to move
+     * @param properties properties (directions,dimensions,colors) of the pieces
+     * @param halfMoveClock plies since the last capture or pawn move
+     * @param fullMoveNumber number of the move being played, starting from 1
+     */
+    public ChessPosition(ChessBoardState boardState, ChessGameHistory gameHistory, PlayerColor colorToMove,
+                         Properties properties, int halfMoveClock, int fullMoveNumber)
+    {
+        this.boardState     = boardState;
+        this.gameHistory    = gameHistory;
+        this.colorToMove    = colorToMove;
+        this.properties     = properties;
+        this.halfMoveClock  = halfMoveClock;
+        this.fullMoveNumber = fullMoveNumber;
+        if (gameHistory.getNumPositions() == 0)
+            gameHistory.setStartPosition(ChessZobrist.getKey(boardState,colorToMove,gameHistory),halfMoveClock);
+    }
+
+    /**
+     * creates the starting position of a standard game
+     * @param properties properties (directions,dimensions,colors) of the pieces
+     * @return newly-created starting position, white to move
+     */
+    public static ChessPosition createStandard(Properties properties)
+    {
+        ChessBoardState boardState = new ChessBoardState();
+        boardState.setStandardPieces(properties);
+        return new ChessPosition(boardState,new ChessGameHistory(),PlayerColor.WHITE,properties,0,1);
+    }
+
+    public Properties getProperties()
+    {
+        return properties;
+    }
+
+    public ChessBoardState getBoardState()
+    {
+        return boardState;
+    }
+
+    public ChessGameHistory getGameHistory()
+    {
+        return gameHistory;
+    }
+
+    public PlayerColor getColorToMove()
+    {
+        return colorToMove;
+    }
+
+    public int getHalfMoveClock()
+    {
+        return halfMoveClock;
+    }
+
+    public int getFullMoveNumber()
+    {
+        return fullMoveNumber;
+    }
+
+    /**
+     * checks whether the game is drawn by threefold repetition or the fifty-move rule
+     * @return true if the position is drawn
+     */
+    public boolean isDrawn()
+    {
+        return gameHistory.isDrawn();
+    }
+
+    /**
+     * gets the valid moves of the player to move
+     * @return newly-created list of valid moves
+     */
+    public List<ChessMove> getValidMoves()
+    {
+        List<ChessMove> validMoves = new ArrayList<>();
+        boardState.addValidMoves(colorToMove,gameHistory,validMoves);
+        return validMoves;
+    }
+
+    /**
+     * finds the valid move written in long algebraic (UCI) notation
+     * @param uci move, i.e.) e2e4 or e7e8q
+     * @return the valid move, or null if no valid move matches
+     */
+    public ChessMove findMove(String uci)
+    {
+        return ChessNotation.findMove(uci,getValidMoves(),properties);
+    }
+
+    /**
+     * makes a move of the player to move, and passes the turn
+     * @param move valid move of the player to move
+     */
+    public void makeMove(ChessMove move)
+    {
+        boolean isReset = boardState.isIrreversible(move);
+        boardState.makeMove(move,gameHistory);
+
+        halfMoveClock = isReset ? 0 : halfMoveClock + 1;
+        if (colorToMove == PlayerColor.BLACK) fullMoveNumber++;
+        colorToMove = Properties.oppositeColor(colorToMove);
+        gameHistory.addPosition(ChessZobrist.getKey(boardState,colorToMove,gameHistory),isReset);
+    }
+}
@@ -0,0 +1,316 @@
+package chess;
+
+import chess.moves.ChessMove;
+import chess.moves.MoveRegular;
+import chess.notation.ChessNotation;
+import chess.pieces.ChessPiece;
+import chess.pieces.PieceBishop;
+import chess.pieces.PieceKnight;
+import chess.pieces.PiecePawn;
+import chess.pieces.PieceQueen;
+import chess.pieces.PieceRook;
+import game.utility.BoardGeometry;
+import game.utility.Location;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import game.utility.Properties.PlayerColor;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Zobrist hash keys for chess positions, laid out as in Polyglot opening books<br>
+ * - 781 random keys: 768 for piece/square pairs, 4 for castling rights,
+ *   8 for en-passant files and 1 for white to move<br>
+ * - a position's key is the exclusive-or of the keys of everything in the position<br>
+ * - the default keys are Polyglot's standard table (Random64), read from openings/polyglot.keys
+ *   (781 big-endian longs, beside the default book), so Polyglot books are read as they are;
+ *   the chess.zobrist.keys system property, or loadKeys, names another tool's table instead<br>
+ * - without a key file, the keys are generated from a fixed seed: books built here (see
+ *   BookBuilder) still find their positions, but Polyglot books find none<br>
+ * - whether the keys are Polyglot's is checked against the keys published with the book
+ *   format (see hasPolyglotKeys), and a book holding Polyglot's key of the starting position
+ *   is reported when it is opened without them (see ChessOpenings.open)
+ *
+ * @author devang
+ */
+public class ChessZobrist {
+    public static final int NUM_KEYS           = 781;
+    public static final int CASTLE_OFFSET      = 768;
+    public static final int EN_PASSANT_OFFSET  = 772;
+    public static final int TURN_OFFSET        = 780;
+
+    public static final long DEFAULT_SEED = 0x5DEECE66DL;
+
+    public static final String KEY_FILE_PROPERTY = "chess.zobrist.keys";
+    public static final String DEFAULT_KEY_FILE  = "openings/polyglot.keys";
+
+    // key of the standard starting position with Polyglot's keys, as published with the book format
+    public static final long POLYGLOT_START_KEY = 0x463B96181691FC9CL;
+
+    // positions (moves from the starting position) and their keys, as published with the book format
+    private static final String[] POLYGLOT_TEST_LINES = {
+        "",
+        "e2e4",
+        "e2e4 d7d5",
+        "e2e4 d7d5 e4e5",
+        "e2e4 d7d5 e4e5 f7f5",
+        "e2e4 d7d5 e4e5 f7f5 e1e2",
+        "e2e4 d7d5 e4e5 f7f5 e1e2 e8f7",
+        "a2a4 b7b5 h2h4 b5b4 c2c4",
+        "a2a4 b7b5 h2h4 b5b4 c2c4 b4c3 a1a3"
+    };
+    private static final long[] POLYGLOT_TEST_KEYS = {
+        POLYGLOT_START_KEY, 0x823C9B50FD114196L, 0x0756B94461C50FB0L,
+        0x662FAFB965DB29D4L, 0x22A48B5A8E47FF78L, 0x652A607CA3F242C1L,
+        0x00FDD303C946BDD9L, 0x3C8123EA7B067637L, 0x5C3F9B829B279560L
+    };
+
+    private static volatile long[] keys = initKeys();
+
+    private ChessZobrist() { }
+
+    /**
+     * gets the keys of the file named by the chess.zobrist.keys system property, or else of
+     * openings/polyglot.keys (Polyglot's table), or else the keys of the default seed
+     */
+    private static long[] initKeys()
+    {
+        String keyFile = System.getProperty(KEY_FILE_PROPERTY);
+        if ((keyFile != null) || Files.isRegularFile(Paths.get(DEFAULT_KEY_FILE)))
+        {
+            if (keyFile == null) keyFile = DEFAULT_KEY_FILE;
+            try {
+                return readKeys(Paths.get(keyFile));
+            } catch (IOException e) {
+                String loggerMsg = "zobrist keys could not be read: " + keyFile;
+                Logger.getLogger(ChessZobrist.class.getName()).log(Level.WARNING,loggerMsg,e);
+            }
+        }
+        return generateKeys(DEFAULT_SEED);
+    }
+
+    /**
+     * generates a key table from a seed (SplitMix64)
+     * @param seed seed of the key table
+     * @return newly-generated table of 781 keys
+     */
+    public static long[] generateKeys(long seed)
+    {
+        long[] newKeys = new long[NUM_KEYS];
+        long state = seed;
+        for (int i = 0; i < NUM_KEYS; i++)
+        {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            newKeys[i] = z ^ (z >>> 31);
+        }
+        return newKeys;
+    }
+
+    /**
+     * replaces the key table, i.e.) with the table of another tool's opening books
+     * @param newKeys table of 781 keys
+     */
+    public static void setKeys(long[] newKeys)
+    {
+        if ((newKeys == null) || (newKeys.length != NUM_KEYS))
+            throw new IllegalArgumentException("expected " + NUM_KEYS + " zobrist keys");
+        keys = newKeys.clone();
+    }
+
+    /**
+     * loads a key table from a file of 781 big-endian longs
+     * @param keyFile file holding the keys
+     * @throws IOException if the file cannot be read or is too short
+     */
+    public static void loadKeys(Path keyFile) throws IOException
+    {
+        setKeys(readKeys(keyFile));
+    }
+
+    private static long[] readKeys(Path keyFile) throws IOException
+    {
+        long[] newKeys = new long[NUM_KEYS];
+        try (InputStream in = Files.newInputStream(keyFile);
+             DataInputStream data = new DataInputStream(in))
+        {
+            for (int i = 0; i < NUM_KEYS; i++)
+                newKeys[i] = data.readLong();
+        }
+        return newKeys;
+    }
+
+    /**
+     * determines whether the keys are Polyglot's, so books built by Polyglot tools can be read:
+     * the positions published with the book format (pieces moved, castling rights lost, and
+     * en-passant files) have the published keys
+     * @return true if every published position has its published key
+     */
+    public static boolean hasPolyglotKeys()
+    {
+        Properties properties = Properties.init(Direction.UP,Direction.DOWN);
+        for (int line = 0; line < POLYGLOT_TEST_LINES.length; line++)
+        {
+            ChessPosition position = ChessPosition.createStandard(properties);
+            for (String uci : POLYGLOT_TEST_LINES[line].split(" "))
+            {
+                if (uci.isEmpty()) continue;
+                ChessMove move = ChessNotation.findMove(uci,position.getValidMoves(),properties);
+                if (move == null) return false;
+                position.makeMove(move);
+            }
+            if (position.getGameHistory().getPositionKey() != POLYGLOT_TEST_KEYS[line]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * gets the kind of a piece, as numbered in Polyglot books:
+     * black pawn 0, white pawn 1, black knight 2 ... white king 11
+     * @param piece piece of which to get the kind
+     * @return kind of the piece, 0 through 11
+     */
+    public static int getPieceKind(ChessPiece piece)
+    {
+        int type;
+        if      (piece instanceof PiecePawn)   type = 0;
+        else if (piece instanceof PieceKnight) type = 1;
+        else if (piece instanceof PieceBishop) type = 2;
+        else if (piece instanceof PieceRook)   type = 3;
+        else if (piece instanceof PieceQueen)  type = 4;
+        else                                   type = 5;
+        return 2*type + ((piece.getColor() == PlayerColor.WHITE) ? 1 : 0);
+    }
+
+    /**
+     * gets the key of a piece of a kind standing on a square
+     * @param pieceKind kind of piece, 0 through 11 (see getPieceKind)
+     * @param square square number 0 (a1) through 63 (h8)
+     * @return key of this piece on this square
+     */
+    public static long getPieceKey(int pieceKind, int square)
+    {
+        return keys[ChessNotation.NUM_SQUARES*pieceKind + square];
+    }
+
+    /**
+     * gets the key of a piece of a kind standing on a space of a board of other dimensions than
+     * the standard board (which has no Polyglot square): the key of the space's index on the
+     * first 64 squares, rotated by each further 64 spaces
+     * @param pieceKind kind of piece, 0 through 11 (see getPieceKind)
+     * @param index index of the space on its board (see Location.getIndex)
+     * @return key of this piece on this space
+     */
+    public static long getSpaceKey(int pieceKind, int index)
+    {
+        return Long.rotateLeft(getPieceKey(pieceKind,index % ChessNotation.NUM_SQUARES),index / ChessNotation.NUM_SQUARES);
+    }
+
+    /**
+     * gets the key table in use, for bitboards keeping the key of their pieces (see
+     * ChessBitboards.getPieceKey)
+     */
+    static long[] getKeyTable()
+    {
+        return keys;
+    }
+
+    public static long getCastleKey(int castleIndex)
+    {
+        return keys[CASTLE_OFFSET + castleIndex];
+    }
+
+    public static long getEnPassantKey(int file)
+    {
+        return keys[EN_PASSANT_OFFSET + file];
+    }
+
+    public static long getTurnKey()
+    {
+        return keys[TURN_OFFSET];
+    }
+
+    /**
+     * computes the key of a position
+     * @param boardState state of the board
+     * @param colorToMove color of the player to move
+     * @param gameHistory history of the game, to find an en-passant capture (may be null)
+     * @return key of the position
+     */
+    public static long getKey(ChessBoardState boardState, PlayerColor colorToMove, ChessGameHistory gameHistory)
+    {
+        long key = 0L;
+
+        // a standard board carries the key of its pieces on its bitboards: no scan of the board
+        ChessBitboards bitboards = boardState.getBitboards();
+        if (bitboards != null)
+        {
+            key = bitboards.getPieceKey();
+        }
+        else
+        {
+            BoardGeometry geometry = boardState.getGeometry();
+            for (Location location : geometry.allLocations())
+            {
+                ChessPiece piece = boardState.getPiece(location);
+                if (piece == null) continue;
+                if (geometry == BoardGeometry.STANDARD)
+                    key ^= getPieceKey(getPieceKind(piece),ChessNotation.getSquare(location,piece.getProperties()));
+                else
+                    key ^= getSpaceKey(getPieceKind(piece),location.getIndex());
+            }
+        }
+
+        if (boardState.hasCastlingRight(PlayerColor.WHITE,true))  key ^= getCastleKey(0);
+        if (boardState.hasCastlingRight(PlayerColor.WHITE,false)) key ^= getCastleKey(1);
+        if (boardState.hasCastlingRight(PlayerColor.BLACK,true))  key ^= getCastleKey(2);
+        if (boardState.hasCastlingRight(PlayerColor.BLACK,false)) key ^= getCastleKey(3);
+
+        int enPassantFile = getEnPassantFile(boardState,colorToMove,gameHistory);
+        if (enPassantFile >= 0) key ^= getEnPassantKey(enPassantFile);
+
+        if (colorToMove == PlayerColor.WHITE) key ^= getTurnKey();
+
+        return key;
+    }
+
+    /**
+     * gets the file of a pawn that can be captured en-passant: the opponent's most recent
+     * move pushed it two spaces, and a pawn of the player to move stands beside it
+     * @param boardState state of the board
+     * @param colorToMove color of the player to move
+     * @param gameHistory history of the game (may be null)
+     * @return file 0 (a) through 7 (h) of the pawn, or -1 if there is no en-passant capture
+     */
+    public static int getEnPassantFile(ChessBoardState boardState, PlayerColor colorToMove, ChessGameHistory gameHistory)
+    {
+        if (gameHistory == null) return -1;
+        ChessMove mostRecentMove = gameHistory.getMostRecentMove();
+        if (!(mostRecentMove instanceof MoveRegular)) return -1;
+
+        Location toLocation   = mostRecentMove.getToLocation();
+        Location fromLocation = mostRecentMove.getFromLocation();
+        if (Math.abs(Location.getRow(toLocation) - Location.getRow(fromLocation)) != 2) return -1;
+
+        ChessPiece pawn = boardState.getPiece(toLocation);
+        if (!(pawn instanceof PiecePawn) || (pawn.getColor() == colorToMove) || (pawn.getMostRecentMove() != mostRecentMove))
+            return -1;
+
+        Location[] besideLocations = { Location.left(toLocation), Location.right(toLocation) };
+        for (Location besideLocation : besideLocations)
+        {
+            ChessPiece piece = (besideLocation != null) ? boardState.getPiece(besideLocation) : null;
+            if ((piece instanceof PiecePawn) && (piece.getColor() == colorToMove))
+                return ChessNotation.getFile(ChessNotation.getSquare(toLocation,pawn.getProperties()));
+        }
+        return -1;
+    }
+}
@@ -1,7 +1,7 @@
 package chess.board;
 
+import game.utility.BoardGeometry;
 import game.utility.Location;
-import game.utility.Properties;
 
 /**
  * not really used: only holds a 2d-array of spaces where each space holds a row,col-indexed location
@@ -12,12 +12,17 @@ public class ChessBoard {
     
     public ChessBoard()
     {
-        spaces = new ChessBoardSpace[Properties.NUM_COLS][Properties.NUM_ROWS];
-        for (int col = 0; col < Properties.NUM_COLS; col++)
+        this(BoardGeometry.STANDARD);
+    }
+    
+    public ChessBoard(BoardGeometry geometry)
+    {
+        spaces = new ChessBoardSpace[geometry.getNumCols()][geometry.getNumRows()];
+        for (int col = 0; col < geometry.getNumCols(); col++)
         {
-            for (int row = 0; row < Properties.NUM_ROWS; row++)
+            for (int row = 0; row < geometry.getNumRows(); row++)
             {
-                Location location = Location.of(col,row);
+                Location location = geometry.getLocation(col,row);
                 spaces[col][row] = new ChessBoardSpace(location);
             }
         }
@@ -0,0 +1,256 @@
+package chess.database;
+
+import chess.ChessOpenings;
+import chess.ChessPosition;
+import chess.moves.ChessMove;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * a database of games in a directory: the games, in append-only memory-mapped segments (see
+ * GameStore), and an index of every position they reached (see PositionIndex), to find which
+ * games reached a position and what was played next<br>
+ * - each position of a game is indexed by its zobrist key (the key of ChessZobrist, as in a
+ *   game's history and the opening book), found by replaying the game's moves, or kept from
+ *   replaying them when the game was created (see StoredGame.create)<br>
+ * - the games are the record: the index is written in runs, so games added after the last run
+ *   (i.e. before a crash) are indexed again from the games when the database is opened<br>
+ * - one thread at a time adds or reads games (the methods are synchronized); games added by
+ *   addLater are written one at a time by the database's writer thread<br>
+ * - lookups (see find) and merges of the index's runs (see compact) do not take the database's
+ *   lock, so neither waits for games being added, and a lookup does not wait for a merge
+ *
+ * @author devang
+ */
+public class GameDatabase implements Closeable {
+    public static final int DEFAULT_MAX_HITS = 10000;
+
+    private final Properties    properties = Properties.init(Direction.UP,Direction.DOWN);
+    private final GameStore     store;
+    private final PositionIndex index;
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable,"game-database-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long[] positionKeys = new long[256];
+    private int[]  nextMoves    = new int[256];
+
+    private GameDatabase(GameStore store, PositionIndex index)
+    {
+        this.store = store;
+        this.index = index;
+    }
+
+    /**
+     * opens the database of a directory, creating it if needed
+     * @param directory directory of the database
+     * @return the opened database
+     * @throws IOException if the database cannot be opened
+     */
+    public static GameDatabase open(Path directory) throws IOException
+    {
+        return open(directory,GameStore.DEFAULT_SEGMENT_SIZE,PositionIndex.DEFAULT_ENTRIES_PER_RUN);
+    }
+
+    /**
+     * opens the database of a directory, creating it if needed
+     * @param directory directory of the database
+     * @param segmentSize size of a full segment of games, in bytes
+     * @param entriesPerRun positions indexed in memory before they are written as a run
+     * @return the opened database
+     * @throws IOException if the database cannot be opened
+     */
+    public static GameDatabase open(Path directory, int segmentSize, int entriesPerRun) throws IOException
+    {
+        Files.createDirectories(directory);
+        GameDatabase database = new GameDatabase(new GameStore(directory,segmentSize),new PositionIndex(directory,entriesPerRun));
+
+        int numIndexed = database.index.getNumGamesIndexed();
+        int numGames   = database.store.getNumGames();
+        if (numIndexed < numGames)
+        {
+            String loggerMsg = "indexing games " + numIndexed + " to " + (numGames - 1) + " of " + directory;
+            Logger.getLogger(GameDatabase.class.getName()).log(Level.INFO,loggerMsg);
+            for (int game = numIndexed; game < numGames; game++) database.indexGame(game,database.store.read(game));
+        }
+        return database;
+    }
+
+    /**
+     * adds a game
+     * @param game the game to add
+     * @return number of the game in the database
+     * @throws IOException if the game cannot be written
+     */
+    public synchronized int add(StoredGame game) throws IOException
+    {
+        int number = store.add(game.toBytes());
+        indexGame(number,game);
+        return number;
+    }
+
+    /**
+     * adds a game on the database's writer thread: the caller (i.e. a game of a server, when it
+     * ends) waits neither for the game to be written and indexed, nor for other games being added
+     * @param game the game to add
+     * @return number of the game in the database, once it is added (a game that cannot be written
+     *         is logged, and its Future fails)
+     * @throws RejectedExecutionException if the database is closed
+     */
+    public Future<Integer> addLater(StoredGame game)
+    {
+        return writer.submit(() ->
+        {
+            try {
+                return add(game);
+            } catch (IOException | RuntimeException e) {
+                String loggerMsg = "game of " + game.getNumPlies() + " plies not recorded";
+                Logger.getLogger(GameDatabase.class.getName()).log(Level.WARNING,loggerMsg,e);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * indexes each position of a game: by the keys it has, or else by replaying it (up to the
+     * first move that is not valid)
+     */
+    private void indexGame(int number, StoredGame game) throws IOException
+    {
+        int numPlies = game.getNumPlies();
+        if (positionKeys.length <= numPlies)
+        {
+            positionKeys = Arrays.copyOf(positionKeys,numPlies + 1);
+            nextMoves    = Arrays.copyOf(nextMoves,numPlies + 1);
+        }
+
+        if (game.hasPositionKeys())
+        {
+            for (int ply = 0; ply <= numPlies; ply++)
+            {
+                positionKeys[ply] = game.getPositionKey(ply);
+                nextMoves[ply]    = (ply < numPlies) ? game.getMove(ply) : PositionHit.NO_MOVE;
+            }
+            index.addGame(number,game.getResultCode(),positionKeys,nextMoves,numPlies + 1);
+            return;
+        }
+
+        ChessPosition position = game.getStartPosition(properties);
+        int ply = 0;
+        for (; ply < numPlies; ply++)
+        {
+            ChessMove move = StoredGame.findMove(position,game.getMove(ply));
+            if (move == null) break;
+            positionKeys[ply] = position.getGameHistory().getPositionKey();
+            nextMoves[ply]    = ChessOpenings.encodeMove(move,properties);
+            position.makeMove(move);
+        }
+        positionKeys[ply] = position.getGameHistory().getPositionKey();
+        nextMoves[ply]    = PositionHit.NO_MOVE;
+        index.addGame(number,game.getResultCode(),positionKeys,nextMoves,ply + 1);
+    }
+
+    /**
+     * finds the games that reached a position (without the database's lock)
+     * @param key zobrist key of the position (see ChessZobrist.getKey)
+     * @param maxHits most positions to find
+     * @return positions found, by game
+     */
+    public List<PositionHit> find(long key, int maxHits)
+    {
+        return index.find(key,maxHits,store.getNumGames());
+    }
+
+    /**
+     * finds the games that reached a position
+     * @param position the position
+     * @param maxHits most positions to find
+     * @return positions found, by game
+     */
+    public List<PositionHit> find(ChessPosition position, int maxHits)
+    {
+        return find(position.getGameHistory().getPositionKey(),maxHits);
+    }
+
+    /**
+     * reads a game
+     * @param number number of the game, from 0
+     * @return newly-created game
+     * @throws IOException if the game cannot be read
+     */
+    public synchronized StoredGame getGame(int number) throws IOException
+    {
+        return store.read(number);
+    }
+
+    public synchronized int getNumGames()
+    {
+        return store.getNumGames();
+    }
+
+    public int getNumRuns()
+    {
+        return index.getNumRuns();
+    }
+
+    /**
+     * writes the games added so far to the disk (their positions are indexed again from them
+     * if the database is not closed)
+     * @throws IOException if the games cannot be written
+     */
+    public synchronized void flush() throws IOException
+    {
+        store.flush();
+    }
+
+    /**
+     * writes the buffered positions as a run, and merges the runs into as few runs as fit
+     * a mapped file, for faster lookups (without the database's lock: games are added, and
+     * found, while the runs are merged)
+     * @throws IOException if the runs cannot be written
+     */
+    public void compact() throws IOException
+    {
+        index.writeRun();
+        index.compact(PositionIndex.MAX_ENTRIES_PER_RUN);
+    }
+
+    /**
+     * closes the database, once the games queued by addLater are added
+     * @throws IOException if the games or the index cannot be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE,TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this)
+        {
+            try {
+                index.close();
+            } finally {
+                store.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package chess.database;
+
+import chess.ChessGame;
+import chess.ChessGameListener;
+import chess.ChessOpenings;
+import chess.moves.ChessMove;
+import chess.notation.PgnGame;
+import chess.players.ChessPlayer;
+import game.utility.Properties.PlayerColor;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * records the game a ChessGame plays in a GameDatabase: subscribed to the game (see
+ * ChessGame.addListener), it keeps the moves as they are made, and adds the game when it is over<br>
+ * - one recorder per game; the game is dated when it starts, and its tags may be set before
+ *   it is over (i.e. White and Black)<br>
+ * - the game is added by the database's writer thread (see GameDatabase.addLater), so the game
+ *   ending (i.e. holding a server game's lock) does not wait for the database
+ *
+ * @author devang
+ */
+public class GameDatabaseRecorder implements ChessGameListener {
+    private final GameDatabase       database;
+    private final Map<String,String> tags  = new LinkedHashMap<>();
+    private final List<Integer>      moves = new ArrayList<>();
+    private Future<Integer>          added = null;
+
+    /**
+     * creates a recorder
+     * @param database database to which to add the game
+     */
+    public GameDatabaseRecorder(GameDatabase database)
+    {
+        this.database = database;
+    }
+
+    /**
+     * sets a tag of the game (i.e. Event, White, Black)
+     * @param name name of the tag
+     * @param value value of the tag
+     */
+    public synchronized void setTag(String name, String value)
+    {
+        tags.put(name,value);
+    }
+
+    /**
+     * gets the number of the game in the database, once it has been added
+     * @return number of the game, or -1 if the game is not over, not added yet or not recorded
+     */
+    public synchronized int getGameNumber()
+    {
+        if ((added == null) || !added.isDone()) return -1;
+        try {
+            return added.get();
+        } catch (ExecutionException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    @Override
+    public synchronized void gameStarted(ChessGame game)
+    {
+        moves.clear();
+        added = null;
+        if (!tags.containsKey("Date")) tags.put("Date",new SimpleDateFormat("yyyy.MM.dd").format(new Date()));
+    }
+
+    @Override
+    public synchronized void moveMade(ChessGame game, ChessPlayer player, ChessMove move)
+    {
+        moves.add(ChessOpenings.encodeMove(move,game.getProperties()));
+    }
+
+    @Override
+    public void playerToMove(ChessGame game, ChessPlayer player)
+    {
+    }
+
+    @Override
+    public synchronized void gameOver(ChessGame game, PlayerColor winnerColor)
+    {
+        String result;
+        if (winnerColor == null)                    result = PgnGame.RESULT_DRAW;
+        else if (winnerColor == PlayerColor.WHITE)  result = PgnGame.RESULT_WHITE_WINS;
+        else                                        result = PgnGame.RESULT_BLACK_WINS;
+        tags.put("Result",result);
+        try {
+            added = database.addLater(StoredGame.create(tags,moves,result));
+        } catch (RuntimeException e) {
+            String loggerMsg = "game of " + moves.size() + " plies not recorded";
+            Logger.getLogger(GameDatabaseRecorder.class.getName()).log(Level.WARNING,loggerMsg,e);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package chess.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the games of a GameDatabase, kept in append-only segment files, each memory-mapped<br>
+ * - a game is appended to the last segment (mapped for writing, at its full size) as its length
+ *   (4 bytes) and its bytes (see StoredGame); when it does not fit, the segment is cut to the
+ *   end of its games, and a new segment started<br>
+ * - the address of each game (its segment, and its offset in the segment) is appended to the
+ *   offsets file, after the game: a game is in the store once its address is, so a game cut
+ *   short by a crash is written over by the next game<br>
+ * - games are numbered from 0, in the order they are added
+ *
+ * @author devang
+ */
+class GameStore implements Closeable {
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 28;
+
+    private static final String SEGMENT_FORMAT = "games-%05d.seg";
+    private static final String OFFSETS_FILE   = "games.off";
+    private static final int    ADDRESS_SIZE   = 8;
+
+    private final Path                   directory;
+    private final int                    segmentSize;
+    private final FileChannel            offsetsChannel;
+    private final ByteBuffer             address  = ByteBuffer.allocateDirect(ADDRESS_SIZE);
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    // read without the database's lock by lookups (see GameDatabase.find)
+    private volatile int                 numGames;
+    private int                          segmentEnd;
+
+    /**
+     * opens the store of a directory, creating it if it is empty
+     * @param directory directory of the store
+     * @param segmentSize size of a full segment, in bytes
+     * @throws IOException if the store cannot be opened
+     */
+    GameStore(Path directory, int segmentSize) throws IOException
+    {
+        this.directory   = directory;
+        this.segmentSize = segmentSize;
+        offsetsChannel = FileChannel.open(directory.resolve(OFFSETS_FILE),StandardOpenOption.CREATE,
+                                          StandardOpenOption.READ,StandardOpenOption.WRITE);
+        // an address cut short by a crash is dropped, with its game
+        numGames = (int)(offsetsChannel.size() / ADDRESS_SIZE);
+        offsetsChannel.truncate((long)numGames * ADDRESS_SIZE);
+
+        int lastSegment = 0;
+        if (numGames > 0)
+        {
+            long lastAddress = readAddress(numGames - 1);
+            lastSegment = getSegment(lastAddress);
+            for (int segment = 0; segment < lastSegment; segment++) segments.add(mapSegment(segment,false));
+            segments.add(mapSegment(lastSegment,true));
+            int lastOffset = getOffset(lastAddress);
+            segmentEnd = lastOffset + 4 + segments.get(lastSegment).getInt(lastOffset);
+        }
+        else
+        {
+            segments.add(mapSegment(lastSegment,true));
+            segmentEnd = 0;
+        }
+    }
+
+    /**
+     * maps a segment: the last one for writing, at the full size of a segment, the others for reading
+     */
+    private MappedByteBuffer mapSegment(int segment, boolean last) throws IOException
+    {
+        Path file = directory.resolve(String.format(SEGMENT_FORMAT,segment));
+        if (!last)
+        {
+            try (FileChannel channel = FileChannel.open(file,StandardOpenOption.READ))
+            {
+                return channel.map(MapMode.READ_ONLY,0,channel.size());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file,StandardOpenOption.CREATE,StandardOpenOption.READ,StandardOpenOption.WRITE))
+        {
+            return channel.map(MapMode.READ_WRITE,0,segmentSize);
+        }
+    }
+
+    /**
+     * appends a game
+     * @param game the packed game (see StoredGame)
+     * @return number of the game
+     * @throws IOException if the game cannot be written
+     * @throws IllegalArgumentException if the game does not fit in a segment
+     */
+    int add(byte[] game) throws IOException
+    {
+        if (4L + game.length > segmentSize) throw new IllegalArgumentException("game of " + game.length + " bytes does not fit in a segment");
+        if (segmentEnd + 4L + game.length > segmentSize) startSegment();
+
+        int lastSegment = segments.size() - 1;
+        MappedByteBuffer segment = segments.get(lastSegment);
+        segment.putInt(segmentEnd,game.length);
+        ByteBuffer bytes = segment.duplicate();
+        bytes.position(segmentEnd + 4);
+        bytes.put(game);
+
+        address.clear();
+        address.putLong(((long)lastSegment << 32) | segmentEnd);
+        address.flip();
+        long position = (long)numGames * ADDRESS_SIZE;
+        while (address.hasRemaining()) position += offsetsChannel.write(address,position);
+
+        segmentEnd += 4 + game.length;
+        return numGames++;
+    }
+
+    /**
+     * cuts the last segment to the end of its games, and starts a new (empty) one
+     */
+    private void startSegment() throws IOException
+    {
+        int lastSegment = segments.size() - 1;
+        segments.get(lastSegment).force();
+        Path file = directory.resolve(String.format(SEGMENT_FORMAT,lastSegment));
+        try (FileChannel channel = FileChannel.open(file,StandardOpenOption.WRITE))
+        {
+            channel.truncate(segmentEnd);
+        }
+        segments.set(lastSegment,mapSegment(lastSegment,false));
+
+        // a segment left by a crash, before any of its games' addresses were written, is emptied
+        Path nextFile = directory.resolve(String.format(SEGMENT_FORMAT,lastSegment + 1));
+        try (FileChannel channel = FileChannel.open(nextFile,StandardOpenOption.CREATE,StandardOpenOption.WRITE))
+        {
+            channel.truncate(0);
+        }
+        segments.add(mapSegment(lastSegment + 1,true));
+        segmentEnd = 0;
+    }
+
+    /**
+     * reads a game
+     * @param number number of the game, from 0
+     * @return newly-created game
+     * @throws IOException if the game's address cannot be read
+     */
+    StoredGame read(int number) throws IOException
+    {
+        if ((number < 0) || (number >= numGames)) throw new IllegalArgumentException("no game " + number);
+        long gameAddress = readAddress(number);
+        int offset = getOffset(gameAddress);
+        ByteBuffer bytes = segments.get(getSegment(gameAddress)).duplicate();
+        int length = bytes.getInt(offset);
+        bytes.limit(offset + 4 + length);
+        bytes.position(offset + 4);
+        return StoredGame.read(bytes);
+    }
+
+    private long readAddress(int number) throws IOException
+    {
+        address.clear();
+        long position = (long)number * ADDRESS_SIZE;
+        while (address.hasRemaining())
+        {
+            int read = offsetsChannel.read(address,position);
+            if (read < 0) throw new IOException("no address of game " + number);
+            position += read;
+        }
+        return address.getLong(0);
+    }
+
+    private static int getSegment(long gameAddress)
+    {
+        return (int)(gameAddress >>> 32);
+    }
+
+    private static int getOffset(long gameAddress)
+    {
+        return (int)gameAddress;
+    }
+
+    int getNumGames()
+    {
+        return numGames;
+    }
+
+    /**
+     * writes the games and addresses added so far to the disk
+     * @throws IOException if they cannot be written
+     */
+    void flush() throws IOException
+    {
+        segments.get(segments.size() - 1).force();
+        offsetsChannel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        flush();
+        offsetsChannel.close();
+    }
+}
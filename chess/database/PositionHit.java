@@ -0,0 +1,63 @@
+package chess.database;
+
+/**
+ * a position of a game found in a GameDatabase: the game, the ply at which the game reached the
+ * position, the move played next and the game's result
+ *
+ * @author devang
+ */
+public class PositionHit {
+    // the move of a hit at the end of its game
+    public static final int NO_MOVE = 0;
+
+    private final int gameNumber;
+    private final int ply;
+    private final int move;
+    private final int result;
+
+    PositionHit(int gameNumber, int ply, int move, int result)
+    {
+        this.gameNumber = gameNumber;
+        this.ply        = ply;
+        this.move       = move;
+        this.result     = result;
+    }
+
+    public int getGameNumber()
+    {
+        return gameNumber;
+    }
+
+    /**
+     * gets the ply at which the game reached the position
+     * @return number of plies played before the position, from 0
+     */
+    public int getPly()
+    {
+        return ply;
+    }
+
+    /**
+     * gets the move played next in the game
+     * @return packed move (see ChessOpenings.encodeMove), or NO_MOVE if the game ended here
+     */
+    public int getMove()
+    {
+        return move;
+    }
+
+    /**
+     * gets the result of the game
+     * @return StoredGame.RESULT_WHITE_WINS, RESULT_BLACK_WINS, RESULT_DRAW or RESULT_UNKNOWN
+     */
+    public int getResult()
+    {
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "game " + gameNumber + ", ply " + ply + ", " + StoredGame.getResult(result);
+    }
+}
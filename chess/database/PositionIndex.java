@@ -0,0 +1,434 @@
+package chess.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * the index of a GameDatabase: the zobrist key of every position of every game, with the game,
+ * the ply, the move played next and the game's result<br>
+ * - entries are 16 bytes: the key, then the game (4 bytes), the result (2 bits), the ply
+ *   (14 bits) and the move (2 bytes), held in primitive arrays until the buffer is full<br>
+ * - a full buffer is sorted by key (and game) and written as a run, a file covering a range of
+ *   games, memory-mapped and binary searched; the runs of the ranges written are immutable, so
+ *   the buffer of the games added since the last run is the only part that changes<br>
+ * - runs can be merged (see compact), so a lookup searches few runs; a merged run replaces
+ *   the runs it covers, and a run covered by another (left by a crash during a merge) is dropped<br>
+ * - the list of runs is replaced, never changed, so a lookup searches the runs without a lock:
+ *   only its scan of the buffer waits for the buffer's lock (this index), and a merge holds
+ *   that lock only to put the merged runs in the list
+ *
+ * @author devang
+ */
+class PositionIndex implements Closeable {
+    static final int DEFAULT_ENTRIES_PER_RUN = 1 << 22;
+    static final int MIN_ENTRIES_PER_RUN     = StoredGame.MAX_PLIES + 1;
+    // a run is mapped as one buffer, so it holds less than 2 GB
+    static final int MAX_ENTRIES_PER_RUN     = Integer.MAX_VALUE / 16;
+
+    private static final int     ENTRY_SIZE  = 16;
+    private static final int     BUFFER_SIZE = 1 << 16;
+    private static final String  RUN_FORMAT  = "positions-%010d-%010d.idx";
+    private static final Pattern RUN_NAME    = Pattern.compile("positions-(\\d+)-(\\d+)\\.idx");
+
+    /**
+     * a run: the sorted entries of a range of games
+     */
+    private static class Run {
+        private final int              firstGame;
+        private final int              endGame;
+        private final Path             file;
+        private final MappedByteBuffer entries;
+        private final int              numEntries;
+
+        private Run(int firstGame, int endGame, Path file) throws IOException
+        {
+            this.firstGame = firstGame;
+            this.endGame   = endGame;
+            this.file      = file;
+            try (FileChannel channel = FileChannel.open(file,StandardOpenOption.READ))
+            {
+                entries = channel.map(MapMode.READ_ONLY,0,channel.size());
+            }
+            numEntries = entries.capacity() / ENTRY_SIZE;
+        }
+
+        private long getKey(int index)
+        {
+            return entries.getLong(index * ENTRY_SIZE);
+        }
+
+        private long getValue(int index)
+        {
+            return entries.getLong(index * ENTRY_SIZE + 8);
+        }
+
+        /**
+         * finds the first entry whose key is not less than a key
+         */
+        private int lowerBound(long key)
+        {
+            int low  = 0;
+            int high = numEntries;
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (Long.compareUnsigned(getKey(middle),key) < 0) low = middle + 1;
+                else                                               high = middle;
+            }
+            return low;
+        }
+    }
+
+    private final Path         directory;
+    private final long[]       keys;
+    private final long[]       values;
+    private int                size = 0;
+    private volatile List<Run> runs;
+    private final Object       compactLock = new Object();
+    private int                firstBufferedGame;
+    private int                endBufferedGame;
+
+    /**
+     * opens the index of a directory, with its runs
+     * @param directory directory of the index
+     * @param entriesPerRun size of the buffer of entries, and so of the runs written from it
+     * @throws IOException if the runs cannot be read
+     */
+    PositionIndex(Path directory, int entriesPerRun) throws IOException
+    {
+        this.directory = directory;
+        int capacity = Math.max(MIN_ENTRIES_PER_RUN,Math.min(MAX_ENTRIES_PER_RUN,entriesPerRun));
+        keys   = new long[capacity];
+        values = new long[capacity];
+
+        List<int[]> ranges = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory))
+        {
+            for (Path file : files)
+            {
+                String name = file.getFileName().toString();
+                Matcher matcher = RUN_NAME.matcher(name);
+                if (matcher.matches())
+                    ranges.add(new int[] { Integer.parseInt(matcher.group(1)),Integer.parseInt(matcher.group(2)) });
+                else if (name.startsWith("positions-") && name.endsWith(".tmp"))
+                    Files.delete(file);
+            }
+        }
+        // widest ranges first, so a run covered by a merged run is found and dropped
+        ranges.sort(Comparator.<int[]>comparingInt(range -> range[0]).thenComparingInt(range -> -range[1]));
+        List<Run> openedRuns = new ArrayList<>();
+        int endGame = 0;
+        for (int[] range : ranges)
+        {
+            Path file = directory.resolve(String.format(RUN_FORMAT,range[0],range[1]));
+            // a run after a gap is dropped too, leaving the games after the gap to be indexed again
+            if ((range[1] <= endGame) || (range[0] != endGame))
+            {
+                Files.delete(file);
+                continue;
+            }
+            openedRuns.add(new Run(range[0],range[1],file));
+            endGame = range[1];
+        }
+        runs = Collections.unmodifiableList(openedRuns);
+        firstBufferedGame = endGame;
+        endBufferedGame   = endGame;
+    }
+
+    /**
+     * gets the number of games indexed: the games before it are all in the index
+     * @return number of the first game not indexed
+     */
+    synchronized int getNumGamesIndexed()
+    {
+        return endBufferedGame;
+    }
+
+    /**
+     * adds the positions of a game (the next game not indexed)
+     * @param game number of the game
+     * @param result result of the game (see StoredGame.RESULT_WHITE_WINS)
+     * @param positionKeys keys of the game's positions, from the start
+     * @param moves moves played from the positions (PositionHit.NO_MOVE from the last)
+     * @param numPositions number of the game's positions
+     * @throws IOException if a run cannot be written
+     */
+    synchronized void addGame(int game, int result, long[] positionKeys, int[] moves, int numPositions) throws IOException
+    {
+        if (size + numPositions > keys.length) writeRun();
+        for (int ply = 0; ply < numPositions; ply++)
+        {
+            keys[size]   = positionKeys[ply];
+            values[size] = ((long)game << 32) | ((long)result << 30) | ((long)ply << 16) | moves[ply];
+            size++;
+        }
+        endBufferedGame = game + 1;
+    }
+
+    /**
+     * finds the positions of the games with a key: in the runs, then in the buffer<br>
+     * - the buffer is scanned under its lock, with the list of runs taken at the same time, so no
+     *   entry is missed (or found twice) if the buffer is written as a run meanwhile; the runs
+     *   are then searched without the lock
+     * @param key zobrist key of the position
+     * @param maxHits most positions to find
+     * @param numGames number of games of the store: entries of later games (left by a crash) are skipped
+     * @return positions found, by game
+     */
+    List<PositionHit> find(long key, int maxHits, int numGames)
+    {
+        List<Run> searchedRuns;
+        List<PositionHit> bufferHits = new ArrayList<>();
+        synchronized (this)
+        {
+            searchedRuns = runs;
+            for (int index = 0; (index < size) && (bufferHits.size() < maxHits); index++)
+            {
+                if (keys[index] == key) addHit(bufferHits,values[index],numGames);
+            }
+        }
+
+        List<PositionHit> hits = new ArrayList<>();
+        for (Run run : searchedRuns)
+        {
+            for (int index = run.lowerBound(key); (index < run.numEntries) && (run.getKey(index) == key); index++)
+            {
+                if (hits.size() == maxHits) return hits;
+                addHit(hits,run.getValue(index),numGames);
+            }
+        }
+        hits.addAll(bufferHits.subList(0,Math.min(bufferHits.size(),maxHits - hits.size())));
+        return hits;
+    }
+
+    private static void addHit(List<PositionHit> hits, long value, int numGames)
+    {
+        int game = (int)(value >>> 32);
+        if (game >= numGames) return;
+        hits.add(new PositionHit(game,(int)(value >>> 16) & StoredGame.MAX_PLIES,(int)value & 0xFFFF,(int)(value >>> 30) & 0x3));
+    }
+
+    int getNumRuns()
+    {
+        return runs.size();
+    }
+
+    /**
+     * sorts the buffer, writes it as a run, and empties it
+     * @throws IOException if the run cannot be written
+     */
+    synchronized void writeRun() throws IOException
+    {
+        if (endBufferedGame == firstBufferedGame) return;
+        sort(0,size-1);
+
+        Path file = directory.resolve(String.format(RUN_FORMAT,firstBufferedGame,endBufferedGame));
+        try (RunWriter writer = new RunWriter(file))
+        {
+            for (int index = 0; index < size; index++) writer.write(keys[index],values[index]);
+        }
+        List<Run> newRuns = new ArrayList<>(runs);
+        newRuns.add(new Run(firstBufferedGame,endBufferedGame,file));
+        runs = Collections.unmodifiableList(newRuns);
+        size = 0;
+        firstBufferedGame = endBufferedGame;
+    }
+
+    /**
+     * merges runs, oldest first, into runs of at most a number of entries: a lookup searches
+     * every run, so fewer runs make faster lookups<br>
+     * - the runs are merged without the buffer's lock: games are added, and runs written from the
+     *   buffer, while they are merged; the runs written meanwhile follow the merged runs
+     * @param maxEntries most entries of a merged run
+     * @throws IOException if a merged run cannot be written
+     */
+    void compact(int maxEntries) throws IOException
+    {
+        maxEntries = Math.max(MIN_ENTRIES_PER_RUN,Math.min(MAX_ENTRIES_PER_RUN,maxEntries));
+        synchronized (compactLock)
+        {
+            List<Run> merging = runs;
+            List<Run> compacted = new ArrayList<>();
+            int first = 0;
+            while (first < merging.size())
+            {
+                long entries = merging.get(first).numEntries;
+                int end = first + 1;
+                while ((end < merging.size()) && (entries + merging.get(end).numEntries <= maxEntries)) entries += merging.get(end++).numEntries;
+
+                if (end - first == 1) compacted.add(merging.get(first));
+                else                  compacted.add(merge(merging.subList(first,end)));
+                first = end;
+            }
+            synchronized (this)
+            {
+                compacted.addAll(runs.subList(merging.size(),runs.size()));
+                runs = Collections.unmodifiableList(compacted);
+            }
+        }
+    }
+
+    /**
+     * merges consecutive runs into one, then deletes them
+     */
+    private Run merge(List<Run> merged) throws IOException
+    {
+        int firstGame = merged.get(0).firstGame;
+        int endGame   = merged.get(merged.size()-1).endGame;
+        Path file = directory.resolve(String.format(RUN_FORMAT,firstGame,endGame));
+
+        // entries of equal keys come from the runs in order, so they stay sorted by game
+        int[] next = new int[merged.size()];
+        PriorityQueue<Integer> queue = new PriorityQueue<>((i,j) ->
+        {
+            int order = Long.compareUnsigned(merged.get(i).getKey(next[i]),merged.get(j).getKey(next[j]));
+            return (order != 0) ? order : Integer.compare(i,j);
+        });
+        for (int i = 0; i < merged.size(); i++)
+        {
+            if (merged.get(i).numEntries > 0) queue.add(i);
+        }
+        try (RunWriter writer = new RunWriter(file))
+        {
+            while (!queue.isEmpty())
+            {
+                int i = queue.poll();
+                Run run = merged.get(i);
+                writer.write(run.getKey(next[i]),run.getValue(next[i]));
+                if (++next[i] < run.numEntries) queue.add(i);
+            }
+        }
+
+        Run run = new Run(firstGame,endGame,file);
+        for (Run old : merged) Files.delete(old.file);
+        return run;
+    }
+
+    /**
+     * writes a run's entries through a direct buffer to a temporary file, renamed to the run's
+     * file when complete, so a run is never found half written
+     */
+    private static class RunWriter implements Closeable {
+        private final Path        file;
+        private final Path        tempFile;
+        private final FileChannel channel;
+        private final ByteBuffer  buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        private RunWriter(Path file) throws IOException
+        {
+            this.file = file;
+            tempFile  = file.resolveSibling(file.getFileName() + ".tmp");
+            channel   = FileChannel.open(tempFile,StandardOpenOption.CREATE,StandardOpenOption.WRITE,
+                                         StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private void write(long key, long value) throws IOException
+        {
+            if (buffer.remaining() < ENTRY_SIZE) flush();
+            buffer.putLong(key);
+            buffer.putLong(value);
+        }
+
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            try {
+                flush();
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+            Files.move(tempFile,file,StandardCopyOption.ATOMIC_MOVE,StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * orders two entries: by key as an unsigned number, then by game and ply
+     */
+    private int compare(int i, int j)
+    {
+        int order = Long.compareUnsigned(keys[i],keys[j]);
+        return (order != 0) ? order : Long.compare(values[i],values[j]);
+    }
+
+    private int compare(int i, long key, long value)
+    {
+        int order = Long.compareUnsigned(keys[i],key);
+        return (order != 0) ? order : Long.compare(values[i],value);
+    }
+
+    private void sort(int low, int high)
+    {
+        while (high - low > 16)
+        {
+            int middle = (low + high) >>> 1;
+            if (compare(middle,low)  < 0) swap(middle,low);
+            if (compare(high,low)    < 0) swap(high,low);
+            if (compare(high,middle) < 0) swap(high,middle);
+            long pivotKey   = keys[middle];
+            long pivotValue = values[middle];
+
+            int i = low;
+            int j = high;
+            while (i <= j)
+            {
+                while (compare(i,pivotKey,pivotValue) < 0) i++;
+                while (compare(j,pivotKey,pivotValue) > 0) j--;
+                if (i <= j) swap(i++,j--);
+            }
+            // recurse into the smaller part, loop on the larger
+            if (j - low < high - i)
+            {
+                sort(low,j);
+                low = i;
+            }
+            else
+            {
+                sort(i,high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++)
+        {
+            for (int j = i; (j > low) && (compare(j,j-1) < 0); j--)
+            {
+                swap(j,j-1);
+            }
+        }
+    }
+
+    private void swap(int i, int j)
+    {
+        long key   = keys[i];   keys[i]   = keys[j];   keys[j]   = key;
+        long value = values[i]; values[i] = values[j]; values[j] = value;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        writeRun();
+    }
+}
@@ -0,0 +1,279 @@
+package chess.database;
+
+import chess.ChessOpenings;
+import chess.ChessPosition;
+import chess.moves.ChessMove;
+import chess.notation.ChessNotation;
+import chess.notation.FenNotation;
+import chess.notation.PgnGame;
+import game.utility.Properties;
+import game.utility.Properties.PlayerColor;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a game kept in a GameDatabase: its tags, its result and its moves, packed as in Polyglot books
+ * (see ChessOpenings.encodeMove), 2 bytes per ply<br>
+ * - the game starts from the standard position, or from the position of its FEN tag<br>
+ * - stored as: result (1 byte), plies (2 bytes), length of the tags (2 bytes), the tags (UTF-8,
+ *   a tab between name and value, a newline after each), then the moves
+ *
+ * @author devang
+ */
+public class StoredGame {
+    public static final int MAX_PLIES    = (1 << 14) - 1;
+    public static final int MAX_TAG_SIZE = 0xFFFF;
+
+    // results, as kept in the game and in its positions' index entries
+    public static final int RESULT_UNKNOWN    = 0;
+    public static final int RESULT_WHITE_WINS = 1;
+    public static final int RESULT_BLACK_WINS = 2;
+    public static final int RESULT_DRAW       = 3;
+
+    private static final String[] RESULTS = { PgnGame.RESULT_UNKNOWN, PgnGame.RESULT_WHITE_WINS,
+                                              PgnGame.RESULT_BLACK_WINS, PgnGame.RESULT_DRAW };
+
+    private final Map<String,String> tags;
+    private final int[]              moves;
+    private final int                result;
+    // keys of the positions, when known from replaying the moves (see create), not stored
+    private long[]                   positionKeys = null;
+
+    private StoredGame(Map<String,String> tags, int[] moves, int result)
+    {
+        this.tags   = tags;
+        this.moves  = moves;
+        this.result = result;
+    }
+
+    /**
+     * creates a game
+     * @param tags tags of the game (i.e. White, Black, Date, FEN)
+     * @param moves moves of the game, packed (see ChessOpenings.encodeMove)
+     * @param result result of the game: 1-0, 0-1, 1/2-1/2 or *
+     * @return newly-created game
+     * @throws IllegalArgumentException if the game has more than MAX_PLIES plies
+     */
+    public static StoredGame create(Map<String,String> tags, List<Integer> moves, String result)
+    {
+        if (moves.size() > MAX_PLIES) throw new IllegalArgumentException("more than " + MAX_PLIES + " plies");
+        int[] packedMoves = new int[moves.size()];
+        for (int ply = 0; ply < packedMoves.length; ply++) packedMoves[ply] = moves.get(ply);
+        return new StoredGame(new LinkedHashMap<>(tags),packedMoves,getResultCode(result));
+    }
+
+    /**
+     * creates a game from a PGN game, replaying its moves (up to the first move that is not valid),
+     * and keeping the keys of its positions, so a database need not replay it again
+     * @param pgnGame game to store
+     * @param properties properties (directions,dimensions,colors) of the pieces
+     * @return newly-created game
+     */
+    public static StoredGame create(PgnGame pgnGame, Properties properties)
+    {
+        String fen = pgnGame.getTag("FEN");
+        ChessPosition position = (fen != null) ? FenNotation.parse(fen,properties) : ChessPosition.createStandard(properties);
+        List<Integer> moves = new ArrayList<>();
+        List<String> sanMoves = pgnGame.getSanMoves();
+        long[] positionKeys = new long[Math.min(sanMoves.size(),MAX_PLIES) + 1];
+        positionKeys[0] = position.getGameHistory().getPositionKey();
+        for (String san : sanMoves)
+        {
+            if (moves.size() == MAX_PLIES) break;
+            ChessMove move = ChessNotation.findSanMove(san,position.getBoardState(),position.getColorToMove(),
+                                                       position.getGameHistory(),properties);
+            if (move == null) break;
+            moves.add(ChessOpenings.encodeMove(move,properties));
+            position.makeMove(move);
+            positionKeys[moves.size()] = position.getGameHistory().getPositionKey();
+        }
+        StoredGame game = create(pgnGame.getTags(),moves,pgnGame.getResult());
+        game.positionKeys = positionKeys;
+        return game;
+    }
+
+    /**
+     * reads a game at the buffer's position, and moves the position past it
+     * @param buffer buffer holding the game
+     * @return newly-created game
+     */
+    static StoredGame read(ByteBuffer buffer)
+    {
+        int result   = buffer.get() & 0x3;
+        int numPlies = buffer.getShort() & 0xFFFF;
+        byte[] tagBytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(tagBytes);
+
+        Map<String,String> tags = new LinkedHashMap<>();
+        for (String line : new String(tagBytes,StandardCharsets.UTF_8).split("\n"))
+        {
+            int tab = line.indexOf('\t');
+            if (tab >= 0) tags.put(line.substring(0,tab),line.substring(tab + 1));
+        }
+
+        int[] moves = new int[numPlies];
+        for (int ply = 0; ply < numPlies; ply++) moves[ply] = buffer.getShort() & 0xFFFF;
+        return new StoredGame(tags,moves,result);
+    }
+
+    /**
+     * packs the game, as kept in a game segment
+     * @return the packed game
+     * @throws IllegalArgumentException if the tags take more than MAX_TAG_SIZE bytes
+     */
+    byte[] toBytes()
+    {
+        StringBuilder tagText = new StringBuilder();
+        for (Map.Entry<String,String> tag : tags.entrySet())
+        {
+            tagText.append(clean(tag.getKey())).append('\t').append(clean(tag.getValue())).append('\n');
+        }
+        byte[] tagBytes = tagText.toString().getBytes(StandardCharsets.UTF_8);
+        if (tagBytes.length > MAX_TAG_SIZE) throw new IllegalArgumentException("tags of more than " + MAX_TAG_SIZE + " bytes");
+
+        ByteBuffer buffer = ByteBuffer.allocate(5 + tagBytes.length + 2*moves.length);
+        buffer.put((byte)result);
+        buffer.putShort((short)moves.length);
+        buffer.putShort((short)tagBytes.length);
+        buffer.put(tagBytes);
+        for (int move : moves) buffer.putShort((short)move);
+        return buffer.array();
+    }
+
+    private static String clean(String text)
+    {
+        return (text == null) ? "" : text.replace('\t',' ').replace('\n',' ');
+    }
+
+    /**
+     * sets up the starting position of the game
+     * @param properties properties (directions,dimensions,colors) of the pieces
+     * @return newly-created position
+     */
+    public ChessPosition getStartPosition(Properties properties)
+    {
+        String fen = tags.get("FEN");
+        return (fen != null) ? FenNotation.parse(fen,properties) : ChessPosition.createStandard(properties);
+    }
+
+    /**
+     * finds the valid move of a position for a packed move
+     * @param position position in which the move is made
+     * @param move packed move (see ChessOpenings.encodeMove)
+     * @return the valid move, or null if no valid move matches
+     */
+    public static ChessMove findMove(ChessPosition position, int move)
+    {
+        return ChessNotation.findMove(ChessOpenings.getFromSquare(move),ChessOpenings.getToSquare(move),
+                                      ChessOpenings.getPromotionType(move),position.getValidMoves(),position.getProperties());
+    }
+
+    /**
+     * gets the game as a PGN game, its moves replayed from its starting position
+     * @param properties properties (directions,dimensions,colors) of the pieces
+     * @return newly-created PGN game
+     */
+    public PgnGame toPgnGame(Properties properties)
+    {
+        Map<String,String> pgnTags = new LinkedHashMap<>(tags);
+        pgnTags.put("Result",getResult());
+
+        ChessPosition position = getStartPosition(properties);
+        StringBuilder moveText = new StringBuilder();
+        for (int ply = 0; ply < moves.length; ply++)
+        {
+            ChessMove move = findMove(position,moves[ply]);
+            if (move == null) break;
+            boolean white = position.getColorToMove() == PlayerColor.WHITE;
+            if (white || (ply == 0)) moveText.append(position.getFullMoveNumber()).append(white ? ". " : "... ");
+            moveText.append(ChessNotation.toSan(move,position.getBoardState(),position.getColorToMove(),
+                                                position.getGameHistory(),properties)).append(' ');
+            position.makeMove(move);
+        }
+        moveText.append(getResult());
+        return new PgnGame(pgnTags,moveText.toString());
+    }
+
+    public Map<String,String> getTags()
+    {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    public String getTag(String name)
+    {
+        return tags.get(name);
+    }
+
+    public int getNumPlies()
+    {
+        return moves.length;
+    }
+
+    /**
+     * gets the key of a position of the game, if the game was created by replaying its moves
+     * @param ply ply at which the position was reached, from 0 through the number of plies
+     * @return zobrist key of the position, or 0 if the keys are not known
+     */
+    long getPositionKey(int ply)
+    {
+        return (positionKeys != null) ? positionKeys[ply] : 0;
+    }
+
+    boolean hasPositionKeys()
+    {
+        return positionKeys != null;
+    }
+
+    /**
+     * gets a move of the game
+     * @param ply ply of the move, from 0
+     * @return packed move (see ChessOpenings.encodeMove)
+     */
+    public int getMove(int ply)
+    {
+        return moves[ply];
+    }
+
+    public int getResultCode()
+    {
+        return result;
+    }
+
+    /**
+     * gets the result of the game
+     * @return 1-0, 0-1, 1/2-1/2 or * (unknown)
+     */
+    public String getResult()
+    {
+        return RESULTS[result];
+    }
+
+    /**
+     * gets the code of a result
+     * @param result 1-0, 0-1, 1/2-1/2 or * (unknown)
+     * @return RESULT_WHITE_WINS, RESULT_BLACK_WINS, RESULT_DRAW or RESULT_UNKNOWN
+     */
+    public static int getResultCode(String result)
+    {
+        for (int code = RESULT_WHITE_WINS; code < RESULTS.length; code++)
+        {
+            if (RESULTS[code].equals(result)) return code;
+        }
+        return RESULT_UNKNOWN;
+    }
+
+    /**
+     * gets a result of a code
+     * @param code RESULT_WHITE_WINS, RESULT_BLACK_WINS, RESULT_DRAW or RESULT_UNKNOWN
+     * @return 1-0, 0-1, 1/2-1/2 or * (unknown)
+     */
+    public static String getResult(int code)
+    {
+        return RESULTS[code];
+    }
+}
@@ -0,0 +1,244 @@
+package chess.endgame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * distance-to-mate table of every position of one endgame (see TablebaseMaterial)<br>
+ * - one byte per position: 0 is a draw, 1 through 127 a win for the player to move
+ *   in 1 through 253 plies (2v-1), 128 through 254 a loss for the player to move
+ *   in 0 through 252 plies (2(v-128)), and 255 an illegal or unused index<br>
+ * - a position is indexed by the player to move, the white king, the black king and then
+ *   the other pieces in tablebase order, 64 squares each; squares are 0 (a1) through 63 (h8)<br>
+ * - the board is turned (rotated and reflected, or only reflected left-right with pawns) so the
+ *   white king stands on one of 10 squares (a1-d1-d4), or one of 32 (files a-d) with pawns,
+ *   taking the smallest index where several turnings qualify<br>
+ * - a file is a 16-byte header (magic, version, number of positions) and then the bytes of the
+ *   table, and is memory-mapped for probing
+ *
+ * @author devang
+ */
+public class Tablebase {
+    public static final int MAGIC       = 0x41435442;
+    public static final int VERSION     = 1;
+    public static final int HEADER_SIZE = 16;
+
+    public static final int DRAW      = 0;
+    public static final int LOSS_BASE = 128;
+    public static final int ILLEGAL   = 255;
+    public static final int MAX_PLIES = 252;
+
+    private static final int[] TRIANGLE_INDEX   = new int[64];
+    private static final int[] TRIANGLE_SQUARES = new int[10];
+    private static final int[] HALF_INDEX       = new int[64];
+    private static final int[] HALF_SQUARES     = new int[32];
+    private static final int[][] TRANSFORMS     = new int[8][64];
+
+    static {
+        int numTriangle = 0;
+        int numHalf     = 0;
+        for (int square = 0; square < 64; square++)
+        {
+            int file = square % 8;
+            int rank = square / 8;
+            TRIANGLE_INDEX[square] = -1;
+            HALF_INDEX[square]     = -1;
+            if ((file <= 3) && (rank <= file))
+            {
+                TRIANGLE_SQUARES[numTriangle] = square;
+                TRIANGLE_INDEX[square] = numTriangle++;
+            }
+            if (file <= 3)
+            {
+                HALF_SQUARES[numHalf] = square;
+                HALF_INDEX[square] = numHalf++;
+            }
+            // identity, mirrors, rotation by a half-turn, and the same four reflected in the a1-h8 diagonal
+            int[] files = { file, 7-file, file, 7-file, rank, 7-rank, rank, 7-rank };
+            int[] ranks = { rank, rank, 7-rank, 7-rank, file, file, 7-file, 7-file };
+            for (int t = 0; t < 8; t++)
+            {
+                TRANSFORMS[t][square] = ranks[t]*8 + files[t];
+            }
+        }
+    }
+
+    private final TablebaseMaterial material;
+    private final ByteBuffer        values;
+
+    Tablebase(TablebaseMaterial material, ByteBuffer values)
+    {
+        this.material = material;
+        this.values   = values;
+    }
+
+    public TablebaseMaterial getMaterial()
+    {
+        return material;
+    }
+
+    /**
+     * gets the number of positions (indices) of a table
+     * @param material material of the table
+     * @return number of positions in the table
+     */
+    public static int getSize(TablebaseMaterial material)
+    {
+        long size = 2L * (material.hasPawns() ? HALF_SQUARES.length : TRIANGLE_SQUARES.length);
+        for (int index = 1; index < material.getNumPieces(); index++)
+        {
+            size *= 64;
+        }
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("tablebase too large: " + material);
+        return (int)size;
+    }
+
+    /**
+     * gets the index of a position, turning the board as described for the class
+     * @param material material of the table
+     * @param squares squares of the pieces, in tablebase order
+     * @param whiteToMove true if white is to move
+     * @return index of the position
+     */
+    public static int getIndex(TablebaseMaterial material, int[] squares, boolean whiteToMove)
+    {
+        boolean hasPawns  = material.hasPawns();
+        int[] kingIndex   = hasPawns ? HALF_INDEX : TRIANGLE_INDEX;
+        int numTransforms = hasPawns ? 2 : 8;
+        int numKings      = hasPawns ? HALF_SQUARES.length : TRIANGLE_SQUARES.length;
+
+        int best = -1;
+        for (int t = 0; t < numTransforms; t++)
+        {
+            int[] transform = TRANSFORMS[t];
+            int king = kingIndex[transform[squares[0]]];
+            if (king < 0) continue;
+            int index = (whiteToMove ? 0 : numKings) + king;
+            for (int piece = 1; piece < squares.length; piece++)
+            {
+                index = index*64 + transform[squares[piece]];
+            }
+            if ((best < 0) || (index < best)) best = index;
+        }
+        return best;
+    }
+
+    /**
+     * gets the position of an index (as stored, without turning the board)
+     * @param material material of the table
+     * @param index index of the position
+     * @param squares filled with the squares of the pieces, in tablebase order
+     * @return true if white is to move
+     */
+    public static boolean getPosition(TablebaseMaterial material, int index, int[] squares)
+    {
+        int numKings = material.hasPawns() ? HALF_SQUARES.length : TRIANGLE_SQUARES.length;
+        for (int piece = squares.length-1; piece >= 1; piece--)
+        {
+            squares[piece] = index % 64;
+            index /= 64;
+        }
+        squares[0] = (material.hasPawns() ? HALF_SQUARES : TRIANGLE_SQUARES)[index % numKings];
+        return index < numKings;
+    }
+
+    public int getValue(int index)
+    {
+        return values.get(HEADER_SIZE + index) & 0xFF;
+    }
+
+    /**
+     * gets the value of a position
+     * @param squares squares of the pieces, in tablebase order
+     * @param whiteToMove true if white is to move
+     * @return value of the position (see class description)
+     */
+    public int probe(int[] squares, boolean whiteToMove)
+    {
+        return getValue(getIndex(material,squares,whiteToMove));
+    }
+
+    public static boolean isWin(int value)
+    {
+        return (value > DRAW) && (value < LOSS_BASE);
+    }
+
+    public static boolean isLoss(int value)
+    {
+        return (value >= LOSS_BASE) && (value < ILLEGAL);
+    }
+
+    /**
+     * gets the number of plies to mate of a win or loss
+     * @param value value of a position
+     * @return plies until the player to move mates (win) or is mated (loss)
+     */
+    public static int getPlies(int value)
+    {
+        return isWin(value) ? 2*value - 1 : 2*(value - LOSS_BASE);
+    }
+
+    public static int win(int plies)
+    {
+        return (plies + 1) / 2;
+    }
+
+    public static int loss(int plies)
+    {
+        return LOSS_BASE + plies/2;
+    }
+
+    /**
+     * memory-maps a table file
+     * @param material material of the table
+     * @param tableFile file of the table
+     * @return table reading from the file
+     * @throws IOException if the file cannot be mapped or is not a table of this material
+     */
+    public static Tablebase open(TablebaseMaterial material, Path tableFile) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(tableFile,StandardOpenOption.READ))
+        {
+            ByteBuffer values = channel.map(FileChannel.MapMode.READ_ONLY,0,channel.size());
+            if ((channel.size() != HEADER_SIZE + (long)getSize(material)) || (values.getInt(0) != MAGIC) || (values.getInt(4) != VERSION))
+                throw new IOException("not a " + material + " tablebase: " + tableFile);
+            return new Tablebase(material,values);
+        }
+    }
+
+    /**
+     * creates a table from generated values (with room for the header)
+     * @param material material of the table
+     * @param values header followed by one value per position
+     * @return table holding the values
+     */
+    static Tablebase wrap(TablebaseMaterial material, byte[] values)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(values);
+        buffer.putInt(0,MAGIC);
+        buffer.putInt(4,VERSION);
+        buffer.putLong(8,values.length - HEADER_SIZE);
+        return new Tablebase(material,buffer);
+    }
+
+    /**
+     * writes this table to a file
+     * @param tableFile file to which to write the table
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path tableFile) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(tableFile,StandardOpenOption.CREATE,StandardOpenOption.WRITE,StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer buffer = values.duplicate();
+            buffer.clear();
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+        }
+    }
+}
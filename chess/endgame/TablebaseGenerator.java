@@ -0,0 +1,535 @@
+package chess.endgame;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+/**
+ * Generates endgame tablebases by retrograde analysis<br>
+ * - first every position is scored by its moves that leave the table (captures and promotions,
+ *   looked up in smaller tables) and its moves within the table are counted<br>
+ * - then, ply by ply from the checkmates, the positions one move before each loss are wins,
+ *   and a position whose every move within the table reaches a win (for the opponent) is a loss<br>
+ * - positions never reached this way are draws<br>
+ * - the board is a plain array of 64 squares, not a ChessBoardState: a 5-piece table has
+ *   hundreds of millions of positions; castling and en-passant are not part of any table
+ *
+ * @author devang
+ */
+public class TablebaseGenerator {
+    private static final int CANNOT_LOSE = 0xFF;
+    private static final int BLOCK_SIZE  = 1 << 16;
+
+    private static final int[][] KNIGHT_TARGETS = new int[64][];
+    private static final int[][] KING_TARGETS   = new int[64][];
+    private static final int[][][] RAYS         = new int[64][8][];    // 0-3 straight, 4-7 diagonal
+
+    static {
+        int[][] knightSteps = { {1,2},{2,1},{2,-1},{1,-2},{-1,-2},{-2,-1},{-2,1},{-1,2} };
+        int[][] directions  = { {1,0},{-1,0},{0,1},{0,-1},{1,1},{1,-1},{-1,1},{-1,-1} };
+        for (int square = 0; square < 64; square++)
+        {
+            KNIGHT_TARGETS[square] = getTargets(square,knightSteps,1);
+            KING_TARGETS[square]   = getTargets(square,directions,1);
+            for (int d = 0; d < 8; d++)
+            {
+                RAYS[square][d] = getTargets(square,new int[][] { directions[d] },7);
+            }
+        }
+    }
+
+    private static int[] getTargets(int square, int[][] steps, int maxSteps)
+    {
+        int[] targets = new int[64];
+        int numTargets = 0;
+        for (int[] step : steps)
+        {
+            int file = square % 8;
+            int rank = square / 8;
+            for (int s = 0; s < maxSteps; s++)
+            {
+                file += step[0];
+                rank += step[1];
+                if ((file < 0) || (file > 7) || (rank < 0) || (rank > 7)) break;
+                targets[numTargets++] = rank*8 + file;
+            }
+        }
+        return Arrays.copyOf(targets,numTargets);
+    }
+
+    private final Tablebases tablebases;
+
+    /**
+     * creates a generator that looks up (and adds and writes its tables to) a set of tablebases
+     * @param tablebases tables of the smaller endgames reached by captures and promotions
+     */
+    public TablebaseGenerator(Tablebases tablebases)
+    {
+        this.tablebases = tablebases;
+    }
+
+    /**
+     * generates a table, after generating the smaller tables it needs that are not yet available<br>
+     * - each table generated is added to the tablebases and written to their directory (if any)
+     * @param material material of the table
+     * @return generated table
+     */
+    public Tablebase generate(TablebaseMaterial material)
+    {
+        material = material.getCanonical();
+        if (material.getNumPieces() > Tablebases.MAX_PIECES)
+            throw new IllegalArgumentException("tablebases have at most " + Tablebases.MAX_PIECES + " pieces: " + material);
+
+        for (TablebaseMaterial next : getNextMaterials(material))
+        {
+            if (!next.isTriviallyDrawn() && (tablebases.getTable(next) == null)) generate(next);
+        }
+
+        long startTime = System.currentTimeMillis();
+        int size = Tablebase.getSize(material);
+        byte[] values = new byte[Tablebase.HEADER_SIZE + size];
+        byte[] counts = new byte[size];
+
+        int maxPlies = initialize(material,values,counts);
+        for (int plies = 0; plies <= maxPlies; plies++)
+        {
+            maxPlies = Math.max(maxPlies,retract(material,values,counts,plies));
+        }
+        for (int index = 0; index < size; index++)
+        {
+            // losses found by moves leaving the table, but escaped by a move within it
+            int value = values[Tablebase.HEADER_SIZE + index] & 0xFF;
+            if (Tablebase.isLoss(value) && (counts[index] != 0)) values[Tablebase.HEADER_SIZE + index] = Tablebase.DRAW;
+        }
+
+        Tablebase table = Tablebase.wrap(material,values);
+        tablebases.add(table);
+        if (tablebases.getDirectory() != null)
+        {
+            try {
+                table.write(tablebases.getFile(material));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        String loggerMsg = "tablebase " + material + " generated: " + size + " positions, longest mate "
+                         + maxPlies + " plies, " + (System.currentTimeMillis() - startTime) + " ms";
+        Logger.getLogger(TablebaseGenerator.class.getName()).log(Level.INFO,loggerMsg);
+        return table;
+    }
+
+    /**
+     * gets the (canonical) materials reached from a material by a capture and/or a promotion
+     */
+    private static TablebaseMaterial[] getNextMaterials(TablebaseMaterial material)
+    {
+        int numPieces = material.getNumPieces();
+        TablebaseMaterial[] next = new TablebaseMaterial[numPieces*5*(numPieces+1)];
+        int numNext = 0;
+        for (int captured = -1; captured < numPieces; captured++)
+        {
+            if ((captured == 0) || (captured == 1)) continue;
+            for (int promoted = -1; promoted < numPieces; promoted++)
+            {
+                if ((promoted == captured) || ((promoted >= 0) && (material.getPieceType(promoted) != TablebaseMaterial.PAWN))) continue;
+                if ((captured < 0) && (promoted < 0)) continue;
+                for (int type = TablebaseMaterial.KNIGHT; type <= TablebaseMaterial.QUEEN; type++)
+                {
+                    next[numNext++] = material.afterMove(captured,promoted,type).getCanonical();
+                    if (promoted < 0) break;
+                }
+            }
+        }
+        return Arrays.copyOf(next,numNext);
+    }
+
+    /* ------------------------------- first pass ------------------------------- */
+
+    /**
+     * marks illegal positions, checkmates and stalemates, scores the moves leaving the table,
+     * and counts the moves within it (in parallel: each position writes only its own entries)
+     * @return most plies of any win or loss found
+     */
+    private int initialize(TablebaseMaterial material, byte[] values, byte[] counts)
+    {
+        int size = counts.length;
+        AtomicInteger maxPlies = new AtomicInteger(0);
+        IntStream.range(0,(size + BLOCK_SIZE - 1) / BLOCK_SIZE).parallel().forEach(block -> {
+            Position position = new Position(material);
+            int[] children = new int[256];
+            int blockMaxPlies = 0;
+            for (int index = block*BLOCK_SIZE; index < Math.min(size,(block+1)*BLOCK_SIZE); index++)
+            {
+                int value = position.initialize(index,values,counts,children);
+                if (Tablebase.isWin(value) || Tablebase.isLoss(value))
+                    blockMaxPlies = Math.max(blockMaxPlies,Tablebase.getPlies(value));
+            }
+            maxPlies.accumulateAndGet(blockMaxPlies,Math::max);
+        });
+        return maxPlies.get();
+    }
+
+    /* ------------------------------- retrograde ------------------------------- */
+
+    /**
+     * resolves the positions one move before every position won or lost in the given plies
+     * @return most plies of any win or loss found
+     */
+    private int retract(TablebaseMaterial material, byte[] values, byte[] counts, int plies)
+    {
+        if (plies > Tablebase.MAX_PLIES)
+            throw new IllegalStateException("tablebase " + material + " has mates longer than " + Tablebase.MAX_PLIES + " plies");
+        int target = (plies % 2 == 0) ? Tablebase.loss(plies) : Tablebase.win(plies);
+
+        Position position = new Position(material);
+        int[] parents = new int[512];
+        int maxPlies = 0;
+        for (int index = 0; index < counts.length; index++)
+        {
+            if ((values[Tablebase.HEADER_SIZE + index] & 0xFF) != target) continue;
+            if ((plies % 2 == 0) && (counts[index] != 0)) continue;
+
+            int numParents = position.getParents(index,parents);
+            for (int p = 0; p < numParents; p++)
+            {
+                int parent = parents[p];
+                int parentValue = values[Tablebase.HEADER_SIZE + parent] & 0xFF;
+                if (parentValue == Tablebase.ILLEGAL) continue;
+                if (plies % 2 == 0)
+                {
+                    // a move to a loss for the opponent wins
+                    if (Tablebase.isWin(parentValue) && (Tablebase.getPlies(parentValue) <= plies+1)) continue;
+                    values[Tablebase.HEADER_SIZE + parent] = (byte)Tablebase.win(plies+1);
+                    maxPlies = Math.max(maxPlies,plies+1);
+                }
+                else
+                {
+                    // once every move reaches a win for the opponent, the position is lost
+                    if (Tablebase.isWin(parentValue) || ((counts[parent] & 0xFF) == CANNOT_LOSE) || (counts[parent] == 0)) continue;
+                    if (--counts[parent] != 0) continue;
+                    int lossPlies = Tablebase.isLoss(parentValue) ? Math.max(plies+1,Tablebase.getPlies(parentValue)) : plies+1;
+                    values[Tablebase.HEADER_SIZE + parent] = (byte)Tablebase.loss(lossPlies);
+                    maxPlies = Math.max(maxPlies,lossPlies);
+                }
+            }
+        }
+        return maxPlies;
+    }
+
+    /* -------------------------------- positions -------------------------------- */
+
+    /**
+     * a position of a table on a 64-square array, with its moves and its moves taken back
+     */
+    private class Position {
+        private final TablebaseMaterial material;
+        private final int       numPieces;
+        private final int[]     types;
+        private final boolean[] white;
+        private final int[]     squares;
+        private final int[]     board = new int[64];     // index of the piece on each square + 1, or 0
+        private boolean         whiteToMove;
+
+        Position(TablebaseMaterial material)
+        {
+            this.material = material;
+            numPieces = material.getNumPieces();
+            types     = new int[numPieces];
+            white     = new boolean[numPieces];
+            squares   = new int[numPieces];
+            for (int piece = 0; piece < numPieces; piece++)
+            {
+                types[piece] = material.getPieceType(piece);
+                white[piece] = material.isWhitePiece(piece);
+            }
+        }
+
+        /**
+         * sets up the position of an index
+         * @return false if the index is not a legal position, or not the index of its turning of the board
+         */
+        private boolean load(int index)
+        {
+            whiteToMove = Tablebase.getPosition(material,index,squares);
+            Arrays.fill(board,0);
+            for (int piece = 0; piece < numPieces; piece++)
+            {
+                int square = squares[piece];
+                if (board[square] != 0) return false;
+                if ((types[piece] == TablebaseMaterial.PAWN) && ((square < 8) || (square >= 56))) return false;
+                board[square] = piece + 1;
+            }
+            if (isInCheck(!whiteToMove)) return false;
+            return Tablebase.getIndex(material,squares,whiteToMove) == index;
+        }
+
+        private int initialize(int index, byte[] values, byte[] counts, int[] children)
+        {
+            if (!load(index))
+            {
+                values[Tablebase.HEADER_SIZE + index] = (byte)Tablebase.ILLEGAL;
+                return Tablebase.ILLEGAL;
+            }
+
+            int numChildren = 0;
+            int numMoves    = 0;
+            int bestExit    = -1;     // best value of a move leaving the table, for the player to move
+            for (int piece = 0; piece < numPieces; piece++)
+            {
+                if (white[piece] != whiteToMove) continue;
+                int from = squares[piece];
+                int[] targets = getTargets(piece,from);
+                for (int target : targets)
+                {
+                    int captured = board[target] - 1;
+                    if ((captured >= 0) && (white[captured] == whiteToMove)) continue;
+                    boolean promotes = (types[piece] == TablebaseMaterial.PAWN) && ((target < 8) || (target >= 56));
+
+                    movePiece(piece,from,target,captured);
+                    if (!isInCheck(whiteToMove))
+                    {
+                        numMoves++;
+                        if ((captured >= 0) || promotes)
+                        {
+                            for (int type = TablebaseMaterial.QUEEN; type >= TablebaseMaterial.KNIGHT; type--)
+                            {
+                                bestExit = betterValue(bestExit,probeExit(captured,promotes ? piece : -1,type));
+                                if (!promotes) break;
+                            }
+                        }
+                        else
+                        {
+                            int child = Tablebase.getIndex(material,squares,!whiteToMove);
+                            if (!contains(children,numChildren,child)) children[numChildren++] = child;
+                        }
+                    }
+                    unmovePiece(piece,from,target,captured);
+                }
+            }
+
+            int value = Tablebase.DRAW;
+            int count = numChildren;
+            if (numMoves == 0)
+            {
+                value = isInCheck(whiteToMove) ? Tablebase.loss(0) : Tablebase.DRAW;
+                count = isInCheck(whiteToMove) ? 0 : CANNOT_LOSE;
+            }
+            else if (bestExit >= 0)
+            {
+                if (Tablebase.isWin(bestExit) || Tablebase.isLoss(bestExit))
+                    value = bestExit;
+                if (bestExit == Tablebase.DRAW)
+                    count = CANNOT_LOSE;
+            }
+            values[Tablebase.HEADER_SIZE + index] = (byte)value;
+            counts[index] = (byte)count;
+            return value;
+        }
+
+        /**
+         * looks up the position after a move leaving the table, as a value for the player who moved
+         */
+        private int probeExit(int captured, int promoted, int promotedType)
+        {
+            int numNext = 0;
+            int[]     nextTypes   = new int[numPieces];
+            boolean[] nextWhite   = new boolean[numPieces];
+            int[]     nextSquares = new int[numPieces];
+            for (int piece = 0; piece < numPieces; piece++)
+            {
+                if (piece == captured) continue;
+                nextTypes[numNext]   = (piece == promoted) ? promotedType : types[piece];
+                nextWhite[numNext]   = white[piece];
+                nextSquares[numNext] = squares[piece];
+                numNext++;
+            }
+            int value = tablebases.probeValue(numNext,nextTypes,nextWhite,nextSquares,!whiteToMove);
+            if (value < 0) throw new IllegalStateException("tablebase missing for a move from " + material);
+
+            if (Tablebase.isLoss(value)) return Tablebase.win(Tablebase.getPlies(value) + 1);
+            if (Tablebase.isWin(value))  return Tablebase.loss(Tablebase.getPlies(value) + 1);
+            return Tablebase.DRAW;
+        }
+
+        /**
+         * fills the indices of the positions from which a move (within the table) reaches the position of an index
+         * @return number of distinct positions
+         */
+        private int getParents(int index, int[] parents)
+        {
+            load(index);
+            int numParents = 0;
+            for (int piece = 0; piece < numPieces; piece++)
+            {
+                if (white[piece] == whiteToMove) continue;
+                int to = squares[piece];
+                for (int from : getSources(piece,to))
+                {
+                    if (board[from] != 0) continue;
+                    movePiece(piece,to,from,-1);
+                    int parent = Tablebase.getIndex(material,squares,!whiteToMove);
+                    unmovePiece(piece,to,from,-1);
+                    if (!contains(parents,numParents,parent)) parents[numParents++] = parent;
+                }
+            }
+            return numParents;
+        }
+
+        private int[] getTargets(int piece, int from)
+        {
+            switch (types[piece])
+            {
+                case TablebaseMaterial.KNIGHT:
+                    return KNIGHT_TARGETS[from];
+                case TablebaseMaterial.KING:
+                    return KING_TARGETS[from];
+                case TablebaseMaterial.PAWN:
+                    return getPawnTargets(from,white[piece]);
+                default:
+                    return getSliderTargets(from,types[piece]);
+            }
+        }
+
+        private int[] getSources(int piece, int to)
+        {
+            if (types[piece] != TablebaseMaterial.PAWN) return getTargets(piece,to);
+
+            // pawns move back one square, or two to their starting rank
+            int step = white[piece] ? -8 : 8;
+            int from = to + step;
+            if ((from < 8) || (from >= 56) || (board[from] != 0)) return new int[0];
+            int rank = to / 8;
+            if ((rank == (white[piece] ? 3 : 4)) && (board[from + step] == 0)) return new int[] { from, from + step };
+            return new int[] { from };
+        }
+
+        private int[] getPawnTargets(int from, boolean whitePawn)
+        {
+            int step = whitePawn ? 8 : -8;
+            int[] targets = new int[4];
+            int numTargets = 0;
+            int ahead = from + step;
+            if (board[ahead] == 0)
+            {
+                targets[numTargets++] = ahead;
+                int rank = from / 8;
+                if ((rank == (whitePawn ? 1 : 6)) && (board[ahead + step] == 0)) targets[numTargets++] = ahead + step;
+            }
+            int file = from % 8;
+            if ((file > 0) && (board[ahead - 1] != 0)) targets[numTargets++] = ahead - 1;
+            if ((file < 7) && (board[ahead + 1] != 0)) targets[numTargets++] = ahead + 1;
+            return Arrays.copyOf(targets,numTargets);
+        }
+
+        private int[] getSliderTargets(int from, int type)
+        {
+            int[] targets = new int[27];
+            int numTargets = 0;
+            int firstRay = (type == TablebaseMaterial.BISHOP) ? 4 : 0;
+            int lastRay  = (type == TablebaseMaterial.ROOK)   ? 4 : 8;
+            for (int d = firstRay; d < lastRay; d++)
+            {
+                for (int target : RAYS[from][d])
+                {
+                    targets[numTargets++] = target;
+                    if (board[target] != 0) break;
+                }
+            }
+            return Arrays.copyOf(targets,numTargets);
+        }
+
+        private void movePiece(int piece, int from, int to, int captured)
+        {
+            if (captured >= 0) squares[captured] = -1;
+            board[from] = 0;
+            board[to]   = piece + 1;
+            squares[piece] = to;
+        }
+
+        private void unmovePiece(int piece, int from, int to, int captured)
+        {
+            board[to]   = (captured >= 0) ? captured + 1 : 0;
+            board[from] = piece + 1;
+            squares[piece] = from;
+            if (captured >= 0) squares[captured] = to;
+        }
+
+        private boolean isInCheck(boolean whiteKing)
+        {
+            return isAttacked(squares[whiteKing ? 0 : 1],!whiteKing);
+        }
+
+        private boolean isAttacked(int square, boolean byWhite)
+        {
+            int file = square % 8;
+            int rank = square / 8;
+            for (int piece = 0; piece < numPieces; piece++)
+            {
+                if ((white[piece] != byWhite) || (squares[piece] < 0)) continue;
+                int df = file - squares[piece] % 8;
+                int dr = rank - squares[piece] / 8;
+                switch (types[piece])
+                {
+                    case TablebaseMaterial.PAWN:
+                        if ((Math.abs(df) == 1) && (dr == (byWhite ? 1 : -1))) return true;
+                        break;
+                    case TablebaseMaterial.KNIGHT:
+                        if (Math.abs(df*dr) == 2) return true;
+                        break;
+                    case TablebaseMaterial.KING:
+                        if ((Math.max(Math.abs(df),Math.abs(dr)) == 1)) return true;
+                        break;
+                    default:
+                        boolean straight = (df == 0) || (dr == 0);
+                        boolean diagonal = Math.abs(df) == Math.abs(dr);
+                        if ((df == 0) && (dr == 0)) break;
+                        if (straight && (types[piece] == TablebaseMaterial.BISHOP)) break;
+                        if (diagonal && (types[piece] == TablebaseMaterial.ROOK)) break;
+                        if ((straight || diagonal) && isClear(squares[piece],square)) return true;
+                        break;
+                }
+            }
+            return false;
+        }
+
+        private boolean isClear(int from, int to)
+        {
+            int step = Integer.signum(to/8 - from/8)*8 + Integer.signum(to%8 - from%8);
+            for (int square = from + step; square != to; square += step)
+            {
+                if (board[square] != 0) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * picks the better of two values for the player to move: the fastest win, else a draw, else the slowest loss
+     */
+    private static int betterValue(int value1, int value2)
+    {
+        if (value1 < 0) return value2;
+        if (Tablebase.isWin(value1) || Tablebase.isWin(value2))
+        {
+            if (!Tablebase.isWin(value2)) return value1;
+            if (!Tablebase.isWin(value1)) return value2;
+            return Math.min(value1,value2);
+        }
+        if ((value1 == Tablebase.DRAW) || (value2 == Tablebase.DRAW)) return Tablebase.DRAW;
+        return Math.max(value1,value2);
+    }
+
+    private static boolean contains(int[] indices, int size, int index)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (indices[i] == index) return true;
+        }
+        return false;
+    }
+}
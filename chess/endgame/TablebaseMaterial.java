@@ -0,0 +1,206 @@
+package chess.endgame;
+
+import java.util.Arrays;
+
+/**
+ * the pieces of an endgame tablebase, named as in KQvK or KRPvKR<br>
+ * - white is always the stronger side of a tablebase; a position with the stronger pieces
+ *   on black's side is probed with the colors swapped and the board mirrored<br>
+ * - pieces are ordered: white king, black king, white's other pieces, black's other pieces,
+ *   each side from queen down to pawn
+ *
+ * @author devang
+ */
+public class TablebaseMaterial {
+    public static final int PAWN   = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK   = 3;
+    public static final int QUEEN  = 4;
+    public static final int KING   = 5;
+
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    private final int[] whitePieces;
+    private final int[] blackPieces;
+
+    private TablebaseMaterial(int[] whitePieces, int[] blackPieces)
+    {
+        this.whitePieces = sortDescending(whitePieces);
+        this.blackPieces = sortDescending(blackPieces);
+    }
+
+    /**
+     * creates the material of the pieces (other than the kings) of each side
+     * @param whitePieces piece types of white's pieces other than the king
+     * @param blackPieces piece types of black's pieces other than the king
+     * @return material with these pieces, white and black as given
+     */
+    public static TablebaseMaterial of(int[] whitePieces, int[] blackPieces)
+    {
+        return new TablebaseMaterial(whitePieces,blackPieces);
+    }
+
+    /**
+     * parses the name of a tablebase, i.e.) KQvK
+     * @param name name of the tablebase: each side's pieces (each starting with its king), separated by v
+     * @return material named
+     */
+    public static TablebaseMaterial parse(String name)
+    {
+        String[] sides = name.toUpperCase().split("V");
+        if ((sides.length != 2) || !sides[0].startsWith("K") || !sides[1].startsWith("K"))
+            throw new IllegalArgumentException("not a tablebase name: " + name);
+        return new TablebaseMaterial(parseSide(sides[0].substring(1),name),parseSide(sides[1].substring(1),name));
+    }
+
+    private static int[] parseSide(String letters, String name)
+    {
+        int[] pieces = new int[letters.length()];
+        for (int i = 0; i < letters.length(); i++)
+        {
+            pieces[i] = PIECE_LETTERS.indexOf(letters.charAt(i));
+            if ((pieces[i] < 0) || (pieces[i] == KING))
+                throw new IllegalArgumentException("not a tablebase name: " + name);
+        }
+        return pieces;
+    }
+
+    private static int[] sortDescending(int[] pieces)
+    {
+        int[] sorted = pieces.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length/2; i++)
+        {
+            int type = sorted[i];
+            sorted[i] = sorted[sorted.length-1-i];
+            sorted[sorted.length-1-i] = type;
+        }
+        return sorted;
+    }
+
+    public String getName()
+    {
+        StringBuilder name = new StringBuilder("K");
+        for (int type : whitePieces) name.append(PIECE_LETTERS.charAt(type));
+        name.append("vK");
+        for (int type : blackPieces) name.append(PIECE_LETTERS.charAt(type));
+        return name.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+
+    public int getNumPieces()
+    {
+        return 2 + whitePieces.length + blackPieces.length;
+    }
+
+    /**
+     * gets the type of a piece, in tablebase order (see class description)
+     * @param index index of the piece
+     * @return piece type, PAWN through KING
+     */
+    public int getPieceType(int index)
+    {
+        if (index < 2) return KING;
+        if (index < 2 + whitePieces.length) return whitePieces[index-2];
+        return blackPieces[index-2-whitePieces.length];
+    }
+
+    public boolean isWhitePiece(int index)
+    {
+        return (index == 0) || ((index >= 2) && (index < 2 + whitePieces.length));
+    }
+
+    public boolean hasPawns()
+    {
+        for (int index = 2; index < getNumPieces(); index++)
+        {
+            if (getPieceType(index) == PAWN) return true;
+        }
+        return false;
+    }
+
+    /**
+     * tests if neither side can ever mate: bare kings, or one knight or bishop against a bare king
+     * @return true if every position with this material is a draw
+     */
+    public boolean isTriviallyDrawn()
+    {
+        int numOthers = whitePieces.length + blackPieces.length;
+        if (numOthers == 0) return true;
+        if (numOthers > 1) return false;
+        int type = (whitePieces.length == 1) ? whitePieces[0] : blackPieces[0];
+        return (type == KNIGHT) || (type == BISHOP);
+    }
+
+    /**
+     * tests if white is the stronger side (more pieces, or else stronger pieces), as in a tablebase
+     * @return true if white's pieces are at least as strong as black's
+     */
+    public boolean isCanonical()
+    {
+        if (whitePieces.length != blackPieces.length) return whitePieces.length > blackPieces.length;
+        for (int i = 0; i < whitePieces.length; i++)
+        {
+            if (whitePieces[i] != blackPieces[i]) return whitePieces[i] > blackPieces[i];
+        }
+        return true;
+    }
+
+    /**
+     * swaps the pieces of white and black
+     * @return material with the colors swapped
+     */
+    public TablebaseMaterial flip()
+    {
+        return new TablebaseMaterial(blackPieces,whitePieces);
+    }
+
+    /**
+     * gets the material with the stronger side as white
+     * @return this material, or this material with the colors swapped
+     */
+    public TablebaseMaterial getCanonical()
+    {
+        return isCanonical() ? this : flip();
+    }
+
+    /**
+     * gets the material after a piece is captured and/or a pawn is promoted
+     * @param capturedIndex index of the captured piece, or -1
+     * @param promotedIndex index of the promoted pawn, or -1
+     * @param promotedType piece type of the promoted pawn
+     * @return material after the move (not made canonical)
+     */
+    public TablebaseMaterial afterMove(int capturedIndex, int promotedIndex, int promotedType)
+    {
+        int[][] sides = { new int[whitePieces.length], new int[blackPieces.length] };
+        int[] sizes = new int[2];
+        for (int index = 2; index < getNumPieces(); index++)
+        {
+            if (index == capturedIndex) continue;
+            int side = isWhitePiece(index) ? 0 : 1;
+            sides[side][sizes[side]++] = (index == promotedIndex) ? promotedType : getPieceType(index);
+        }
+        return new TablebaseMaterial(Arrays.copyOf(sides[0],sizes[0]),Arrays.copyOf(sides[1],sizes[1]));
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if (!(other instanceof TablebaseMaterial)) return false;
+        return Arrays.equals(whitePieces,((TablebaseMaterial)other).whitePieces)
+            && Arrays.equals(blackPieces,((TablebaseMaterial)other).blackPieces);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31*Arrays.hashCode(whitePieces) + Arrays.hashCode(blackPieces);
+    }
+}
@@ -0,0 +1,284 @@
+package chess.endgame;
+
+import chess.ChessBitboards;
+import chess.ChessBoardState;
+import game.utility.Properties.PlayerColor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * the endgame tablebases available to the CPU players<br>
+ * - tables are read from files named after their material (i.e. KQvK.tb) in a directory,
+ *   memory-mapped when first probed<br>
+ * - endgames where no side can mate (KvK, KBvK, KNvK) are draws without any table<br>
+ * - a probe of a ChessBoardState gives a score for the player to move: MATE_SCORE less the
+ *   plies to mate for a win, the negative of that for a loss, 0 for a draw, or UNKNOWN
+ *
+ * @author devang
+ */
+public class Tablebases {
+    public static final String DIRECTORY_PROPERTY = "chess.endgame.directory";
+    public static final String DEFAULT_DIRECTORY  = "endgame";
+    public static final String FILE_EXTENSION     = ".tb";
+
+    public static final int MAX_PIECES = 5;
+    public static final int MATE_SCORE = 100000;
+    public static final int UNKNOWN    = Integer.MIN_VALUE;
+
+    // keys of one side's material (at most 3 pieces besides the king, see getMaterialKey)
+    private static final int SIDE_KEYS = 6*6*6;
+
+    // squares of a probed position in tablebase order, by number of pieces, for each probing thread
+    private static final ThreadLocal<int[][]> PROBE_SQUARES = ThreadLocal.withInitial(() -> {
+        int[][] squares = new int[MAX_PIECES + 1][];
+        for (int numPieces = 0; numPieces <= MAX_PIECES; numPieces++) squares[numPieces] = new int[numPieces];
+        return squares;
+    });
+
+    private static Tablebases defaultTablebases = null;
+
+    private final Path                              directory;
+    private final Map<TablebaseMaterial,Tablebase>  tables  = new ConcurrentHashMap<>();
+    private final Set<TablebaseMaterial>            missing = ConcurrentHashMap.newKeySet();
+    // materials probed, and their colors swapped, by key (see getMaterialKey)
+    private final TablebaseMaterial[]               materials        = new TablebaseMaterial[SIDE_KEYS*SIDE_KEYS];
+    private final TablebaseMaterial[]               flippedMaterials = new TablebaseMaterial[SIDE_KEYS*SIDE_KEYS];
+
+    /**
+     * creates tablebases read from a directory
+     * @param directory directory of table files, or null for tables added only in memory
+     */
+    public Tablebases(Path directory)
+    {
+        this.directory = directory;
+    }
+
+    /**
+     * gets the tablebases shared by all CPU players<br>
+     * - read from the directory named by the chess.endgame.directory system property, or endgame
+     * @return the shared tablebases
+     */
+    public static synchronized Tablebases getDefault()
+    {
+        if (defaultTablebases == null)
+            defaultTablebases = new Tablebases(Paths.get(System.getProperty(DIRECTORY_PROPERTY,DEFAULT_DIRECTORY)));
+        return defaultTablebases;
+    }
+
+    /**
+     * replaces the tablebases shared by all CPU players
+     * @param tablebases the new shared tablebases
+     */
+    public static synchronized void setDefault(Tablebases tablebases)
+    {
+        defaultTablebases = tablebases;
+    }
+
+    public Path getDirectory()
+    {
+        return directory;
+    }
+
+    public Path getFile(TablebaseMaterial material)
+    {
+        return directory.resolve(material.getCanonical().getName() + FILE_EXTENSION);
+    }
+
+    public void add(Tablebase table)
+    {
+        tables.put(table.getMaterial(),table);
+        missing.remove(table.getMaterial());
+    }
+
+    /**
+     * gets a table, mapping its file if it has not been read yet
+     * @param material canonical material of the table
+     * @return the table, or null if there is no table of this material
+     */
+    public Tablebase getTable(TablebaseMaterial material)
+    {
+        Tablebase table = tables.get(material);
+        if ((table != null) || (directory == null) || missing.contains(material)) return table;
+
+        Path tableFile = getFile(material);
+        if (Files.isRegularFile(tableFile))
+        {
+            try {
+                table = Tablebase.open(material,tableFile);
+                tables.put(material,table);
+                return table;
+            } catch (IOException e) {
+                String loggerMsg = "tablebase could not be read: " + tableFile;
+                Logger.getLogger(Tablebases.class.getName()).log(Level.WARNING,loggerMsg,e);
+            }
+        }
+        missing.add(material);
+        return null;
+    }
+
+    /**
+     * looks up a position given as a list of pieces
+     * @param numPieces number of pieces
+     * @param types type of each piece (TablebaseMaterial.PAWN through KING)
+     * @param white color of each piece
+     * @param squares square of each piece, 0 (a1) through 63 (h8)
+     * @param whiteToMove true if white is to move
+     * @return value of the position for the player to move (see Tablebase), or -1 if there is no table
+     */
+    public int probeValue(int numPieces, int[] types, boolean[] white, int[] squares, boolean whiteToMove)
+    {
+        int numWhite = 0;
+        int numBlack = 0;
+        int[] whitePieces = new int[numPieces];
+        int[] blackPieces = new int[numPieces];
+        for (int piece = 0; piece < numPieces; piece++)
+        {
+            if (types[piece] == TablebaseMaterial.KING) continue;
+            if (white[piece]) whitePieces[numWhite++] = types[piece];
+            else              blackPieces[numBlack++] = types[piece];
+        }
+        if (numWhite + numBlack + 2 != numPieces) return -1;
+
+        TablebaseMaterial material = TablebaseMaterial.of(Arrays.copyOf(whitePieces,numWhite),Arrays.copyOf(blackPieces,numBlack));
+        if (material.isTriviallyDrawn()) return Tablebase.DRAW;
+
+        // the stronger side is white in a table: swap the colors and mirror the ranks
+        boolean flip = !material.isCanonical();
+        if (flip) material = material.flip();
+        Tablebase table = getTable(material);
+        if (table == null) return -1;
+
+        // place the pieces in tablebase order: kings, then each side's pieces from queen down to pawn
+        int[] tableSquares = new int[numPieces];
+        boolean[] placed   = new boolean[numPieces];
+        for (int index = 0; index < numPieces; index++)
+        {
+            boolean tableWhite = material.isWhitePiece(index);
+            int tableType      = material.getPieceType(index);
+            for (int piece = 0; piece < numPieces; piece++)
+            {
+                if (placed[piece] || (types[piece] != tableType) || ((white[piece] != flip) != tableWhite)) continue;
+                placed[piece] = true;
+                tableSquares[index] = flip ? (squares[piece] ^ 56) : squares[piece];
+                break;
+            }
+        }
+        return table.probe(tableSquares,whiteToMove != flip);
+    }
+
+    /**
+     * probes a position of a game<br>
+     * - the material is counted from the board's bitboards and looked up by its key (see
+     *   getMaterialKey), and the squares are placed in a buffer of the probing thread, so a
+     *   probe at every node of a search allocates nothing
+     * @param boardState state of the board
+     * @param colorToMove color of the player to move
+     * @return score for the player to move (see class description), or UNKNOWN if the position is not in a table
+     */
+    public int probe(ChessBoardState boardState, PlayerColor colorToMove)
+    {
+        int numPieces = boardState.getPieces().size();
+        if (numPieces > MAX_PIECES) return UNKNOWN;
+        ChessBitboards bitboards = boardState.getBitboards();
+        if (bitboards == null) return UNKNOWN;
+        if ((Long.bitCount(bitboards.getPieces(ChessBitboards.WHITE,ChessBitboards.KING)) != 1)
+         || (Long.bitCount(bitboards.getPieces(ChessBitboards.BLACK,ChessBitboards.KING)) != 1))
+            return UNKNOWN;
+        if (boardState.hasCastlingRight(PlayerColor.WHITE,true) || boardState.hasCastlingRight(PlayerColor.WHITE,false)
+         || boardState.hasCastlingRight(PlayerColor.BLACK,true) || boardState.hasCastlingRight(PlayerColor.BLACK,false))
+            return UNKNOWN;
+
+        int materialKey = getMaterialKey(bitboards);
+        TablebaseMaterial material = materials[materialKey];
+        if (material == null)
+        {
+            material = createMaterial(bitboards);
+            materials[materialKey] = material;
+        }
+        if (material.isTriviallyDrawn()) return 0;
+
+        // the stronger side is white in a table: swap the colors and mirror the ranks
+        boolean flip = !material.isCanonical();
+        TablebaseMaterial canonical = material;
+        if (flip)
+        {
+            canonical = flippedMaterials[materialKey];
+            if (canonical == null)
+            {
+                canonical = material.flip();
+                flippedMaterials[materialKey] = canonical;
+            }
+        }
+        Tablebase table = getTable(canonical);
+        if (table == null) return UNKNOWN;
+
+        // place the pieces in tablebase order: the pieces of one color and type are consecutive
+        int[] tableSquares = PROBE_SQUARES.get()[numPieces];
+        long bits = 0;
+        int lastColor = -1;
+        int lastType  = -1;
+        for (int index = 0; index < numPieces; index++)
+        {
+            int type  = canonical.getPieceType(index);
+            int color = (canonical.isWhitePiece(index) != flip) ? ChessBitboards.WHITE : ChessBitboards.BLACK;
+            if ((type != lastType) || (color != lastColor))
+            {
+                bits      = bitboards.getPieces(color,type);
+                lastType  = type;
+                lastColor = color;
+            }
+            int square = Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+            tableSquares[index] = flip ? (square ^ 56) : square;
+        }
+
+        int value = table.probe(tableSquares,(colorToMove == PlayerColor.WHITE) != flip);
+        if ((value < 0) || (value == Tablebase.ILLEGAL)) return UNKNOWN;
+        if (Tablebase.isWin(value))  return MATE_SCORE - Tablebase.getPlies(value);
+        if (Tablebase.isLoss(value)) return -(MATE_SCORE - Tablebase.getPlies(value));
+        return 0;
+    }
+
+    /**
+     * gets the key of the material of a board of at most MAX_PIECES pieces: each side's pieces
+     * other than its king, from queen down to pawn, as base-6 digits (type + 1)
+     */
+    private static int getMaterialKey(ChessBitboards bitboards)
+    {
+        int key = 0;
+        for (int color = ChessBitboards.WHITE; color <= ChessBitboards.BLACK; color++)
+        {
+            int sideKey = 0;
+            for (int type = ChessBitboards.QUEEN; type >= ChessBitboards.PAWN; type--)
+            {
+                for (int count = Long.bitCount(bitboards.getPieces(color,type)); count > 0; count--) sideKey = sideKey*6 + type + 1;
+            }
+            key = key*SIDE_KEYS + sideKey;
+        }
+        return key;
+    }
+
+    private static TablebaseMaterial createMaterial(ChessBitboards bitboards)
+    {
+        int[][] sides = new int[2][];
+        for (int color = ChessBitboards.WHITE; color <= ChessBitboards.BLACK; color++)
+        {
+            int numOthers = Long.bitCount(bitboards.getOccupancy(color) & ~bitboards.getPieces(color,ChessBitboards.KING));
+            sides[color] = new int[numOthers];
+            int piece = 0;
+            for (int type = ChessBitboards.QUEEN; type >= ChessBitboards.PAWN; type--)
+            {
+                for (int count = Long.bitCount(bitboards.getPieces(color,type)); count > 0; count--) sides[color][piece++] = type;
+            }
+        }
+        return TablebaseMaterial.of(sides[ChessBitboards.WHITE],sides[ChessBitboards.BLACK]);
+    }
+}
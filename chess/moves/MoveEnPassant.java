@@ -72,7 +72,7 @@ public class MoveEnPassant extends ChessMove implements Serializable {
         int endFile   = Location.getCol(to);
         int endRank   = Location.getRow(to);
         
-        Location locationCapture = Location.of(endFile,startRank);
+        Location locationCapture = from.getGeometry().getLocation(endFile,startRank);
         ChessPiece piece = boardState.getPiece(from);
         boardState.removePiece(from);
         boardState.removePiece(locationCapture);
@@ -50,6 +50,15 @@ public class MovePromotion extends ChessMove implements Serializable {
         this.newPieceType = newPieceType;
     }
     
+    /**
+     * gets the piece to which the pawn will upgrade
+     * @return the upgraded piece type, or null if it has not been chosen yet
+     */
+    public PieceType getNewPieceType()
+    {
+        return newPieceType;
+    }
+    
     /**
      * gets the origin location for the pawn in a pawn-promoting Move
      * @return Location from which the pawn will move
@@ -25,7 +25,21 @@ public class MoveRegular extends ChessMove implements Serializable {
         this.from = from;
         this.to   = to;
     }
-    
+
+    /**
+     * creates a standard chess move, already known to be a capture or not<br>
+     * - used by move generation, which tests moves in place rather than committing them to a copy
+     * @param from the original location of the piece
+     * @param to the destination location of the piece in this Move
+     * @param isCapture true if the destination holds an opponent's piece
+     */
+    public MoveRegular(Location from, Location to, boolean isCapture)
+    {
+        this.from      = from;
+        this.to        = to;
+        this.isCapture = isCapture;
+    }
+
     /**
      * gets the origin location for the piece of this Move
      * @return Location from which the piece will move
@@ -0,0 +1,57 @@
+package chess.moves;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * per-ply move lists for a single search thread<br>
+ * - each ply of a search fills its own list, which is cleared and reused from node to node,
+ *   so move generation does not build (and then copy) new lists at every node<br>
+ * - a stack is not thread-safe: every search thread owns its own stack
+ *
+ * @author devang
+ */
+public class MoveStack {
+    public static final int DEFAULT_MAX_PLY = 64;
+    private static final int MOVES_PER_PLY  = 128;
+
+    private final List<List<ChessMove>> plies;
+
+    /**
+     * creates a stack with move lists preallocated for the default number of plies
+     */
+    public MoveStack()
+    {
+        this(DEFAULT_MAX_PLY);
+    }
+
+    /**
+     * creates a stack with move lists preallocated for the given number of plies
+     * @param maxPly number of plies for which to preallocate move lists
+     */
+    public MoveStack(int maxPly)
+    {
+        plies = new ArrayList<>(maxPly);
+        for (int ply = 0; ply < maxPly; ply++)
+        {
+            plies.add(new ArrayList<>(MOVES_PER_PLY));
+        }
+    }
+
+    /**
+     * gets the (emptied) move list for a ply, growing the stack if a search goes deeper than expected<br>
+     * - the list stays valid until the same ply is requested again
+     * @param ply distance from the root of the search
+     * @return empty move list owned by this ply
+     */
+    public List<ChessMove> get(int ply)
+    {
+        while (ply >= plies.size())
+        {
+            plies.add(new ArrayList<>(MOVES_PER_PLY));
+        }
+        List<ChessMove> moves = plies.get(ply);
+        moves.clear();
+        return moves;
+    }
+}
@@ -0,0 +1,437 @@
+package chess.notation;
+
+import chess.ChessBoardState;
+import chess.ChessGameHistory;
+import chess.moves.ChessMove;
+import chess.moves.MoveCastle;
+import chess.moves.MoveEnPassant;
+import chess.moves.MovePromotion;
+import chess.moves.MovePromotion.PieceType;
+import chess.pieces.ChessPiece;
+import chess.pieces.PieceBishop;
+import chess.pieces.PieceKing;
+import chess.pieces.PieceKnight;
+import chess.pieces.PiecePawn;
+import chess.pieces.PieceQueen;
+import chess.pieces.PieceRook;
+import game.utility.Location;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import game.utility.Properties.PlayerColor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts between board locations and standard chess notation<br>
+ * - squares are numbered from white's side of the board: 0 (a1) through 63 (h8),
+ *   whichever way the board is shown on screen<br>
+ * - a board with white moving UP has white's back rank on the last row,
+ *   a board with white moving DOWN is the same board rotated<br>
+ * - moves are written in long algebraic (UCI) notation, i.e.) e2e4, e1g1, e7e8q,
+ *   and read from and written in standard algebraic (SAN) notation, i.e.) e4, Nxf3, O-O, e8=Q+
+ *
+ * @author devang
+ */
+public class ChessNotation {
+    public static final int NUM_FILES   = 8;
+    public static final int NUM_RANKS   = 8;
+    public static final int NUM_SQUARES = NUM_FILES*NUM_RANKS;
+
+    private ChessNotation() { }
+
+    /**
+     * gets the square number of a location on a board with the given orientation
+     * @param location location on the board
+     * @param properties properties holding the direction white moves on this board
+     * @return square number 0 (a1) through 63 (h8)
+     */
+    public static int getSquare(Location location, Properties properties)
+    {
+        int col = Location.getCol(location);
+        int row = Location.getRow(location);
+        if (isWhiteMovingUp(properties))
+            return getSquare(col,NUM_RANKS-1-row);
+        return getSquare(NUM_FILES-1-col,row);
+    }
+
+    /**
+     * gets the location of a square number on a board with the given orientation
+     * @param square square number 0 (a1) through 63 (h8)
+     * @param properties properties holding the direction white moves on this board
+     * @return location on the board of this square
+     */
+    public static Location getLocation(int square, Properties properties)
+    {
+        int file = getFile(square);
+        int rank = getRank(square);
+        if (isWhiteMovingUp(properties))
+            return Location.of(file,NUM_RANKS-1-rank);
+        return Location.of(NUM_FILES-1-file,rank);
+    }
+
+    private static boolean isWhiteMovingUp(Properties properties)
+    {
+        return (properties == null) || (properties.getColorDirection(PlayerColor.WHITE) != Direction.DOWN);
+    }
+
+    public static int getSquare(int file, int rank)
+    {
+        return rank*NUM_FILES + file;
+    }
+
+    public static int getFile(int square)
+    {
+        return square % NUM_FILES;
+    }
+
+    public static int getRank(int square)
+    {
+        return square / NUM_FILES;
+    }
+
+    /**
+     * gets the algebraic name of a square
+     * @param square square number 0 (a1) through 63 (h8)
+     * @return name of the square, i.e.) e4
+     */
+    public static String getSquareName(int square)
+    {
+        char file = (char)('a' + getFile(square));
+        char rank = (char)('1' + getRank(square));
+        return "" + file + rank;
+    }
+
+    /**
+     * parses the algebraic name of a square
+     * @param name name of the square, i.e.) e4
+     * @return square number 0 (a1) through 63 (h8), or -1 if the name is not a square
+     */
+    public static int parseSquare(String name)
+    {
+        if ((name == null) || (name.length() != 2)) return -1;
+        int file = name.charAt(0) - 'a';
+        int rank = name.charAt(1) - '1';
+        if ((file < 0) || (file >= NUM_FILES) || (rank < 0) || (rank >= NUM_RANKS)) return -1;
+        return getSquare(file,rank);
+    }
+
+    /**
+     * writes a move in long algebraic (UCI) notation
+     * @param move move to write
+     * @param properties properties holding the direction white moves on the board of this move
+     * @return the move, i.e.) e2e4 or e7e8q
+     */
+    public static String toUci(ChessMove move, Properties properties)
+    {
+        String uci = getSquareName(getSquare(move.getFromLocation(),properties))
+                   + getSquareName(getSquare(move.getToLocation(),properties));
+        if (move instanceof MovePromotion)
+        {
+            PieceType pieceType = ((MovePromotion)move).getNewPieceType();
+            uci += getPromotionChar(pieceType != null ? pieceType : PieceType.QUEEN);
+        }
+        return uci;
+    }
+
+    /**
+     * finds the valid move written in long algebraic (UCI) notation<br>
+     * - castling may be written as the king's move (e1g1) or as king-takes-rook (e1h1)<br>
+     * - a pawn-promotion found this way has its new piece set from the notation (queen if none is given)
+     * @param uci move in long algebraic notation
+     * @param validMoves valid moves in the current position
+     * @param properties properties holding the direction white moves on the board
+     * @return the matching valid move, or null if no valid move matches
+     */
+    public static ChessMove findMove(String uci, List<ChessMove> validMoves, Properties properties)
+    {
+        if ((uci == null) || (uci.length() < 4)) return null;
+        int fromSquare = parseSquare(uci.substring(0,2));
+        int toSquare   = parseSquare(uci.substring(2,4));
+        if ((fromSquare < 0) || (toSquare < 0)) return null;
+        PieceType pieceType = (uci.length() > 4) ? getPromotionType(uci.charAt(4)) : null;
+        return findMove(fromSquare,toSquare,pieceType,validMoves,properties);
+    }
+
+    /**
+     * finds the valid move between two squares
+     * @param fromSquare square from which the piece moves
+     * @param toSquare square to which the piece moves (or the rook's square, for castling)
+     * @param pieceType piece for a pawn-promotion, or null for a queen or a move that does not promote
+     * @param validMoves valid moves in the current position
+     * @param properties properties holding the direction white moves on the board
+     * @return the matching valid move, or null if no valid move matches
+     */
+    public static ChessMove findMove(int fromSquare, int toSquare, PieceType pieceType, List<ChessMove> validMoves, Properties properties)
+    {
+        for (ChessMove move : validMoves)
+        {
+            if (getSquare(move.getFromLocation(),properties) != fromSquare) continue;
+
+            int moveToSquare = getSquare(move.getToLocation(),properties);
+            if ((moveToSquare != toSquare) && !((move instanceof MoveCastle) && (getCastleKingSquare(fromSquare,toSquare) == moveToSquare)))
+                continue;
+
+            if (move instanceof MovePromotion)
+                ((MovePromotion)move).setNewPieceType(pieceType != null ? pieceType : PieceType.QUEEN);
+            return move;
+        }
+        return null;
+    }
+
+    /**
+     * writes a move, not yet made, in standard algebraic (SAN) notation<br>
+     * - the moving piece's square is given only as far as needed to tell it from another piece
+     *   of the same kind moving to the same square<br>
+     * - a check is marked with +, a checkmate with #
+     * @param move valid move of the player to move
+     * @param boardState state of the board before the move
+     * @param colorToMove color of the player to move
+     * @param gameHistory history of the game, used for en-passant (may be null)
+     * @param properties properties holding the direction white moves on the board
+     * @return the move, i.e.) Nbd7, exd5, O-O or e8=Q+
+     */
+    public static String toSan(ChessMove move, ChessBoardState boardState, PlayerColor colorToMove, ChessGameHistory gameHistory, Properties properties)
+    {
+        int fromSquare = getSquare(move.getFromLocation(),properties);
+        int toSquare   = getSquare(move.getToLocation(),properties);
+        StringBuilder san = new StringBuilder();
+        
+        if (move instanceof MoveCastle)
+        {
+            san.append((getFile(toSquare) < getFile(fromSquare)) ? "O-O-O" : "O-O");
+        }
+        else
+        {
+            ChessPiece piece = boardState.getPiece(move.getFromLocation());
+            boolean capture  = !boardState.isEmpty(move.getToLocation()) || (move instanceof MoveEnPassant);
+            if (piece instanceof PiecePawn)
+            {
+                if (capture) san.append((char)('a' + getFile(fromSquare)));
+            }
+            else
+            {
+                san.append(getPieceLetter(piece));
+                san.append(getDisambiguation(piece,fromSquare,toSquare,boardState,gameHistory,properties));
+            }
+            if (capture) san.append('x');
+            san.append(getSquareName(toSquare));
+            if (move instanceof MovePromotion)
+            {
+                PieceType pieceType = ((MovePromotion)move).getNewPieceType();
+                san.append('=').append(Character.toUpperCase(getPromotionChar(pieceType != null ? pieceType : PieceType.QUEEN)));
+            }
+        }
+        
+        PlayerColor opponentColor = Properties.oppositeColor(colorToMove);
+        ChessBoardState nextBoardState = ChessBoardState.copy(boardState);
+        ChessMove madeMove = move;
+        if ((move instanceof MovePromotion) && (((MovePromotion)move).getNewPieceType() == null))
+        {
+            // a promotion not yet chosen is written, and tested for check, as a queen's
+            madeMove = new MovePromotion(move.getFromLocation(),move.getToLocation(),PieceType.QUEEN);
+        }
+        madeMove.commitMove(nextBoardState);
+        if (nextBoardState.check(opponentColor))
+        {
+            List<ChessMove> replies = new ArrayList<>();
+            nextBoardState.addValidMoves(opponentColor,null,replies);
+            san.append(replies.isEmpty() ? '#' : '+');
+        }
+        return san.toString();
+    }
+    
+    /**
+     * gets the file, rank or square of a moving piece needed to tell it from the other pieces of
+     * its kind that can move to the same square (empty if there are none)
+     */
+    private static String getDisambiguation(ChessPiece piece, int fromSquare, int toSquare, ChessBoardState boardState,
+                                            ChessGameHistory gameHistory, Properties properties)
+    {
+        boolean ambiguous = false;
+        boolean sameFile  = false;
+        boolean sameRank  = false;
+        List<ChessMove> pieceMoves = new ArrayList<>();
+        for (Location location : boardState.getGeometry().allLocations())
+        {
+            ChessPiece other = boardState.getPiece(location);
+            if ((other == null) || (other == piece) || (other.getColor() != piece.getColor()) || (other.getClass() != piece.getClass())) continue;
+            
+            pieceMoves.clear();
+            other.addValidMoves(location,boardState,gameHistory,pieceMoves);
+            for (ChessMove otherMove : pieceMoves)
+            {
+                if ((otherMove instanceof MoveCastle) || (getSquare(otherMove.getToLocation(),properties) != toSquare)) continue;
+                int otherSquare = getSquare(location,properties);
+                ambiguous = true;
+                sameFile |= (getFile(otherSquare) == getFile(fromSquare));
+                sameRank |= (getRank(otherSquare) == getRank(fromSquare));
+            }
+        }
+        if (!ambiguous) return "";
+        if (!sameFile)  return String.valueOf((char)('a' + getFile(fromSquare)));
+        if (!sameRank)  return String.valueOf((char)('1' + getRank(fromSquare)));
+        return getSquareName(fromSquare);
+    }
+    
+    private static char getPieceLetter(ChessPiece piece)
+    {
+        if (piece instanceof PieceKing)   return 'K';
+        if (piece instanceof PieceQueen)  return 'Q';
+        if (piece instanceof PieceRook)   return 'R';
+        if (piece instanceof PieceBishop) return 'B';
+        return 'N';
+    }
+    
+    /**
+     * finds the valid move written in standard algebraic (SAN) notation<br>
+     * - check, mate and annotation marks (+ # ! ?) are ignored, castling may be written with O or 0<br>
+     * - only the pieces named by the move generate their moves, so a move is found
+     *   without generating every move of the position
+     * @param san move in standard algebraic notation
+     * @param boardState state of the board
+     * @param colorToMove color of the player to move
+     * @param gameHistory history of the game, used for en-passant (may be null)
+     * @param properties properties holding the direction white moves on the board
+     * @return the matching valid move, or null if no valid move matches
+     */
+    public static ChessMove findSanMove(String san, ChessBoardState boardState, PlayerColor colorToMove, ChessGameHistory gameHistory, Properties properties)
+    {
+        String move = stripSanMarks(san);
+        if (move.isEmpty()) return null;
+        
+        List<ChessMove> pieceMoves = new ArrayList<>();
+        if (move.startsWith("O-O") || move.startsWith("0-0"))
+        {
+            Location kingLocation = boardState.getKingLocation(colorToMove);
+            if (kingLocation == null) return null;
+            boardState.getPiece(kingLocation).addValidMoves(kingLocation,boardState,gameHistory,pieceMoves);
+            int kingFile = (move.length() > 3) ? 2 : NUM_FILES-2;
+            for (ChessMove pieceMove : pieceMoves)
+            {
+                if ((pieceMove instanceof MoveCastle) && (getFile(getSquare(pieceMove.getToLocation(),properties)) == kingFile))
+                    return pieceMove;
+            }
+            return null;
+        }
+        
+        PieceType pieceType = null;
+        int promotionIndex = move.indexOf('=');
+        if (promotionIndex >= 0)
+        {
+            if (promotionIndex+1 < move.length())
+                pieceType = getPromotionType(move.charAt(promotionIndex+1));
+            move = move.substring(0,promotionIndex);
+        }
+        else if ((move.length() > 2) && Character.isDigit(move.charAt(move.length()-2)) && "QRBN".indexOf(move.charAt(move.length()-1)) >= 0)
+        {
+            pieceType = getPromotionType(move.charAt(move.length()-1));
+            move = move.substring(0,move.length()-1);
+        }
+        
+        char pieceLetter = "KQRBN".indexOf(move.charAt(0)) >= 0 ? move.charAt(0) : 'P';
+        String squares = move.substring(pieceLetter == 'P' ? 0 : 1).replace("x","").replace(":","");
+        if (squares.length() < 2) return null;
+        int toSquare = parseSquare(squares.substring(squares.length()-2));
+        if (toSquare < 0) return null;
+        
+        int fromFile = -1;
+        int fromRank = -1;
+        for (char c : squares.substring(0,squares.length()-2).toCharArray())
+        {
+            if ((c >= 'a') && (c <= 'h')) fromFile = c - 'a';
+            if ((c >= '1') && (c <= '8')) fromRank = c - '1';
+        }
+        
+        for (Location location : boardState.getGeometry().allLocations())
+        {
+            ChessPiece piece = boardState.getPiece(location);
+            if ((piece == null) || (piece.getColor() != colorToMove) || !isPieceLetter(piece,pieceLetter)) continue;
+            int fromSquare = getSquare(location,properties);
+            if ((fromFile >= 0) && (getFile(fromSquare) != fromFile)) continue;
+            if ((fromRank >= 0) && (getRank(fromSquare) != fromRank)) continue;
+            
+            pieceMoves.clear();
+            piece.addValidMoves(location,boardState,gameHistory,pieceMoves);
+            ChessMove found = findMove(fromSquare,toSquare,pieceType,pieceMoves,properties);
+            if ((found != null) && !(found instanceof MoveCastle)) return found;
+        }
+        return null;
+    }
+    
+    private static String stripSanMarks(String san)
+    {
+        if (san == null) return "";
+        String move = san.trim();
+        if (move.endsWith("e.p.")) move = move.substring(0,move.length()-4);
+        int end = move.length();
+        while ((end > 0) && ("+#!?".indexOf(move.charAt(end-1)) >= 0))
+        {
+            end--;
+        }
+        return move.substring(0,end);
+    }
+    
+    private static boolean isPieceLetter(ChessPiece piece, char pieceLetter)
+    {
+        switch (pieceLetter)
+        {
+            case 'K':
+                return piece instanceof PieceKing;
+            case 'Q':
+                return piece instanceof PieceQueen;
+            case 'R':
+                return piece instanceof PieceRook;
+            case 'B':
+                return piece instanceof PieceBishop;
+            case 'N':
+                return piece instanceof PieceKnight;
+            default:
+                return piece instanceof PiecePawn;
+        }
+    }
+    
+    /**
+     * gets the destination of the king for castling written as king-takes-rook (e1h1 is e1g1)
+     * @param fromSquare square of the king
+     * @param toSquare square of the rook
+     * @return destination square of the king, or -1 if this is not a king-takes-rook castle
+     */
+    public static int getCastleKingSquare(int fromSquare, int toSquare)
+    {
+        if ((getFile(fromSquare) != 4) || (getRank(fromSquare) != getRank(toSquare))) return -1;
+        if (getFile(toSquare) == NUM_FILES-1) return fromSquare + 2;
+        if (getFile(toSquare) == 0)           return fromSquare - 2;
+        return -1;
+    }
+
+    public static char getPromotionChar(PieceType pieceType)
+    {
+        switch (pieceType)
+        {
+            case KNIGHT:
+                return 'n';
+            case BISHOP:
+                return 'b';
+            case ROOK:
+                return 'r';
+            default:
+                return 'q';
+        }
+    }
+
+    public static PieceType getPromotionType(char promotion)
+    {
+        switch (Character.toLowerCase(promotion))
+        {
+            case 'n':
+                return PieceType.KNIGHT;
+            case 'b':
+                return PieceType.BISHOP;
+            case 'r':
+                return PieceType.ROOK;
+            case 'q':
+                return PieceType.QUEEN;
+        }
+        return null;
+    }
+}
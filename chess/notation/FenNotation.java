@@ -0,0 +1,232 @@
+package chess.notation;
+
+import chess.ChessBoardState;
+import chess.ChessGameHistory;
+import chess.ChessPosition;
+import chess.ChessZobrist;
+import chess.moves.ChessMove;
+import chess.moves.MoveRegular;
+import chess.pieces.ChessPiece;
+import chess.pieces.PieceBishop;
+import chess.pieces.PieceKing;
+import chess.pieces.PieceKnight;
+import chess.pieces.PiecePawn;
+import chess.pieces.PieceQueen;
+import chess.pieces.PieceRook;
+import game.utility.Location;
+import game.utility.Properties;
+import game.utility.Properties.PlayerColor;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation (FEN)<br>
+ * - pieces do not remember castling rights or two-space pawn moves, so they are set up from the
+ *   notation: a king or rook that has lost its castling right, and a pawn off its starting rank,
+ *   are counted as having moved<br>
+ * - an en-passant square is set up as the most recent move of the game: the opponent's pawn
+ *   moving two spaces<br>
+ * - an en-passant square is written only when a pawn can capture there (as in ChessZobrist)
+ *
+ * @author devang
+ */
+public class FenNotation {
+    public static final String STANDARD_START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_LETTERS = "pnbrqk";
+
+    private FenNotation() { }
+
+    /**
+     * sets up a position from its FEN
+     * @param fen position in FEN; the move clocks may be left out
+     * @param properties properties (directions,dimensions,colors) of the pieces
+     * @return newly-created position
+     */
+    public static ChessPosition parse(String fen, Properties properties)
+    {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 2) throw new IllegalArgumentException("not a FEN position: " + fen);
+
+        ChessBoardState boardState = new ChessBoardState();
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != ChessNotation.NUM_RANKS) throw new IllegalArgumentException("not a FEN position: " + fen);
+        for (int r = 0; r < ranks.length; r++)
+        {
+            int rank = ChessNotation.NUM_RANKS - 1 - r;
+            int file = 0;
+            for (char c : ranks[r].toCharArray())
+            {
+                if (Character.isDigit(c))
+                {
+                    file += c - '0';
+                    continue;
+                }
+                ChessPiece piece = createPiece(c);
+                if ((piece == null) || (file >= ChessNotation.NUM_FILES)) throw new IllegalArgumentException("not a FEN position: " + fen);
+                piece.setProperties(properties);
+                boardState.setPiece(piece,ChessNotation.getLocation(ChessNotation.getSquare(file,rank),properties));
+                file++;
+            }
+        }
+
+        PlayerColor colorToMove = fields[1].equals("b") ? PlayerColor.BLACK : PlayerColor.WHITE;
+        String castling     = (fields.length > 2) ? fields[2] : "-";
+        int enPassantSquare = (fields.length > 3) ? ChessNotation.parseSquare(fields[3]) : -1;
+        int halfMoveClock   = (fields.length > 4) ? Integer.parseInt(fields[4]) : 0;
+        int fullMoveNumber  = (fields.length > 5) ? Integer.parseInt(fields[5]) : 1;
+        return createPosition(boardState,colorToMove,castling,enPassantSquare,halfMoveClock,fullMoveNumber,properties);
+    }
+
+    /**
+     * sets up a position from a board of pieces and the rest of a FEN's fields (also used by PackedPosition)
+     * @param boardState board holding the position's pieces, none of them having moved
+     * @param castling castling rights, as in FEN (i.e. KQkq, or - for none)
+     * @param enPassantSquare square passed over by the opponent's two-space pawn move, or -1
+     * @return newly-created position
+     */
+    static ChessPosition createPosition(ChessBoardState boardState, PlayerColor colorToMove, String castling, int enPassantSquare,
+                                        int halfMoveClock, int fullMoveNumber, Properties properties)
+    {
+        setMovesMade(boardState,castling,properties);
+
+        ChessGameHistory gameHistory = new ChessGameHistory();
+        if (enPassantSquare >= 0) setEnPassant(boardState,gameHistory,enPassantSquare,colorToMove,properties);
+        return new ChessPosition(boardState,gameHistory,colorToMove,properties,halfMoveClock,fullMoveNumber);
+    }
+
+    static ChessPiece createPiece(char letter)
+    {
+        PlayerColor color = Character.isUpperCase(letter) ? PlayerColor.WHITE : PlayerColor.BLACK;
+        switch (Character.toLowerCase(letter))
+        {
+            case 'p':
+                return PiecePawn.create(color);
+            case 'n':
+                return PieceKnight.create(color);
+            case 'b':
+                return PieceBishop.create(color);
+            case 'r':
+                return PieceRook.create(color);
+            case 'q':
+                return PieceQueen.create(color);
+            case 'k':
+                return PieceKing.create(color);
+        }
+        return null;
+    }
+
+    /**
+     * counts kings and rooks without castling rights, and pawns off their starting rank, as having moved
+     */
+    private static void setMovesMade(ChessBoardState boardState, String castling, Properties properties)
+    {
+        for (Location location : boardState.getGeometry().allLocations())
+        {
+            ChessPiece piece = boardState.getPiece(location);
+            if (piece == null) continue;
+            int square  = ChessNotation.getSquare(location,properties);
+            int rank    = ChessNotation.getRank(square);
+            int file    = ChessNotation.getFile(square);
+            boolean white = piece.getColor() == PlayerColor.WHITE;
+            int backRank  = white ? 0 : ChessNotation.NUM_RANKS-1;
+
+            boolean hasMoved = false;
+            if (piece instanceof PieceKing)
+            {
+                boolean hasRight = castling.indexOf(white ? 'K' : 'k') >= 0 || castling.indexOf(white ? 'Q' : 'q') >= 0;
+                hasMoved = !hasRight || (rank != backRank) || (file != 4);
+            }
+            else if (piece instanceof PieceRook)
+            {
+                char right = (file == 0) ? 'Q' : (file == ChessNotation.NUM_FILES-1) ? 'K' : ' ';
+                hasMoved = (rank != backRank) || (right == ' ') || (castling.indexOf(white ? right : Character.toLowerCase(right)) < 0);
+            }
+            else if (piece instanceof PiecePawn)
+            {
+                int startRank = white ? 1 : ChessNotation.NUM_RANKS-2;
+                if (rank != startRank)
+                {
+                    // a pawn that has moved remembers a move, so it cannot move two spaces again
+                    int previousSquare = square + (white ? -ChessNotation.NUM_FILES : ChessNotation.NUM_FILES);
+                    piece.setMostRecentMove(new MoveRegular(ChessNotation.getLocation(previousSquare,properties),location));
+                    hasMoved = true;
+                }
+            }
+            piece.setNumMovesMade(hasMoved ? 1 : 0);
+        }
+    }
+
+    /**
+     * sets up the opponent's two-space pawn move over the en-passant square as the most recent move
+     */
+    private static void setEnPassant(ChessBoardState boardState, ChessGameHistory gameHistory, int enPassantSquare, PlayerColor colorToMove, Properties properties)
+    {
+        int step = (colorToMove == PlayerColor.WHITE) ? -ChessNotation.NUM_FILES : ChessNotation.NUM_FILES;
+        int pawnSquare = enPassantSquare + step;
+        int fromSquare = enPassantSquare - step;
+        if ((pawnSquare < 0) || (pawnSquare >= ChessNotation.NUM_SQUARES) || (fromSquare < 0) || (fromSquare >= ChessNotation.NUM_SQUARES)) return;
+
+        Location pawnLocation = ChessNotation.getLocation(pawnSquare,properties);
+        ChessPiece pawn = boardState.getPiece(pawnLocation);
+        if (!(pawn instanceof PiecePawn) || (pawn.getColor() == colorToMove)) return;
+
+        ChessMove move = new MoveRegular(ChessNotation.getLocation(fromSquare,properties),pawnLocation);
+        pawn.setMostRecentMove(move);
+        pawn.setNumMovesMade(1);
+        gameHistory.setMostRecentMove(move);
+    }
+
+    /**
+     * writes a position in FEN
+     * @param position position to write
+     * @return the position in FEN
+     */
+    public static String write(ChessPosition position)
+    {
+        ChessBoardState boardState = position.getBoardState();
+        Properties properties = position.getProperties();
+        StringBuilder fen = new StringBuilder();
+        for (int rank = ChessNotation.NUM_RANKS-1; rank >= 0; rank--)
+        {
+            int empty = 0;
+            for (int file = 0; file < ChessNotation.NUM_FILES; file++)
+            {
+                ChessPiece piece = boardState.getPiece(ChessNotation.getLocation(ChessNotation.getSquare(file,rank),properties));
+                if (piece == null)
+                {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) fen.append(empty);
+                empty = 0;
+                int kind = ChessZobrist.getPieceKind(piece);
+                char letter = PIECE_LETTERS.charAt(kind / 2);
+                fen.append((kind % 2 == 1) ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) fen.append(empty);
+            if (rank > 0) fen.append('/');
+        }
+
+        PlayerColor colorToMove = position.getColorToMove();
+        fen.append(colorToMove == PlayerColor.WHITE ? " w " : " b ");
+
+        String castling = (boardState.hasCastlingRight(PlayerColor.WHITE,true)  ? "K" : "")
+                        + (boardState.hasCastlingRight(PlayerColor.WHITE,false) ? "Q" : "")
+                        + (boardState.hasCastlingRight(PlayerColor.BLACK,true)  ? "k" : "")
+                        + (boardState.hasCastlingRight(PlayerColor.BLACK,false) ? "q" : "");
+        fen.append(castling.isEmpty() ? "-" : castling);
+
+        int enPassantFile = ChessZobrist.getEnPassantFile(boardState,colorToMove,position.getGameHistory());
+        if (enPassantFile >= 0)
+        {
+            int rank = (colorToMove == PlayerColor.WHITE) ? ChessNotation.NUM_RANKS-3 : 2;
+            fen.append(' ').append(ChessNotation.getSquareName(ChessNotation.getSquare(enPassantFile,rank)));
+        }
+        else
+        {
+            fen.append(" -");
+        }
+
+        fen.append(' ').append(position.getHalfMoveClock()).append(' ').append(position.getFullMoveNumber());
+        return fen.toString();
+    }
+}
@@ -0,0 +1,300 @@
+package chess.notation;
+
+import chess.ChessBitboards;
+import chess.ChessBoardState;
+import chess.ChessPosition;
+import chess.ChessZobrist;
+import chess.pieces.ChessPiece;
+import game.utility.Properties;
+import game.utility.Properties.PlayerColor;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * a position packed into SIZE bytes, to store and scan many positions (see PackedPositionReader
+ * and PackedPositionWriter)<br>
+ * - occupancy (8 bytes): bit n set for a piece on square n (0 a1 through 63 h8)<br>
+ * - pieces (16 bytes): 4 bits per occupied square, in square order, low bits first:
+ *   color (bit 3) and type (bits 0-2, ChessBitboards.PAWN through KING)<br>
+ * - flags (1 byte): black to move (bit 0), castling rights K, Q, k, q (bits 1-4)<br>
+ * - en-passant file (1 byte, -1 for none), half-move clock and full-move number (2 bytes each,
+ *   unsigned), then 2 bytes reserved<br>
+ * - holds what a FEN holds: a position read back plays on as the position written (castling,
+ *   en passant and the fifty-move rule), though not its repetitions<br>
+ * - numbers are in the byte order of the buffer written to (big-endian unless set otherwise)
+ *
+ * @author devang
+ */
+public class PackedPosition {
+    public static final int SIZE        = 32;
+    public static final int MAX_PIECES  = 32;
+    public static final int PIECES_SIZE = MAX_PIECES/2;
+    public static final int MAX_CLOCK   = 0xFFFF;
+
+    private static final int BLACK_TO_MOVE = 1;
+    private static final int CASTLE_SHIFT  = 1;
+
+    private static final char[] PIECE_LETTERS    = { 'P', 'N', 'B', 'R', 'Q', 'K' };
+    private static final char[] CASTLING_LETTERS = { 'K', 'Q', 'k', 'q' };
+
+    private long         occupancy;
+    private final byte[] pieces = new byte[PIECES_SIZE];
+    private int          flags;
+    private int          enPassantFile = -1;
+    private int          halfMoveClock;
+    private int          fullMoveNumber = 1;
+
+    /**
+     * creates an empty position, to be loaded (see load)
+     */
+    public PackedPosition()
+    {
+    }
+
+    /**
+     * packs a position
+     * @param position position to pack
+     * @return newly-created packed position
+     * @throws IllegalArgumentException if there are more than MAX_PIECES pieces
+     */
+    public static PackedPosition create(ChessPosition position)
+    {
+        ChessBoardState boardState = position.getBoardState();
+        PlayerColor colorToMove    = position.getColorToMove();
+
+        PackedPosition packed = new PackedPosition();
+        packed.occupancy = packPieces(boardState.getBitboards(),packed.pieces);
+        packed.flags = (colorToMove == PlayerColor.BLACK) ? BLACK_TO_MOVE : 0;
+        for (int right = 0; right < CASTLING_LETTERS.length; right++)
+        {
+            PlayerColor color = (right < 2) ? PlayerColor.WHITE : PlayerColor.BLACK;
+            if (boardState.hasCastlingRight(color,(right % 2) == 0)) packed.flags |= 1 << (CASTLE_SHIFT + right);
+        }
+        packed.enPassantFile  = ChessZobrist.getEnPassantFile(boardState,colorToMove,position.getGameHistory());
+        packed.halfMoveClock  = Math.min(MAX_CLOCK,position.getHalfMoveClock());
+        packed.fullMoveNumber = Math.min(MAX_CLOCK,position.getFullMoveNumber());
+        return packed;
+    }
+
+    /**
+     * reads a position at the buffer's position, and moves the position past it
+     * @param buffer buffer holding the position
+     * @return newly-created packed position
+     */
+    public static PackedPosition read(ByteBuffer buffer)
+    {
+        PackedPosition packed = new PackedPosition();
+        packed.load(buffer);
+        return packed;
+    }
+
+    /**
+     * reads a position at the buffer's position into this one (so a scan can reuse one object),
+     * and moves the position past it
+     * @param buffer buffer holding the position
+     */
+    public void load(ByteBuffer buffer)
+    {
+        occupancy      = buffer.getLong();
+        buffer.get(pieces);
+        flags          = buffer.get() & 0xFF;
+        enPassantFile  = buffer.get();
+        halfMoveClock  = buffer.getShort() & 0xFFFF;
+        fullMoveNumber = buffer.getShort() & 0xFFFF;
+        buffer.getShort();
+    }
+
+    /**
+     * writes the position at the buffer's position, and moves the position past it
+     * @param buffer buffer with at least SIZE bytes remaining
+     */
+    public void write(ByteBuffer buffer)
+    {
+        buffer.putLong(occupancy);
+        buffer.put(pieces);
+        buffer.put((byte)flags);
+        buffer.put((byte)enPassantFile);
+        buffer.putShort((short)halfMoveClock);
+        buffer.putShort((short)fullMoveNumber);
+        buffer.putShort((short)0);
+    }
+
+    /**
+     * unpacks the position
+     * @param properties properties (directions,dimensions,colors) of the pieces
+     * @return newly-created position
+     */
+    public ChessPosition toPosition(Properties properties)
+    {
+        return FenNotation.createPosition(toBoardState(properties),getColorToMove(),getCastling(),getEnPassantSquare(),
+                                          halfMoveClock,fullMoveNumber,properties);
+    }
+
+    /**
+     * unpacks the pieces only, without the castling rights, en passant or history of a position
+     * (i.e. to evaluate the position)
+     * @param properties properties (directions,dimensions,colors) of the pieces
+     * @return newly-created board state
+     */
+    public ChessBoardState toBoardState(Properties properties)
+    {
+        ChessBoardState boardState = new ChessBoardState();
+        for (long squares = occupancy; squares != 0; squares &= squares - 1)
+        {
+            int square = Long.numberOfTrailingZeros(squares);
+            ChessPiece piece = FenNotation.createPiece(getPieceLetter(getPiece(square)));
+            piece.setProperties(properties);
+            boardState.setPiece(piece,ChessNotation.getLocation(square,properties));
+        }
+        return boardState;
+    }
+
+    /**
+     * writes the position in FEN, without unpacking it
+     * @return the position in FEN
+     */
+    public String toFen()
+    {
+        StringBuilder fen = new StringBuilder();
+        appendPlacement(fen,occupancy,pieces);
+        fen.append(((flags & BLACK_TO_MOVE) != 0) ? " b " : " w ").append(getCastling());
+        int enPassantSquare = getEnPassantSquare();
+        fen.append(' ').append((enPassantSquare >= 0) ? ChessNotation.getSquareName(enPassantSquare) : "-");
+        return fen.append(' ').append(halfMoveClock).append(' ').append(fullMoveNumber).toString();
+    }
+
+    public long getOccupancy()          { return occupancy; }
+    public int getEnPassantFile()       { return enPassantFile; }
+    public int getHalfMoveClock()       { return halfMoveClock; }
+    public int getFullMoveNumber()      { return fullMoveNumber; }
+
+    public PlayerColor getColorToMove()
+    {
+        return ((flags & BLACK_TO_MOVE) != 0) ? PlayerColor.BLACK : PlayerColor.WHITE;
+    }
+
+    /**
+     * checks a castling right
+     * @param color color of the player
+     * @param kingSide true for the king's side, false for the queen's side
+     * @return true if the player may still castle on that side
+     */
+    public boolean hasCastlingRight(PlayerColor color, boolean kingSide)
+    {
+        int right = ((color == PlayerColor.WHITE) ? 0 : 2) + (kingSide ? 0 : 1);
+        return (flags & (1 << (CASTLE_SHIFT + right))) != 0;
+    }
+
+    /**
+     * gets the piece on a square
+     * @param square square 0 (a1) through 63 (h8)
+     * @return color (bit 3) and type (bits 0-2) of the piece, or -1 if the square is empty
+     */
+    public int getPiece(int square)
+    {
+        return getPiece(occupancy,pieces,square);
+    }
+
+    private String getCastling()
+    {
+        StringBuilder castling = new StringBuilder();
+        for (int right = 0; right < CASTLING_LETTERS.length; right++)
+        {
+            if ((flags & (1 << (CASTLE_SHIFT + right))) != 0) castling.append(CASTLING_LETTERS[right]);
+        }
+        return (castling.length() > 0) ? castling.toString() : "-";
+    }
+
+    private int getEnPassantSquare()
+    {
+        if (enPassantFile < 0) return -1;
+        int rank = ((flags & BLACK_TO_MOVE) == 0) ? ChessNotation.NUM_RANKS-3 : 2;
+        return ChessNotation.getSquare(enPassantFile,rank);
+    }
+
+    /**
+     * packs the pieces of a board, 4 bits per occupied square (also used by TrainingRecord)
+     * @param bitboards bitboards of the board's pieces
+     * @param pieces PIECES_SIZE bytes, cleared, to hold the pieces
+     * @return occupancy of the board
+     * @throws IllegalArgumentException if there are more than MAX_PIECES pieces
+     */
+    public static long packPieces(ChessBitboards bitboards, byte[] pieces)
+    {
+        long occupancy = bitboards.getOccupied();
+        if (Long.bitCount(occupancy) > MAX_PIECES) throw new IllegalArgumentException("more than " + MAX_PIECES + " pieces");
+
+        int index = 0;
+        for (long squares = occupancy; squares != 0; squares &= squares - 1, index++)
+        {
+            int square = Long.numberOfTrailingZeros(squares);
+            int piece  = (bitboards.getColor(square) << 3) | bitboards.getType(square);
+            pieces[index >> 1] |= (byte)(piece << ((index & 1) << 2));
+        }
+        return occupancy;
+    }
+
+    /**
+     * gets a packed piece
+     * @param occupancy occupancy of the board
+     * @param pieces packed pieces of the board
+     * @param square square 0 (a1) through 63 (h8)
+     * @return color (bit 3) and type (bits 0-2) of the piece, or -1 if the square is empty
+     */
+    public static int getPiece(long occupancy, byte[] pieces, int square)
+    {
+        if ((occupancy & (1L << square)) == 0) return -1;
+        int index = Long.bitCount(occupancy & ((1L << square) - 1));
+        return (pieces[index >> 1] >> ((index & 1) << 2)) & 0xF;
+    }
+
+    /**
+     * appends the first field of a FEN (the pieces) for packed pieces
+     * @param fen FEN being written
+     * @param occupancy occupancy of the board
+     * @param pieces packed pieces of the board
+     */
+    public static void appendPlacement(StringBuilder fen, long occupancy, byte[] pieces)
+    {
+        for (int rank = ChessNotation.NUM_RANKS - 1; rank >= 0; rank--)
+        {
+            int empty = 0;
+            for (int file = 0; file < ChessNotation.NUM_FILES; file++)
+            {
+                int piece = getPiece(occupancy,pieces,ChessNotation.getSquare(file,rank));
+                if (piece < 0)
+                {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) fen.append(empty);
+                empty = 0;
+                fen.append(getPieceLetter(piece));
+            }
+            if (empty > 0) fen.append(empty);
+            if (rank > 0) fen.append('/');
+        }
+    }
+
+    private static char getPieceLetter(int piece)
+    {
+        char letter = PIECE_LETTERS[piece & 7];
+        return ((piece >> 3) == ChessBitboards.WHITE) ? letter : Character.toLowerCase(letter);
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        if (!(object instanceof PackedPosition)) return false;
+        PackedPosition other = (PackedPosition)object;
+        return (occupancy == other.occupancy) && Arrays.equals(pieces,other.pieces) && (flags == other.flags)
+            && (enPassantFile == other.enPassantFile) && (halfMoveClock == other.halfMoveClock)
+            && (fullMoveNumber == other.fullMoveNumber);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(occupancy) * 31 + Arrays.hashCode(pieces) * 17 + (flags << 4) + enPassantFile;
+    }
+}
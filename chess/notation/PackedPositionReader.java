@@ -0,0 +1,115 @@
+package chess.notation;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * reads packed positions (see PackedPosition) from a file<br>
+ * - a scan reads the file in large blocks through a direct buffer, loading each position into
+ *   one PackedPosition given by the caller, so scanning allocates nothing per position<br>
+ * - a scan may start at any position (see seek), so a file can be scanned in parts by several
+ *   readers at once<br>
+ * - a position can also be read by its index, without moving the scan
+ *
+ * @author devang
+ */
+public class PackedPositionReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer  buffer   = ByteBuffer.allocateDirect(BUFFER_SIZE - (BUFFER_SIZE % PackedPosition.SIZE));
+    private final ByteBuffer  single   = ByteBuffer.allocateDirect(PackedPosition.SIZE);
+    private boolean           finished = false;
+
+    /**
+     * opens a file of packed positions to read, its scan at the first position
+     * @param file file of the positions
+     * @throws IOException if the file cannot be opened
+     */
+    public PackedPositionReader(Path file) throws IOException
+    {
+        channel = FileChannel.open(file,StandardOpenOption.READ);
+        buffer.limit(0);
+    }
+
+    /**
+     * gets the number of (whole) positions of the file
+     * @return number of positions
+     * @throws IOException if the file's size cannot be read
+     */
+    public long getNumPositions() throws IOException
+    {
+        return channel.size() / PackedPosition.SIZE;
+    }
+
+    /**
+     * moves the scan to a position
+     * @param index index of the position, from 0
+     * @throws IOException if the file cannot be read
+     */
+    public void seek(long index) throws IOException
+    {
+        channel.position(index * PackedPosition.SIZE);
+        buffer.limit(0);
+        finished = false;
+    }
+
+    /**
+     * reads the next position of the scan
+     * @param position position to load the next position into
+     * @return true if a position was read, false at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public boolean next(PackedPosition position) throws IOException
+    {
+        if (buffer.remaining() < PackedPosition.SIZE)
+        {
+            fill();
+            if (buffer.remaining() < PackedPosition.SIZE) return false;
+        }
+        position.load(buffer);
+        return true;
+    }
+
+    /**
+     * reads a position by its index, without moving the scan
+     * @param index index of the position, from 0
+     * @param position position to load the position into
+     * @throws IOException if the file cannot be read, or has no such position
+     */
+    public void read(long index, PackedPosition position) throws IOException
+    {
+        single.clear();
+        long offset = index * PackedPosition.SIZE;
+        while (single.hasRemaining())
+        {
+            if (channel.read(single,offset + single.position()) < 0) throw new EOFException("no position " + index);
+        }
+        single.flip();
+        position.load(single);
+    }
+
+    /**
+     * reads as much of the file as the buffer holds, after the buffer's unread bytes
+     */
+    private void fill() throws IOException
+    {
+        buffer.compact();
+        while (!finished && buffer.hasRemaining())
+        {
+            if (channel.read(buffer) < 0) finished = true;
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+}
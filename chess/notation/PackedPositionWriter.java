@@ -0,0 +1,81 @@
+package chess.notation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * writes packed positions (see PackedPosition) to a file, one after another<br>
+ * - positions go through a direct buffer to the file's channel, written when the buffer is
+ *   full (or flushed), so the file is written in large blocks<br>
+ * - a file may be appended to: a position's index counts the positions already in the file,
+ *   so an index of the positions stays valid as the file grows
+ *
+ * @author devang
+ */
+public class PackedPositionWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer  buffer = ByteBuffer.allocateDirect(BUFFER_SIZE - (BUFFER_SIZE % PackedPosition.SIZE));
+    private long              numPositions;
+
+    /**
+     * opens a file of packed positions to write
+     * @param file file of the positions (created if needed)
+     * @param append true to write after the file's positions, false to replace them
+     * @throws IOException if the file cannot be opened
+     */
+    public PackedPositionWriter(Path file, boolean append) throws IOException
+    {
+        channel = FileChannel.open(file,StandardOpenOption.CREATE,StandardOpenOption.WRITE,
+                                   append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        numPositions = channel.size() / PackedPosition.SIZE;
+    }
+
+    /**
+     * writes a position after the others
+     * @param position position to write
+     * @return index of the position in the file, from 0
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized long write(PackedPosition position) throws IOException
+    {
+        if (buffer.remaining() < PackedPosition.SIZE) flush();
+        position.write(buffer);
+        return numPositions++;
+    }
+
+    /**
+     * gets the number of positions of the file, including those not yet flushed
+     * @return number of positions
+     */
+    public synchronized long getNumPositions()
+    {
+        return numPositions;
+    }
+
+    /**
+     * writes the buffered positions to the file
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void flush() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
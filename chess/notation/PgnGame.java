@@ -0,0 +1,175 @@
+package chess.notation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a game read from (or to be written to) a PGN file: its tag pairs and its movetext<br>
+ * - the movetext is kept as read, and is split into moves only when asked,
+ *   so reading a game costs little more than reading its lines
+ *
+ * @author devang
+ */
+public class PgnGame {
+    public static final String RESULT_WHITE_WINS = "1-0";
+    public static final String RESULT_BLACK_WINS = "0-1";
+    public static final String RESULT_DRAW       = "1/2-1/2";
+    public static final String RESULT_UNKNOWN    = "*";
+    private static final int   MAX_LINE_LENGTH   = 80;
+
+    private final Map<String,String> tags;
+    private final String             moveText;
+
+    public PgnGame(Map<String,String> tags, String moveText)
+    {
+        this.tags     = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+        this.moveText = moveText;
+    }
+
+    public Map<String,String> getTags()
+    {
+        return tags;
+    }
+
+    public String getTag(String name)
+    {
+        return tags.get(name);
+    }
+
+    public String getMoveText()
+    {
+        return moveText;
+    }
+
+    /**
+     * gets the result of the game, from the Result tag or else from the end of the movetext
+     * @return 1-0, 0-1, 1/2-1/2 or * (unknown)
+     */
+    public String getResult()
+    {
+        String result = tags.get("Result");
+        if (isResult(result)) return result;
+        String text = moveText.trim();
+        for (String ending : new String[] { RESULT_WHITE_WINS, RESULT_BLACK_WINS, RESULT_DRAW })
+        {
+            if (text.endsWith(ending)) return ending;
+        }
+        return RESULT_UNKNOWN;
+    }
+
+    /**
+     * writes the game in PGN: the tag pairs, a blank line, the movetext in lines of at most 80
+     * characters, and a blank line
+     * @param out where to write the game
+     * @throws IOException if the game cannot be written
+     */
+    public void write(Appendable out) throws IOException
+    {
+        for (Map.Entry<String,String> tag : tags.entrySet())
+        {
+            out.append('[').append(tag.getKey()).append(" \"")
+               .append(tag.getValue().replace("\\","\\\\").replace("\"","\\\"")).append("\"]\n");
+        }
+        out.append('\n');
+
+        int lineLength = 0;
+        for (String token : moveText.trim().split("\\s+"))
+        {
+            if ((lineLength > 0) && (lineLength + 1 + token.length() > MAX_LINE_LENGTH))
+            {
+                out.append('\n');
+                lineLength = 0;
+            }
+            if (lineLength > 0)
+            {
+                out.append(' ');
+                lineLength++;
+            }
+            out.append(token);
+            lineLength += token.length();
+        }
+        out.append("\n\n");
+    }
+
+    /**
+     * splits the movetext into its moves in standard algebraic notation<br>
+     * - move numbers, comments ({...} and ;...), variations ((...)), NAGs ($n) and the result are skipped
+     * @return moves of the main line, in order
+     */
+    public List<String> getSanMoves()
+    {
+        List<String> moves = new ArrayList<>();
+        int variationDepth = 0;
+        int length = moveText.length();
+        int index  = 0;
+        while (index < length)
+        {
+            char c = moveText.charAt(index);
+            if (c == '{')
+            {
+                int end = moveText.indexOf('}',index);
+                index = (end < 0) ? length : end + 1;
+            }
+            else if (c == ';')
+            {
+                int end = moveText.indexOf('\n',index);
+                index = (end < 0) ? length : end + 1;
+            }
+            else if (c == '(')
+            {
+                variationDepth++;
+                index++;
+            }
+            else if (c == ')')
+            {
+                variationDepth = Math.max(0,variationDepth-1);
+                index++;
+            }
+            else if (Character.isWhitespace(c))
+            {
+                index++;
+            }
+            else
+            {
+                int end = index;
+                while ((end < length) && !Character.isWhitespace(moveText.charAt(end)) && ("{}();".indexOf(moveText.charAt(end)) < 0))
+                {
+                    end++;
+                }
+                String token = moveText.substring(index,end);
+                index = end;
+                if (variationDepth > 0) continue;
+
+                token = stripMoveNumber(token);
+                if (token.isEmpty() || (token.charAt(0) == '$') || isResult(token)) continue;
+                moves.add(token);
+            }
+        }
+        return moves;
+    }
+
+    private static String stripMoveNumber(String token)
+    {
+        int start = 0;
+        while ((start < token.length()) && Character.isDigit(token.charAt(start)))
+        {
+            start++;
+        }
+        if ((start == 0) || (start == token.length()) || (token.charAt(start) != '.')) return token;
+        while ((start < token.length()) && (token.charAt(start) == '.'))
+        {
+            start++;
+        }
+        return token.substring(start);
+    }
+
+    private static boolean isResult(String token)
+    {
+        return RESULT_WHITE_WINS.equals(token) || RESULT_BLACK_WINS.equals(token)
+            || RESULT_DRAW.equals(token) || RESULT_UNKNOWN.equals(token);
+    }
+}
@@ -0,0 +1,106 @@
+package chess.notation;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams the games of a PGN file one at a time<br>
+ * - only the game being read is held in memory, so files of any size can be read<br>
+ * - files ending in .gz are decompressed as they are read<br>
+ * - a game is its tag pairs ([Name "Value"]) followed by its movetext; a new tag pair
+ *   after movetext starts the next game
+ *
+ * @author devang
+ */
+public class PgnReader implements Closeable {
+    private final BufferedReader reader;
+    private String               pendingLine = null;
+
+    public PgnReader(Reader reader)
+    {
+        this.reader = (reader instanceof BufferedReader) ? (BufferedReader)reader : new BufferedReader(reader);
+    }
+
+    /**
+     * opens a PGN file for reading
+     * @param pgnFile PGN file, optionally gzip-compressed (.gz)
+     * @return reader of the games in the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static PgnReader open(Path pgnFile) throws IOException
+    {
+        InputStream in = Files.newInputStream(pgnFile);
+        if (pgnFile.getFileName().toString().endsWith(".gz"))
+            in = new GZIPInputStream(in,1 << 16);
+        return new PgnReader(new BufferedReader(new InputStreamReader(in,StandardCharsets.ISO_8859_1),1 << 16));
+    }
+
+    /**
+     * reads the next game
+     * @return the next game, or null at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public PgnGame next() throws IOException
+    {
+        Map<String,String> tags = new LinkedHashMap<>();
+        StringBuilder moveText  = new StringBuilder();
+
+        String line;
+        while ((line = readLine()) != null)
+        {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("["))
+            {
+                if (moveText.length() > 0)
+                {
+                    pendingLine = line;
+                    break;
+                }
+                addTag(tags,trimmed);
+            }
+            else if (!trimmed.isEmpty() && !trimmed.startsWith("%"))
+            {
+                moveText.append(trimmed).append('\n');
+            }
+        }
+
+        if (tags.isEmpty() && (moveText.length() == 0)) return null;
+        return new PgnGame(tags,moveText.toString());
+    }
+
+    private String readLine() throws IOException
+    {
+        if (pendingLine != null)
+        {
+            String line = pendingLine;
+            pendingLine = null;
+            return line;
+        }
+        return reader.readLine();
+    }
+
+    private static void addTag(Map<String,String> tags, String line)
+    {
+        int nameEnd    = line.indexOf(' ');
+        int valueStart = line.indexOf('"');
+        int valueEnd   = line.lastIndexOf('"');
+        if ((nameEnd < 0) || (valueStart < 0) || (valueEnd <= valueStart)) return;
+        tags.put(line.substring(1,nameEnd),line.substring(valueStart+1,valueEnd).replace("\\\"","\""));
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+}
@@ -0,0 +1,434 @@
+package chess.openings;
+
+import chess.ChessBoardState;
+import chess.ChessGameHistory;
+import chess.ChessOpenings;
+import chess.ChessZobrist;
+import chess.moves.ChessMove;
+import chess.notation.ChessNotation;
+import chess.notation.PgnGame;
+import chess.notation.PgnReader;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import game.utility.Properties.PlayerColor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds an opening book (see ChessOpenings) from PGN files<br>
+ * - one thread streams the games, and parser threads replay them, recording the
+ *   position key, move and result of each of the first plies of every game<br>
+ * - each parser thread fills its own BookRecords buffer and writes it to disk as a
+ *   sorted run when full, so memory use does not grow with the number of games<br>
+ * - the runs are then merged (in several passes if there are many), summing the games
+ *   and points of each position and move, and the moves played often enough and scoring
+ *   well enough are written to the book, weighted by their points
+ *
+ * @author devang
+ */
+public class BookBuilder {
+    public static final int DEFAULT_MAX_PLY          = 24;
+    public static final int DEFAULT_MIN_GAMES        = 3;
+    public static final int DEFAULT_RECORDS_PER_RUN  = 1 << 20;
+    public static final int DEFAULT_MAX_MERGE_RUNS   = 128;
+    public static final double DEFAULT_MIN_SCORE     = 0.25;
+
+    private static final int GAMES_PER_BATCH = 256;
+
+    private int    maxPly         = DEFAULT_MAX_PLY;
+    private int    minGames       = DEFAULT_MIN_GAMES;
+    private double minScore       = DEFAULT_MIN_SCORE;
+    private int    numThreads     = Runtime.getRuntime().availableProcessors();
+    private int    recordsPerRun  = DEFAULT_RECORDS_PER_RUN;
+    private int    maxMergeRuns   = DEFAULT_MAX_MERGE_RUNS;
+    private Path   tempDirectory  = null;
+
+    private final Properties    properties  = Properties.init(Direction.UP,Direction.DOWN);
+    private final AtomicInteger runCounter  = new AtomicInteger();
+    private final AtomicLong    gamesRead   = new AtomicLong();
+    private final AtomicLong    gamesUsed   = new AtomicLong();
+    private final List<Path>    runFiles    = Collections.synchronizedList(new ArrayList<>());
+
+    public void setMaxPly(int maxPly)               { this.maxPly = maxPly; }
+    public void setMinGames(int minGames)           { this.minGames = minGames; }
+    public void setMinScore(double minScore)        { this.minScore = minScore; }
+    public void setNumThreads(int numThreads)       { this.numThreads = Math.max(1,numThreads); }
+    public void setRecordsPerRun(int recordsPerRun) { this.recordsPerRun = Math.max(1,recordsPerRun); }
+    public void setMaxMergeRuns(int maxMergeRuns)   { this.maxMergeRuns = Math.max(2,maxMergeRuns); }
+    public void setTempDirectory(Path directory)    { this.tempDirectory = directory; }
+
+    /**
+     * builds a book from PGN files
+     * @param pgnFiles PGN files (optionally .gz) of the games from which to build the book
+     * @param bookFile file to which to write the book
+     * @return number of entries written to the book
+     * @throws IOException if a file cannot be read or written
+     * @throws InterruptedException if the build is interrupted
+     */
+    public long build(List<Path> pgnFiles, Path bookFile) throws IOException, InterruptedException
+    {
+        Path runDirectory = (tempDirectory != null) ? Files.createTempDirectory(tempDirectory,"book-runs")
+                                                    : Files.createTempDirectory("book-runs");
+        try {
+            parseGames(pgnFiles,runDirectory);
+
+            String loggerMsg = "book games read: " + gamesRead.get() + ", used: " + gamesUsed.get() + ", runs: " + runFiles.size();
+            Logger.getLogger(BookBuilder.class.getName()).log(Level.INFO,loggerMsg);
+
+            List<Path> runs = mergePasses(new ArrayList<>(runFiles),runDirectory);
+            long numEntries = writeBook(runs,bookFile);
+
+            loggerMsg = "book entries written: " + numEntries + " to " + bookFile;
+            Logger.getLogger(BookBuilder.class.getName()).log(Level.INFO,loggerMsg);
+            return numEntries;
+        } finally {
+            deleteDirectory(runDirectory);
+        }
+    }
+
+    /* ---------------------------------- parsing ---------------------------------- */
+
+    private void parseGames(List<Path> pgnFiles, Path runDirectory) throws IOException, InterruptedException
+    {
+        BlockingQueue<List<PgnGame>> batches = new ArrayBlockingQueue<>(2*numThreads);
+        List<GameParser> parsers = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++)
+        {
+            GameParser parser = new GameParser(batches,runDirectory);
+            parsers.add(parser);
+            parser.start();
+        }
+
+        try {
+            List<PgnGame> batch = new ArrayList<>(GAMES_PER_BATCH);
+            for (Path pgnFile : pgnFiles)
+            {
+                try (PgnReader reader = PgnReader.open(pgnFile))
+                {
+                    PgnGame game;
+                    while ((game = reader.next()) != null)
+                    {
+                        gamesRead.incrementAndGet();
+                        batch.add(game);
+                        if (batch.size() == GAMES_PER_BATCH)
+                        {
+                            batches.put(batch);
+                            batch = new ArrayList<>(GAMES_PER_BATCH);
+                        }
+                    }
+                }
+            }
+            if (!batch.isEmpty()) batches.put(batch);
+        } finally {
+            for (int i = 0; i < numThreads; i++)
+            {
+                batches.put(Collections.emptyList());
+            }
+            for (GameParser parser : parsers)
+            {
+                parser.join();
+            }
+        }
+
+        for (GameParser parser : parsers)
+        {
+            if (parser.failure != null) throw parser.failure;
+        }
+    }
+
+    private class GameParser extends Thread {
+        private final BlockingQueue<List<PgnGame>> batches;
+        private final Path                         runDirectory;
+        private final BookRecords                  records;
+        private IOException                        failure = null;
+
+        GameParser(BlockingQueue<List<PgnGame>> batches, Path runDirectory)
+        {
+            super("book-parser");
+            this.batches      = batches;
+            this.runDirectory = runDirectory;
+            this.records      = new BookRecords(recordsPerRun);
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                List<PgnGame> batch;
+                while (!(batch = batches.take()).isEmpty())
+                {
+                    if (failure != null) continue;
+                    for (PgnGame game : batch)
+                    {
+                        try {
+                            addGame(game);
+                        } catch (RuntimeException e) {
+                            String loggerMsg = "book game skipped: " + game.getTags();
+                            Logger.getLogger(BookBuilder.class.getName()).log(Level.FINE,loggerMsg,e);
+                        }
+                    }
+                }
+                if ((failure == null) && !records.isEmpty()) writeRun();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private void addGame(PgnGame game) throws IOException
+        {
+            int whitePoints;
+            switch (game.getResult())
+            {
+                case PgnGame.RESULT_WHITE_WINS: whitePoints = 2; break;
+                case PgnGame.RESULT_DRAW:       whitePoints = 1; break;
+                case PgnGame.RESULT_BLACK_WINS: whitePoints = 0; break;
+                default: return;
+            }
+            gamesUsed.incrementAndGet();
+
+            ChessBoardState boardState = new ChessBoardState();
+            boardState.setStandardPieces(properties);
+            ChessGameHistory gameHistory = new ChessGameHistory();
+            PlayerColor colorToMove = PlayerColor.WHITE;
+
+            int ply = 0;
+            for (String san : game.getSanMoves())
+            {
+                if (ply++ >= maxPly) break;
+                ChessMove move = ChessNotation.findSanMove(san,boardState,colorToMove,gameHistory,properties);
+                if (move == null) break;
+
+                long key = ChessZobrist.getKey(boardState,colorToMove,gameHistory);
+                int movePoints = (colorToMove == PlayerColor.WHITE) ? whitePoints : 2 - whitePoints;
+                records.add(key,ChessOpenings.encodeMove(move,properties),movePoints);
+                if (records.isFull()) writeRun();
+
+                boardState.makeMove(move,gameHistory);
+                colorToMove = Properties.oppositeColor(colorToMove);
+            }
+        }
+
+        private void writeRun() throws IOException
+        {
+            Path runFile = runDirectory.resolve("run-" + runCounter.getAndIncrement() + ".bin");
+            records.writeRun(runFile);
+            runFiles.add(runFile);
+        }
+    }
+
+    /* ---------------------------------- merging ---------------------------------- */
+
+    private interface RecordSink {
+        void accept(long key, int move, int games, int points) throws IOException;
+    }
+
+    private static class RunReader {
+        private final DataInputStream data;
+        private long key;
+        private int  move;
+        private int  games;
+        private int  points;
+
+        RunReader(Path runFile) throws IOException
+        {
+            InputStream in = Files.newInputStream(runFile);
+            data = new DataInputStream(new BufferedInputStream(in,1 << 16));
+        }
+
+        boolean advance() throws IOException
+        {
+            try {
+                key    = data.readLong();
+                move   = data.readShort() & 0xFFFF;
+                games  = data.readInt();
+                points = data.readInt();
+                return true;
+            } catch (EOFException e) {
+                data.close();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * merges runs in groups until few enough are left to be merged at once
+     */
+    private List<Path> mergePasses(List<Path> runs, Path runDirectory) throws IOException
+    {
+        while (runs.size() > maxMergeRuns)
+        {
+            List<Path> mergedRuns = new ArrayList<>();
+            for (int start = 0; start < runs.size(); start += maxMergeRuns)
+            {
+                List<Path> group = runs.subList(start,Math.min(runs.size(),start+maxMergeRuns));
+                Path mergedRun = runDirectory.resolve("run-" + runCounter.getAndIncrement() + ".bin");
+                try (OutputStream out = Files.newOutputStream(mergedRun);
+                     DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out,1 << 16)))
+                {
+                    merge(group,(key,move,games,points) -> BookRecords.writeRecord(data,key,move,games,points));
+                }
+                for (Path run : group)
+                {
+                    Files.delete(run);
+                }
+                mergedRuns.add(mergedRun);
+            }
+            runs = mergedRuns;
+        }
+        return runs;
+    }
+
+    /**
+     * merges sorted runs into one sorted sequence, summing equal records
+     */
+    private static void merge(List<Path> runs, RecordSink sink) throws IOException
+    {
+        PriorityQueue<RunReader> readers = new PriorityQueue<>(Math.max(1,runs.size()),
+            (r1,r2) -> BookRecords.compare(r1.key,r1.move,r2.key,r2.move));
+        for (Path run : runs)
+        {
+            RunReader reader = new RunReader(run);
+            if (reader.advance()) readers.add(reader);
+        }
+
+        while (!readers.isEmpty())
+        {
+            RunReader reader = readers.poll();
+            long key    = reader.key;
+            int  move   = reader.move;
+            int  games  = reader.games;
+            int  points = reader.points;
+            if (reader.advance()) readers.add(reader);
+
+            while (!readers.isEmpty() && (readers.peek().key == key) && (readers.peek().move == move))
+            {
+                RunReader next = readers.poll();
+                games  += next.games;
+                points += next.points;
+                if (next.advance()) readers.add(next);
+            }
+            sink.accept(key,move,games,points);
+        }
+    }
+
+    /* ---------------------------------- writing ---------------------------------- */
+
+    private long writeBook(List<Path> runs, Path bookFile) throws IOException
+    {
+        BookWriter writer = new BookWriter(bookFile);
+        try {
+            merge(runs,writer);
+            writer.flushPosition();
+        } finally {
+            writer.close();
+        }
+        return writer.numEntries;
+    }
+
+    /**
+     * writes the moves of each position that pass the filters, best first,
+     * with their points as weights (scaled down if a weight would not fit in 16 bits)
+     */
+    private class BookWriter implements RecordSink {
+        private final DataOutputStream data;
+        private long  numEntries  = 0;
+        private long  positionKey = 0;
+        private int   numMoves    = 0;
+        private int[] moves       = new int[16];
+        private int[] weights     = new int[16];
+
+        BookWriter(Path bookFile) throws IOException
+        {
+            OutputStream out = Files.newOutputStream(bookFile);
+            data = new DataOutputStream(new BufferedOutputStream(out,1 << 16));
+        }
+
+        @Override
+        public void accept(long key, int move, int games, int points) throws IOException
+        {
+            if ((numMoves > 0) && (key != positionKey)) flushPosition();
+            positionKey = key;
+
+            if ((games < minGames) || (points < minScore*2*games)) return;
+            if (numMoves == moves.length)
+            {
+                moves   = Arrays.copyOf(moves,2*numMoves);
+                weights = Arrays.copyOf(weights,2*numMoves);
+            }
+            moves[numMoves]   = move;
+            weights[numMoves] = Math.max(1,points);
+            numMoves++;
+        }
+
+        void flushPosition() throws IOException
+        {
+            int maxWeight = 0;
+            for (int i = 0; i < numMoves; i++)
+            {
+                maxWeight = Math.max(maxWeight,weights[i]);
+            }
+            double scale = (maxWeight > 0xFFFF) ? (double)0xFFFF/maxWeight : 1.0;
+
+            // selection by weight: positions have few book moves
+            for (int written = 0; written < numMoves; written++)
+            {
+                int best = written;
+                for (int i = written + 1; i < numMoves; i++)
+                {
+                    if (weights[i] > weights[best]) best = i;
+                }
+                int move   = moves[best];   moves[best]   = moves[written];   moves[written]   = move;
+                int weight = weights[best]; weights[best] = weights[written]; weights[written] = weight;
+
+                data.writeLong(positionKey);
+                data.writeShort(move);
+                data.writeShort(Math.max(1,(int)(weight*scale)));
+                data.writeInt(0);
+                numEntries++;
+            }
+            numMoves = 0;
+        }
+
+        void close() throws IOException
+        {
+            data.close();
+        }
+    }
+
+    private static void deleteDirectory(Path directory)
+    {
+        try (Stream<Path> files = Files.list(directory))
+        {
+            for (Path file : (Iterable<Path>)files::iterator)
+            {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            String loggerMsg = "book run files could not be deleted: " + directory;
+            Logger.getLogger(BookBuilder.class.getName()).log(Level.WARNING,loggerMsg,e);
+        }
+    }
+}
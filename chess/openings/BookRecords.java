@@ -0,0 +1,152 @@
+package chess.openings;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * fixed-size buffer of (position key, book move, score) records for one parsing thread<br>
+ * - records are held in primitive arrays, not objects, so a buffer of millions of records
+ *   costs a few bytes per record<br>
+ * - when the buffer is full it is sorted by key and move, equal records are summed,
+ *   and the result is written to disk as a sorted run for BookBuilder to merge<br>
+ * - a run record is: key (8 bytes), move (2 bytes), games (4 bytes), points (4 bytes),
+ *   where a win is 2 points, a draw 1 point and a loss none, for the player making the move
+ *
+ * @author devang
+ */
+public class BookRecords {
+    public static final int RECORD_SIZE = 18;
+
+    private final long[] keys;
+    private final int[]  moves;
+    private final int[]  points;
+    private int          size = 0;
+
+    public BookRecords(int capacity)
+    {
+        keys   = new long[capacity];
+        moves  = new int[capacity];
+        points = new int[capacity];
+    }
+
+    public boolean isFull()
+    {
+        return size == keys.length;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void add(long key, int move, int movePoints)
+    {
+        keys[size]   = key;
+        moves[size]  = move;
+        points[size] = movePoints;
+        size++;
+    }
+
+    /**
+     * sorts the buffered records, writes them (summed by key and move) as a run, and empties the buffer
+     * @param runFile file to which to write the run
+     * @throws IOException if the run cannot be written
+     */
+    public void writeRun(Path runFile) throws IOException
+    {
+        sort(0,size-1);
+        try (OutputStream out = Files.newOutputStream(runFile);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out,1 << 16)))
+        {
+            int index = 0;
+            while (index < size)
+            {
+                long key         = keys[index];
+                int  move        = moves[index];
+                int  games       = 0;
+                int  totalPoints = 0;
+                while ((index < size) && (keys[index] == key) && (moves[index] == move))
+                {
+                    games++;
+                    totalPoints += points[index];
+                    index++;
+                }
+                writeRecord(data,key,move,games,totalPoints);
+            }
+        }
+        size = 0;
+    }
+
+    public static void writeRecord(DataOutputStream data, long key, int move, int games, int points) throws IOException
+    {
+        data.writeLong(key);
+        data.writeShort(move);
+        data.writeInt(games);
+        data.writeInt(points);
+    }
+
+    /**
+     * orders two records: by key as an unsigned number (the order of the book file), then by move
+     */
+    public static int compare(long key1, int move1, long key2, int move2)
+    {
+        int order = Long.compareUnsigned(key1,key2);
+        return (order != 0) ? order : Integer.compare(move1,move2);
+    }
+
+    private int compare(int i, int j)
+    {
+        return compare(keys[i],moves[i],keys[j],moves[j]);
+    }
+
+    private void sort(int low, int high)
+    {
+        while (high - low > 16)
+        {
+            int middle = (low + high) >>> 1;
+            if (compare(middle,low)  < 0) swap(middle,low);
+            if (compare(high,low)    < 0) swap(high,low);
+            if (compare(high,middle) < 0) swap(high,middle);
+            long pivotKey  = keys[middle];
+            int  pivotMove = moves[middle];
+
+            int i = low;
+            int j = high;
+            while (i <= j)
+            {
+                while (compare(keys[i],moves[i],pivotKey,pivotMove) < 0) i++;
+                while (compare(keys[j],moves[j],pivotKey,pivotMove) > 0) j--;
+                if (i <= j) swap(i++,j--);
+            }
+            // recurse into the smaller part, loop on the larger
+            if (j - low < high - i)
+            {
+                sort(low,j);
+                low = i;
+            }
+            else
+            {
+                sort(i,high);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++)
+        {
+            for (int j = i; (j > low) && (compare(j,j-1) < 0); j--)
+            {
+                swap(j,j-1);
+            }
+        }
+    }
+
+    private void swap(int i, int j)
+    {
+        long key  = keys[i];   keys[i]   = keys[j];   keys[j]   = key;
+        int  move = moves[i];  moves[i]  = moves[j];  moves[j]  = move;
+        int  pts  = points[i]; points[i] = points[j]; points[j] = pts;
+    }
+}
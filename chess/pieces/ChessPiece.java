@@ -11,6 +11,8 @@ import game.utility.Properties.PlayerColor;
 import static game.utility.Properties.Direction.UP;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.BiFunction;
 
@@ -20,9 +22,21 @@ import java.util.function.BiFunction;
  * @author devang
  */
 public abstract class ChessPiece {    
-    public abstract List<ChessMove> getValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory);
+    public abstract void       addValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory, List<ChessMove> validMoves);
     public abstract ChessPiece createCopy();
     
+    // ray directions are shared, so move generation and check tests do not build these lists on every call
+    protected static final List<BiFunction<Location,Integer,Location>> DIAGONAL_DIRECTIONS =
+        Collections.unmodifiableList(Arrays.<BiFunction<Location,Integer,Location>>asList(
+            Location::upLeftX, Location::upRightX, Location::downLeftX, Location::downRightX));
+    protected static final List<BiFunction<Location,Integer,Location>> STRAIGHT_DIRECTIONS =
+        Collections.unmodifiableList(Arrays.<BiFunction<Location,Integer,Location>>asList(
+            Location::leftX, Location::rightX, Location::upX, Location::downX));
+    protected static final List<BiFunction<Location,Integer,Location>> ALL_DIRECTIONS =
+        Collections.unmodifiableList(Arrays.<BiFunction<Location,Integer,Location>>asList(
+            Location::leftX, Location::rightX, Location::upX, Location::downX,
+            Location::upLeftX, Location::upRightX, Location::downLeftX, Location::downRightX));
+    
     private   ChessMove       mostRecentMove;
     protected Properties properties;
     private   int             numMovesMade;
@@ -118,6 +132,21 @@ public abstract class ChessPiece {
         return getValidMoves(location,boardState,null);
     }
     
+    /**
+     * gets a newly-created list of valid moves for the piece at the given location on the given board state<br>
+     * - searches should call addValidMoves with a reused buffer instead
+     * @param location location to a piece on the board for which to determine all valid moves
+     * @param boardState state of the board to analyze for current valid moves
+     * @param gameHistory history of the game, used for en-passant
+     * @return List of valid moves for the piece at the given location on the given board state
+     */
+    public List<ChessMove> getValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory)
+    {
+        List<ChessMove> validMoves = new ArrayList<>();
+        addValidMoves(location,boardState,gameHistory,validMoves);
+        return validMoves;
+    }
+    
     /**
      * determines if a move for the piece at startLocation argument can legally move to nextLocation argument
      * @param startLocation location of a piece to evaluate a move
@@ -131,18 +160,17 @@ public abstract class ChessPiece {
         PlayerColor opponentColor = Properties.oppositeColor(playerColor);
         
         if ((startLocation == null) || (nextLocation == null)) return null;
+        boolean isCapture = false;
         if (!boardState.isEmpty(nextLocation))
         {
             ChessPiece piece = boardState.getPiece(nextLocation);
             if (piece.getColor() == playerColor)
                 return null;
+            isCapture = true;
         }
         
-        ChessMove newMove = new MoveRegular(startLocation,nextLocation);
-        ChessBoardState tempBoardState = ChessBoardState.copy(boardState);
-        newMove.commitMove(tempBoardState);
-        if (!tempBoardState.check(playerColor))
-            return newMove;
+        if (!boardState.checkAfterMove(startLocation,nextLocation,nextLocation))
+            return new MoveRegular(startLocation,nextLocation,isCapture);
         
         return null;
     }
@@ -160,16 +188,14 @@ public abstract class ChessPiece {
         Direction playerDirection = properties.getColorDirection(playerColor);
         Direction opponentDirection = properties.getColorDirection(opponentColor);
         
-        List<Location> attackLocations = new ArrayList<>();
+        Location[] attackLocations;
         if (properties.getColorDirection(pieceColor) == UP)
         {
-            attackLocations.add(Location.upLeft(location));
-            attackLocations.add(Location.upRight(location));
+            attackLocations = new Location[] { Location.upLeft(location), Location.upRight(location) };
         }
         else // Properties.getColorDirection(pieceColor) == DOWN
         {
-            attackLocations.add(Location.downLeft(location));
-            attackLocations.add(Location.downRight(location));
+            attackLocations = new Location[] { Location.downLeft(location), Location.downRight(location) };
         }
         
         for (Location attackLocation : attackLocations)
@@ -242,15 +268,8 @@ public abstract class ChessPiece {
         Location startLocation;
         Location attackLocation;
 
-        List<BiFunction<Location,Integer,Location>> locationDirections;
-        locationDirections = new ArrayList<>();
-        locationDirections.add(Location::upLeftX);
-        locationDirections.add(Location::upRightX);
-        locationDirections.add(Location::downLeftX);
-        locationDirections.add(Location::downRightX);
-
         startLocation = Location.copy(location);
-        for (BiFunction<Location,Integer,Location> function : locationDirections)
+        for (BiFunction<Location,Integer,Location> function : DIAGONAL_DIRECTIONS)
         {
             int next = 1;
             attackLocation = nextLocation(startLocation,next,function);
@@ -286,15 +305,8 @@ public abstract class ChessPiece {
         Location startLocation;
         Location protectionLocation;
 
-        List<BiFunction<Location,Integer,Location>> locationDirections;
-        locationDirections = new ArrayList<>();
-        locationDirections.add(Location::upLeftX);
-        locationDirections.add(Location::upRightX);
-        locationDirections.add(Location::downLeftX);
-        locationDirections.add(Location::downRightX);
-
         startLocation = Location.copy(location);
-        for (BiFunction<Location,Integer,Location> function : locationDirections)
+        for (BiFunction<Location,Integer,Location> function : DIAGONAL_DIRECTIONS)
         {
             int next = 1;
             protectionLocation = nextLocation(startLocation,next,function);
@@ -400,15 +412,8 @@ public abstract class ChessPiece {
         Location startLocation;
         Location attackLocation;
 
-        List<BiFunction<Location,Integer,Location>> locationDirections;
-        locationDirections = new ArrayList<>();
-        locationDirections.add(Location::leftX);
-        locationDirections.add(Location::rightX);
-        locationDirections.add(Location::upX);
-        locationDirections.add(Location::downX);
-
         startLocation = Location.copy(location);
-        for (BiFunction<Location,Integer,Location> function : locationDirections)
+        for (BiFunction<Location,Integer,Location> function : STRAIGHT_DIRECTIONS)
         {
             int next = 1;
             attackLocation = nextLocation(startLocation,next,function);
@@ -444,15 +449,8 @@ public abstract class ChessPiece {
         Location startLocation;
         Location protectionLocation;
 
-        List<BiFunction<Location,Integer,Location>> locationDirections;
-        locationDirections = new ArrayList<>();
-        locationDirections.add(Location::leftX);
-        locationDirections.add(Location::rightX);
-        locationDirections.add(Location::upX);
-        locationDirections.add(Location::downX);
-
         startLocation = Location.copy(location);
-        for (BiFunction<Location,Integer,Location> function : locationDirections)
+        for (BiFunction<Location,Integer,Location> function : STRAIGHT_DIRECTIONS)
         {
             int next = 1;
             protectionLocation = nextLocation(startLocation,next,function);
@@ -488,19 +486,8 @@ public abstract class ChessPiece {
         Location startLocation;
         Location attackLocation;
 
-        List<BiFunction<Location,Integer,Location>> locationDirections;
-        locationDirections = new ArrayList<>();
-        locationDirections.add(Location::leftX);
-        locationDirections.add(Location::rightX);
-        locationDirections.add(Location::upX);
-        locationDirections.add(Location::downX);
-        locationDirections.add(Location::upLeftX);
-        locationDirections.add(Location::upRightX);
-        locationDirections.add(Location::downLeftX);
-        locationDirections.add(Location::downRightX);
-
         startLocation = Location.copy(location);
-        for (BiFunction<Location,Integer,Location> function : locationDirections)
+        for (BiFunction<Location,Integer,Location> function : ALL_DIRECTIONS)
         {
             int next = 1;
             attackLocation = nextLocation(startLocation,next,function);
@@ -536,19 +523,8 @@ public abstract class ChessPiece {
         Location startLocation;
         Location protectionLocation;
 
-        List<BiFunction<Location,Integer,Location>> locationDirections;
-        locationDirections = new ArrayList<>();
-        locationDirections.add(Location::leftX);
-        locationDirections.add(Location::rightX);
-        locationDirections.add(Location::upX);
-        locationDirections.add(Location::downX);
-        locationDirections.add(Location::upLeftX);
-        locationDirections.add(Location::upRightX);
-        locationDirections.add(Location::downLeftX);
-        locationDirections.add(Location::downRightX);
-
         startLocation = Location.copy(location);
-        for (BiFunction<Location,Integer,Location> function : locationDirections)
+        for (BiFunction<Location,Integer,Location> function : ALL_DIRECTIONS)
         {
             int next = 1;
             protectionLocation = nextLocation(startLocation,next,function);
@@ -6,7 +6,6 @@ import chess.moves.ChessMove;
 import game.utility.Location;
 import game.utility.Properties;
 import game.utility.Properties.PlayerColor;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiFunction;
 
@@ -23,21 +22,20 @@ public class PieceBishop extends ChessPiece {
     }
     
     /**
-     * gets a list of valid moves for the piece at the given location on the given board state<br>
+     * adds the valid moves for the piece at the given location on the given board state to a list<br>
      * - the piece at this location will be this bishop<br>
      * @param location location for this bishop on the board for which to determine all valid moves
      * @param boardState state of the board to analyze for current valid moves
      * @param gameHistory not-yet implemented, but intended for algebraic-chess-notation game recording
-     * @return List of valid moves for this bishop at the given location on the given board state
+     * @param validMoves list to which the valid moves for this bishop are appended
      */
     @Override
-    public List<ChessMove> getValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory)
+    public void addValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory, List<ChessMove> validMoves)
     {
-        List<ChessMove> validMoves = new ArrayList<>();
-        if (location == null) return validMoves;
+        if (location == null) return;
         
         ChessPiece thisPiece = boardState.getPiece(location);
-        if (!(thisPiece instanceof PieceBishop)) return validMoves;
+        if (!(thisPiece instanceof PieceBishop)) return;
         
         PlayerColor playerColor = thisPiece.getColor();
         PlayerColor opponentColor = Properties.oppositeColor(playerColor);
@@ -45,15 +43,8 @@ public class PieceBishop extends ChessPiece {
         Location startLocation;
         Location nextLocation;
 
-        List<BiFunction<Location,Integer,Location>> locationDirections;
-        locationDirections = new ArrayList<>();
-        locationDirections.add(Location::upLeftX);
-        locationDirections.add(Location::upRightX);
-        locationDirections.add(Location::downLeftX);
-        locationDirections.add(Location::downRightX);
-
         startLocation = Location.copy(location);
-        for (BiFunction<Location,Integer,Location> function : locationDirections)
+        for (BiFunction<Location,Integer,Location> function : DIAGONAL_DIRECTIONS)
         {
             int next = 1;
             nextLocation = nextLocation(startLocation,next,function);
@@ -64,7 +55,7 @@ public class PieceBishop extends ChessPiece {
                 {
                     validMoves.add(newMove);
                 }
-                nextLocation = nextLocation(startLocation,next++,function);
+                nextLocation = nextLocation(startLocation,++next,function);
             }
             if ((nextLocation != null) && !boardState.isEmpty(nextLocation))
             {
@@ -75,8 +66,6 @@ public class PieceBishop extends ChessPiece {
                 }
             }
         }
-        
-        return validMoves;
     }
         
     /**
@@ -1,5 +1,6 @@
 package chess.pieces;
 
+import chess.ChessBitboards;
 import chess.ChessBoardState;
 import chess.ChessGameHistory;
 import chess.moves.ChessMove;
@@ -8,8 +9,6 @@ import chess.moves.MoveRegular;
 import game.utility.Location;
 import game.utility.Properties;
 import game.utility.Properties.PlayerColor;
-import static game.utility.Properties.NUM_COLS;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -26,20 +25,19 @@ public class PieceKing extends ChessPiece {
     }
         
     /**
-     * gets a list of valid moves for the piece at the given location on the given board state<br>
+     * adds the valid moves for the piece at the given location on the given board state to a list<br>
      * - the piece at this location will be this king<br>
      * @param location location for this king on the board for which to determine all valid moves
      * @param boardState state of the board to analyze for current valid moves
      * @param gameHistory not-yet implemented, but intended for algebraic-chess-notation game recording
-     * @return List of valid moves for this king at the given location on the given board state
+     * @param validMoves list to which the valid moves for this king are appended
      */
     @Override
-    public List<ChessMove> getValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory)
+    public void addValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory, List<ChessMove> validMoves)
     {
-        List<ChessMove> validMoves = new ArrayList<>();
-        if (location == null) return validMoves;
+        if (location == null) return;
         ChessPiece thisPiece = boardState.getPiece(location);
-        if (!(thisPiece instanceof PieceKing)) return validMoves;
+        if (!(thisPiece instanceof PieceKing)) return;
         PlayerColor playerColor = thisPiece.getColor();
         PlayerColor opponentColor = Properties.oppositeColor(playerColor);
         
@@ -73,7 +71,7 @@ public class PieceKing extends ChessPiece {
         newLocation = Location.left2(location);
         kingRank = Location.getRow(location);
         rookFile = 0;
-        rookLocation = Location.at(rookFile,kingRank);
+        rookLocation = location.getGeometry().getLocation(rookFile,kingRank);
         rook = null;
         if (!boardState.isEmpty(rookLocation))
             rook = (ChessPiece)boardState.getPiece(rookLocation);
@@ -90,8 +88,8 @@ public class PieceKing extends ChessPiece {
         kingLocation = Location.copy(location);
         newLocation = Location.right2(location);
         kingRank = Location.getRow(location);
-        rookFile = NUM_COLS - 1;
-        rookLocation = Location.at(rookFile,kingRank);
+        rookFile = location.getGeometry().getNumCols() - 1;
+        rookLocation = location.getGeometry().getLocation(rookFile,kingRank);
         rook = null;
         if (!boardState.isEmpty(rookLocation))
             rook = (ChessPiece)boardState.getPiece(rookLocation);
@@ -104,7 +102,6 @@ public class PieceKing extends ChessPiece {
             }
         }
 
-        return validMoves;
     }
     
     /**
@@ -138,23 +135,7 @@ public class PieceKing extends ChessPiece {
             if (!boardState.isEmpty(leftLocations[i])) return null;
         }
         
-        ChessMove newMove;
-        ChessBoardState tempBoardState;
-        
-        tempBoardState = ChessBoardState.copy(boardState);
-        if (tempBoardState.check(playerColor))
-            return null;
-        
-        newMove = new MoveRegular(kingLocation,leftLocations[1]);
-        tempBoardState = ChessBoardState.copy(boardState);
-        newMove.commitMove(tempBoardState);
-        if (tempBoardState.check(playerColor))
-            return null;
-        
-        newMove = new MoveRegular(kingLocation,leftLocations[2]);
-        tempBoardState = ChessBoardState.copy(boardState);
-        newMove.commitMove(tempBoardState);
-        if (tempBoardState.check(playerColor))
+        if (isCastlingPathAttacked(kingLocation,leftLocations,playerColor,boardState))
             return null;
         
         Location newRookLocation = Location.left(kingLocation);
@@ -194,23 +175,7 @@ public class PieceKing extends ChessPiece {
             if (!boardState.isEmpty(rightLocations[i])) return null;
         }
         
-        ChessMove newMove;
-        ChessBoardState tempBoardState;
-
-        tempBoardState = ChessBoardState.copy(boardState);
-        if (tempBoardState.check(playerColor))
-            return null;
-       
-        newMove = new MoveRegular(kingLocation,rightLocations[1]);
-        tempBoardState = ChessBoardState.copy(boardState);
-        newMove.commitMove(tempBoardState);
-        if (tempBoardState.check(playerColor))
-            return null;
-        
-        newMove = new MoveRegular(kingLocation,rightLocations[2]);
-        tempBoardState = ChessBoardState.copy(boardState);
-        newMove.commitMove(tempBoardState);
-        if (tempBoardState.check(playerColor))
+        if (isCastlingPathAttacked(kingLocation,rightLocations,playerColor,boardState))
             return null;
         
         Location newRookLocation = Location.right(kingLocation);
@@ -219,6 +184,43 @@ public class PieceKing extends ChessPiece {
         return moveCastle;
     }
 
+    /**
+     * determines if the king is in check, or would pass through or land in check, when castling<br>
+     * - on a standard board, the three squares are tested against the opponent's attacks at once;
+     *   a sliding piece attacking a square beyond the king also attacks the king's own square<br>
+     * - otherwise the king is moved one and two squares on copies of the board, and tested in check
+     * @param kingLocation present location of this king
+     * @param castleLocations locations from the king toward the rook (the king's first)
+     * @param playerColor color of this king
+     * @param boardState state of the board to analyze for this castling
+     * @return true if castling is not allowed because of check
+     */
+    private boolean isCastlingPathAttacked(Location kingLocation, Location[] castleLocations, PlayerColor playerColor, ChessBoardState boardState)
+    {
+        ChessBitboards bitboards = boardState.getBitboards();
+        if (bitboards != null)
+        {
+            long attacked = bitboards.getAttacks(ChessBitboards.getColorIndex(Properties.oppositeColor(playerColor)));
+            for (int i = 0; i <= 2; i++)
+            {
+                if ((attacked & (1L << bitboards.getSquare(castleLocations[i]))) != 0) return true;
+            }
+            return false;
+        }
+        
+        if (boardState.check(playerColor))
+            return true;
+        for (int i = 1; i <= 2; i++)
+        {
+            ChessMove newMove = new MoveRegular(kingLocation,castleLocations[i]);
+            ChessBoardState tempBoardState = ChessBoardState.copy(boardState);
+            newMove.commitMove(tempBoardState);
+            if (tempBoardState.check(playerColor))
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Creates a new king from deep-copy of this
      * @return deep-copy of this king
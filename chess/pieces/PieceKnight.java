@@ -6,7 +6,6 @@ import chess.moves.ChessMove;
 import game.utility.Location;
 import game.utility.Properties;
 import game.utility.Properties.PlayerColor;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -22,20 +21,19 @@ public class PieceKnight extends ChessPiece {
     }
     
     /**
-     * gets a list of valid moves for the piece at the given location on the given board state<br>
+     * adds the valid moves for the piece at the given location on the given board state to a list<br>
      * - the piece at this location will be this knight<br>
      * @param location location for this knight on the board for which to determine all valid moves
      * @param boardState state of the board to analyze for current valid moves
      * @param gameHistory not-yet implemented, but intended for algebraic-chess-notation game recording
-     * @return List of valid moves for this knight at the given location on the given board state
+     * @param validMoves list to which the valid moves for this knight are appended
      */
     @Override
-    public List<ChessMove> getValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory)
+    public void addValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory, List<ChessMove> validMoves)
     {
-        List<ChessMove> validMoves = new ArrayList<>();
-        if (location == null) return validMoves;
+        if (location == null) return;
         ChessPiece thisPiece = boardState.getPiece(location);
-        if (!(thisPiece instanceof PieceKnight)) return validMoves;
+        if (!(thisPiece instanceof PieceKnight)) return;
         PlayerColor playerColor = thisPiece.getColor();
         PlayerColor opponentColor = Properties.oppositeColor(playerColor);
         
@@ -60,7 +58,6 @@ public class PieceKnight extends ChessPiece {
             }
         }
         
-        return validMoves;
     }
         
     /**
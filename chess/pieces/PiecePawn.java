@@ -11,7 +11,6 @@ import game.utility.Properties;
 import game.utility.Properties.PlayerColor;
 import static game.utility.Properties.Direction.UP;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -37,14 +36,13 @@ public class PiecePawn extends ChessPiece {
     {        
         PlayerColor playerColor = boardState.getPiece(startLocation).getColor();
 
-        if (nextLocation != null)
+        // a pawn taken en passant has just passed over the (empty) destination
+        if ((nextLocation != null) && boardState.isEmpty(nextLocation))
         {
-            ChessMove newMove = new MoveEnPassant(startLocation,nextLocation);
-            ChessBoardState tempBoardState = ChessBoardState.copy(boardState);
-            newMove.commitMove(tempBoardState);
-            if (!tempBoardState.check(playerColor))
+            Location captureLocation = startLocation.getGeometry().getLocation(Location.getCol(nextLocation),Location.getRow(startLocation));
+            if (!boardState.checkAfterMove(startLocation,nextLocation,captureLocation))
             {
-                return newMove;
+                return new MoveEnPassant(startLocation,nextLocation);
             }
         }
         
@@ -87,17 +85,13 @@ public class PiecePawn extends ChessPiece {
             } 
             else
             {
-                newMove = new MoveRegular(startLocation,nextLocation);
+                newMove = new MoveRegular(startLocation,nextLocation,!boardState.isEmpty(nextLocation));
             }
-                
-            ChessBoardState tempBoardState = ChessBoardState.copy(boardState);
             
-            if (newMove != null)
-            {
-                newMove.commitMove(tempBoardState);
-            }
+            if (newMove == null)
+                return null;
             
-            if (!tempBoardState.check(playerColor))
+            if (!boardState.checkAfterMove(startLocation,nextLocation,nextLocation))
             {
                 return newMove;
             }
@@ -107,7 +101,7 @@ public class PiecePawn extends ChessPiece {
     }
     
     /**
-     * gets a list of valid moves for the piece at the given location on the given board state<br>
+     * adds the valid moves for the piece at the given location on the given board state to a list<br>
      * - the piece at this location will be this pawn<br>
      * - calls to validate en-passant<br>
      * - calls to validate two-space move<br>
@@ -116,39 +110,37 @@ public class PiecePawn extends ChessPiece {
      * @param location location for this pawn on the board for which to determine all valid moves
      * @param boardState state of the board to analyze for current valid moves
      * @param gameHistory not-yet implemented, but intended for algebraic-chess-notation game recording
-     * @return List of valid moves for this pawn at the given location on the given board state
+     * @param validMoves list to which the valid moves for this pawn are appended
      */
     @Override
-    public List<ChessMove> getValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory)
+    public void addValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory, List<ChessMove> validMoves)
     {
-        List<ChessMove> validMoves = new ArrayList<>();
-        if (location == null) return validMoves;
+        if (location == null) return;
         ChessPiece thisPiece = boardState.getPiece(location);
-        if (!(thisPiece instanceof PiecePawn)) return validMoves;
+        if (!(thisPiece instanceof PiecePawn)) return;
         PlayerColor playerColor = thisPiece.getColor();
         PlayerColor opponentColor = Properties.oppositeColor(playerColor);
         
         Location startLocation;
         ChessMove newMove;
         startLocation = Location.copy(location);
-        List<Location> moveLocations = new ArrayList<>();
-        List<Location> captureLocations = new ArrayList<>();
+        Location[] moveLocations;
+        Location[] captureLocations;
+        boolean    canMoveTwo = (getMostRecentMove() == null) || (getNumMovesMade() == 0);
         
         if (properties.getColorDirection(pieceColor) == UP)
         {
-            moveLocations.add(Location.up(startLocation));
-            if ((getMostRecentMove() == null) || (getNumMovesMade() == 0))
-                moveLocations.add(Location.up2(startLocation));
-            captureLocations.add(Location.left(Location.up(startLocation)));
-            captureLocations.add(Location.right(Location.up(startLocation)));
+            moveLocations    = new Location[] { Location.up(startLocation),
+                                                canMoveTwo ? Location.up2(startLocation) : null };
+            captureLocations = new Location[] { Location.left(Location.up(startLocation)),
+                                                Location.right(Location.up(startLocation)) };
         }
         else // Properties.getColorDirection(pieceColor) == DOWN
         {
-            moveLocations.add(Location.down(startLocation));
-            if ((getMostRecentMove() == null) || (getNumMovesMade() == 0))
-                moveLocations.add(Location.down2(startLocation));
-            captureLocations.add(Location.left(Location.down(startLocation)));
-            captureLocations.add(Location.right(Location.down(startLocation)));
+            moveLocations    = new Location[] { Location.down(startLocation),
+                                                canMoveTwo ? Location.down2(startLocation) : null };
+            captureLocations = new Location[] { Location.left(Location.down(startLocation)),
+                                                Location.right(Location.down(startLocation)) };
         }
 
         //////////////////////////
@@ -295,7 +287,6 @@ public class PiecePawn extends ChessPiece {
             } 
         }
 
-        return validMoves;
     }
         
     /**
@@ -7,7 +7,6 @@ import game.utility.Location;
 import game.utility.Properties;
 import game.utility.Properties.PlayerColor;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiFunction;
 
@@ -24,35 +23,27 @@ public class PieceRook extends ChessPiece {
     }
           
     /**
-     * gets a list of valid moves for the piece at the given location on the given board state<br>
+     * adds the valid moves for the piece at the given location on the given board state to a list<br>
      * - the piece at this location will be this rook<br>
      * @param location location for this rook on the board for which to determine all valid moves
      * @param boardState state of the board to analyze for current valid moves
      * @param gameHistory not-yet implemented, but intended for algebraic-chess-notation game recording
-     * @return List of valid moves for this rook at the given location on the given board state
+     * @param validMoves list to which the valid moves for this rook are appended
      */
     @Override
-    public List<ChessMove> getValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory)
+    public void addValidMoves(Location location, ChessBoardState boardState, ChessGameHistory gameHistory, List<ChessMove> validMoves)
     {
-        List<ChessMove> validMoves = new ArrayList<>();
-        if (location == null) return validMoves;
+        if (location == null) return;
         ChessPiece thisPiece = boardState.getPiece(location);
-        if (!(thisPiece instanceof PieceRook)) return validMoves;
+        if (!(thisPiece instanceof PieceRook)) return;
         PlayerColor playerColor = thisPiece.getColor();
         PlayerColor opponentColor = Properties.oppositeColor(playerColor);
         
         Location startLocation;
         Location nextLocation;
 
-        List<BiFunction<Location,Integer,Location>> locationDirections;
-        locationDirections = new ArrayList<>();
-        locationDirections.add(Location::leftX);
-        locationDirections.add(Location::rightX);
-        locationDirections.add(Location::upX);
-        locationDirections.add(Location::downX);
-
         startLocation = Location.copy(location);
-        for (BiFunction<Location,Integer,Location> function : locationDirections)
+        for (BiFunction<Location,Integer,Location> function : STRAIGHT_DIRECTIONS)
         {
             int next = 1;
             nextLocation = nextLocation(startLocation,next,function);
@@ -63,7 +54,7 @@ public class PieceRook extends ChessPiece {
                 {
                     validMoves.add(newMove);
                 }
-                nextLocation = nextLocation(startLocation,next++,function);
+                nextLocation = nextLocation(startLocation,++next,function);
             }
             if ((nextLocation != null) && !boardState.isEmpty(nextLocation))
             {
@@ -74,8 +65,6 @@ public class PieceRook extends ChessPiece {
                 }
             }
         }
-        
-        return validMoves;
     }
         
     /**
@@ -2,13 +2,18 @@ package chess.players;
 
 import chess.ChessBoardState;
 import chess.ChessGame;
+import chess.ChessGameHistory;
+import chess.ChessOpenings;
 import chess.moves.ChessMove;
-import chess.pieces.ChessPiece;
 import chess.players.ai.ChessAI;
-import game.utility.Location;
+import chess.players.ai.SearchControl;
+import chess.players.ai.SearchScheduler;
+import chess.players.ai.SearchScheduler.SearchTask;
 import game.utility.Properties.PlayerColor;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,6 +25,9 @@ import java.util.logging.Logger;
  */
 public class ChessPlayerCPU extends ChessPlayer {
     
+    private int searchPriority = SearchScheduler.PRIORITY_NORMAL;
+    private volatile SearchTask<ChessMove> pendingSearch = null;
+    
     private ChessPlayerCPU(ChessGame game, PlayerColor color)
     {
         super(game,color);
@@ -62,32 +70,92 @@ public class ChessPlayerCPU extends ChessPlayer {
         super.commitMove(move);
     }
     
+    /**
+     * picks this Phantom AI's next move<br>
+     * - a position in the opening book is answered from the book, any other position by a
+     *   ChessAI search<br>
+     * - either way the move is committed by a task on the shared SearchScheduler: this is called
+     *   while the opponent's move is being committed (see persistMove), so committing the book
+     *   move here would make it inside that commit, before the game checks the opponent's move
+     *   for the end of the game (and CPU-vs-CPU book moves would nest commit in commit)
+     * @throws RejectedExecutionException if the scheduler's queue is full
+     */
     public void determineMove()
     {
-        ChessAI chessAI = new ChessAI(this,this.getColor());
-        chessAI.start();
+        Callable<ChessMove> search;
+        SearchControl searchControl;
+        ChessMove bookMove = ChessOpenings.getDefault().getBookMove(getBoardState(),getColor(),((ChessGame)game).getGameHistory());
+        if (bookMove != null)
+        {
+            String loggerMsg = "Phantom AI book move";
+            Logger.getLogger(ChessPlayerCPU.class.getName()).log(Level.FINE,loggerMsg);
+            search = () -> {
+                commitMove(bookMove);
+                return bookMove;
+            };
+            searchControl = null;
+        }
+        else
+        {
+            ChessAI chessAI = new ChessAI(this,this.getColor());
+            search        = chessAI;
+            searchControl = chessAI.getSearchControl();
+        }
+        
+        try {
+            pendingSearch = SearchScheduler.getDefault().submit(search,searchPriority,searchControl);
+        } catch (RejectedExecutionException e) {
+            String loggerMsg = "Phantom AI search rejected: " + SearchScheduler.getDefault();
+            Logger.getLogger(ChessPlayerCPU.class.getName()).log(Level.WARNING,loggerMsg,e);
+            throw e;
+        }
+    }
+    
+    /**
+     * cancels this Phantom AI's search, if one is queued or running (i.e. the game was abandoned)<br>
+     * - a cancelled search commits no move
+     */
+    public void cancelSearch()
+    {
+        SearchTask<ChessMove> search = pendingSearch;
+        if (search != null) search.cancel(false);
+    }
+    
+    /**
+     * sets the priority of this Phantom AI's searches on the SearchScheduler
+     * @param searchPriority priority, i.e.) SearchScheduler.PRIORITY_HIGH for a game against a human
+     */
+    public void setSearchPriority(int searchPriority)
+    {
+        this.searchPriority = searchPriority;
     }
   
     public List<ChessMove> getValidMoves(ChessBoardState boardState,PlayerColor playerColor)
     {
-        List<ChessMove> validMoves = new ArrayList<>();
-        List<ChessMove> moves      = null;
-        
-        for (Location location : Location.allLocations())
-        {
-            ChessPiece piece = (ChessPiece)boardState.getPiece(location);
-            if (piece != null && playerColor.equals(piece.getColor()))
-            {
-                moves = piece.getValidMoves(location,boardState,((ChessGame)game).getGameHistory());
-                if (moves != null && !moves.isEmpty())
-                    validMoves.addAll(moves);
-            }
-        }
-        
+        return getValidMoves(boardState,playerColor,new ArrayList<>());
+    }
+    
+    /**
+     * fills a caller-provided list with all valid moves for a color<br>
+     * - searches pass in a reused per-ply list (see MoveStack), so no list is built per node
+     * @param boardState state of the board to analyze for valid moves
+     * @param playerColor color of the player whose moves are generated
+     * @param validMoves list to which the valid moves are appended
+     * @return the validMoves argument, for convenience
+     */
+    public List<ChessMove> getValidMoves(ChessBoardState boardState,PlayerColor playerColor,List<ChessMove> validMoves)
+    {
+        boardState.addValidMoves(playerColor,((ChessGame)game).getGameHistory(),validMoves);
         return validMoves;
     }
+    
     public ChessBoardState getBoardState()
     {
         return ((ChessGame)game).getBoardState();
     }
+    
+    public ChessGameHistory getGameHistory()
+    {
+        return ((ChessGame)game).getGameHistory();
+    }
 }
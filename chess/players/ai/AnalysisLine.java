@@ -0,0 +1,58 @@
+package chess.players.ai;
+
+import chess.moves.ChessMove;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * one line of a multi-PV analysis: a move of the analysed position, its score, and the
+ * principal variation expected to follow it
+ *
+ * @author devang
+ */
+public class AnalysisLine {
+    private final int             rank;
+    private final int             depth;
+    private final int             score;
+    private final List<ChessMove> moves;
+
+    /**
+     * creates a line
+     * @param rank rank of the line among the position's moves (1 for the best)
+     * @param depth plies searched
+     * @param score score of the line, for the player to move
+     * @param moves principal variation, starting with the move of the analysed position
+     */
+    public AnalysisLine(int rank, int depth, int score, List<ChessMove> moves)
+    {
+        this.rank  = rank;
+        this.depth = depth;
+        this.score = score;
+        this.moves = Collections.unmodifiableList(moves);
+    }
+
+    public int getRank()
+    {
+        return rank;
+    }
+
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    public int getScore()
+    {
+        return score;
+    }
+
+    public ChessMove getMove()
+    {
+        return moves.get(0);
+    }
+
+    public List<ChessMove> getMoves()
+    {
+        return moves;
+    }
+}
@@ -1,7 +1,10 @@
 package chess.players.ai;
 
+import chess.ChessBitboards;
 import chess.ChessBoardState;
 import chess.moves.ChessMove;
+import chess.moves.MoveStack;
+import chess.notation.ChessNotation;
 import chess.pieces.ChessPiece;
 import chess.pieces.PieceBishop;
 import chess.pieces.PieceKnight;
@@ -10,47 +13,81 @@ import chess.pieces.PieceQueen;
 import chess.pieces.PieceRook;
 import chess.pieces.PieceKing;
 import chess.players.ChessPlayerCPU;
+import chess.profiling.SearchEvent;
 import game.utility.Location;
 import game.utility.Properties.PlayerColor;
+import java.util.concurrent.Callable;
 
 /**
+ * a CPU player's search for its next move, run by the SearchScheduler<br>
+ * - the move found is committed to the game, unless the search was cancelled
  *
  * @author devang
  */
-public class ChessAI extends Thread {
+public class ChessAI implements Callable<ChessMove> {
     public static int maxDepth = 2;
-    public static int maxQDepth = 1;
+    public static int maxQDepth = 4;
     public static int maxTime = 5000;
     public static int numTrials = 15000;
     public static int maxMonteCarloDepth = 30;
+    private static final int KING_VALUE = 9000;
+    // files c to f of ranks 3 to 6
+    private static final long CENTER_SQUARES = 0x00003C3C3C3C0000L;
 
     PlayerColor cpuColor;
     ChessPlayerCPU cpuPlayer;
     
+    // move lists for every ply of this thread's search, reused from node to node
+    private final MoveStack moveStack;
+    
+    private final SearchControl searchControl = new SearchControl();
+    
     public ChessAI(ChessPlayerCPU chessPlayer,PlayerColor playerCPUColor)
     {
         cpuPlayer = chessPlayer;
         cpuColor = playerCPUColor;
+        moveStack = new MoveStack();
     }
     
     public static int evaluate(ChessBoardState boardState,PlayerColor playerCPUColor)
+    {
+        return evaluate(boardState,playerCPUColor,EvaluationParameters.getDefault());
+    }
+
+    /**
+     * evaluates a board state with the given weights (see EvaluationParameters)
+     * @param boardState board state to evaluate
+     * @param playerCPUColor color for whom the score is given
+     * @param parameters weights of the evaluation
+     * @return score for the player of playerCPUColor, in centipawns
+     */
+    public static int evaluate(ChessBoardState boardState,PlayerColor playerCPUColor,EvaluationParameters parameters)
     {
         int score = 0;
 
-        for (Location location : Location.allLocations())
+        for (Location location : boardState.getGeometry().allLocations())
         {
             ChessPiece piece = (ChessPiece)boardState.getPiece(location);
             if (piece == null) continue;
             if (piece.getColor() == playerCPUColor)
-                score += scorePieceValue(piece,location,boardState);
+                score += scorePieceValue(piece,parameters);
             else if (piece.getColor() != playerCPUColor)
-                score -= scorePieceValue(piece,location,boardState);
+                score -= scorePieceValue(piece,parameters);
+        }
+
+        ChessBitboards bitboards = boardState.getBitboards();
+        if (bitboards != null)
+        {
+            int cpuIndex = ChessBitboards.getColorIndex(playerCPUColor);
+            int hangingPiece = parameters.get(EvaluationParameters.HANGING_PIECE);
+            score -= StaticExchange.getThreat(bitboards,cpuIndex) * hangingPiece / 100;
+            score += StaticExchange.getThreat(bitboards,1 - cpuIndex) * hangingPiece / 100;
+            score += scorePlacement(bitboards,cpuIndex,parameters) - scorePlacement(bitboards,1 - cpuIndex,parameters);
         }
-        
         return score;
     }
     
-    private static int scorePieceValue(ChessPiece piece,Location pieceLocation,ChessBoardState boardState)
+    private static int scorePieceValue(ChessPiece piece,EvaluationParameters parameters)
     {
         int score = 0;
         
@@ -60,33 +97,86 @@ public class ChessAI extends Thread {
         }
         else
         {
-            if (piece instanceof PiecePawn)   score = 100;
-            if (piece instanceof PieceKnight) score = 300;
-            if (piece instanceof PieceBishop) score = 300;
-            if (piece instanceof PieceRook)   score = 500;
-            if (piece instanceof PieceQueen)  score = 900;
-            if (piece instanceof PieceKing)   score = 9000;
+            if (piece instanceof PiecePawn)   score = parameters.get(EvaluationParameters.PAWN);
+            if (piece instanceof PieceKnight) score = parameters.get(EvaluationParameters.KNIGHT);
+            if (piece instanceof PieceBishop) score = parameters.get(EvaluationParameters.BISHOP);
+            if (piece instanceof PieceRook)   score = parameters.get(EvaluationParameters.ROOK);
+            if (piece instanceof PieceQueen)  score = parameters.get(EvaluationParameters.QUEEN);
+            if (piece instanceof PieceKing)   score = KING_VALUE;
         }
         
         //if (piece.check(pieceLocation, boardState)) score -= 3;
-        //if (piece.isProtected(pieceLocation, boardState)) score += 4;
         //if (((PieceKing)piece).hasCastled) score += 275;
 
         return score;
     }
 
+    /**
+     * scores where a side's pieces stand: its pawns' advance and its knights and bishops in the center
+     */
+    private static int scorePlacement(ChessBitboards bitboards,int color,EvaluationParameters parameters)
+    {
+        int score = 0;
+        int pawnAdvance = parameters.get(EvaluationParameters.PAWN_ADVANCE);
+        if (pawnAdvance != 0)
+        {
+            int ranks = 0;
+            for (long pawns = bitboards.getPieces(color,ChessBitboards.PAWN); pawns != 0; pawns &= pawns - 1)
+            {
+                int rank = ChessNotation.getRank(Long.numberOfTrailingZeros(pawns));
+                ranks += (color == ChessBitboards.WHITE) ? rank - 1 : ChessNotation.NUM_RANKS - 2 - rank;
+            }
+            score += ranks * pawnAdvance;
+        }
+        int minorCenter = parameters.get(EvaluationParameters.MINOR_CENTER);
+        if (minorCenter != 0)
+        {
+            long minors = bitboards.getPieces(color,ChessBitboards.KNIGHT) | bitboards.getPieces(color,ChessBitboards.BISHOP);
+            score += Long.bitCount(minors & CENTER_SQUARES) * minorCenter;
+        }
+        return score;
+    }
+
+    /**
+     * gets the control that stops this search when it is cancelled
+     * @return control of this search
+     */
+    public SearchControl getSearchControl()
+    {
+        return searchControl;
+    }
+    
     @Override
-    public void run()
+    public ChessMove call()
         {
             /*
-            MonteCarlo montecarlo = new MonteCarlo(cpuPlayer,cpuColor);
+            MonteCarlo montecarlo = new MonteCarlo(cpuPlayer,cpuColor,moveStack);
             ChessMove move = montecarlo.evaluate();
             */
 
 
-            MiniMax minimax = new MiniMax(cpuPlayer,cpuColor);
+            SearchEvent event = new SearchEvent();
+            event.begin();
+
+            MiniMax minimax = new MiniMax(cpuPlayer,cpuColor,moveStack);
+            minimax.setSearchControl(searchControl);
             ChessMove move = minimax.evaluate();
+            SearchMetrics.getDefault().publish(minimax.getStatistics());
+
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.search      = minimax.getStatistics().getName();
+                event.playerColor = cpuColor.name();
+                event.depth       = minimax.getStatistics().getDepthReached();
+                event.nodes       = minimax.getStatistics().getNodes();
+                event.bestMove    = (move == null) ? null : minimax.toUci(move);
+                event.stopped     = searchControl.isStopped();
+                event.commit();
+            }
 
+            if (searchControl.isStopped()) return null;
             cpuPlayer.commitMove(move);
+            return move;
         }
 }
@@ -0,0 +1,176 @@
+package chess.players.ai;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * the weights of the evaluation (see ChessAI.evaluate), in centipawns<br>
+ * - the defaults are the engine's hand-set values; tuned values (see EvaluationTuner) are read
+ *   from a parameter file when the engine starts<br>
+ * - a parameter file has one parameter per line, its name then its value (i.e. "knight 325");
+ *   blank lines and lines starting with # are skipped, and parameters left out keep their defaults<br>
+ * - the king's value is not a parameter: both sides always have a king, so it cannot be tuned
+ *
+ * @author devang
+ */
+public class EvaluationParameters {
+    public static final String PARAMETERS_FILE_PROPERTY = "chess.evaluation.parameters";
+    public static final String DEFAULT_PARAMETERS_FILE  = "evaluation/parameters.txt";
+
+    public static final int PAWN          = 0;
+    public static final int KNIGHT        = 1;
+    public static final int BISHOP        = 2;
+    public static final int ROOK          = 3;
+    public static final int QUEEN         = 4;
+    // percentage of the opponent's best winning exchange counted against the side whose piece hangs
+    public static final int HANGING_PIECE = 5;
+    // for each rank a pawn has advanced
+    public static final int PAWN_ADVANCE  = 6;
+    // for each knight or bishop on the 16 central squares
+    public static final int MINOR_CENTER  = 7;
+    public static final int NUM_PARAMETERS = 8;
+
+    public static final String[] NAMES    = { "pawn", "knight", "bishop", "rook", "queen", "hanging-piece", "pawn-advance", "minor-center" };
+    public static final int[]    DEFAULTS = { 100, 300, 300, 500, 900, 25, 0, 0 };
+
+    private static EvaluationParameters defaultParameters = null;
+
+    private final int[] values;
+
+    /**
+     * creates parameters with the default values
+     */
+    public EvaluationParameters()
+    {
+        values = Arrays.copyOf(DEFAULTS,NUM_PARAMETERS);
+    }
+
+    /**
+     * gets the parameters shared by all CPU players<br>
+     * - read from the file named by the chess.evaluation.parameters system property, or
+     *   evaluation/parameters.txt<br>
+     * - if there is no such file, the parameters have their default values
+     * @return the shared evaluation parameters
+     */
+    public static synchronized EvaluationParameters getDefault()
+    {
+        if (defaultParameters == null)
+        {
+            Path parametersFile = Paths.get(System.getProperty(PARAMETERS_FILE_PROPERTY,DEFAULT_PARAMETERS_FILE));
+            defaultParameters = new EvaluationParameters();
+            if (Files.isRegularFile(parametersFile))
+            {
+                try {
+                    defaultParameters = read(parametersFile);
+                } catch (IOException | IllegalArgumentException e) {
+                    String loggerMsg = "evaluation parameters could not be read: " + parametersFile;
+                    Logger.getLogger(EvaluationParameters.class.getName()).log(Level.WARNING,loggerMsg,e);
+                }
+            }
+        }
+        return defaultParameters;
+    }
+
+    /**
+     * replaces the parameters shared by all CPU players (searches already running keep theirs)
+     * @param parameters the new shared evaluation parameters
+     */
+    public static synchronized void setDefault(EvaluationParameters parameters)
+    {
+        defaultParameters = parameters;
+    }
+
+    /**
+     * reads parameters from a parameter file
+     * @param parametersFile file of parameters
+     * @return newly-created parameters
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line does not name a parameter and its value
+     */
+    public static EvaluationParameters read(Path parametersFile) throws IOException
+    {
+        EvaluationParameters parameters = new EvaluationParameters();
+        for (String line : Files.readAllLines(parametersFile,StandardCharsets.UTF_8))
+        {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split("\\s+");
+            int index = indexOf(fields[0]);
+            if ((index < 0) || (fields.length != 2)) throw new IllegalArgumentException("not an evaluation parameter: " + line);
+            parameters.set(index,Integer.parseInt(fields[1]));
+        }
+        return parameters;
+    }
+
+    /**
+     * writes the parameters to a parameter file
+     * @param parametersFile file to write (replaced if it exists)
+     * @param comment comment written at the top of the file (may be null)
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path parametersFile, String comment) throws IOException
+    {
+        try (Writer writer = Files.newBufferedWriter(parametersFile,StandardCharsets.UTF_8))
+        {
+            if (comment != null) writer.write("# " + comment + System.lineSeparator());
+            for (int index = 0; index < NUM_PARAMETERS; index++)
+            {
+                writer.write(NAMES[index] + " " + values[index] + System.lineSeparator());
+            }
+        }
+    }
+
+    /**
+     * finds a parameter by its name
+     * @param name name of the parameter, as in a parameter file
+     * @return index of the parameter, or -1 if there is none of that name
+     */
+    public static int indexOf(String name)
+    {
+        for (int index = 0; index < NUM_PARAMETERS; index++)
+        {
+            if (NAMES[index].equals(name)) return index;
+        }
+        return -1;
+    }
+
+    public int get(int index)
+    {
+        return values[index];
+    }
+
+    public void set(int index, int value)
+    {
+        values[index] = value;
+    }
+
+    /**
+     * creates and returns a copy of these parameters
+     * @return newly-created copy of this
+     */
+    public EvaluationParameters getCopy()
+    {
+        EvaluationParameters copy = new EvaluationParameters();
+        System.arraycopy(values,0,copy.values,0,NUM_PARAMETERS);
+        return copy;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int index = 0; index < NUM_PARAMETERS; index++)
+        {
+            if (index > 0) text.append(", ");
+            text.append(NAMES[index]).append(' ').append(values[index]);
+        }
+        return text.toString();
+    }
+}
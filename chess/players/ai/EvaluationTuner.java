@@ -0,0 +1,318 @@
+package chess.players.ai;
+
+import chess.ChessBoardState;
+import chess.moves.MoveStack;
+import chess.notation.FenNotation;
+import chess.notation.PackedPosition;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import game.utility.Properties.PlayerColor;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * tunes the evaluation's weights (see EvaluationParameters) on positions labeled with the results
+ * of their games, in the manner of the Texel tuning method<br>
+ * - a position's score, from a quiescence search (see MiniMax.quiesce) so it is not taken in the
+ *   middle of an exchange, and by ChessAI.evaluate even if a network is loaded, is mapped to an expected result by a logistic curve:
+ *   1 / (1 + 10^(-k*score/400)); the error is the mean squared difference from the actual results<br>
+ * - k is fitted first, to the starting weights, so the error measures the weights and not the scale<br>
+ * - the weights are then improved by local search: each weight in turn is moved up, or else down,
+ *   by a step and kept if the error falls; the step halves when a pass over all the weights
+ *   improves none, down to 1<br>
+ * - the positions are parsed once, when they are read, and kept packed (see PackedPosition)<br>
+ * - the positions are scored in parallel, a share of them per thread, each thread with its own
+ *   search (and move stack) for all its positions<br>
+ * - a position file has one position per line: a FEN (only the pieces and the side to move are
+ *   used), then its game's result as 1-0, 0-1 or 1/2-1/2, or as 1, 0.5 or 0 (optionally in
+ *   brackets or quotes, as in [0.5] or c9 "1/2-1/2";); lines without a result, or whose FEN
+ *   cannot be parsed, are skipped
+ *
+ * @author devang
+ */
+public class EvaluationTuner {
+    public static final double DEFAULT_K          = 1.0;
+    public static final int    DEFAULT_STEP       = 8;
+    public static final int    DEFAULT_MAX_PASSES = 100;
+
+    private static final double MIN_K = 0.05;
+    private static final double MAX_K = 5.0;
+    private static final double K_TOLERANCE = 0.001;
+
+    private final Properties properties = Properties.init(Direction.UP,Direction.DOWN);
+
+    // positions (only their pieces and side to move are used), and their results for white in half points
+    private final List<PackedPosition> positions = new ArrayList<>();
+    private byte[]             results   = new byte[1024];
+
+    private int     numThreads   = Runtime.getRuntime().availableProcessors();
+    private int     maxPositions = Integer.MAX_VALUE;
+    private int     step         = DEFAULT_STEP;
+    private int     maxPasses    = DEFAULT_MAX_PASSES;
+    private boolean fitK         = true;
+    private double  k            = DEFAULT_K;
+    private int[]   tunedIndices = null;
+
+    public void setNumThreads(int numThreads)       { this.numThreads = Math.max(1,numThreads); }
+    public void setMaxPositions(int maxPositions)   { this.maxPositions = Math.max(1,maxPositions); }
+    public void setStep(int step)                   { this.step = Math.max(1,step); }
+    public void setMaxPasses(int maxPasses)         { this.maxPasses = Math.max(1,maxPasses); }
+    public void setTunedIndices(int[] tunedIndices) { this.tunedIndices = tunedIndices; }
+
+    /**
+     * sets k of the logistic curve, which is then not fitted
+     * @param k scale of the scores in the logistic curve
+     */
+    public void setK(double k)
+    {
+        this.k = k;
+        fitK   = false;
+    }
+
+    public double getK()            { return k; }
+    public int getNumPositions()    { return positions.size(); }
+
+    /**
+     * reads labeled positions from a file, up to the maximum number of positions
+     * @param positionsFile file of positions and results, optionally gzip-compressed (.gz)
+     * @return number of positions read from the file
+     * @throws IOException if the file cannot be read
+     */
+    public int read(Path positionsFile) throws IOException
+    {
+        InputStream in = Files.newInputStream(positionsFile);
+        if (positionsFile.getFileName().toString().endsWith(".gz"))
+            in = new GZIPInputStream(in,1 << 16);
+
+        int numRead    = 0;
+        int numSkipped = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in,StandardCharsets.ISO_8859_1),1 << 16))
+        {
+            String line;
+            while ((positions.size() < maxPositions) && ((line = reader.readLine()) != null))
+            {
+                String[] fields = line.trim().split("\\s+");
+                int result = (fields.length >= 3) ? parseResult(fields) : -1;
+                PackedPosition position = (result < 0) ? null : parsePosition(fields);
+                if (position == null)
+                {
+                    if (!line.trim().isEmpty()) numSkipped++;
+                    continue;
+                }
+                if (positions.size() == results.length) results = Arrays.copyOf(results,2*results.length);
+                results[positions.size()] = (byte)result;
+                positions.add(position);
+                numRead++;
+            }
+        }
+
+        if (numSkipped > 0)
+        {
+            String loggerMsg = "positions without a result or a valid FEN skipped: " + numSkipped + " in " + positionsFile;
+            Logger.getLogger(EvaluationTuner.class.getName()).log(Level.WARNING,loggerMsg);
+        }
+        return numRead;
+    }
+
+    /**
+     * parses the pieces and side to move of a position's line
+     * @return packed position, or null if the line's first two fields are not a FEN's
+     */
+    private PackedPosition parsePosition(String[] fields)
+    {
+        if ((fields[0].split("/").length != 8) || !(fields[1].equals("w") || fields[1].equals("b"))) return null;
+        try {
+            return PackedPosition.create(FenNotation.parse(fields[0] + " " + fields[1],properties));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * finds the result of a position's line, after its FEN's first two fields
+     * @return result for white in half points (2 a win, 1 a draw, 0 a loss), or -1 if there is none
+     */
+    private static int parseResult(String[] fields)
+    {
+        for (int f = fields.length - 1; f >= 2; f--)
+        {
+            String field = fields[f].replaceAll("[\\[\\]\";]","");
+            switch (field)
+            {
+                case "1-0": case "1": case "1.0":         return 2;
+                case "1/2-1/2": case "0.5": case ".5":    return 1;
+                case "0-1": case "0": case "0.0":         return 0;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * tunes the evaluation's weights on the positions read
+     * @param initial weights from which to start (not changed)
+     * @return newly-created tuned weights
+     * @throws InterruptedException if the tuning is interrupted
+     */
+    public EvaluationParameters tune(EvaluationParameters initial) throws InterruptedException
+    {
+        if (positions.isEmpty()) throw new IllegalStateException("no positions to tune on");
+        int[] indices = (tunedIndices != null) ? tunedIndices : allIndices();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            EvaluationParameters parameters = initial.getCopy();
+            int[] scores = scorePositions(parameters,executor);
+            if (fitK) k = fitK(scores);
+            double error = getError(scores,k);
+            String loggerMsg = String.format("k %.4f, error %.6f: %s",k,error,parameters);
+            Logger.getLogger(EvaluationTuner.class.getName()).log(Level.INFO,loggerMsg);
+
+            int stepSize = step;
+            for (int pass = 1; pass <= maxPasses; pass++)
+            {
+                boolean improved = false;
+                for (int index : indices)
+                {
+                    int value = parameters.get(index);
+                    for (int delta : new int[] { stepSize, -stepSize })
+                    {
+                        parameters.set(index,value + delta);
+                        double newError = getError(scorePositions(parameters,executor),k);
+                        if (newError < error)
+                        {
+                            error    = newError;
+                            improved = true;
+                            break;
+                        }
+                        parameters.set(index,value);
+                    }
+                }
+                loggerMsg = String.format("pass %d, step %d, error %.6f: %s",pass,stepSize,error,parameters);
+                Logger.getLogger(EvaluationTuner.class.getName()).log(Level.INFO,loggerMsg);
+                if (!improved)
+                {
+                    if (stepSize == 1) break;
+                    stepSize /= 2;
+                }
+            }
+            return parameters;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * gets the mean squared error of the weights' predictions of the results
+     * @param parameters weights of the evaluation
+     * @return mean squared error, from 0 to 1
+     * @throws InterruptedException if the scoring is interrupted
+     */
+    public double getError(EvaluationParameters parameters) throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            return getError(scorePositions(parameters,executor),k);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double getError(int[] scores, double k)
+    {
+        double sum = 0;
+        for (int p = 0; p < scores.length; p++)
+        {
+            double error = results[p] / 2.0 - getExpectedResult(scores[p],k);
+            sum += error * error;
+        }
+        return sum / scores.length;
+    }
+
+    private static double getExpectedResult(int score, double k)
+    {
+        return 1 / (1 + Math.pow(10,-k * score / 400));
+    }
+
+    /**
+     * fits k to the scores by golden-section search (the error is unimodal in k)
+     */
+    private double fitK(int[] scores)
+    {
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        double low  = MIN_K;
+        double high = MAX_K;
+        while (high - low > K_TOLERANCE)
+        {
+            double k1 = high - ratio * (high - low);
+            double k2 = low  + ratio * (high - low);
+            if (getError(scores,k1) < getError(scores,k2)) high = k2;
+            else                                           low  = k1;
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * scores every position for white with the weights, a share of the positions per thread
+     */
+    private int[] scorePositions(EvaluationParameters parameters, ExecutorService executor) throws InterruptedException
+    {
+        int[] scores = new int[positions.size()];
+        int share = (positions.size() + numThreads - 1) / numThreads;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int first = 0; first < positions.size(); first += share)
+        {
+            int start = first;
+            int end   = Math.min(positions.size(),first + share);
+            futures.add(executor.submit(() -> scorePositions(parameters,scores,start,end)));
+        }
+        for (Future<?> future : futures)
+        {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("positions could not be scored",e.getCause());
+            }
+        }
+        return scores;
+    }
+
+    private void scorePositions(EvaluationParameters parameters, int[] scores, int start, int end)
+    {
+        MiniMax minimax = null;
+        for (int p = start; p < end; p++)
+        {
+            PackedPosition position    = positions.get(p);
+            ChessBoardState boardState = position.toBoardState(properties);
+            PlayerColor colorToMove    = position.getColorToMove();
+            if (minimax == null)
+            {
+                minimax = new MiniMax(boardState,null,colorToMove,new MoveStack());
+                minimax.setEvaluationParameters(parameters);
+                minimax.setNetwork(null);
+            }
+            int score = minimax.quiesce(boardState,colorToMove);
+            scores[p] = (colorToMove == PlayerColor.WHITE) ? score : -score;
+        }
+    }
+
+    private static int[] allIndices()
+    {
+        int[] indices = new int[EvaluationParameters.NUM_PARAMETERS];
+        for (int index = 0; index < indices.length; index++) indices[index] = index;
+        return indices;
+    }
+}
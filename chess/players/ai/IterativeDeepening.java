@@ -0,0 +1,356 @@
+package chess.players.ai;
+
+import chess.ChessBoardState;
+import chess.ChessGameHistory;
+import chess.moves.ChessMove;
+import chess.moves.MoveStack;
+import chess.profiling.IterationEvent;
+import chess.players.ai.SearchScheduler.SearchTask;
+import game.utility.Properties.PlayerColor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches a position one ply deeper at a time (MiniMax at depth 1, 2, 3 ...) until a limit is reached<br>
+ * - the best move of the deepest finished iteration is played; an iteration cut short by the
+ *   search control is thrown away, unless it is the first<br>
+ * - each iteration searches the previous iteration's best moves first, and below the best move,
+ *   the previous iteration's principal variation first<br>
+ * - with several threads, each thread runs its own MiniMax and takes the root's moves one at
+ *   a time from a shared counter; all threads share the transposition table and search control<br>
+ * - the helper threads' searches are tasks on a SearchScheduler (the shared one by default), so
+ *   no more threads are searching than the scheduler has; a helper not started by the time the
+ *   calling thread has taken every move is skipped<br>
+ * - every root move is searched with a full window, so its score is exact: an analysis (see analyze)
+ *   reports the best few moves of each iteration with their scores and principal variations
+ *
+ * @author devang
+ */
+public class IterativeDeepening {
+
+    /**
+     * receives the result of each finished iteration
+     */
+    public interface Listener {
+        void iterationFinished(int depth, ChessMove bestMove, int score, long nodes, long elapsedMillis);
+    }
+
+    /**
+     * receives the best lines of each finished iteration of an analysis
+     */
+    public interface AnalysisListener {
+        void linesFound(int depth, List<AnalysisLine> lines, long nodes, long elapsedMillis);
+    }
+
+    private final List<MiniMax>  searches = new ArrayList<>();
+    private final SearchControl  searchControl;
+    private SearchScheduler      scheduler = null;
+    private int                  bestScore = 0;
+    private List<AnalysisLine>   lines = new ArrayList<>();
+    private List<ChessMove>      principalVariation = new ArrayList<>();
+    private final SearchStatistics statistics = new SearchStatistics("IterativeDeepening");
+
+    /**
+     * creates a search of a position
+     * @param boardState board state to search
+     * @param gameHistory history of the game, used for en-passant
+     * @param playerColor color of the player to move
+     * @param numThreads number of search threads
+     * @param transpositionTable table shared by the threads, or null
+     * @param searchControl control stopping the search
+     */
+    public IterativeDeepening(ChessBoardState boardState, ChessGameHistory gameHistory, PlayerColor playerColor,
+                              int numThreads, TranspositionTable transpositionTable, SearchControl searchControl)
+    {
+        this.searchControl = searchControl;
+        for (int t = 0; t < Math.max(1,numThreads); t++)
+        {
+            MiniMax minimax = new MiniMax(boardState,gameHistory,playerColor,new MoveStack());
+            minimax.setTranspositionTable(transpositionTable);
+            minimax.setSearchControl(searchControl);
+            searches.add(minimax);
+        }
+    }
+
+    /**
+     * sets the scheduler running the helper threads' searches
+     * @param scheduler scheduler of the helpers, or null for the shared scheduler
+     */
+    public void setScheduler(SearchScheduler scheduler)
+    {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * searches to the given depth, or until the search control stops the search<br>
+     * - with a deadline, no iteration is started after half of the time is used:
+     *   the next iteration would not finish
+     * @param maxDepth number of plies of the deepest iteration
+     * @param listener receives the result of each finished iteration (may be null)
+     * @return best move found, or null if there is no valid move
+     */
+    public ChessMove search(int maxDepth, Listener listener)
+    {
+        return search(maxDepth,listener,0,null);
+    }
+
+    /**
+     * searches like search, reporting the best lines of each finished iteration (multi-PV)
+     * @param maxDepth number of plies of the deepest iteration
+     * @param numLines number of lines to report: the best moves of the position, best first
+     * @param listener receives the lines of each finished iteration (may be null: see getLines)
+     * @return best move found, or null if there is no valid move
+     */
+    public ChessMove analyze(int maxDepth, int numLines, AnalysisListener listener)
+    {
+        return search(maxDepth,null,Math.max(1,numLines),listener);
+    }
+
+    private ChessMove search(int maxDepth, Listener listener, int numLines, AnalysisListener analysisListener)
+    {
+        long startTime = System.currentTimeMillis();
+        statistics.reset();
+        lines = new ArrayList<>();
+        principalVariation = new ArrayList<>();
+        List<ChessMove> rootMoves = searches.get(0).getRootMoves(new ArrayList<>());
+        if (rootMoves.isEmpty())
+        {
+            statistics.finish();
+            return null;
+        }
+        for (int t = 1; t < searches.size(); t++)
+        {
+            searches.get(t).getRootMoves(new ArrayList<>());
+        }
+
+        ChessMove bestMove = rootMoves.get(0);
+        for (int depth = 1; depth <= maxDepth; depth++)
+        {
+            IterationEvent event = new IterationEvent();
+            event.begin();
+            long nodes = statistics.getNodes();
+
+            int[] scores = new int[rootMoves.size()];
+            boolean[] finished = new boolean[rootMoves.size()];
+            List<List<ChessMove>> variations = new ArrayList<>(Collections.nCopies(rootMoves.size(),null));
+            for (MiniMax minimax : searches)
+            {
+                minimax.setPreviousPrincipalVariation(principalVariation);
+            }
+            searchIteration(depth,rootMoves,scores,finished,variations);
+
+            int best = -1;
+            for (int m = 0; m < rootMoves.size(); m++)
+            {
+                if (finished[m] && ((best < 0) || (scores[m] > scores[best]))) best = m;
+            }
+            boolean complete = !searchControl.isStopped();
+            if ((best >= 0) && (complete || (depth == 1)))
+            {
+                bestMove  = rootMoves.get(best);
+                bestScore = scores[best];
+                principalVariation = variations.get(best);
+            }
+            collectStatistics();
+
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.depth    = depth;
+                event.nodes    = statistics.getNodes() - nodes;
+                event.score    = bestScore;
+                event.bestMove = searches.get(0).toUci(bestMove);
+                event.complete = complete;
+                event.commit();
+            }
+            if (!complete) break;
+            statistics.addIteration(depth);
+
+            if (numLines > 0) lines = getBestLines(depth,numLines,scores,variations);
+            orderMoves(rootMoves,scores);
+            long elapsed = System.currentTimeMillis() - startTime;
+            if (listener != null) listener.iterationFinished(depth,bestMove,bestScore,searchControl.getNodes(),elapsed);
+            if (analysisListener != null) analysisListener.linesFound(depth,lines,searchControl.getNodes(),elapsed);
+
+            long deadline = searchControl.getDeadline();
+            if ((deadline != Long.MAX_VALUE) && (elapsed > (deadline - startTime) / 2)) break;
+        }
+        statistics.finish();
+        return bestMove;
+    }
+
+    /**
+     * gets the statistics of the last search: the threads' counts added together, and each
+     * finished iteration's nodes and time
+     * @return statistics of the last search
+     */
+    public SearchStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    private void collectStatistics()
+    {
+        statistics.resetCounts();
+        for (MiniMax minimax : searches)
+        {
+            statistics.add(minimax.getStatistics());
+        }
+    }
+
+    /**
+     * gets the principal variation of the last search: the best move, and the best replies expected
+     * @return moves of the line, starting with the best move (empty if there is no valid move)
+     */
+    public List<ChessMove> getPrincipalVariation()
+    {
+        return Collections.unmodifiableList(principalVariation);
+    }
+
+    /**
+     * gets the lines of the last finished iteration of the last analysis
+     * @return best lines, best first (empty after a search that is not an analysis)
+     */
+    public List<AnalysisLine> getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * ranks the root's moves of a finished iteration by score, best first (equal moves keep their order)
+     */
+    private static List<AnalysisLine> getBestLines(int depth, int numLines, int[] scores, List<List<ChessMove>> variations)
+    {
+        List<Integer> order = new ArrayList<>();
+        for (int m = 0; m < scores.length; m++)
+        {
+            order.add(m);
+        }
+        order.sort((m1,m2) -> Integer.compare(scores[m2],scores[m1]));
+
+        List<AnalysisLine> bestLines = new ArrayList<>();
+        for (int rank = 0; rank < Math.min(numLines,order.size()); rank++)
+        {
+            int m = order.get(rank);
+            bestLines.add(new AnalysisLine(rank+1,depth,scores[m],variations.get(m)));
+        }
+        return bestLines;
+    }
+
+    /**
+     * gets the score of the best move of the last search, for the player to move
+     * @return score of the best move
+     */
+    public int getBestScore()
+    {
+        return bestScore;
+    }
+
+    private void searchIteration(int depth, List<ChessMove> rootMoves, int[] scores, boolean[] finished, List<List<ChessMove>> variations)
+    {
+        AtomicInteger nextMove = new AtomicInteger();
+        Helpers helpers = new Helpers();
+        List<SearchTask<Void>> tasks = new ArrayList<>();
+        SearchScheduler helperScheduler = (scheduler == null) ? SearchScheduler.getDefault() : scheduler;
+        for (int t = 1; t < searches.size(); t++)
+        {
+            MiniMax minimax = searches.get(t);
+            try {
+                // no search control: cancelling a helper that did not start must not stop the search
+                tasks.add(helperScheduler.submit(() ->
+                {
+                    if (!helpers.start()) return null;
+                    try {
+                        searchMoves(minimax,depth,rootMoves,scores,finished,variations,nextMove);
+                    } finally {
+                        helpers.finish();
+                    }
+                    return null;
+                },SearchScheduler.PRIORITY_HIGH,null));
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        searchMoves(searches.get(0),depth,rootMoves,scores,finished,variations,nextMove);
+
+        try {
+            helpers.close();
+        } catch (InterruptedException e) {
+            searchControl.stop();
+            Thread.currentThread().interrupt();
+        }
+        for (SearchTask<Void> task : tasks)
+        {
+            task.cancel(false);
+        }
+    }
+
+    private void searchMoves(MiniMax minimax, int depth, List<ChessMove> rootMoves, int[] scores, boolean[] finished,
+                             List<List<ChessMove>> variations, AtomicInteger nextMove)
+    {
+        // depth counts the root's move: MiniMax's depth counts the plies after it, less one
+        minimax.setMaxDepth(depth - 2);
+        int m;
+        while (!searchControl.isStopped() && ((m = nextMove.getAndIncrement()) < rootMoves.size()))
+        {
+            int score = minimax.scoreMove(rootMoves.get(m));
+            if (searchControl.isStopped()) break;
+            synchronized (finished)
+            {
+                scores[m]   = score;
+                finished[m] = true;
+                variations.set(m,minimax.getPrincipalVariation());
+            }
+        }
+    }
+
+    /**
+     * sorts the root's moves by score, best first (insertion sort keeps equal moves in order)
+     */
+    private static void orderMoves(List<ChessMove> rootMoves, int[] scores)
+    {
+        for (int i = 1; i < rootMoves.size(); i++)
+        {
+            for (int j = i; (j > 0) && (scores[j] > scores[j-1]); j--)
+            {
+                int score = scores[j];
+                scores[j] = scores[j-1];
+                scores[j-1] = score;
+                rootMoves.set(j,rootMoves.set(j-1,rootMoves.get(j)));
+            }
+        }
+    }
+
+    /**
+     * counts the helpers searching an iteration: once closed, a helper starting late does not search
+     */
+    private static class Helpers {
+        private int     numRunning = 0;
+        private boolean closed     = false;
+
+        synchronized boolean start()
+        {
+            if (closed) return false;
+            numRunning++;
+            return true;
+        }
+
+        synchronized void finish()
+        {
+            numRunning--;
+            notifyAll();
+        }
+
+        /**
+         * stops helpers from starting, and waits for the running ones to finish
+         */
+        synchronized void close() throws InterruptedException
+        {
+            closed = true;
+            while (numRunning > 0) wait();
+        }
+    }
+}
@@ -1,11 +1,22 @@
 package chess.players.ai;
 
+import chess.ChessBitboards;
 import chess.ChessBoardState;
+import chess.ChessGameHistory;
+import chess.ChessNetwork;
+import chess.ChessZobrist;
+import chess.endgame.Tablebases;
 import chess.moves.ChessMove;
+import chess.moves.MoveStack;
+import chess.notation.ChessNotation;
+import chess.pieces.ChessPiece;
 import chess.players.ChessPlayerCPU;
+import chess.profiling.EvaluationBatchEvent;
+import chess.profiling.MoveGenerationEvent;
 import game.utility.Properties;
 import game.utility.Properties.PlayerColor;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,125 +24,941 @@ import java.util.List;
  * @author devang
  */
 public class MiniMax {
-    private ChessPlayerCPU cpuPlayer;
+    private final ChessBoardState  boardState;
+    private final ChessGameHistory gameHistory;
     private PlayerColor cpuPlayerColor;
+    private final MoveStack moveStack;
+    private final Tablebases tablebases = Tablebases.getDefault();
+    private EvaluationParameters evaluationParameters = EvaluationParameters.getDefault();
+    private ChessNetwork network = ChessNetwork.getDefault();
+
+    private int maxDepth = ChessAI.maxDepth;
+    // plies a line may be extended by (moves giving check, singular moves), and whether a search
+    // for singular moves is running
+    private int maxExtensions = 0;
+    private int singularSearches = 0;
+    private TranspositionTable transpositionTable = null;
+    private SearchControl searchControl = null;
+    private ChessBoardState rootBoardState = null;
+
+    // the game's positions followed by the positions of the line being searched, for repetitions
+    private ChessGameHistory searchHistory = null;
+
+    // the last move of the line being searched at each ply (lineHistories[d] for a node at depth d),
+    // so a pawn pushed two spaces in the line can be taken en passant: a history per ply, of which
+    // only the most recent move is used
+    private final List<ChessGameHistory> lineHistories = new ArrayList<>();
+    
+    // counted by this search's thread only
+    private final SearchStatistics statistics = new SearchStatistics("MiniMax");
+
+    // triangular table of principal variations: pvTable[ply] holds the best line found from ply on,
+    // in pvTable[ply][ply .. pvLength[ply]-1] (ply 0 is the root's move)
+    private ChessMove[][] pvTable  = new ChessMove[0][];
+    private int[]         pvLength = new int[0];
+
+    // principal variation of the previous iteration, searched first; followingPv while the
+    // current node is on it
+    private ChessMove[]   previousPv = new ChessMove[0];
+    private boolean       followingPv = false;
+
+    // ordering scores of the moves of the node being ordered (used before the node's moves are searched)
+    private int[]         orderScores = new int[128];
+
+    public static final int DRAW_SCORE = 0;
+    // a mate ply plies from the root scores MATE_SCORE - ply (as the tablebases' mates)
+    public static final int MATE_SCORE   = Tablebases.MATE_SCORE;
+    public static final int MAX_MATE_PLY = 1024;
+    // captures that do not lose material are searched before the quiet moves, and losing captures after
+    private static final int GOOD_CAPTURE_ORDER = 1 << 20;
+    // a table move is singular if the other moves score this much worse (searched half as deep),
+    // looked for at nodes searched at least SINGULAR_MIN_DRAFT plies deep
+    private static final int SINGULAR_MARGIN      = 50;
+    private static final int SINGULAR_MIN_DRAFT   = 4;
+    private static final int SINGULAR_DEPTH_SLACK = 2;
 
     public class Moves {
         public ChessMove move;
         public int score;
-        
+        public List<ChessMove> variation;
+
         public Moves(ChessMove move, int score)
         {
             this.move  = move;
             this.score = score;
         }
     }
-    
+
     public MiniMax(ChessPlayerCPU cpuPlayer, Properties.PlayerColor playerColor)
     {
-        this.cpuPlayer = cpuPlayer;
-        cpuPlayerColor = playerColor;
+        this(cpuPlayer,playerColor,new MoveStack());
+    }
+
+    /**
+     * creates a minimax search that generates moves into the given per-ply buffers
+     * @param cpuPlayer player for whom the search picks a move
+     * @param playerColor color of the cpu player
+     * @param moveStack per-ply move lists owned by the calling search thread
+     */
+    public MiniMax(ChessPlayerCPU cpuPlayer, Properties.PlayerColor playerColor, MoveStack moveStack)
+    {
+        this(cpuPlayer.getBoardState(),cpuPlayer.getGameHistory(),playerColor,moveStack);
+    }
+
+    /**
+     * creates a minimax search of a board state, without a player or game (i.e. for the UCI engine)
+     * @param boardState board state to search (copied when the search starts)
+     * @param gameHistory history of the game, used for en-passant
+     * @param playerColor color of the player to move
+     * @param moveStack per-ply move lists owned by the calling search thread
+     */
+    public MiniMax(ChessBoardState boardState, ChessGameHistory gameHistory, Properties.PlayerColor playerColor, MoveStack moveStack)
+    {
+        this.boardState  = boardState;
+        this.gameHistory = gameHistory;
+        cpuPlayerColor   = playerColor;
+        this.moveStack   = moveStack;
+        setMaxDepth(maxDepth);
+    }
+
+    /**
+     * sets the depth of the search: positions deeper than maxDepth+1 plies below the root's moves are evaluated<br>
+     * - lines with checks or singular moves are extended, by at most half the plies searched
+     * @param maxDepth depth of the search, as ChessAI.maxDepth (plies searched = maxDepth + 2)
+     */
+    public void setMaxDepth(int maxDepth)
+    {
+        this.maxDepth = maxDepth;
+        maxExtensions = Math.max(1,(maxDepth + 2) / 2);
+        int maxPly = Math.max(2,maxDepth + 3) + maxExtensions;
+        if (pvTable.length < maxPly)
+        {
+            pvTable  = new ChessMove[maxPly][maxPly];
+            pvLength = new int[maxPly];
+        }
+    }
+
+    public void setTranspositionTable(TranspositionTable transpositionTable)
+    {
+        this.transpositionTable = transpositionTable;
+    }
+
+    public void setSearchControl(SearchControl searchControl)
+    {
+        this.searchControl = searchControl;
+    }
+
+    public void setEvaluationParameters(EvaluationParameters evaluationParameters)
+    {
+        this.evaluationParameters = evaluationParameters;
+    }
+
+    /**
+     * sets the network evaluating positions
+     * @param network network evaluating positions, or null to evaluate them by ChessAI.evaluate
+     */
+    public void setNetwork(ChessNetwork network)
+    {
+        this.network = network;
     }
 
+    /**
+     * gets the statistics of this search: of the last evaluate, or of all moves scored since getRootMoves
+     * @return statistics of this search
+     */
+    public SearchStatistics getStatistics()
+    {
+        return statistics;
+    }
+    
     public ChessMove evaluate()
     {
-                
-        // this method is the initial "maximizing" call
-        int alpha = Integer.MIN_VALUE;
-        int beta  = Integer.MAX_VALUE;
-        
-        List<ChessMove> validMoves = cpuPlayer.getValidMoves(cpuPlayer.getBoardState(),cpuPlayerColor);
+        statistics.reset();
+        List<ChessMove> validMoves = getRootMoves(moveStack.get(0));
         List<Moves> moves = new ArrayList<>();
-        
+
         for (ChessMove move : validMoves)
         {
-            ChessBoardState tempBoardState = ChessBoardState.copy(cpuPlayer.getBoardState());
-            move.commitMove(tempBoardState);
-            
-            int score = minimize(0,alpha,beta,Properties.oppositeColor(cpuPlayerColor),tempBoardState);
-            moves.add(new Moves(move,score));
+            int score = scoreMove(move);
+            Moves scoredMove = new Moves(move,score);
+            scoredMove.variation = getPrincipalVariation();
+            moves.add(scoredMove);
         }
-        
+
         int bestScore = Integer.MIN_VALUE;
-        List<ChessMove> bestMoves  = new ArrayList<>();
+        List<Moves> bestMoves  = new ArrayList<>();
         for (int m = 0; m < moves.size(); m++)
         {
             if (moves.get(m).score > bestScore)
             {
                 bestScore = moves.get(m).score;
                 bestMoves.clear();
-                bestMoves.add(moves.get(m).move);
+                bestMoves.add(moves.get(m));
             }
             else if (moves.get(m).score == bestScore)
             {
-                bestMoves.add(moves.get(m).move);
+                bestMoves.add(moves.get(m));
             }
         }
+        statistics.setDepthReached(maxDepth + 2);
+        statistics.finish();
         if (bestMoves.isEmpty()) return null;
-        
-        return bestMoves.get((int)Math.floor(Math.random()*bestMoves.size()));
+
+        Moves bestMove = bestMoves.get((int)Math.floor(Math.random()*bestMoves.size()));
+        // the principal variation reported is the chosen move's
+        for (int ply = 0; ply < bestMove.variation.size(); ply++)
+        {
+            pvTable[0][ply] = bestMove.variation.get(ply);
+        }
+        pvLength[0] = bestMove.variation.size();
+        return bestMove.move;
     }
-    
-    private int maximize(int depth, int alpha, int beta, Properties.PlayerColor playerColor, ChessBoardState boardState)
+
+    /**
+     * sets the principal variation of the previous iteration, whose moves are searched first at each
+     * ply along it (the root's moves are ordered by the caller)
+     * @param principalVariation line to search first, starting with a root move (may be empty)
+     */
+    public void setPreviousPrincipalVariation(List<ChessMove> principalVariation)
+    {
+        previousPv = principalVariation.toArray(new ChessMove[0]);
+    }
+
+    /**
+     * starts a search: copies the board to search, and fills a list with the root's moves<br>
+     * - moves are tested in place during generation, so the search runs on a private copy of the board
+     * @param validMoves list to which the root's valid moves are appended
+     * @return the validMoves argument, for convenience
+     */
+    public List<ChessMove> getRootMoves(List<ChessMove> validMoves)
+    {
+        statistics.resetCounts();
+        rootBoardState = copyRoot();
+        searchHistory  = gameHistory.copy();
+        rootBoardState.addValidMoves(cpuPlayerColor,gameHistory,validMoves);
+        return validMoves;
+    }
+
+    /**
+     * copies the board to search; with a network, its accumulator is built once on the copy, and
+     * the positions below copy and update it instead of building their own
+     */
+    private ChessBoardState copyRoot()
+    {
+        ChessBoardState root = ChessBoardState.copy(boardState);
+        if (network != null) root.getAccumulator(network);
+        return root;
+    }
+
+    /**
+     * scores one of the root's moves with a full window<br>
+     * - the move may come from another search of the same position (another thread)
+     * @param move valid move of the root position
+     * @return score of the move for the cpu player (meaningless if the search was stopped)
+     */
+    public int scoreMove(ChessMove move)
+    {
+        if (rootBoardState == null) rootBoardState = copyRoot();
+        if (searchHistory == null)  searchHistory  = gameHistory.copy();
+
+        // the window is symmetric, so scores can be negated for the transposition table
+        int alpha = -Integer.MAX_VALUE;
+        int beta  = Integer.MAX_VALUE;
+
+        EvaluationBatchEvent event = new EvaluationBatchEvent();
+        event.begin();
+        long nodes       = statistics.getNodes();
+        long evaluations = statistics.evaluations;
+
+        followingPv = (previousPv.length > 1) && isSameMove(previousPv[0],move);
+
+        boolean irreversible = rootBoardState.isIrreversible(move);
+        ChessBoardState tempBoardState = makeMove(0,move,rootBoardState);
+        searchHistory.addPosition(ChessZobrist.getKey(tempBoardState,Properties.oppositeColor(cpuPlayerColor),getLineHistory(0)),irreversible);
+
+        int extension = 0;
+        if ((maxExtensions > 0) && isSafeCheck(move,rootBoardState,tempBoardState,Properties.oppositeColor(cpuPlayerColor)))
+        {
+            extension++;
+            statistics.extensions++;
+        }
+        int score = minimize(0,alpha,beta,Properties.oppositeColor(cpuPlayerColor),tempBoardState,extension);
+        searchHistory.removePosition();
+        updatePrincipalVariation(0,move);
+
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.rootMove    = toUci(move);
+            event.plies       = maxDepth + 2;
+            event.nodes       = statistics.getNodes() - nodes;
+            event.evaluations = statistics.evaluations - evaluations;
+            event.commit();
+        }
+        return score;
+    }
+
+    /**
+     * gets the principal variation of the move chosen by the last evaluate, or of the root's move
+     * last scored: the move, and the best replies found below it (cut short where the score came
+     * from the transposition table or tablebases)
+     * @return moves of the line, starting with the root's move
+     */
+    public List<ChessMove> getPrincipalVariation()
+    {
+        List<ChessMove> line = new ArrayList<>(pvLength[0]);
+        for (int ply = 0; ply < pvLength[0]; ply++)
+        {
+            line.add(pvTable[0][ply]);
+        }
+        return line;
+    }
+
+    /**
+     * writes one of the root's moves in long algebraic notation, for the profiling events
+     */
+    String toUci(ChessMove move)
+    {
+        ChessBoardState root = (rootBoardState != null) ? rootBoardState : boardState;
+        ChessPiece piece = (ChessPiece)root.getPiece(move.getFromLocation());
+        return (piece == null) ? null : ChessNotation.toUci(move,piece.getProperties());
+    }
+
+    private int maximize(int depth, int alpha, int beta, Properties.PlayerColor playerColor, ChessBoardState boardState, int extension)
     {
-        if (depth > ChessAI.maxDepth)
+        pvLength[depth+1] = depth+1;
+        if ((searchControl != null) && searchControl.countNode()) return alpha;
+        statistics.nodes++;
+
+        // a position repeated in the line searched (or from the game), or fifty moves without a capture or pawn move
+        if (isRepeated()) return DRAW_SCORE;
+        if (searchHistory.getHalfMoveClock() >= ChessGameHistory.FIFTY_MOVE_PLIES) return scoreFiftyMoves(depth,playerColor,boardState);
+
+        int tablebaseScore = probeTablebases(depth,playerColor,boardState);
+        if (tablebaseScore != Tablebases.UNKNOWN) return tablebaseScore;
+
+        // the line is searched extension plies deeper (or shallower) than the search's depth
+        if (depth > maxDepth + extension)
+        {
+            return quiesceMax(depth,alpha,beta,playerColor,boardState,0);
+        }
+        int draft = maxDepth + 1 + extension - depth;
+
+        long key   = 0;
+        long entry = 0;
+        if (transpositionTable != null)
         {
-            return ChessAI.evaluate(boardState,cpuPlayerColor);
+            key = searchHistory.getPositionKey();
+            int tableScore = probeTable(key,depth+1,draft,alpha,beta);
+            if (tableScore != TranspositionTable.MISS) return tableScore;
+            entry = transpositionTable.getEntry(key);
         }
-        
+
+        // mate distance pruning: no line from here scores better than mating next move, or worse
+        // than being mated next move (the bounds are a ply looser, so those mates still score exactly)
+        alpha = Math.max(alpha,-(MATE_SCORE - (depth+1)));
+        beta  = Math.min(beta,MATE_SCORE - (depth+1));
+        if (alpha >= beta) return alpha;
+        int alphaOriginal = alpha;
+
         int score;
-        
-        List<ChessMove> validMoves = cpuPlayer.getValidMoves(boardState,playerColor);
-        
+
+        List<ChessMove> validMoves = getValidMoves(boardState,playerColor,moveStack.get(depth+1),depth);
+        if (validMoves.isEmpty()) return scoreNoMoves(depth,playerColor,boardState);
+        ChessMove tableMove = findTableMove(entry,validMoves,boardState);
+        orderMoves(depth+1,validMoves,boardState,tableMove);
+        boolean singular = (tableMove != null) && isSingular(depth,playerColor,boardState,validMoves,tableMove,entry,extension);
+        statistics.expandedNodes++;
+        int moveNumber = 0;
+        ChessMove bestMove = null;
+
         for (ChessMove move : validMoves)
         {
-            ChessBoardState tempBoardState = ChessBoardState.copy(boardState);
-            ((ChessMove)move).commitMove(tempBoardState);
-            
-            score = minimize(depth+1,alpha,beta,Properties.oppositeColor(playerColor),tempBoardState);
+            score = searchMove(depth,alpha,beta,playerColor,boardState,move,extension,singular && (move == tableMove));
+
+            if (score >= beta)
+            {
+                countCutoff(moveNumber);
+                storeTable(key,depth+1,draft,beta,alphaOriginal,beta,move,boardState);
+                return beta;
+            }
 
-            if (score >= beta) return beta;
-            
             if (score > alpha)
             {
                 alpha    = score;
+                bestMove = move;
+                updatePrincipalVariation(depth+1,move);
             }
-            
-                   
+            moveNumber++;
+
+
         }
-        
+
+        storeTable(key,depth+1,draft,alpha,alphaOriginal,beta,bestMove,boardState);
         return alpha;
     }
-    
-    private int minimize(int depth, int alpha, int beta, Properties.PlayerColor playerColor, ChessBoardState boardState)
+
+    private int minimize(int depth, int alpha, int beta, Properties.PlayerColor playerColor, ChessBoardState boardState, int extension)
     {
-        if (depth > ChessAI.maxDepth)
+        pvLength[depth+1] = depth+1;
+        if ((searchControl != null) && searchControl.countNode()) return beta;
+        statistics.nodes++;
+
+        // a position repeated in the line searched (or from the game), or fifty moves without a capture or pawn move
+        if (isRepeated()) return DRAW_SCORE;
+        if (searchHistory.getHalfMoveClock() >= ChessGameHistory.FIFTY_MOVE_PLIES) return scoreFiftyMoves(depth,playerColor,boardState);
+
+        int tablebaseScore = probeTablebases(depth,playerColor,boardState);
+        if (tablebaseScore != Tablebases.UNKNOWN) return tablebaseScore;
+
+        if (depth > maxDepth + extension)
+        {
+            // scores are always for the cpu player, at minimizing nodes as well
+            return quiesceMin(depth,alpha,beta,playerColor,boardState,0);
+        }
+        int draft = maxDepth + 1 + extension - depth;
+
+        long key   = 0;
+        long entry = 0;
+        if (transpositionTable != null)
         {
-            return -1*ChessAI.evaluate(boardState,cpuPlayerColor);
+            key = searchHistory.getPositionKey();
+            int tableScore = probeTable(key,depth+1,draft,alpha,beta);
+            if (tableScore != TranspositionTable.MISS) return tableScore;
+            entry = transpositionTable.getEntry(key);
         }
 
+        // mate distance pruning, for the cpu player's opponent
+        alpha = Math.max(alpha,-(MATE_SCORE - (depth+1)));
+        beta  = Math.min(beta,MATE_SCORE - (depth+1));
+        if (alpha >= beta) return beta;
+        int betaOriginal = beta;
+
         int score;
-        
-        List<ChessMove> validMoves = cpuPlayer.getValidMoves(boardState,playerColor);
-        
+
+        List<ChessMove> validMoves = getValidMoves(boardState,playerColor,moveStack.get(depth+1),depth);
+        if (validMoves.isEmpty()) return scoreNoMoves(depth,playerColor,boardState);
+        ChessMove tableMove = findTableMove(entry,validMoves,boardState);
+        orderMoves(depth+1,validMoves,boardState,tableMove);
+        boolean singular = (tableMove != null) && isSingular(depth,playerColor,boardState,validMoves,tableMove,entry,extension);
+        statistics.expandedNodes++;
+        int moveNumber = 0;
+        ChessMove bestMove = null;
+
         for (ChessMove move : validMoves)
         {
-            ChessBoardState tempBoardState = ChessBoardState.copy(boardState);
-            ((ChessMove)move).commitMove(tempBoardState);
+            score = searchMove(depth,alpha,beta,playerColor,boardState,move,extension,singular && (move == tableMove));
 
-            score = maximize(depth+1,alpha,beta,Properties.oppositeColor(playerColor),tempBoardState);
+            if (score <= alpha)
+            {
+                countCutoff(moveNumber);
+                storeTable(key,depth+1,draft,alpha,alpha,betaOriginal,move,boardState);
+                return alpha;
+            }
 
-            if (score <= alpha) return alpha;
-            
             if (score < beta)
             {
                 beta     = score;
+                bestMove = move;
+                updatePrincipalVariation(depth+1,move);
             }
-            
-            
+            moveNumber++;
+
+
         }
-        
+
+        storeTable(key,depth+1,draft,beta,alpha,betaOriginal,bestMove,boardState);
         return beta;
     }
-    
+
+    /**
+     * makes a move on a copy of the board, and searches the position after it for the other player<br>
+     * - the line is extended by a ply if the move gives a safe check, or is singular (see isSingular),
+     *   as long as the line's extensions stay within maxExtensions
+     * @param extension plies the line is extended by so far
+     * @param singular true if the move is a singular move
+     * @return score of the move for the cpu player
+     */
+    private int searchMove(int depth, int alpha, int beta, Properties.PlayerColor playerColor, ChessBoardState boardState,
+                           ChessMove move, int extension, boolean singular)
+    {
+        Properties.PlayerColor opponentColor = Properties.oppositeColor(playerColor);
+        boolean irreversible = boardState.isIrreversible(move);
+        ChessBoardState tempBoardState = makeMove(depth+1,move,boardState);
+        searchHistory.addPosition(ChessZobrist.getKey(tempBoardState,opponentColor,getLineHistory(depth+1)),irreversible);
+
+        if ((extension < maxExtensions) && (singular || isSafeCheck(move,boardState,tempBoardState,opponentColor)))
+        {
+            extension++;
+            statistics.extensions++;
+        }
+        int score = (playerColor == cpuPlayerColor) ? minimize(depth+1,alpha,beta,opponentColor,tempBoardState,extension)
+                                                    : maximize(depth+1,alpha,beta,opponentColor,tempBoardState,extension);
+        searchHistory.removePosition();
+        followingPv = false;
+        return score;
+    }
+
+    /**
+     * determines whether a move gives check without losing material by static exchange evaluation
+     * (a checking piece left to be taken for nothing does not extend the line)
+     * @param boardState board state before the move
+     * @param tempBoardState board state after the move
+     * @param opponentColor color of the player who may be in check
+     * @return true if the move gives a check worth extending
+     */
+    private static boolean isSafeCheck(ChessMove move, ChessBoardState boardState, ChessBoardState tempBoardState,
+                                       Properties.PlayerColor opponentColor)
+    {
+        if (!tempBoardState.check(opponentColor)) return false;
+        ChessBitboards bitboards = boardState.getBitboards();
+        return (bitboards == null) || (StaticExchange.evaluate(bitboards,move) >= 0);
+    }
+
+    /**
+     * determines whether the transposition table's move of a position is singular: searched a few
+     * plies shallower, every other move scores at least SINGULAR_MARGIN worse than the table's score<br>
+     * - only for a table score from a search nearly as deep as this one, that is exact or a bound
+     *   in the moving player's favour, and is not a mate score<br>
+     * - the shallower searches do not look for singular moves of their own
+     * @param extension plies the line is extended by so far
+     * @return true if the table's move is to be extended
+     */
+    private boolean isSingular(int depth, Properties.PlayerColor playerColor, ChessBoardState boardState,
+                               List<ChessMove> validMoves, ChessMove tableMove, long entry, int extension)
+    {
+        int draft = maxDepth + 1 + extension - depth;
+        if ((singularSearches > 0) || (draft < SINGULAR_MIN_DRAFT) || (validMoves.size() < 2)) return false;
+        if (TranspositionTable.getDepth(entry) < draft - SINGULAR_DEPTH_SLACK) return false;
+
+        boolean maximizing = (playerColor == cpuPlayerColor);
+        int bound = getTableBound(entry);
+        if (bound == (maximizing ? TranspositionTable.UPPER : TranspositionTable.LOWER)) return false;
+        int tableScore = getTableScore(entry,depth+1);
+        if (Math.abs(tableScore) >= MATE_SCORE - MAX_MATE_PLY) return false;
+
+        // a null window at the table's score less the margin: does any other move reach it?
+        int singularScore = maximizing ? tableScore - SINGULAR_MARGIN : tableScore + SINGULAR_MARGIN;
+        int reducedExtension = extension - draft/2;
+        boolean wasFollowingPv = followingPv;
+        followingPv = false;
+        singularSearches++;
+        boolean singular = true;
+        for (ChessMove move : validMoves)
+        {
+            if (move == tableMove) continue;
+            int score = maximizing ? searchMove(depth,singularScore-1,singularScore,playerColor,boardState,move,reducedExtension,false)
+                                   : searchMove(depth,singularScore,singularScore+1,playerColor,boardState,move,reducedExtension,false);
+            if (maximizing ? (score >= singularScore) : (score <= singularScore))
+            {
+                singular = false;
+                break;
+            }
+        }
+        singularSearches--;
+        followingPv = wasFollowingPv;
+        return singular && !((searchControl != null) && searchControl.isStopped());
+    }
+
+    /**
+     * makes a move, followed by the principal variation of the ply below, the principal variation of a ply
+     */
+    private void updatePrincipalVariation(int ply, ChessMove move)
+    {
+        pvTable[ply][ply] = move;
+        int length = pvLength[ply+1];
+        System.arraycopy(pvTable[ply+1],ply+1,pvTable[ply],ply+1,length - (ply+1));
+        pvLength[ply] = length;
+    }
+
+    /**
+     * scores the board state by a quiescence search alone (see quiesceMax), i.e. to tune the
+     * evaluation on positions resolved past their exchanges
+     * @return score for the player to move
+     */
+    public int quiesce()
+    {
+        getLineHistory(0).setMostRecentMove((gameHistory == null) ? null : gameHistory.getMostRecentMove());
+        return quiesceMax(0,-MATE_SCORE,MATE_SCORE,cpuPlayerColor,boardState,0);
+    }
+
+    /**
+     * scores another board state by a quiescence search alone, so one search (with its move stack)
+     * scores many positions, i.e. one search per thread of a tuning
+     * @param boardState board state to score (its pieces are not moved)
+     * @param colorToMove color of the player to move, who becomes this search's cpu player
+     * @return score for the player to move
+     */
+    public int quiesce(ChessBoardState boardState, Properties.PlayerColor colorToMove)
+    {
+        cpuPlayerColor = colorToMove;
+        getLineHistory(0).setMostRecentMove(null);
+        return quiesceMax(0,-MATE_SCORE,MATE_SCORE,colorToMove,boardState,0);
+    }
+
+    /**
+     * searches captures only, below the depth of the full search, so positions are not evaluated in
+     * the middle of an exchange: the cpu player may stand pat (keep the evaluation) instead<br>
+     * - captures losing material by static exchange evaluation are not searched, and a position
+     *   with no capture winning or trading material is evaluated without generating its moves
+     */
+    private int quiesceMax(int depth, int alpha, int beta, Properties.PlayerColor playerColor, ChessBoardState boardState, int qDepth)
+    {
+        if (qDepth > 0)
+        {
+            if ((searchControl != null) && searchControl.countNode()) return alpha;
+            statistics.quiescenceNodes++;
+        }
+        statistics.evaluations++;
+        int standPat = evaluate(boardState,playerColor);
+        if (standPat >= beta) return beta;
+        if (standPat > alpha) alpha = standPat;
+        if (qDepth >= ChessAI.maxQDepth) return alpha;
+
+        List<ChessMove> captures = getGoodCaptures(depth,playerColor,boardState);
+        for (ChessMove move : captures)
+        {
+            ChessBoardState tempBoardState = makeMove(depth+1,move,boardState);
+
+            int score = quiesceMin(depth+1,alpha,beta,Properties.oppositeColor(playerColor),tempBoardState,qDepth+1);
+            if (score >= beta) return beta;
+            if (score > alpha) alpha = score;
+        }
+        return alpha;
+    }
+
+    private int quiesceMin(int depth, int alpha, int beta, Properties.PlayerColor playerColor, ChessBoardState boardState, int qDepth)
+    {
+        if (qDepth > 0)
+        {
+            if ((searchControl != null) && searchControl.countNode()) return beta;
+            statistics.quiescenceNodes++;
+        }
+        statistics.evaluations++;
+        int standPat = evaluate(boardState,playerColor);
+        if (standPat <= alpha) return alpha;
+        if (standPat < beta) beta = standPat;
+        if (qDepth >= ChessAI.maxQDepth) return beta;
+
+        List<ChessMove> captures = getGoodCaptures(depth,playerColor,boardState);
+        for (ChessMove move : captures)
+        {
+            ChessBoardState tempBoardState = makeMove(depth+1,move,boardState);
+
+            int score = quiesceMax(depth+1,alpha,beta,Properties.oppositeColor(playerColor),tempBoardState,qDepth+1);
+            if (score <= alpha) return alpha;
+            if (score < beta) beta = score;
+        }
+        return beta;
+    }
+
+    /**
+     * evaluates a position for the cpu player: by the network if there is one (its accumulator kept
+     * by the board state, see ChessNetwork), else by ChessAI.evaluate
+     */
+    private int evaluate(ChessBoardState boardState, Properties.PlayerColor colorToMove)
+    {
+        if (network == null) return ChessAI.evaluate(boardState,cpuPlayerColor,evaluationParameters);
+        int score = network.evaluate(boardState,colorToMove);
+        return (colorToMove == cpuPlayerColor) ? score : -score;
+    }
+
+    /**
+     * fills the ply's move list with the player's captures that do not lose material, best first
+     * (empty, without generating moves, if the static exchanges show there are none)
+     */
+    private List<ChessMove> getGoodCaptures(int depth, Properties.PlayerColor playerColor, ChessBoardState boardState)
+    {
+        List<ChessMove> captures = moveStack.get(depth+1);
+        ChessBitboards bitboards = boardState.getBitboards();
+        if ((bitboards == null) || !StaticExchange.hasGoodCapture(bitboards,ChessBitboards.getColorIndex(playerColor))) return captures;
+
+        getValidMoves(boardState,playerColor,captures,depth);
+        if (orderScores.length < captures.size()) orderScores = new int[captures.size()];
+        int numCaptures = 0;
+        for (int m = 0; m < captures.size(); m++)
+        {
+            ChessMove move = captures.get(m);
+            if (!StaticExchange.isCapture(bitboards,move)) continue;
+            int gain = StaticExchange.evaluate(bitboards,move);
+            if (gain < 0) continue;
+            orderScores[numCaptures] = gain;
+            captures.set(numCaptures++,move);
+        }
+        captures.subList(numCaptures,captures.size()).clear();
+        sortMoves(captures,0);
+        return captures;
+    }
+
+    /**
+     * orders the moves of a node: the previous principal variation's move (or else the transposition
+     * table's move), the captures that do not lose material (the best exchanges first), the quiet
+     * moves, then the losing captures
+     */
+    private void orderMoves(int ply, List<ChessMove> validMoves, ChessBoardState boardState, ChessMove tableMove)
+    {
+        int first = orderPrincipalVariation(ply,validMoves) ? 1 : 0;
+        if ((first == 0) && (tableMove != null))
+        {
+            Collections.swap(validMoves,0,validMoves.indexOf(tableMove));
+            first = 1;
+        }
+        ChessBitboards bitboards = boardState.getBitboards();
+        if (bitboards == null) return;
+
+        if (orderScores.length < validMoves.size()) orderScores = new int[validMoves.size()];
+        for (int m = first; m < validMoves.size(); m++)
+        {
+            ChessMove move = validMoves.get(m);
+            if (!StaticExchange.isCapture(bitboards,move)) orderScores[m] = 0;
+            else
+            {
+                int gain = StaticExchange.evaluate(bitboards,move);
+                orderScores[m] = (gain >= 0) ? GOOD_CAPTURE_ORDER + gain : gain;
+            }
+        }
+        sortMoves(validMoves,first);
+    }
+
+    /**
+     * sorts moves by their ordering scores, highest first (insertion sort keeps equal moves in order)
+     */
+    private void sortMoves(List<ChessMove> moves, int first)
+    {
+        for (int i = first + 1; i < moves.size(); i++)
+        {
+            for (int j = i; (j > first) && (orderScores[j] > orderScores[j-1]); j--)
+            {
+                int orderScore = orderScores[j];
+                orderScores[j] = orderScores[j-1];
+                orderScores[j-1] = orderScore;
+                moves.set(j,moves.set(j-1,moves.get(j)));
+            }
+        }
+    }
+
+    /**
+     * moves the previous principal variation's move of a ply to the front of the ply's moves, while
+     * the search is following the previous principal variation
+     * @return true if the first move is the principal variation's
+     */
+    private boolean orderPrincipalVariation(int ply, List<ChessMove> validMoves)
+    {
+        if (!followingPv) return false;
+        followingPv = false;
+        if (ply >= previousPv.length) return false;
+        for (int m = 0; m < validMoves.size(); m++)
+        {
+            if (isSameMove(previousPv[ply],validMoves.get(m)))
+            {
+                Collections.swap(validMoves,0,m);
+                followingPv = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameMove(ChessMove move1, ChessMove move2)
+    {
+        return (move1.getClass() == move2.getClass())
+            && (move1.getFromLocation() == move2.getFromLocation())
+            && (move1.getToLocation() == move2.getToLocation());
+    }
+
+    /**
+     * checks whether the position searched repeats an earlier one (once is enough: the side that
+     * can avoid the repetition would have)
+     */
+    private boolean isRepeated()
+    {
+        return searchHistory.countRepetitions() > 0;
+    }
+
+    /**
+     * scores a position reached by the fifty-move rule: a draw, unless the move that reached it
+     * mated (a mate ends the game before the draw can be claimed)
+     */
+    private int scoreFiftyMoves(int depth, Properties.PlayerColor playerColor, ChessBoardState boardState)
+    {
+        if (!boardState.check(playerColor)) return DRAW_SCORE;
+        List<ChessMove> validMoves = getValidMoves(boardState,playerColor,moveStack.get(depth+1),depth);
+        return validMoves.isEmpty() ? scoreNoMoves(depth,playerColor,boardState) : DRAW_SCORE;
+    }
+
+    private void countCutoff(int moveNumber)
+    {
+        statistics.betaCutoffs++;
+        if (moveNumber == 0) statistics.firstMoveCutoffs++;
+    }
+
+    /**
+     * makes a move of the line searched on a copy of the board, the way a game does (see
+     * ChessBoardState.makeMove): the move becomes the line's last move at the ply it leads to,
+     * and the moving piece's last move, for en passant and pawns' two-space moves below the root
+     * @param ply depth of the node the move leads to
+     * @return newly-created board state after the move
+     */
+    private ChessBoardState makeMove(int ply, ChessMove move, ChessBoardState boardState)
+    {
+        ChessBoardState tempBoardState = ChessBoardState.copy(boardState);
+        tempBoardState.makeMove(move,getLineHistory(ply));
+        return tempBoardState;
+    }
+
+    /**
+     * gets the history holding the line's last move at a ply, growing the histories if a search
+     * goes deeper than before
+     */
+    private ChessGameHistory getLineHistory(int ply)
+    {
+        while (ply >= lineHistories.size())
+        {
+            lineHistories.add(new ChessGameHistory());
+        }
+        return lineHistories.get(ply);
+    }
+
+    /**
+     * generates the moves of a position below the root, with the line's last move (not the game's)
+     * as the most recent move, so a pawn pushed two spaces by it may be taken en passant
+     */
+    private List<ChessMove> getValidMoves(ChessBoardState boardState, PlayerColor playerColor, List<ChessMove> validMoves, int depth)
+    {
+        MoveGenerationEvent event = new MoveGenerationEvent();
+        event.begin();
+        boardState.addValidMoves(playerColor,getLineHistory(depth),validMoves);
+        event.end();
+        if (event.shouldCommit())
+        {
+            event.ply   = depth + 1;
+            event.moves = validMoves.size();
+            event.commit();
+        }
+        return validMoves;
+    }
+
+    /**
+     * scores a position whose player to move has no valid move: mated (the nearer the root, the
+     * larger the score), or stalemated
+     */
+    private int scoreNoMoves(int depth, Properties.PlayerColor playerColor, ChessBoardState boardState)
+    {
+        if (!boardState.check(playerColor)) return DRAW_SCORE;
+        int matedScore = -(MATE_SCORE - (depth+1));
+        return (playerColor == cpuPlayerColor) ? matedScore : -matedScore;
+    }
+
+    /**
+     * converts a mate score from plies from the root to plies from a position at the given ply,
+     * as kept in the transposition table: the position may be reached at another ply
+     */
+    private static int toTableScore(int score, int ply)
+    {
+        if ((score >= MATE_SCORE - MAX_MATE_PLY) && (score <= MATE_SCORE))     return score + ply;
+        if ((score <= -(MATE_SCORE - MAX_MATE_PLY)) && (score >= -MATE_SCORE)) return score - ply;
+        return score;
+    }
+
+    private static int fromTableScore(int score, int ply)
+    {
+        if ((score >= MATE_SCORE - MAX_MATE_PLY + ply) && (score <= MATE_SCORE + ply))       return score - ply;
+        if ((score <= -(MATE_SCORE - MAX_MATE_PLY + ply)) && (score >= -(MATE_SCORE + ply))) return score + ply;
+        return score;
+    }
+
+    /**
+     * looks up a position in the transposition table, which holds scores for white
+     */
+    private int probeTable(long key, int ply, int draft, int alpha, int beta)
+    {
+        statistics.tableProbes++;
+        alpha = toTableScore(alpha,ply);
+        beta  = toTableScore(beta,ply);
+        int score = (cpuPlayerColor == PlayerColor.WHITE) ? transpositionTable.probe(key,draft,alpha,beta)
+                                                          : transpositionTable.probe(key,draft,-beta,-alpha);
+        if (score == TranspositionTable.MISS) return score;
+        statistics.tableHits++;
+        return fromTableScore((cpuPlayerColor == PlayerColor.WHITE) ? score : -score,ply);
+    }
+
+    /**
+     * finds the transposition table's move of a position among its valid moves
+     * @param entry table entry of the position (0 if none)
+     * @return the table's move, or null if there is none
+     */
+    private static ChessMove findTableMove(long entry, List<ChessMove> validMoves, ChessBoardState boardState)
+    {
+        int tableMove = TranspositionTable.getMove(entry);
+        if (tableMove == TranspositionTable.NO_MOVE) return null;
+        for (ChessMove move : validMoves)
+        {
+            if (getMoveNumber(move,boardState) == tableMove) return move;
+        }
+        return null;
+    }
+
+    /**
+     * numbers a move by its squares, for the transposition table (a promotion's piece is not numbered)
+     * @return number of the move, or TranspositionTable.NO_MOVE if the board is not a standard board
+     */
+    private static int getMoveNumber(ChessMove move, ChessBoardState boardState)
+    {
+        ChessBitboards bitboards = boardState.getBitboards();
+        if ((move == null) || (bitboards == null)) return TranspositionTable.NO_MOVE;
+        return 1 + bitboards.getSquare(move.getFromLocation()) * ChessNotation.NUM_SQUARES + bitboards.getSquare(move.getToLocation());
+    }
+
+    /**
+     * gets the score of a table entry for the cpu player, relative to a ply (as probeTable)
+     */
+    private int getTableScore(long entry, int ply)
+    {
+        int score = TranspositionTable.getScore(entry);
+        return fromTableScore((cpuPlayerColor == PlayerColor.WHITE) ? score : -score,ply);
+    }
+
+    /**
+     * gets the bound of a table entry's score for the cpu player
+     */
+    private int getTableBound(long entry)
+    {
+        int bound = TranspositionTable.getBound(entry);
+        if ((cpuPlayerColor == PlayerColor.WHITE) || (bound == TranspositionTable.EXACT)) return bound;
+        return (bound == TranspositionTable.UPPER) ? TranspositionTable.LOWER : TranspositionTable.UPPER;
+    }
+
+    /**
+     * stores the (fail-hard) score of a position searched with the window alpha to beta, and its best
+     * move (null if no move raised alpha), unless the search was stopped part-way
+     */
+    private void storeTable(long key, int ply, int draft, int score, int alpha, int beta, ChessMove bestMove, ChessBoardState boardState)
+    {
+        if ((transpositionTable == null) || ((searchControl != null) && searchControl.isStopped())) return;
+
+        int bound = (score <= alpha) ? TranspositionTable.UPPER : (score >= beta) ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        score = toTableScore(score,ply);
+        if (cpuPlayerColor != PlayerColor.WHITE)
+        {
+            score = -score;
+            if (bound != TranspositionTable.EXACT) bound = (bound == TranspositionTable.UPPER) ? TranspositionTable.LOWER : TranspositionTable.UPPER;
+        }
+        transpositionTable.store(key,draft,score,bound,getMoveNumber(bestMove,boardState));
+    }
+
+    /**
+     * scores a position found in the endgame tablebases, for the cpu player<br>
+     * - mates nearer the root score higher (and being mated nearer the root scores lower)
+     * @return score of the position, or Tablebases.UNKNOWN if it is not in a table
+     */
+    private int probeTablebases(int depth, Properties.PlayerColor playerColor, ChessBoardState boardState)
+    {
+        if (boardState.getPieces().size() > Tablebases.MAX_PIECES) return Tablebases.UNKNOWN;
+
+        int score = tablebases.probe(boardState,playerColor);
+        if (score == Tablebases.UNKNOWN) return score;
+        if (score > 0) score -= depth+1;
+        if (score < 0) score += depth+1;
+        return (playerColor == cpuPlayerColor) ? score : -score;
+    }
 }
@@ -1,7 +1,9 @@
 package chess.players.ai;
 
 import chess.ChessBoardState;
+import chess.endgame.Tablebases;
 import chess.moves.ChessMove;
+import chess.moves.MoveStack;
 import chess.players.ChessPlayerCPU;
 import game.utility.Properties;
 import java.util.ArrayList;
@@ -14,6 +16,11 @@ import java.util.List;
 public class MonteCarlo {
     private ChessPlayerCPU cpuPlayer;
     private Properties.PlayerColor cpuPlayerColor;
+    private final MoveStack moveStack;
+    private final Tablebases tablebases = Tablebases.getDefault();
+    
+    // counted by this search's thread only: a node is a position of a trial
+    private final SearchStatistics statistics = new SearchStatistics("MonteCarlo");
     
     public class Moves {
         public ChessMove move;
@@ -43,14 +50,34 @@ public class MonteCarlo {
     }
     
     public MonteCarlo(ChessPlayerCPU player, Properties.PlayerColor playerColor)
+    {
+        this(player,playerColor,new MoveStack());
+    }
+    
+    /**
+     * creates a monte-carlo search that generates moves into the given per-ply buffers
+     * @param player player for whom the search picks a move
+     * @param playerColor color of the cpu player
+     * @param moveStack per-ply move lists owned by the calling search thread
+     */
+    public MonteCarlo(ChessPlayerCPU player, Properties.PlayerColor playerColor, MoveStack moveStack)
     {
         cpuPlayer      = player;
         cpuPlayerColor = playerColor;
+        this.moveStack = moveStack;
+    }
+
+    public SearchStatistics getStatistics()
+    {
+        return statistics;
     }
 
     public ChessMove evaluate()
     {
-        List<ChessMove> validMoves = cpuPlayer.getValidMoves(cpuPlayer.getBoardState(),cpuPlayerColor);
+        statistics.reset();
+        // moves are tested in place during generation, so search from a private copy of the official board
+        ChessBoardState rootBoardState = ChessBoardState.copy(cpuPlayer.getBoardState());
+        List<ChessMove> validMoves = cpuPlayer.getValidMoves(rootBoardState,cpuPlayerColor,moveStack.get(0));
         List<Moves> monteCarloScores = new ArrayList<>();
         int numPossibleMoves = validMoves.size();
         for (int i=0;i<numPossibleMoves;i++)
@@ -68,7 +95,7 @@ public class MonteCarlo {
             if (validMoves.isEmpty()) break;
             ChessMove move = validMoves.get(moveIndex);
             
-            ChessBoardState tempBoardState = ChessBoardState.copy(cpuPlayer.getBoardState());
+            ChessBoardState tempBoardState = ChessBoardState.copy(rootBoardState);
             ((ChessMove)move).commitMove(tempBoardState);
 
             int tempScore = monteCarloTrial(0,Properties.oppositeColor(cpuPlayerColor),tempBoardState);
@@ -92,6 +119,8 @@ public class MonteCarlo {
                 bestMoves.add(monteCarloScores.get(m).move);
             }
         }
+        statistics.setDepthReached(ChessAI.maxMonteCarloDepth + 1);
+        statistics.finish();
         if (bestMoves.isEmpty()) return null;
         
         return bestMoves.get((int)Math.floor(Math.random()*bestMoves.size()));
@@ -101,6 +130,17 @@ public class MonteCarlo {
     
     private int monteCarloTrial(int depth, Properties.PlayerColor playerColor, ChessBoardState boardState)
     {
+        statistics.nodes++;
+
+        // an endgame in the tablebases ends the trial with its known result
+        if (boardState.getPieces().size() <= Tablebases.MAX_PIECES)
+        {
+            int tablebaseScore = tablebases.probe(boardState,playerColor);
+            if (tablebaseScore > 0) return  10000;
+            if (tablebaseScore == 0) return 0;
+            if (tablebaseScore != Tablebases.UNKNOWN) return -10000;
+        }
+        
         int score = ChessAI.evaluate(boardState,playerColor);
                    
         if (depth >= ChessAI.maxMonteCarloDepth)
@@ -111,8 +151,9 @@ public class MonteCarlo {
         if (score == Integer.MIN_VALUE) return -10000;
         if (score == Integer.MAX_VALUE) return  10000;
 
-        List<ChessMove> validMoves = cpuPlayer.getValidMoves(boardState,playerColor);
+        List<ChessMove> validMoves = cpuPlayer.getValidMoves(boardState,playerColor,moveStack.get(depth+1));
         if (validMoves.isEmpty()) return score;
+        statistics.expandedNodes++;
         ChessMove move = validMoves.get((int)Math.floor(Math.random()*validMoves.size()));
         ChessBoardState tempBoardState = ChessBoardState.copy(boardState);
         move.commitMove(tempBoardState);
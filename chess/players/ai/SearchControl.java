@@ -0,0 +1,74 @@
+package chess.players.ai;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * stops a search, from outside (stop) or when it reaches its node limit or deadline<br>
+ * - shared by every thread of one search; the nodes of all threads are counted together<br>
+ * - the clock is read only every 1024 nodes
+ *
+ * @author devang
+ */
+public class SearchControl {
+    private static final long CLOCK_CHECK_MASK = 1023;
+
+    private final long       maxNodes;
+    private final AtomicLong nodes    = new AtomicLong();
+    private volatile boolean stopped  = false;
+    private volatile long    deadline = Long.MAX_VALUE;
+
+    public SearchControl()
+    {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * creates a control for a search of at most the given nodes
+     * @param maxNodes nodes after which the search stops
+     */
+    public SearchControl(long maxNodes)
+    {
+        this.maxNodes = maxNodes;
+    }
+
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    public boolean isStopped()
+    {
+        return stopped;
+    }
+
+    /**
+     * sets the time at which the search stops
+     * @param deadline time in milliseconds (as System.currentTimeMillis), or Long.MAX_VALUE for none
+     */
+    public void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    public long getDeadline()
+    {
+        return deadline;
+    }
+
+    public long getNodes()
+    {
+        return nodes.get();
+    }
+
+    /**
+     * counts a node of the search
+     * @return true if the search is to stop
+     */
+    public boolean countNode()
+    {
+        long count = nodes.incrementAndGet();
+        if (count >= maxNodes) stopped = true;
+        if (((count & CLOCK_CHECK_MASK) == 0) && (System.currentTimeMillis() >= deadline)) stopped = true;
+        return stopped;
+    }
+}
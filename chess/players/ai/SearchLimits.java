@@ -0,0 +1,60 @@
+package chess.players.ai;
+
+import game.utility.Properties.PlayerColor;
+
+/**
+ * limits of one search: depth, nodes, time for the move, or the clocks of the game<br>
+ * - with no limit set, a search runs to MAX_DEPTH or until it is stopped
+ *
+ * @author devang
+ */
+public class SearchLimits {
+    public static final int  MAX_DEPTH           = 64;
+    public static final int  DEFAULT_MOVES_TO_GO = 30;
+    public static final long CLOCK_MARGIN        = 50;
+
+    private int     depth          = MAX_DEPTH;
+    private long    nodes          = Long.MAX_VALUE;
+    private long    moveTime       = 0;
+    private long    whiteTime      = 0;
+    private long    blackTime      = 0;
+    private long    whiteIncrement = 0;
+    private long    blackIncrement = 0;
+    private int     movesToGo      = 0;
+    private boolean infinite       = false;
+    private boolean ponder         = false;
+
+    public int getDepth()                         { return depth; }
+    public void setDepth(int depth)               { this.depth = Math.max(1,Math.min(MAX_DEPTH,depth)); }
+    public long getNodes()                        { return nodes; }
+    public void setNodes(long nodes)              { this.nodes = Math.max(1,nodes); }
+    public long getMoveTime()                     { return moveTime; }
+    public void setMoveTime(long moveTime)        { this.moveTime = moveTime; }
+    public void setWhiteTime(long whiteTime)      { this.whiteTime = whiteTime; }
+    public void setBlackTime(long blackTime)      { this.blackTime = blackTime; }
+    public void setWhiteIncrement(long increment) { this.whiteIncrement = increment; }
+    public void setBlackIncrement(long increment) { this.blackIncrement = increment; }
+    public void setMovesToGo(int movesToGo)       { this.movesToGo = movesToGo; }
+    public boolean isInfinite()                   { return infinite; }
+    public void setInfinite(boolean infinite)     { this.infinite = infinite; }
+    public boolean isPonder()                     { return ponder; }
+    public void setPonder(boolean ponder)         { this.ponder = ponder; }
+
+    /**
+     * gets the time to spend on a move: the move time if one is set, else a share of the
+     * player's clock (the remaining time over the moves to go, plus most of the increment)
+     * @param color color of the player to move
+     * @return time to spend in milliseconds, or 0 if the search is not timed
+     */
+    public long getTimeBudget(PlayerColor color)
+    {
+        if (moveTime > 0) return moveTime;
+
+        long time      = (color == PlayerColor.WHITE) ? whiteTime : blackTime;
+        long increment = (color == PlayerColor.WHITE) ? whiteIncrement : blackIncrement;
+        if (time <= 0) return 0;
+
+        long budget = time / ((movesToGo > 0) ? movesToGo : DEFAULT_MOVES_TO_GO) + 3*increment/4;
+        return Math.max(1,Math.min(budget,time - CLOCK_MARGIN));
+    }
+}
@@ -0,0 +1,93 @@
+package chess.players.ai;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * the registry to which searches publish their statistics when they finish a move<br>
+ * - keeps running totals over all searches, and the statistics of the most recent search<br>
+ * - subscribers (a GUI, a server's /stats page, a log) receive every published search
+ *
+ * @author devang
+ */
+public class SearchMetrics {
+    private static SearchMetrics defaultMetrics = null;
+
+    private final AtomicLong searches       = new AtomicLong();
+    private final AtomicLong nodes          = new AtomicLong();
+    private final AtomicLong millis         = new AtomicLong();
+    private final AtomicLong betaCutoffs    = new AtomicLong();
+    private final AtomicLong tableProbes    = new AtomicLong();
+    private final AtomicLong tableHits      = new AtomicLong();
+    private final List<Consumer<SearchStatistics>> subscribers = new CopyOnWriteArrayList<>();
+
+    private volatile SearchStatistics lastSearch = null;
+
+    /**
+     * gets the registry shared by all searches
+     * @return the shared registry
+     */
+    public static synchronized SearchMetrics getDefault()
+    {
+        if (defaultMetrics == null) defaultMetrics = new SearchMetrics();
+        return defaultMetrics;
+    }
+
+    /**
+     * replaces the registry shared by all searches
+     * @param metrics the new shared registry
+     */
+    public static synchronized void setDefault(SearchMetrics metrics)
+    {
+        defaultMetrics = metrics;
+    }
+
+    public void subscribe(Consumer<SearchStatistics> subscriber)
+    {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<SearchStatistics> subscriber)
+    {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * publishes the statistics of a finished search
+     * @param statistics statistics of the search (no longer changed by the search)
+     */
+    public void publish(SearchStatistics statistics)
+    {
+        searches.incrementAndGet();
+        nodes.addAndGet(statistics.getNodes());
+        millis.addAndGet(statistics.getElapsedMillis());
+        betaCutoffs.addAndGet(statistics.getBetaCutoffs());
+        tableProbes.addAndGet(statistics.getTableProbes());
+        tableHits.addAndGet(statistics.getTableHits());
+        lastSearch = statistics;
+
+        String loggerMsg = statistics.toString();
+        Logger.getLogger(SearchMetrics.class.getName()).log(Level.FINE,loggerMsg);
+        for (Consumer<SearchStatistics> subscriber : subscribers)
+        {
+            subscriber.accept(statistics);
+        }
+    }
+
+    public long getSearches()               { return searches.get(); }
+    public long getNodes()                  { return nodes.get(); }
+    public long getMillis()                 { return millis.get(); }
+    public long getBetaCutoffs()            { return betaCutoffs.get(); }
+    public long getTableProbes()            { return tableProbes.get(); }
+    public long getTableHits()              { return tableHits.get(); }
+    public SearchStatistics getLastSearch() { return lastSearch; }
+
+    public long getNodesPerSecond()
+    {
+        return getNodes()*1000 / Math.max(1,getMillis());
+    }
+}
@@ -0,0 +1,220 @@
+package chess.players.ai;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * runs the CPU players' searches on a fixed pool of search threads, one per core by default,
+ * so a server hosting many CPU games never runs more searches at once than it has cores<br>
+ * - a search waiting for a thread is queued by priority (higher first), then in order of submission<br>
+ * - the queue is bounded: a search submitted to a full queue is rejected; a search takes one of
+ *   the queue's places when it is submitted, and gives it back when it starts or is cancelled<br>
+ * - a search can be cancelled, queued or running: a running search is stopped through its SearchControl<br>
+ * - counts of submitted, finished, cancelled and rejected searches, and their queueing and
+ *   running times, are kept for monitoring
+ *
+ * @author devang
+ */
+public class SearchScheduler {
+    public static final int PRIORITY_LOW    = 0;
+    public static final int PRIORITY_NORMAL = 5;
+    public static final int PRIORITY_HIGH   = 10;
+
+    public static final int DEFAULT_MAX_QUEUED = 1024;
+
+    private static SearchScheduler defaultScheduler = null;
+
+    private final ThreadPoolExecutor executor;
+    private final int                maxQueued;
+    private final Semaphore          queueSpaces;
+
+    private final AtomicLong sequence       = new AtomicLong();
+    private final AtomicLong submitted      = new AtomicLong();
+    private final AtomicLong finished       = new AtomicLong();
+    private final AtomicLong cancelled      = new AtomicLong();
+    private final AtomicLong rejected       = new AtomicLong();
+    private final AtomicLong queuedNanos    = new AtomicLong();
+    private final AtomicLong runningNanos   = new AtomicLong();
+
+    /**
+     * a search submitted to the scheduler: a Future of its result, ordered in the queue by priority
+     */
+    public class SearchTask<T> extends FutureTask<T> implements Comparable<SearchTask<?>> {
+        private final int           priority;
+        private final long          order;
+        private final SearchControl searchControl;
+        private final long          submitTime = System.nanoTime();
+        private volatile long       startTime  = 0;
+        private final AtomicBoolean queued     = new AtomicBoolean(true);
+
+        private SearchTask(Callable<T> search, int priority, SearchControl searchControl)
+        {
+            super(search);
+            this.priority      = priority;
+            this.order         = sequence.getAndIncrement();
+            this.searchControl = searchControl;
+        }
+
+        public int getPriority()
+        {
+            return priority;
+        }
+
+        @Override
+        public void run()
+        {
+            leaveQueue();
+            startTime = System.nanoTime();
+            queuedNanos.addAndGet(startTime - submitTime);
+            super.run();
+        }
+
+        /**
+         * cancels the search: a queued search never runs, a running search is stopped
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            if (searchControl != null) searchControl.stop();
+            boolean isCancelled = super.cancel(mayInterruptIfRunning);
+            if (isCancelled) executor.remove(this);
+            return isCancelled;
+        }
+
+        @Override
+        protected void done()
+        {
+            leaveQueue();
+            if (isCancelled()) cancelled.incrementAndGet();
+            else               finished.incrementAndGet();
+            if (startTime != 0) runningNanos.addAndGet(System.nanoTime() - startTime);
+        }
+
+        /**
+         * gives back the task's place in the queue, once
+         */
+        private void leaveQueue()
+        {
+            if (queued.compareAndSet(true,false)) queueSpaces.release();
+        }
+
+        @Override
+        public int compareTo(SearchTask<?> task)
+        {
+            if (priority != task.priority) return (priority > task.priority) ? -1 : 1;
+            return Long.compare(order,task.order);
+        }
+    }
+
+    /**
+     * creates a scheduler with one search thread per core
+     */
+    public SearchScheduler()
+    {
+        this(Runtime.getRuntime().availableProcessors(),DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * creates a scheduler
+     * @param numThreads number of searches run at once
+     * @param maxQueued number of searches that may wait for a thread
+     */
+    public SearchScheduler(int numThreads, int maxQueued)
+    {
+        this.maxQueued = maxQueued;
+        queueSpaces    = new Semaphore(maxQueued);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable,"chess-search-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(numThreads,numThreads,0,TimeUnit.MILLISECONDS,
+                                          new PriorityBlockingQueue<>(),threadFactory);
+    }
+
+    /**
+     * gets the scheduler shared by all CPU players
+     * @return the shared scheduler
+     */
+    public static synchronized SearchScheduler getDefault()
+    {
+        if (defaultScheduler == null) defaultScheduler = new SearchScheduler();
+        return defaultScheduler;
+    }
+
+    /**
+     * replaces the scheduler shared by all CPU players
+     * @param scheduler the new shared scheduler
+     */
+    public static synchronized void setDefault(SearchScheduler scheduler)
+    {
+        defaultScheduler = scheduler;
+    }
+
+    /**
+     * queues a search
+     * @param search the search to run
+     * @param priority priority of the search (PRIORITY_LOW to PRIORITY_HIGH, or any other int)
+     * @param searchControl control stopping the search when it is cancelled (may be null)
+     * @return the queued search
+     * @throws RejectedExecutionException if the queue is full, or the scheduler is shut down
+     */
+    public <T> SearchTask<T> submit(Callable<T> search, int priority, SearchControl searchControl)
+    {
+        if (!queueSpaces.tryAcquire())
+        {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("search queue is full: " + maxQueued + " searches");
+        }
+        SearchTask<T> task = new SearchTask<>(search,priority,searchControl);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.leaveQueue();
+            rejected.incrementAndGet();
+            throw e;
+        }
+        submitted.incrementAndGet();
+        return task;
+    }
+
+    /**
+     * stops taking searches, cancelling the queued ones; running searches finish
+     */
+    public void shutdown()
+    {
+        for (Runnable task : executor.shutdownNow())
+        {
+            ((SearchTask<?>)task).cancel(false);
+        }
+    }
+
+    public int getNumThreads()          { return executor.getMaximumPoolSize(); }
+    public int getNumQueued()           { return executor.getQueue().size(); }
+    public int getNumRunning()          { return executor.getActiveCount(); }
+    public long getNumSubmitted()       { return submitted.get(); }
+    public long getNumFinished()        { return finished.get(); }
+    public long getNumCancelled()       { return cancelled.get(); }
+    public long getNumRejected()        { return rejected.get(); }
+    public long getTotalQueuedMillis()  { return TimeUnit.NANOSECONDS.toMillis(queuedNanos.get()); }
+    public long getTotalRunningMillis() { return TimeUnit.NANOSECONDS.toMillis(runningNanos.get()); }
+
+    @Override
+    public String toString()
+    {
+        return "SearchScheduler[threads=" + getNumThreads() + ",running=" + getNumRunning() + ",queued=" + getNumQueued()
+             + ",submitted=" + getNumSubmitted() + ",finished=" + getNumFinished() + ",cancelled=" + getNumCancelled()
+             + ",rejected=" + getNumRejected() + ",queuedMillis=" + getTotalQueuedMillis()
+             + ",runningMillis=" + getTotalRunningMillis() + "]";
+    }
+}
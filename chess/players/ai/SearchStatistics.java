@@ -0,0 +1,189 @@
+package chess.players.ai;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * what one search did: nodes, cutoffs, transposition table probes, depth and time<br>
+ * - each search thread counts into its own statistics (plain fields, no sharing), and the
+ *   threads' statistics are added together when an iteration or the search is over<br>
+ * - rates (nodes per second, cutoff rates, table hit rate, branching factor) are derived
+ *   from the counts
+ *
+ * @author devang
+ */
+public class SearchStatistics {
+    /**
+     * the nodes and time of one iteration of an iterative deepening search
+     */
+    public static class Iteration {
+        public final int  depth;
+        public final long nodes;
+        public final long millis;
+
+        public Iteration(int depth, long nodes, long millis)
+        {
+            this.depth  = depth;
+            this.nodes  = nodes;
+            this.millis = millis;
+        }
+    }
+
+    private final String name;
+
+    long nodes;
+    long quiescenceNodes;
+    long expandedNodes;
+    long evaluations;
+    long betaCutoffs;
+    long firstMoveCutoffs;
+    long tableProbes;
+    long tableHits;
+    long extensions;
+
+    private int   depthReached = 0;
+    private long  startTime    = System.currentTimeMillis();
+    private long  elapsedMillis = 0;
+    private final List<Iteration> iterations = new ArrayList<>();
+    private long  iterationsNodes  = 0;
+    private long  iterationsMillis = 0;
+
+    /**
+     * creates empty statistics
+     * @param name kind of search (i.e. MiniMax, MonteCarlo)
+     */
+    public SearchStatistics(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * clears the counts and restarts the clock
+     */
+    public void reset()
+    {
+        nodes = quiescenceNodes = expandedNodes = evaluations = betaCutoffs = firstMoveCutoffs = tableProbes = tableHits = extensions = 0;
+        depthReached  = 0;
+        elapsedMillis = 0;
+        iterations.clear();
+        iterationsNodes  = 0;
+        iterationsMillis = 0;
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * clears the counts, keeping the iterations and the clock (to add up the threads' counts again)
+     */
+    void resetCounts()
+    {
+        nodes = quiescenceNodes = expandedNodes = evaluations = betaCutoffs = firstMoveCutoffs = tableProbes = tableHits = extensions = 0;
+    }
+
+    /**
+     * adds the counts of another search thread
+     * @param statistics statistics of the other thread
+     */
+    public void add(SearchStatistics statistics)
+    {
+        nodes            += statistics.nodes;
+        quiescenceNodes  += statistics.quiescenceNodes;
+        expandedNodes    += statistics.expandedNodes;
+        evaluations      += statistics.evaluations;
+        betaCutoffs      += statistics.betaCutoffs;
+        firstMoveCutoffs += statistics.firstMoveCutoffs;
+        tableProbes      += statistics.tableProbes;
+        tableHits        += statistics.tableHits;
+        extensions       += statistics.extensions;
+        depthReached      = Math.max(depthReached,statistics.depthReached);
+    }
+
+    /**
+     * records a finished iteration of an iterative deepening search
+     * @param depth depth of the iteration
+     */
+    public void addIteration(int depth)
+    {
+        long millis = System.currentTimeMillis() - startTime;
+        iterations.add(new Iteration(depth,getNodes() - iterationsNodes,millis - iterationsMillis));
+        iterationsNodes  = getNodes();
+        iterationsMillis = millis;
+        depthReached = Math.max(depthReached,depth);
+    }
+
+    /**
+     * stops the clock of the search
+     */
+    public void finish()
+    {
+        elapsedMillis = System.currentTimeMillis() - startTime;
+    }
+
+    public void setDepthReached(int depthReached)
+    {
+        this.depthReached = depthReached;
+    }
+
+    public String getName()                 { return name; }
+    public long getNodes()                  { return nodes + quiescenceNodes; }
+    public long getQuiescenceNodes()        { return quiescenceNodes; }
+    public long getEvaluations()            { return evaluations; }
+    public long getBetaCutoffs()            { return betaCutoffs; }
+    public long getFirstMoveCutoffs()       { return firstMoveCutoffs; }
+    public long getTableProbes()            { return tableProbes; }
+    public long getTableHits()              { return tableHits; }
+    public long getExtensions()             { return extensions; }
+    public int getDepthReached()            { return depthReached; }
+    public long getElapsedMillis()          { return elapsedMillis; }
+    public List<Iteration> getIterations()  { return Collections.unmodifiableList(iterations); }
+
+    public long getNodesPerSecond()
+    {
+        return getNodes()*1000 / Math.max(1,elapsedMillis);
+    }
+
+    /**
+     * gets the share of expanded nodes (nodes whose moves were searched) cut off by a move
+     * @return cutoff rate, from 0 to 1
+     */
+    public double getCutoffRate()
+    {
+        return (expandedNodes == 0) ? 0 : (double)betaCutoffs / expandedNodes;
+    }
+
+    /**
+     * gets the share of cutoffs made by the first move searched: a measure of move ordering
+     * @return first-move cutoff rate, from 0 to 1
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        return (betaCutoffs == 0) ? 0 : (double)firstMoveCutoffs / betaCutoffs;
+    }
+
+    public double getTableHitRate()
+    {
+        return (tableProbes == 0) ? 0 : (double)tableHits / tableProbes;
+    }
+
+    /**
+     * gets the effective branching factor: the growth in nodes from one iteration to the next,
+     * or the nodes per expanded node for a search without iterations
+     * @return branching factor
+     */
+    public double getBranchingFactor()
+    {
+        int n = iterations.size();
+        if ((n >= 2) && (iterations.get(n-2).nodes > 0)) return (double)iterations.get(n-1).nodes / iterations.get(n-2).nodes;
+        return (expandedNodes == 0) ? 0 : (double)(getNodes() - 1) / expandedNodes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s: depth %d, %d nodes (%d quiescence), %d nps, %d ms, cutoffs %.1f%% (first move %.1f%%),"
+                           + " table hits %.1f%% of %d, extensions %d, branching %.2f",
+                             name,depthReached,getNodes(),quiescenceNodes,getNodesPerSecond(),elapsedMillis,
+                             100*getCutoffRate(),100*getFirstMoveCutoffRate(),100*getTableHitRate(),tableProbes,
+                             extensions,getBranchingFactor());
+    }
+}
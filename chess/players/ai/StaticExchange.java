@@ -0,0 +1,172 @@
+package chess.players.ai;
+
+import chess.ChessBitboards;
+import chess.moves.ChessMove;
+import chess.moves.MoveEnPassant;
+import chess.moves.MovePromotion;
+
+/**
+ * static exchange evaluation (SEE): the material won or lost by a capture once every piece
+ * attacking the square, including sliding pieces behind other attackers, has recaptured with its
+ * least valuable piece first, each side free to stop capturing when it would lose material<br>
+ * - works on ChessBitboards, so a whole exchange costs a few mask operations per capture instead
+ *   of the ChessPiece.isProtectedByX scans of the board
+ *
+ * @author devang
+ */
+public class StaticExchange {
+    // values of the pieces, indexed by ChessBitboards type: the king can capture, but never be captured
+    public static final int[] VALUES = { 100, 300, 300, 500, 900, 20000 };
+
+    private static final int MAX_EXCHANGE = 32;
+
+    // gains of each capture of an exchange: one buffer per search thread, reused by every exchange
+    private static final ThreadLocal<int[]> GAINS = ThreadLocal.withInitial(() -> new int[MAX_EXCHANGE]);
+
+    private StaticExchange() { }
+
+    /**
+     * evaluates a capture (or any move, whose exchange then starts with nothing captured)
+     * @param bitboards bitboards of the position before the move
+     * @param move move to evaluate
+     * @return material won by the side moving, negative if it loses material
+     */
+    public static int evaluate(ChessBitboards bitboards, ChessMove move)
+    {
+        int from = bitboards.getSquare(move.getFromLocation());
+        int to   = bitboards.getSquare(move.getToLocation());
+        if (move instanceof MoveEnPassant)
+        {
+            // the pawn taken stands beside the capturing pawn, on the square it passed over
+            int taken = to + ((to > from) ? -8 : 8);
+            return evaluate(bitboards,from,to,VALUES[ChessBitboards.PAWN],bitboards.getOccupied() & ~(1L << taken),ChessBitboards.PAWN);
+        }
+        int captured = bitboards.getType(to);
+        int gain     = (captured < 0) ? 0 : VALUES[captured];
+        int mover    = bitboards.getType(from);
+        if (move instanceof MovePromotion)
+        {
+            gain += VALUES[ChessBitboards.QUEEN] - VALUES[ChessBitboards.PAWN];
+            mover = ChessBitboards.QUEEN;
+        }
+        return evaluate(bitboards,from,to,gain,bitboards.getOccupied(),mover);
+    }
+
+    /**
+     * checks whether a move captures a piece (castling, written as the king taking its own rook, does not)
+     * @param bitboards bitboards of the position before the move
+     * @param move move to check
+     * @return true if the move is a capture
+     */
+    public static boolean isCapture(ChessBitboards bitboards, ChessMove move)
+    {
+        if (move instanceof MoveEnPassant) return true;
+        int from = bitboards.getSquare(move.getFromLocation());
+        int to   = bitboards.getSquare(move.getToLocation());
+        int captured = bitboards.getColor(to);
+        return (captured >= 0) && (captured != bitboards.getColor(from));
+    }
+
+    /**
+     * evaluates the capture of the piece on a square by the piece on another
+     * @param bitboards bitboards of the position
+     * @param from square of the capturing piece
+     * @param to square of the captured piece
+     * @return material won by the capturing side, negative if it loses material
+     */
+    public static int evaluate(ChessBitboards bitboards, int from, int to)
+    {
+        int captured = bitboards.getType(to);
+        return evaluate(bitboards,from,to,(captured < 0) ? 0 : VALUES[captured],bitboards.getOccupied(),bitboards.getType(from));
+    }
+
+    /**
+     * gets the most material the opponent of a color wins by capturing one of its pieces
+     * @param bitboards bitboards of the position
+     * @param color color whose pieces are threatened (ChessBitboards.WHITE or BLACK)
+     * @return material won by the best capture, 0 if no capture wins material
+     */
+    public static int getThreat(ChessBitboards bitboards, int color)
+    {
+        int opponent   = 1 - color;
+        long occupied  = bitboards.getOccupied();
+        long targets   = bitboards.getOccupancy(color) & ~bitboards.getPieces(color,ChessBitboards.KING);
+        int threat = 0;
+        while (targets != 0)
+        {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (VALUES[bitboards.getType(to)] <= threat) continue;
+
+            long attackers = bitboards.getAttackers(to,occupied) & bitboards.getOccupancy(opponent);
+            if (attackers == 0) continue;
+            int from = getLeastValuable(bitboards,attackers,opponent);
+            threat = Math.max(threat,evaluate(bitboards,from,to));
+        }
+        return threat;
+    }
+
+    /**
+     * checks whether a side has a capture that does not lose material
+     * @param bitboards bitboards of the position
+     * @param color color of the capturing side
+     * @return true if some capture of the side wins or trades material
+     */
+    public static boolean hasGoodCapture(ChessBitboards bitboards, int color)
+    {
+        long occupied = bitboards.getOccupied();
+        long targets  = bitboards.getOccupancy(1 - color);
+        while (targets != 0)
+        {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+
+            long attackers = bitboards.getAttackers(to,occupied) & bitboards.getOccupancy(color);
+            if ((attackers != 0) && (evaluate(bitboards,getLeastValuable(bitboards,attackers,color),to) >= 0)) return true;
+        }
+        return false;
+    }
+
+    private static int evaluate(ChessBitboards bitboards, int from, int to, int captured, long occupied, int mover)
+    {
+        int[] gain = GAINS.get();
+        int side   = bitboards.getColor(from);
+        int depth  = 0;
+        gain[0]    = captured;
+
+        long fromBit = 1L << from;
+        do {
+            depth++;
+            // if the piece that just captured is taken in turn
+            gain[depth] = VALUES[mover] - gain[depth-1];
+            if (Math.max(-gain[depth-1],gain[depth]) < 0) break;
+
+            occupied &= ~fromBit;
+            side = 1 - side;
+            long attackers = bitboards.getAttackers(to,occupied) & bitboards.getOccupancy(side);
+            if (attackers == 0) break;
+
+            from  = getLeastValuable(bitboards,attackers,side);
+            mover = bitboards.getType(from);
+            // a king can only capture on a square the other side no longer attacks
+            if ((mover == ChessBitboards.KING) && ((bitboards.getAttackers(to,occupied & ~(1L << from)) & bitboards.getOccupancy(1 - side)) != 0)) break;
+            fromBit = 1L << from;
+        } while (depth < MAX_EXCHANGE-1);
+
+        while (--depth > 0)
+        {
+            gain[depth-1] = -Math.max(-gain[depth-1],gain[depth]);
+        }
+        return gain[0];
+    }
+
+    private static int getLeastValuable(ChessBitboards bitboards, long attackers, int color)
+    {
+        for (int type = ChessBitboards.PAWN; type < ChessBitboards.NUM_TYPES; type++)
+        {
+            long pieces = attackers & bitboards.getPieces(color,type);
+            if (pieces != 0) return Long.numberOfTrailingZeros(pieces);
+        }
+        return -1;
+    }
+}
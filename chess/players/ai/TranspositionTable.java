@@ -0,0 +1,137 @@
+package chess.players.ai;
+
+import java.util.Arrays;
+
+/**
+ * table of scores of searched positions, keyed by zobrist key (see ChessZobrist)<br>
+ * - an entry holds the score of a position, the depth to which it was searched, and whether the
+ *   score is exact or only a lower or upper bound (the search cut off at beta or failed low at alpha)<br>
+ * - an entry may also hold the position's best move, as a number the search gives it (see getMove)<br>
+ * - entries are two longs: the key exclusive-or'ed with the data, and the data, so threads can share
+ *   the table without locks: an entry torn by two writers no longer matches its key<br>
+ * - each slot keeps the latest entry written to it
+ *
+ * @author devang
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER = 1;
+    public static final int UPPER = 2;
+    public static final int MISS  = Integer.MIN_VALUE;
+    public static final int NO_MOVE = 0;
+
+    public static final int DEFAULT_MEGABYTES = 16;
+    private static final int ENTRY_SIZE       = 16;
+    private static final long VALID           = 1L << 48;
+    private static final int  MOVE_SHIFT      = 49;
+    private static final int  MAX_MOVE        = (1 << (64 - MOVE_SHIFT)) - 1;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int    mask;
+
+    /**
+     * creates a table of at most the given size (a power of two number of entries)
+     * @param megabytes size of the table in megabytes
+     */
+    public TranspositionTable(int megabytes)
+    {
+        long maxEntries = Math.max(1,(long)megabytes * 1024 * 1024 / ENTRY_SIZE);
+        int numEntries = Integer.highestOneBit((int)Math.min(maxEntries,1 << 30));
+        keys    = new long[numEntries];
+        entries = new long[numEntries];
+        mask    = numEntries - 1;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(keys,0L);
+        Arrays.fill(entries,0L);
+    }
+
+    /**
+     * stores the score of a searched position
+     * @param key zobrist key of the position
+     * @param depth plies searched below the position
+     * @param score score of the position
+     * @param bound EXACT, LOWER or UPPER
+     */
+    public void store(long key, int depth, int score, int bound)
+    {
+        store(key,depth,score,bound,NO_MOVE);
+    }
+
+    /**
+     * stores the score and best move of a searched position
+     * @param key zobrist key of the position
+     * @param depth plies searched below the position
+     * @param score score of the position
+     * @param bound EXACT, LOWER or UPPER
+     * @param move number of the best move, from 1 to 32767 (or NO_MOVE)
+     */
+    public void store(long key, int depth, int score, int bound, int move)
+    {
+        long data = ((long)(move & MAX_MOVE) << MOVE_SHIFT) | VALID | ((long)bound << 40) | ((long)(depth & 0xFF) << 32) | (score & 0xFFFFFFFFL);
+        int slot = (int)key & mask;
+        entries[slot] = data;
+        keys[slot]    = key ^ data;
+    }
+
+    /**
+     * looks up a position searched at least as deep as needed, whose score decides a
+     * fail-hard search with the given window
+     * @param key zobrist key of the position
+     * @param depth plies to be searched below the position
+     * @param alpha lower bound of the window
+     * @param beta upper bound of the window
+     * @return score within the window, or MISS
+     */
+    public int probe(long key, int depth, int alpha, int beta)
+    {
+        int slot  = (int)key & mask;
+        long data = entries[slot];
+        if (((keys[slot] ^ data) != key) || ((data & VALID) == 0)) return MISS;
+        if ((int)((data >>> 32) & 0xFF) < depth) return MISS;
+
+        int score = (int)data;
+        int bound = (int)((data >>> 40) & 0x3);
+        if (bound == EXACT) return Math.max(alpha,Math.min(beta,score));
+        if ((bound == LOWER) && (score >= beta))  return beta;
+        if ((bound == UPPER) && (score <= alpha)) return alpha;
+        return MISS;
+    }
+
+    /**
+     * gets the entry of a position, however deep it was searched: read with getMove, getScore,
+     * getDepth and getBound
+     * @param key zobrist key of the position
+     * @return entry of the position, or 0 if the position is not in the table
+     */
+    public long getEntry(long key)
+    {
+        int slot  = (int)key & mask;
+        long data = entries[slot];
+        if (((keys[slot] ^ data) != key) || ((data & VALID) == 0)) return 0;
+        return data;
+    }
+
+    public static int getMove(long entry)
+    {
+        return (int)(entry >>> MOVE_SHIFT) & MAX_MOVE;
+    }
+
+    public static int getScore(long entry)
+    {
+        return (int)entry;
+    }
+
+    public static int getDepth(long entry)
+    {
+        return (int)((entry >>> 32) & 0xFF);
+    }
+
+    public static int getBound(long entry)
+    {
+        return (int)((entry >>> 40) & 0x3);
+    }
+}
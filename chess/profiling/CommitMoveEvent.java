@@ -0,0 +1,29 @@
+package chess.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: a move made in a game, including the listeners notified and the check for the end of the game
+ *
+ * @author devang
+ */
+@Name("chess.CommitMove")
+@Label("Commit Move")
+@Category({"Chess", "Game"})
+@Description("A move made in a game")
+@StackTrace(false)
+public class CommitMoveEvent extends Event {
+    @Label("Player Color")
+    public String playerColor;
+
+    @Label("Move")
+    public String move;
+
+    @Label("Game Over")
+    public boolean gameOver;
+}
@@ -0,0 +1,35 @@
+package chess.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: the search of one of the root's moves, with the positions evaluated below it<br>
+ * - evaluations are counted in a batch per root move rather than recorded one by one, which
+ *   would cost more than the evaluations themselves
+ *
+ * @author devang
+ */
+@Name("chess.EvaluationBatch")
+@Label("Evaluation Batch")
+@Category({"Chess", "Search"})
+@Description("The search of one root move and the positions evaluated below it")
+@StackTrace(false)
+public class EvaluationBatchEvent extends Event {
+    @Label("Root Move")
+    public String rootMove;
+
+    @Label("Plies")
+    public int plies;
+
+    @Label("Nodes")
+    public long nodes;
+
+    @Label("Evaluations")
+    @Description("Leaf positions evaluated")
+    public long evaluations;
+}
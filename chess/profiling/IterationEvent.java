@@ -0,0 +1,37 @@
+package chess.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: one iteration of an iterative deepening search (all the root's moves at one depth)
+ *
+ * @author devang
+ */
+@Name("chess.Iteration")
+@Label("Search Iteration")
+@Category({"Chess", "Search"})
+@Description("One iteration of an iterative deepening search")
+@StackTrace(false)
+public class IterationEvent extends Event {
+    @Label("Depth")
+    public int depth;
+
+    @Label("Nodes")
+    @Description("Nodes searched by all threads during the iteration")
+    public long nodes;
+
+    @Label("Score")
+    public int score;
+
+    @Label("Best Move")
+    public String bestMove;
+
+    @Label("Complete")
+    @Description("The iteration searched all the root's moves: an incomplete iteration is thrown away")
+    public boolean complete;
+}
@@ -0,0 +1,31 @@
+package chess.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: the valid moves of one position generated<br>
+ * - one event per searched node: disabled even in a recording, unless enabled in its settings
+ *   (i.e.) chess.MoveGeneration#enabled=true in a .jfc file)
+ *
+ * @author devang
+ */
+@Name("chess.MoveGeneration")
+@Label("Move Generation")
+@Category({"Chess", "Search"})
+@Description("The valid moves of one position generated")
+@Enabled(false)
+@StackTrace(false)
+public class MoveGenerationEvent extends Event {
+    @Label("Ply")
+    @Description("Ply of the position below the root of the search")
+    public int ply;
+
+    @Label("Moves")
+    public int moves;
+}
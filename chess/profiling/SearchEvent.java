@@ -0,0 +1,41 @@
+package chess.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event: one CPU player's search for a move, from start to the move found<br>
+ * - recorded with i.e.) java -XX:StartFlightRecording=filename=chess.jfr ...<br>
+ * - like all JFR events, costs nothing unless a recording is running with the event enabled
+ *
+ * @author devang
+ */
+@Name("chess.Search")
+@Label("Search")
+@Category({"Chess", "Search"})
+@Description("A CPU player's search for its next move")
+@StackTrace(false)
+public class SearchEvent extends Event {
+    @Label("Search")
+    public String search;
+
+    @Label("Player Color")
+    public String playerColor;
+
+    @Label("Depth Reached")
+    public int depth;
+
+    @Label("Nodes")
+    public long nodes;
+
+    @Label("Best Move")
+    public String bestMove;
+
+    @Label("Stopped")
+    @Description("The search was cancelled, and its move not played")
+    public boolean stopped;
+}
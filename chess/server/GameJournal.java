@@ -0,0 +1,175 @@
+package chess.server;
+
+import game.utility.Properties.PlayerColor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * the journal of one game of a GameServer: a file to which each move is appended as it is made,
+ * so the game can be restored after a restart (see JournalDirectory)<br>
+ * - a header (HEADER_SIZE bytes): MAGIC, the version, the human's color, 2 bytes reserved and
+ *   the CPU's think time; then 2 bytes per move, packed as in Polyglot books (see
+ *   ChessOpenings.encodeMove)<br>
+ * - a move is written (to the operating system) before it is acknowledged, and forced to the
+ *   disk with the other journals' moves every few milliseconds (see JournalDirectory), so a crash
+ *   of the JVM loses no move, and a crash of the machine only the last few<br>
+ * - the file is opened for each write, not held open, so thousands of games do not hold
+ *   thousands of open files
+ *
+ * @author devang
+ */
+public class GameJournal {
+    public static final int MAGIC       = 0x434A4E4C;
+    public static final int VERSION     = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int MOVE_SIZE   = 2;
+
+    private final Path        file;
+    private final String      id;
+    private final PlayerColor humanColor;
+    private final long        thinkMillis;
+    private final int[]       readMoves;
+    private int               numMoves;
+
+    private GameJournal(Path file, String id, PlayerColor humanColor, long thinkMillis, int[] readMoves)
+    {
+        this.file        = file;
+        this.id          = id;
+        this.humanColor  = humanColor;
+        this.thinkMillis = thinkMillis;
+        this.readMoves   = readMoves;
+        this.numMoves    = readMoves.length;
+    }
+
+    /**
+     * creates the journal of a new game, writing its header
+     * @param file file of the journal (replaced if it exists)
+     * @param id identifier of the game on its server
+     * @param humanColor color of the human player
+     * @param thinkMillis time the CPU player may think about each move
+     * @return newly-created journal
+     * @throws IOException if the journal cannot be written
+     */
+    static GameJournal create(Path file, String id, PlayerColor humanColor, long thinkMillis) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.put((byte)VERSION);
+        header.put((byte)((humanColor == PlayerColor.WHITE) ? 0 : 1));
+        header.putShort((short)0);
+        header.putLong(thinkMillis);
+        Files.write(file,header.array());
+        return new GameJournal(file,id,humanColor,thinkMillis,new int[0]);
+    }
+
+    /**
+     * reads the journal of a game, to restore it (see getReadMoves): a move cut short by a
+     * crash is dropped
+     * @param file file of the journal
+     * @param id identifier of the game on its server
+     * @return the journal, to which the game's next moves are appended
+     * @throws IOException if the journal cannot be read, or is not a journal
+     */
+    static GameJournal read(Path file, String id) throws IOException
+    {
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        if ((bytes.remaining() < HEADER_SIZE) || (bytes.getInt() != MAGIC) || (bytes.get() != VERSION))
+            throw new IOException("not a game journal: " + file);
+        PlayerColor humanColor = (bytes.get() == 0) ? PlayerColor.WHITE : PlayerColor.BLACK;
+        bytes.getShort();
+        long thinkMillis = bytes.getLong();
+
+        int[] moves = new int[bytes.remaining() / MOVE_SIZE];
+        for (int move = 0; move < moves.length; move++) moves[move] = bytes.getShort() & 0xFFFF;
+
+        GameJournal journal = new GameJournal(file,id,humanColor,thinkMillis,moves);
+        if (bytes.hasRemaining()) journal.truncate(moves.length);
+        return journal;
+    }
+
+    /**
+     * appends a move
+     * @param move packed move (see ChessOpenings.encodeMove)
+     * @throws IOException if the move cannot be written
+     */
+    synchronized void append(int move) throws IOException
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(MOVE_SIZE);
+        bytes.putShort(0,(short)move);
+        try (FileChannel channel = FileChannel.open(file,StandardOpenOption.WRITE))
+        {
+            long position = HEADER_SIZE + (long)numMoves * MOVE_SIZE;
+            while (bytes.hasRemaining()) position += channel.write(bytes,position);
+        }
+        numMoves++;
+    }
+
+    /**
+     * cuts the journal to a number of moves (i.e. the moves that could be replayed)
+     * @param moves number of moves to keep
+     * @throws IOException if the journal cannot be written
+     */
+    synchronized void truncate(int moves) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file,StandardOpenOption.WRITE))
+        {
+            channel.truncate(HEADER_SIZE + (long)moves * MOVE_SIZE);
+        }
+        numMoves = moves;
+    }
+
+    /**
+     * forces the moves written to the disk
+     * @throws IOException if the journal cannot be forced
+     */
+    synchronized void force() throws IOException
+    {
+        if (!Files.exists(file)) return;
+        try (FileChannel channel = FileChannel.open(file,StandardOpenOption.WRITE))
+        {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * deletes the journal, when its game is closed
+     * @throws IOException if the journal cannot be deleted
+     */
+    synchronized void delete() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public PlayerColor getHumanColor()
+    {
+        return humanColor;
+    }
+
+    public long getThinkMillis()
+    {
+        return thinkMillis;
+    }
+
+    public synchronized int getNumMoves()
+    {
+        return numMoves;
+    }
+
+    /**
+     * gets the moves read from the journal when it was opened, to replay
+     * @return packed moves (see ChessOpenings.encodeMove), none for a new journal
+     */
+    public int[] getReadMoves()
+    {
+        return readMoves;
+    }
+}
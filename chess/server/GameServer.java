@@ -0,0 +1,266 @@
+package chess.server;
+
+import chess.ChessBoardState;
+import chess.ChessGameHistory;
+import chess.database.GameDatabase;
+import chess.database.GameDatabaseRecorder;
+import chess.moves.ChessMove;
+import chess.players.ai.IterativeDeepening;
+import chess.players.ai.SearchControl;
+import chess.players.ai.SearchMetrics;
+import chess.players.ai.SearchScheduler;
+import chess.players.ai.TranspositionTable;
+import game.utility.Properties.PlayerColor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * hosts many human-vs-CPU games in one JVM, with all CPU moves searched on one fixed pool of
+ * search workers (a SearchScheduler)<br>
+ * - fair share: a game's search is queued at a lower priority the more search time the game
+ *   has already had, so no game starves the others<br>
+ * - each move is searched by iterative deepening until the game's think time runs out<br>
+ * - load shedding: the deeper the queue of searches per worker, the shallower each search;
+ *   past the maximum number of games, new games are refused<br>
+ * - with a game database (see setDatabase), every game played to its end is recorded<br>
+ * - with a journal directory (see setJournals), every game's moves are journaled, and the games
+ *   left in the directory by a restart are restored (see restoreGames)
+ *
+ * @author devang
+ */
+public class GameServer {
+    public static final long DEFAULT_THINK_MILLIS = 1000;
+    public static final int  DEFAULT_MAX_DEPTH    = 6;
+    public static final int  DEFAULT_MAX_GAMES    = 1000;
+    public static final int  MIN_DEPTH            = 2;
+
+    // search time that lowers a game's priority by one
+    public static final long FAIR_SHARE_SLICE_MILLIS = 500;
+
+    private final SearchScheduler         scheduler;
+    private final TranspositionTable      transpositionTable;
+    private final Map<String,ServerGame>  games = new ConcurrentHashMap<>();
+    private final AtomicLong              gameNumber = new AtomicLong();
+
+    private int          maxDepth = DEFAULT_MAX_DEPTH;
+    private int          maxGames = DEFAULT_MAX_GAMES;
+    private GameDatabase database = null;
+
+    private JournalDirectory journals = null;
+
+    /**
+     * creates a server
+     * @param scheduler workers that search the CPU players' moves
+     * @param tableMegabytes size of the transposition table shared by all games' searches
+     */
+    public GameServer(SearchScheduler scheduler, int tableMegabytes)
+    {
+        this.scheduler     = scheduler;
+        transpositionTable = new TranspositionTable(tableMegabytes);
+    }
+
+    public void setMaxDepth(int maxDepth)
+    {
+        this.maxDepth = maxDepth;
+    }
+
+    public void setMaxGames(int maxGames)
+    {
+        this.maxGames = maxGames;
+    }
+
+    /**
+     * records the games of the server, from the games created next
+     * @param database database of the games, or null not to record them
+     */
+    public void setDatabase(GameDatabase database)
+    {
+        this.database = database;
+    }
+
+    /**
+     * journals the moves of the server's games, from the games created next
+     * @param journals directory of the journals, or null not to journal the games
+     */
+    public void setJournals(JournalDirectory journals)
+    {
+        this.journals = journals;
+    }
+
+    /**
+     * creates and starts a game
+     * @param humanColor color of the human player
+     * @param thinkMillis time the CPU player may think about each move
+     * @return the new game, or null if the server already hosts its maximum number of games
+     */
+    public ServerGame createGame(PlayerColor humanColor, long thinkMillis)
+    {
+        if (games.size() >= maxGames) return null;
+
+        String id = Long.toString(gameNumber.incrementAndGet());
+        ServerGame game = newGame(id,humanColor,thinkMillis);
+        if (journals != null)
+        {
+            try {
+                game.setJournal(journals,journals.create(id,humanColor,thinkMillis));
+            } catch (IOException e) {
+                String loggerMsg = "journal of game " + id + " not created: the game will not be restored";
+                Logger.getLogger(GameServer.class.getName()).log(Level.WARNING,loggerMsg,e);
+            }
+        }
+        games.put(id,game);
+        game.start();
+        return game;
+    }
+
+    /**
+     * creates a game, recorded if the server has a database
+     */
+    private ServerGame newGame(String id, PlayerColor humanColor, long thinkMillis)
+    {
+        ServerGame game = new ServerGame(id,this,humanColor,thinkMillis);
+        if (database != null)
+        {
+            GameDatabaseRecorder recorder = new GameDatabaseRecorder(database);
+            recorder.setTag("Event","server game " + id);
+            recorder.setTag("White",(humanColor == PlayerColor.WHITE) ? "human" : "cpu");
+            recorder.setTag("Black",(humanColor == PlayerColor.WHITE) ? "cpu" : "human");
+            game.getGame().addListener(recorder);
+        }
+        return game;
+    }
+
+    /**
+     * restores the games of the journal directory (i.e. the games left by a restart) by replaying
+     * their moves, on one thread per processor; the games created next are numbered after them<br>
+     * - restored games are not refused past the maximum number of games
+     * @return number of games restored
+     * @throws IOException if the journal directory cannot be read
+     */
+    public int restoreGames() throws IOException
+    {
+        if (journals == null) return 0;
+
+        List<GameJournal> journalList = journals.readAll();
+        List<Future<Integer>> restored = new ArrayList<>(journalList.size());
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (GameJournal journal : journalList)
+            {
+                String id = journal.getId();
+                ServerGame game = newGame(id,journal.getHumanColor(),journal.getThinkMillis());
+                game.setJournal(journals,journal);
+                games.put(id,game);
+                gameNumber.accumulateAndGet(JournalDirectory.parseNumber(id),Math::max);
+                restored.add(pool.submit(game::restore));
+            }
+            for (Future<Integer> future : restored) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("restore of games interrupted",e);
+        } catch (ExecutionException e) {
+            throw new IOException("restore of games failed",e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return restored.size();
+    }
+
+    public ServerGame getGame(String id)
+    {
+        return games.get(id);
+    }
+
+    public Collection<ServerGame> getGames()
+    {
+        return games.values();
+    }
+
+    /**
+     * closes a game and removes it from the server
+     * @param id identifier of the game
+     * @return the closed game, or null if there is no such game
+     */
+    public ServerGame closeGame(String id)
+    {
+        ServerGame game = games.remove(id);
+        if (game != null) game.close();
+        return game;
+    }
+
+    public SearchScheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    /**
+     * gets the depth of a search queued now: less than the maximum when searches are waiting for workers
+     * @return depth of the search
+     */
+    public int getSearchDepth()
+    {
+        int load = scheduler.getNumQueued() / Math.max(1,scheduler.getNumThreads());
+        return Math.max(MIN_DEPTH,maxDepth - load);
+    }
+
+    /**
+     * queues a search for the CPU player of a game, whose move it is
+     * @param game the game to search
+     */
+    void search(ServerGame game)
+    {
+        int priority = -(int)Math.min(Integer.MAX_VALUE,game.getSearchMillis() / FAIR_SHARE_SLICE_MILLIS);
+        int depth    = getSearchDepth();
+        SearchControl searchControl = new SearchControl();
+        // the worker searches copies: the game's board and history change with the human's moves
+        ChessBoardState  boardState;
+        ChessGameHistory gameHistory;
+        synchronized (game)
+        {
+            boardState  = ChessBoardState.copy(game.getBoardState());
+            gameHistory = game.getGame().getGameHistory().copy();
+        }
+        try {
+            game.setSearch(scheduler.submit(() -> runSearch(game,boardState,gameHistory,depth,searchControl),priority,searchControl));
+        } catch (RejectedExecutionException e) {
+            String loggerMsg = "search for game " + game.getId() + " rejected: " + scheduler;
+            Logger.getLogger(GameServer.class.getName()).log(Level.WARNING,loggerMsg);
+            game.failSearch();
+        }
+    }
+
+    private ChessMove runSearch(ServerGame game, ChessBoardState boardState, ChessGameHistory gameHistory,
+                                int depth, SearchControl searchControl)
+    {
+        long startTime = System.currentTimeMillis();
+        ChessMove move = null;
+        try {
+            if (!game.isPlaying()) return null;
+            // the think time starts when a worker takes the search, not when it is queued
+            searchControl.setDeadline(startTime + game.getThinkMillis());
+            IterativeDeepening search = new IterativeDeepening(boardState,gameHistory,
+                                                               game.getCpuColor(),1,transpositionTable,searchControl);
+            move = search.search(depth,null);
+            SearchMetrics.getDefault().publish(search.getStatistics());
+        } catch (RuntimeException e) {
+            String loggerMsg = "search for game " + game.getId() + " failed";
+            Logger.getLogger(GameServer.class.getName()).log(Level.WARNING,loggerMsg,e);
+            game.failSearch();
+            return null;
+        }
+        game.commitSearch(move,System.currentTimeMillis() - startTime);
+        return move;
+    }
+}
@@ -0,0 +1,196 @@
+package chess.server;
+
+import chess.players.ai.SearchMetrics;
+import chess.players.ai.SearchScheduler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import game.utility.Properties.PlayerColor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * an HTTP front end of a GameServer, answering in JSON<br>
+ * - POST   /games?color=white&amp;think=1000   creates a game (the human's color, the CPU's think time)<br>
+ * - GET    /games/{id}                     gets a game: status, position (FEN), last move<br>
+ * - POST   /games/{id}/move?uci=e2e4       makes the human's move (or the move in the request body)<br>
+ * - DELETE /games/{id}                     closes a game<br>
+ * - GET    /stats                          gets the number of games and the search workers' counters<br>
+ * - requests are answered by a small fixed pool of threads: the searches run on the server's workers
+ *
+ * @author devang
+ */
+public class HttpGameServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int NUM_REQUEST_THREADS = 4;
+
+    private final GameServer      gameServer;
+    private final HttpServer      httpServer;
+    private final ExecutorService requestExecutor = Executors.newFixedThreadPool(NUM_REQUEST_THREADS);
+
+    /**
+     * creates a front end listening on a port of the local host
+     * @param gameServer server hosting the games
+     * @param port port to listen on (0 for any free port)
+     * @throws IOException if the port cannot be bound
+     */
+    public HttpGameServer(GameServer gameServer, int port) throws IOException
+    {
+        this.gameServer = gameServer;
+        httpServer = HttpServer.create(new InetSocketAddress(port),0);
+        httpServer.createContext("/",this::handle);
+        httpServer.setExecutor(requestExecutor);
+    }
+
+    public void start()
+    {
+        httpServer.start();
+    }
+
+    public void stop()
+    {
+        httpServer.stop(0);
+        requestExecutor.shutdown();
+    }
+
+    public int getPort()
+    {
+        return httpServer.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try {
+            URI uri = exchange.getRequestURI();
+            String[] path = uri.getPath().replaceAll("^/+|/+$","").split("/");
+            Map<String,String> query = parseQuery(uri.getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (path[0].equals("stats") && method.equals("GET"))
+            {
+                send(exchange,200,getStatistics());
+            }
+            else if (path[0].equals("games") && (path.length == 1) && method.equals("POST"))
+            {
+                createGame(exchange,query);
+            }
+            else if (path[0].equals("games") && (path.length >= 2))
+            {
+                ServerGame game = gameServer.getGame(path[1]);
+                if (game == null)                                                  sendError(exchange,404,"no game " + path[1]);
+                else if ((path.length == 2) && method.equals("GET"))               send(exchange,200,toJson(game));
+                else if ((path.length == 2) && method.equals("DELETE"))            send(exchange,200,toJson(gameServer.closeGame(path[1])));
+                else if ((path.length == 3) && path[2].equals("move") && method.equals("POST")) makeMove(exchange,game,query);
+                else                                                               sendError(exchange,404,"unknown request");
+            }
+            else
+            {
+                sendError(exchange,404,"unknown request");
+            }
+        } catch (RuntimeException e) {
+            String loggerMsg = "request failed: " + exchange.getRequestURI();
+            Logger.getLogger(HttpGameServer.class.getName()).log(Level.WARNING,loggerMsg,e);
+            sendError(exchange,500,String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void createGame(HttpExchange exchange, Map<String,String> query) throws IOException
+    {
+        PlayerColor color = "black".equalsIgnoreCase(query.get("color")) ? PlayerColor.BLACK : PlayerColor.WHITE;
+        long thinkMillis  = query.containsKey("think") ? Long.parseLong(query.get("think")) : GameServer.DEFAULT_THINK_MILLIS;
+
+        ServerGame game = gameServer.createGame(color,thinkMillis);
+        if (game == null) sendError(exchange,503,"server is full");
+        else              send(exchange,201,toJson(game));
+    }
+
+    private void makeMove(HttpExchange exchange, ServerGame game, Map<String,String> query) throws IOException
+    {
+        String uci = query.get("uci");
+        if (uci == null) uci = readBody(exchange).trim();
+
+        String error = game.move(uci);
+        if (error != null) sendError(exchange,409,error);
+        else               send(exchange,200,toJson(game));
+    }
+
+    private String getStatistics()
+    {
+        SearchScheduler scheduler = gameServer.getScheduler();
+        SearchMetrics   metrics   = SearchMetrics.getDefault();
+        return "{\"games\":" + gameServer.getGames().size()
+             + ",\"searchDepth\":" + gameServer.getSearchDepth()
+             + ",\"threads\":" + scheduler.getNumThreads()
+             + ",\"running\":" + scheduler.getNumRunning()
+             + ",\"queued\":" + scheduler.getNumQueued()
+             + ",\"submitted\":" + scheduler.getNumSubmitted()
+             + ",\"finished\":" + scheduler.getNumFinished()
+             + ",\"cancelled\":" + scheduler.getNumCancelled()
+             + ",\"rejected\":" + scheduler.getNumRejected()
+             + ",\"queuedMillis\":" + scheduler.getTotalQueuedMillis()
+             + ",\"runningMillis\":" + scheduler.getTotalRunningMillis()
+             + ",\"searchNodes\":" + metrics.getNodes()
+             + ",\"searchNps\":" + metrics.getNodesPerSecond()
+             + ",\"tableProbes\":" + metrics.getTableProbes()
+             + ",\"tableHits\":" + metrics.getTableHits() + "}";
+    }
+
+    private static String toJson(ServerGame game)
+    {
+        return "{\"id\":\"" + game.getId() + "\""
+             + ",\"status\":\"" + game.getStatus() + "\""
+             + ",\"color\":\"" + game.getHumanColor().name().toLowerCase() + "\""
+             + ",\"fen\":\"" + game.getFen() + "\""
+             + ",\"lastMove\":" + ((game.getLastMove() == null) ? "null" : "\"" + game.getLastMove() + "\"") + "}";
+    }
+
+    private static Map<String,String> parseQuery(String rawQuery)
+    {
+        Map<String,String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String parameter : rawQuery.split("&"))
+        {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) query.put(parameter.substring(0,equals),parameter.substring(equals+1));
+        }
+        return query;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException
+    {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody())
+        {
+            in.transferTo(body);
+        }
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException
+    {
+        send(exchange,status,"{\"error\":\"" + message.replace("\\","\\\\").replace("\"","\\\"") + "\"}");
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException
+    {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type","application/json");
+        exchange.sendResponseHeaders(status,bytes.length);
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(bytes);
+        }
+    }
+}
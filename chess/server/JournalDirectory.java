@@ -0,0 +1,239 @@
+package chess.server;
+
+import game.utility.Properties.PlayerColor;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * the journals of a GameServer's games (see GameJournal), one file per game in a directory<br>
+ * - fsync batching: the journals written since the last sync are forced to the disk together,
+ *   every few milliseconds, by one thread, instead of each move waiting for its own fsync
+ *   (with a sync time of 0, each move is forced as it is written)<br>
+ * - the directory is forced when a journal is created, so the journal's file (and not only its
+ *   moves) survives a crash of the machine<br>
+ * - on startup, the journals left in the directory are read, so the server can replay their
+ *   games (see GameServer.restoreGames)
+ *
+ * @author devang
+ */
+public class JournalDirectory implements Closeable {
+    public static final long DEFAULT_SYNC_MILLIS = 20;
+
+    private static final String FILE_PREFIX    = "game-";
+    private static final String FILE_EXTENSION = ".journal";
+
+    private final Path                     directory;
+    private final long                     syncMillis;
+    private final Set<GameJournal>         written = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService syncer;
+    private final AtomicLong               numSyncs  = new AtomicLong();
+    private final AtomicLong               numForced = new AtomicLong();
+
+    /**
+     * opens a directory of journals, creating it if needed
+     * @param directory directory of the journals
+     * @param syncMillis time between syncs of the journals written (0 to force each move)
+     * @throws IOException if the directory cannot be created
+     */
+    public JournalDirectory(Path directory, long syncMillis) throws IOException
+    {
+        this.directory  = directory;
+        this.syncMillis = Math.max(0,syncMillis);
+        Files.createDirectories(directory);
+        if (this.syncMillis == 0)
+        {
+            syncer = null;
+            return;
+        }
+        syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable,"chess-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(this::sync,this.syncMillis,this.syncMillis,TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * creates the journal of a new game
+     * @param id identifier of the game on its server
+     * @param humanColor color of the human player
+     * @param thinkMillis time the CPU player may think about each move
+     * @return newly-created journal
+     * @throws IOException if the journal cannot be written
+     */
+    public GameJournal create(String id, PlayerColor humanColor, long thinkMillis) throws IOException
+    {
+        GameJournal journal = GameJournal.create(directory.resolve(FILE_PREFIX + id + FILE_EXTENSION),id,humanColor,thinkMillis);
+        forceDirectory();
+        written(journal);
+        return journal;
+    }
+
+    /**
+     * forces the directory's entries to the disk (i.e. a journal created)<br>
+     * - some platforms cannot open a directory (i.e. Windows): there, the directory is not forced
+     * @throws IOException if the directory cannot be forced
+     */
+    private void forceDirectory() throws IOException
+    {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory,StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel opened = channel)
+        {
+            opened.force(true);
+        }
+    }
+
+    /**
+     * appends a move to a game's journal
+     * @param journal journal of the game
+     * @param move packed move (see ChessOpenings.encodeMove)
+     * @throws IOException if the move cannot be written
+     */
+    public void append(GameJournal journal, int move) throws IOException
+    {
+        journal.append(move);
+        written(journal);
+    }
+
+    /**
+     * cuts a game's journal to the moves that could be replayed
+     * @param journal journal of the game
+     * @param moves number of moves to keep
+     * @throws IOException if the journal cannot be written
+     */
+    public void truncate(GameJournal journal, int moves) throws IOException
+    {
+        journal.truncate(moves);
+        written(journal);
+    }
+
+    private void written(GameJournal journal) throws IOException
+    {
+        if (syncer == null)
+        {
+            journal.force();
+            numForced.incrementAndGet();
+        }
+        else
+        {
+            written.add(journal);
+        }
+    }
+
+    /**
+     * deletes a game's journal, when the game is closed
+     * @param journal journal of the game
+     * @throws IOException if the journal cannot be deleted
+     */
+    public void delete(GameJournal journal) throws IOException
+    {
+        written.remove(journal);
+        journal.delete();
+    }
+
+    /**
+     * forces the journals written since the last sync to the disk
+     */
+    public void sync()
+    {
+        if (written.isEmpty()) return;
+        numSyncs.incrementAndGet();
+        for (GameJournal journal : written)
+        {
+            // removed first: a move written while the journal is forced leaves it for the next sync
+            written.remove(journal);
+            try {
+                journal.force();
+                numForced.incrementAndGet();
+            } catch (IOException e) {
+                String loggerMsg = "journal of game " + journal.getId() + " not synced";
+                Logger.getLogger(JournalDirectory.class.getName()).log(Level.WARNING,loggerMsg,e);
+            }
+        }
+    }
+
+    /**
+     * reads the journals of the directory, by the number of their games
+     * @return the journals, with their moves to replay
+     * @throws IOException if the directory cannot be read
+     */
+    public List<GameJournal> readAll() throws IOException
+    {
+        List<GameJournal> journals = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,FILE_PREFIX + "*" + FILE_EXTENSION))
+        {
+            for (Path file : files)
+            {
+                String name = file.getFileName().toString();
+                String id   = name.substring(FILE_PREFIX.length(),name.length() - FILE_EXTENSION.length());
+                try {
+                    journals.add(GameJournal.read(file,id));
+                } catch (IOException e) {
+                    String loggerMsg = "journal " + file + " not read";
+                    Logger.getLogger(JournalDirectory.class.getName()).log(Level.WARNING,loggerMsg,e);
+                }
+            }
+        }
+        journals.sort(Comparator.comparingLong(journal -> parseNumber(journal.getId())));
+        return journals;
+    }
+
+    /**
+     * gets the number of a game's identifier (the server numbers its games)
+     * @return the number, or 0 if the identifier is not a number
+     */
+    static long parseNumber(String id)
+    {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public long getNumSyncs()
+    {
+        return numSyncs.get();
+    }
+
+    public long getNumForced()
+    {
+        return numForced.get();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (syncer != null)
+        {
+            syncer.shutdown();
+            try {
+                syncer.awaitTermination(1,TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sync();
+    }
+}
@@ -0,0 +1,352 @@
+package chess.server;
+
+import chess.ChessBoardState;
+import chess.ChessGame;
+import chess.ChessGameListener;
+import chess.ChessOpenings;
+import chess.ChessPosition;
+import chess.moves.ChessMove;
+import chess.notation.ChessNotation;
+import chess.notation.FenNotation;
+import chess.players.ChessPlayer;
+import game.utility.Properties;
+import game.utility.Properties.PlayerColor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * one game hosted by a GameServer: a headless ChessGame between a remote human player and the
+ * server's CPU player<br>
+ * - the human's moves arrive through the server's front end (see move)<br>
+ * - when the CPU player is to move, the game asks its server for a search (see GameServer.search)<br>
+ * - moves are made under this game's lock, so a CPU move never races a human move<br>
+ * - with a journal (see setJournal), each move is appended to it as it is made, so the game can
+ *   be restored after a restart by replaying its moves (see restore)<br>
+ * - a move the journal fails to take (i.e. a full disk) is kept, and written again with the next
+ *   move: the journal is not dropped, so until it is written the game is restored short of it
+ *
+ * @author devang
+ */
+public class ServerGame implements ChessGameListener {
+    public static final String STATUS_PLAYING   = "playing";
+    public static final String STATUS_THINKING  = "thinking";
+    public static final String STATUS_WHITE_WON = "white-won";
+    public static final String STATUS_BLACK_WON = "black-won";
+    public static final String STATUS_DRAWN     = "drawn";
+    public static final String STATUS_CLOSED    = "closed";
+    public static final String STATUS_ERROR     = "error";
+
+    /**
+     * a player whose moves are made for it: by the front end, or by the server's search
+     */
+    private static class ServerPlayer extends ChessPlayer {
+        private ServerPlayer(ChessGame game, PlayerColor color)
+        {
+            super(game,color);
+        }
+
+        @Override
+        public void persistMove(ChessMove move)
+        {
+            // the board is read from the game on request: nothing to update
+        }
+    }
+
+    private final String       id;
+    private final GameServer   server;
+    private final ChessGame    game;
+    private final ServerPlayer humanPlayer;
+    private final ServerPlayer cpuPlayer;
+    private final long         thinkMillis;
+    private final AtomicLong   searchMillis = new AtomicLong();
+
+    private volatile String status   = STATUS_PLAYING;
+    private volatile String lastMove = null;
+    private int             numMoves = 0;
+    private Future<?>       search   = null;
+
+    private JournalDirectory    journals       = null;
+    private GameJournal         journal        = null;
+    private boolean             restoring      = false;
+    // journal writes that failed, done again with the next move
+    private final List<Integer> unwrittenMoves = new ArrayList<>();
+    private int                 journalCut     = -1;
+
+    /**
+     * creates a game (not yet started: see start)
+     * @param id identifier of the game on its server
+     * @param server server running the CPU player's searches
+     * @param humanColor color of the human player
+     * @param thinkMillis time the CPU player may think about each move
+     */
+    public ServerGame(String id, GameServer server, PlayerColor humanColor, long thinkMillis)
+    {
+        this.id          = id;
+        this.server      = server;
+        this.thinkMillis = thinkMillis;
+        game        = ChessGame.createHeadless();
+        humanPlayer = new ServerPlayer(game,humanColor);
+        cpuPlayer   = new ServerPlayer(game,Properties.oppositeColor(humanColor));
+        game.setPlayers(humanPlayer,cpuPlayer);
+        game.addListener(this);
+    }
+
+    /**
+     * keeps a journal of the game's moves (set before the game is started or restored)
+     * @param journals directory of the journal
+     * @param journal journal of the game
+     */
+    synchronized void setJournal(JournalDirectory journals, GameJournal journal)
+    {
+        this.journals = journals;
+        this.journal  = journal;
+    }
+
+    /**
+     * starts the game: the CPU player starts thinking if it plays white
+     */
+    public synchronized void start()
+    {
+        game.initializeGame();
+    }
+
+    /**
+     * starts the game and replays the moves of its journal: the CPU player starts thinking once
+     * the game is restored, if it is to move<br>
+     * - moves that cannot be replayed (i.e. a journal written by another version) are cut from
+     *   the journal, and the game goes on from the last move replayed
+     * @return number of moves replayed
+     */
+    synchronized int restore()
+    {
+        int[] moves = journal.getReadMoves();
+        int replayed = 0;
+        restoring = true;
+        try {
+            game.initializeGame();
+            for (; (replayed < moves.length) && isPlaying(); replayed++)
+            {
+                ChessMove move = findMove(moves[replayed]);
+                if (move == null) break;
+                game.getCurrentPlayer().commitMove(move);
+            }
+        } finally {
+            restoring = false;
+        }
+
+        if (replayed < moves.length)
+        {
+            String loggerMsg = "game " + id + " restored to move " + replayed + " of " + moves.length;
+            Logger.getLogger(ServerGame.class.getName()).log(Level.WARNING,loggerMsg);
+            journalCut = replayed;
+            writeJournal();
+        }
+        playerToMove(game,game.getCurrentPlayer());
+        return replayed;
+    }
+
+    /**
+     * finds the valid move of the player to move for a packed move
+     */
+    private ChessMove findMove(int move)
+    {
+        List<ChessMove> validMoves = new ArrayList<>();
+        game.getBoardState().addValidMoves(game.getCurrentPlayerColor(),game.getGameHistory(),validMoves);
+        return ChessNotation.findMove(ChessOpenings.getFromSquare(move),ChessOpenings.getToSquare(move),
+                                      ChessOpenings.getPromotionType(move),validMoves,game.getProperties());
+    }
+
+    /**
+     * writes what the journal is behind on: its cut (see restore), then the moves not written,
+     * in order; if a write fails, the rest is kept for the next move
+     */
+    private void writeJournal()
+    {
+        try {
+            if (journalCut >= 0)
+            {
+                journals.truncate(journal,journalCut);
+                journalCut = -1;
+            }
+            while (!unwrittenMoves.isEmpty())
+            {
+                int numWritten = journal.getNumMoves();
+                try {
+                    journals.append(journal,unwrittenMoves.get(0));
+                } finally {
+                    // a move written but not forced is not written again
+                    if (journal.getNumMoves() > numWritten) unwrittenMoves.remove(0);
+                }
+            }
+        } catch (IOException e) {
+            String loggerMsg = "journal of game " + id + " not written: " + unwrittenMoves.size() + " moves kept for the next move";
+            Logger.getLogger(ServerGame.class.getName()).log(Level.WARNING,loggerMsg,e);
+        }
+    }
+
+    /**
+     * makes the human player's move
+     * @param uci move in long algebraic notation, i.e.) e2e4
+     * @return null if the move was made, otherwise why it was not
+     */
+    public synchronized String move(String uci)
+    {
+        if (!isPlaying())                           return "game is over: " + status;
+        if (game.getCurrentPlayer() != humanPlayer) return "not your move";
+
+        List<ChessMove> validMoves = new ArrayList<>();
+        game.getBoardState().addValidMoves(humanPlayer.getColor(),game.getGameHistory(),validMoves);
+        ChessMove move = ChessNotation.findMove(uci,validMoves,game.getProperties());
+        if (move == null) return "invalid move: " + uci;
+
+        humanPlayer.commitMove(move);
+        return null;
+    }
+
+    /**
+     * makes the CPU player's move, found by a search of the server
+     * @param move move found, or null if the search found none
+     * @param elapsedMillis time the search took
+     */
+    synchronized void commitSearch(ChessMove move, long elapsedMillis)
+    {
+        searchMillis.addAndGet(elapsedMillis);
+        if (!STATUS_THINKING.equals(status)) return;
+        status = STATUS_PLAYING;
+        if (move != null) cpuPlayer.commitMove(move);
+    }
+
+    /**
+     * keeps the search queued for the CPU player, to cancel it if the game is closed
+     */
+    synchronized void setSearch(Future<?> search)
+    {
+        this.search = search;
+    }
+
+    synchronized void failSearch()
+    {
+        if (STATUS_THINKING.equals(status)) status = STATUS_ERROR;
+    }
+
+    /**
+     * closes the game: a search for it is cancelled, queued or running
+     */
+    public synchronized void close()
+    {
+        status = STATUS_CLOSED;
+        if (search != null) search.cancel(false);
+        if (journal != null)
+        {
+            try {
+                journals.delete(journal);
+            } catch (IOException e) {
+                String loggerMsg = "journal of game " + id + " not deleted";
+                Logger.getLogger(ServerGame.class.getName()).log(Level.WARNING,loggerMsg,e);
+            }
+            journal = null;
+            unwrittenMoves.clear();
+        }
+    }
+
+    @Override
+    public void gameStarted(ChessGame game)
+    {
+    }
+
+    @Override
+    public void moveMade(ChessGame game, ChessPlayer player, ChessMove move)
+    {
+        lastMove = ChessNotation.toUci(move,game.getProperties());
+        numMoves++;
+        if ((journal == null) || restoring) return;
+        unwrittenMoves.add(ChessOpenings.encodeMove(move,game.getProperties()));
+        writeJournal();
+    }
+
+    @Override
+    public void playerToMove(ChessGame game, ChessPlayer player)
+    {
+        if ((player != cpuPlayer) || !isPlaying() || restoring) return;
+        status = STATUS_THINKING;
+        server.search(this);
+    }
+
+    @Override
+    public void gameOver(ChessGame game, PlayerColor winnerColor)
+    {
+        if (winnerColor == null) status = STATUS_DRAWN;
+        else                     status = (winnerColor == PlayerColor.WHITE) ? STATUS_WHITE_WON : STATUS_BLACK_WON;
+    }
+
+    public String getId()
+    {
+        return id;
+    }
+
+    public String getStatus()
+    {
+        return status;
+    }
+
+    public String getLastMove()
+    {
+        return lastMove;
+    }
+
+    public PlayerColor getHumanColor()
+    {
+        return humanPlayer.getColor();
+    }
+
+    public long getThinkMillis()
+    {
+        return thinkMillis;
+    }
+
+    /**
+     * gets the time the server has spent searching for this game, for its fair share of the workers
+     * @return total search time in milliseconds
+     */
+    public long getSearchMillis()
+    {
+        return searchMillis.get();
+    }
+
+    public boolean isPlaying()
+    {
+        return STATUS_PLAYING.equals(status) || STATUS_THINKING.equals(status);
+    }
+
+    ChessBoardState getBoardState()
+    {
+        return game.getBoardState();
+    }
+
+    ChessGame getGame()
+    {
+        return game;
+    }
+
+    PlayerColor getCpuColor()
+    {
+        return cpuPlayer.getColor();
+    }
+
+    /**
+     * gets the position of the game in FEN
+     * @return position in FEN
+     */
+    public synchronized String getFen()
+    {
+        ChessPosition position = new ChessPosition(game.getBoardState(),game.getGameHistory(),game.getCurrentPlayerColor(),
+                                                   game.getProperties(),
+                                                   game.getGameHistory().getHalfMoveClock(),1 + numMoves/2);
+        return FenNotation.write(position);
+    }
+}
@@ -0,0 +1,76 @@
+package chess.tournament;
+
+/**
+ * a sequential probability ratio test between two hypotheses about the Elo difference of a
+ * Tournament's first engine over its second: H0 (elo0) and H1 (elo1, usually the better one)<br>
+ * - after each game, the log-likelihood ratio of the results is compared with two bounds set by
+ *   the error rates: above the upper bound H1 is accepted, below the lower bound H0 is accepted<br>
+ * - the ratio uses a normal approximation of the games' scores, with their observed variance,
+ *   so draws are accounted for without a draw model
+ *
+ * @author devang
+ */
+public class Sprt {
+    public static final double DEFAULT_ALPHA = 0.05;
+    public static final double DEFAULT_BETA  = 0.05;
+
+    public enum Decision { CONTINUE, ACCEPT_H0, ACCEPT_H1 }
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+
+    /**
+     * creates a test
+     * @param elo0 Elo difference of the null hypothesis
+     * @param elo1 Elo difference of the alternative hypothesis
+     * @param alpha probability of accepting H1 when H0 is true
+     * @param beta probability of accepting H0 when H1 is true
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta)
+    {
+        this.elo0  = elo0;
+        this.elo1  = elo1;
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    public double getElo0()       { return elo0; }
+    public double getElo1()       { return elo1; }
+    public double getLowerBound() { return lowerBound; }
+    public double getUpperBound() { return upperBound; }
+
+    /**
+     * gets the log-likelihood ratio of H1 over H0, for the results so far
+     * @param results results of the games played
+     * @return log-likelihood ratio (0 before the results vary)
+     */
+    public double getLogLikelihoodRatio(TournamentResults results)
+    {
+        double variance = results.getVariance();
+        if (variance <= 0) return 0;
+        double score0 = TournamentResults.toScore(elo0);
+        double score1 = TournamentResults.toScore(elo1);
+        return results.getNumGames() * (score1 - score0) * (2*results.getScore() - score0 - score1) / (2*variance);
+    }
+
+    /**
+     * decides whether the tournament can stop
+     * @param results results of the games played
+     * @return the hypothesis accepted, or CONTINUE
+     */
+    public Decision getDecision(TournamentResults results)
+    {
+        double llr = getLogLikelihoodRatio(results);
+        if (llr >= upperBound) return Decision.ACCEPT_H1;
+        if (llr <= lowerBound) return Decision.ACCEPT_H0;
+        return Decision.CONTINUE;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("SPRT elo0 %.1f elo1 %.1f, bounds [%.2f, %.2f]",elo0,elo1,lowerBound,upperBound);
+    }
+}
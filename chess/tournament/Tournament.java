@@ -0,0 +1,208 @@
+package chess.tournament;
+
+import chess.notation.PgnGame;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * a match of two engine configurations in self-play, to measure the difference between them<br>
+ * - games are played in pairs from each opening, the engines swapping colors, so an unbalanced
+ *   opening favours neither engine; openings are taken in turn, starting over after the last<br>
+ * - games run in parallel, one per thread, each on its own headless ChessGame (see TournamentGame)<br>
+ * - results are counted for the first engine (see TournamentResults); with an SPRT (see Sprt),
+ *   no game is started once the test accepts a hypothesis (games already running are finished)<br>
+ * - each finished game is appended to the PGN file, in the order the games finish
+ *
+ * @author devang
+ */
+public class Tournament {
+    public static final int DEFAULT_NUM_GAMES         = 100;
+    public static final int DEFAULT_MAX_PLIES         = 400;
+    public static final int DEFAULT_WIN_SCORE         = 1000;
+    public static final int DEFAULT_WIN_PLIES         = 6;
+    public static final int DEFAULT_DRAW_SCORE        = 10;
+    public static final int DEFAULT_DRAW_PLIES        = 10;
+    public static final int DEFAULT_DRAW_MOVE_NUMBER  = 40;
+
+    // short, balanced openings in long algebraic notation: each played from both sides
+    public static final List<String> DEFAULT_OPENINGS = Arrays.asList(
+        "e2e4 e7e5 g1f3 b8c6",
+        "e2e4 e7e5 g1f3 g8f6",
+        "e2e4 e7e5 f1c4 g8f6",
+        "e2e4 c7c5 g1f3 d7d6",
+        "e2e4 c7c5 b1c3 b8c6",
+        "e2e4 e7e6 d2d4 d7d5",
+        "e2e4 c7c6 d2d4 d7d5",
+        "e2e4 d7d6 d2d4 g8f6",
+        "d2d4 d7d5 c2c4 e7e6",
+        "d2d4 d7d5 c2c4 c7c6",
+        "d2d4 d7d5 g1f3 g8f6",
+        "d2d4 g8f6 c2c4 e7e6",
+        "d2d4 g8f6 c2c4 g7g6",
+        "c2c4 e7e5 b1c3 g8f6",
+        "c2c4 c7c5 g1f3 g8f6",
+        "g1f3 d7d5 g2g3 g8f6");
+
+    /**
+     * receives each finished game, with the results so far
+     */
+    public interface Listener {
+        void gameFinished(TournamentGame game, TournamentResults results);
+    }
+
+    private final TournamentEngine engine;
+    private final TournamentEngine opponent;
+    private final String           event;
+
+    private List<String> openings       = DEFAULT_OPENINGS;
+    private int          numGames       = DEFAULT_NUM_GAMES;
+    private int          numThreads     = Runtime.getRuntime().availableProcessors();
+    private Sprt         sprt           = null;
+    private int          maxPlies       = DEFAULT_MAX_PLIES;
+    private int          winScore       = DEFAULT_WIN_SCORE;
+    private int          winPlies       = DEFAULT_WIN_PLIES;
+    private int          drawScore      = DEFAULT_DRAW_SCORE;
+    private int          drawPlies      = DEFAULT_DRAW_PLIES;
+    private int          drawMoveNumber = DEFAULT_DRAW_MOVE_NUMBER;
+
+    private final TournamentResults results = new TournamentResults();
+    private volatile boolean        stopped = false;
+    private Sprt.Decision           decision = Sprt.Decision.CONTINUE;
+
+    /**
+     * creates a match
+     * @param engine the engine measured (usually the changed one)
+     * @param opponent the engine it is measured against
+     */
+    public Tournament(TournamentEngine engine, TournamentEngine opponent)
+    {
+        this.engine   = engine;
+        this.opponent = opponent;
+        event = engine.getName() + " vs " + opponent.getName();
+    }
+
+    public void setOpenings(List<String> openings)      { this.openings = new ArrayList<>(openings); }
+    public void setNumGames(int numGames)               { this.numGames = Math.max(1,numGames); }
+    public void setNumThreads(int numThreads)           { this.numThreads = Math.max(1,numThreads); }
+    public void setSprt(Sprt sprt)                      { this.sprt = sprt; }
+    public void setMaxPlies(int maxPlies)               { this.maxPlies = Math.max(1,maxPlies); }
+    public void setWinScore(int winScore)               { this.winScore = winScore; }
+    public void setWinPlies(int winPlies)               { this.winPlies = Math.max(1,winPlies); }
+    public void setDrawScore(int drawScore)             { this.drawScore = drawScore; }
+    public void setDrawPlies(int drawPlies)             { this.drawPlies = Math.max(1,drawPlies); }
+    public void setDrawMoveNumber(int drawMoveNumber)   { this.drawMoveNumber = drawMoveNumber; }
+
+    public int getMaxPlies()                            { return maxPlies; }
+    public int getWinScore()                            { return winScore; }
+    public int getWinPlies()                            { return winPlies; }
+    public int getDrawScore()                           { return drawScore; }
+    public int getDrawPlies()                           { return drawPlies; }
+    public int getDrawMoveNumber()                      { return drawMoveNumber; }
+    public TournamentResults getResults()               { return results; }
+
+    /**
+     * gets the decision of the SPRT, once the tournament is over
+     * @return hypothesis accepted, or CONTINUE if the test did not decide (or there is no test)
+     */
+    public synchronized Sprt.Decision getDecision()
+    {
+        return decision;
+    }
+
+    /**
+     * reads openings from a file: one opening per line, in long algebraic notation separated by
+     * spaces (blank lines and lines starting with # are skipped)
+     * @param openingsFile file of openings
+     * @return openings read
+     * @throws IOException if the file cannot be read
+     */
+    public static List<String> readOpenings(Path openingsFile) throws IOException
+    {
+        List<String> openings = new ArrayList<>();
+        for (String line : Files.readAllLines(openingsFile,StandardCharsets.UTF_8))
+        {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) openings.add(line);
+        }
+        return openings;
+    }
+
+    /**
+     * plays the tournament
+     * @param pgnFile file to which the games are appended (may be null)
+     * @param listener receives each finished game (may be null)
+     * @return results of the games, for the first engine
+     * @throws IOException if the PGN file cannot be written
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public TournamentResults run(Path pgnFile, Listener listener) throws IOException, InterruptedException
+    {
+        String date = new SimpleDateFormat("yyyy.MM.dd").format(new Date());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try (Writer pgn = (pgnFile == null) ? null : Files.newBufferedWriter(pgnFile,StandardCharsets.UTF_8,
+                                                         StandardOpenOption.CREATE,StandardOpenOption.APPEND))
+        {
+            for (int g = 0; g < numGames; g++)
+            {
+                // a pair of games from each opening: the first engine plays white, then black
+                String opening = openings.isEmpty() ? "" : openings.get((g/2) % openings.size());
+                boolean engineWhite = (g % 2) == 0;
+                TournamentGame game = new TournamentGame(g+1,opening,engineWhite ? engine : opponent,engineWhite ? opponent : engine,this);
+                executor.execute(() -> playGame(game,pgn,date,listener));
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE,TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private void playGame(TournamentGame game, Writer pgn, String date, Listener listener)
+    {
+        if (stopped) return;
+        try {
+            game.play();
+        } catch (RuntimeException e) {
+            String loggerMsg = "game " + game.getRound() + " failed, from opening: " + game.getOpening();
+            Logger.getLogger(Tournament.class.getName()).log(Level.WARNING,loggerMsg,e);
+            return;
+        }
+
+        synchronized (this)
+        {
+            results.add(game.getScore(engine));
+            if (sprt != null)
+            {
+                decision = sprt.getDecision(results);
+                if (decision != Sprt.Decision.CONTINUE) stopped = true;
+            }
+            if (pgn != null)
+            {
+                try {
+                    PgnGame pgnGame = game.toPgnGame(event,date);
+                    pgnGame.write(pgn);
+                    pgn.flush();
+                } catch (IOException e) {
+                    String loggerMsg = "could not write game " + game.getRound() + " to the PGN file";
+                    Logger.getLogger(Tournament.class.getName()).log(Level.WARNING,loggerMsg,e);
+                }
+            }
+            if (listener != null) listener.gameFinished(game,results);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package chess.tournament;
+
+import chess.players.ai.SearchControl;
+import chess.players.ai.SearchLimits;
+import chess.players.ai.TranspositionTable;
+
+/**
+ * the configuration of an engine playing in a Tournament: how deep, or how long, it searches each
+ * move, and the size of its transposition table<br>
+ * - written as name=base,depth=4,nodes=20000,movetime=100,hash=4 (see parse): a search stops at
+ *   whichever limit it reaches first, and a limit of 0 is no limit
+ *
+ * @author devang
+ */
+public class TournamentEngine {
+    public static final int DEFAULT_DEPTH     = 3;
+    public static final int DEFAULT_MEGABYTES = 4;
+
+    private final String name;
+    private int  depth          = DEFAULT_DEPTH;
+    private long nodes          = 0;
+    private long moveMillis     = 0;
+    private int  tableMegabytes = DEFAULT_MEGABYTES;
+
+    public TournamentEngine(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * reads an engine's configuration
+     * @param spec comma-separated settings: name, depth, nodes, movetime (milliseconds) and hash (megabytes)
+     * @return newly-created engine configuration
+     * @throws IllegalArgumentException if a setting is unknown or not a number
+     */
+    public static TournamentEngine parse(String spec)
+    {
+        String name = null;
+        for (String setting : spec.split(","))
+        {
+            if (setting.startsWith("name=")) name = setting.substring(5);
+        }
+        TournamentEngine engine = new TournamentEngine((name != null) ? name : spec);
+
+        for (String setting : spec.split(","))
+        {
+            int equals = setting.indexOf('=');
+            if (equals < 0) throw new IllegalArgumentException("not a setting: " + setting);
+            String key   = setting.substring(0,equals);
+            String value = setting.substring(equals+1);
+            switch (key)
+            {
+                case "name":     break;
+                case "depth":    engine.setDepth(Integer.parseInt(value)); break;
+                case "nodes":    engine.setNodes(Long.parseLong(value)); break;
+                case "movetime": engine.setMoveMillis(Long.parseLong(value)); break;
+                case "hash":     engine.setTableMegabytes(Integer.parseInt(value)); break;
+                default:         throw new IllegalArgumentException("unknown setting: " + setting);
+            }
+        }
+        return engine;
+    }
+
+    public String getName()                         { return name; }
+    public int getDepth()                           { return depth; }
+    public void setDepth(int depth)                 { this.depth = Math.max(1,Math.min(SearchLimits.MAX_DEPTH,depth)); }
+    public long getNodes()                          { return nodes; }
+    public void setNodes(long nodes)                { this.nodes = Math.max(0,nodes); }
+    public long getMoveMillis()                     { return moveMillis; }
+    public void setMoveMillis(long moveMillis)      { this.moveMillis = Math.max(0,moveMillis); }
+    public int getTableMegabytes()                  { return tableMegabytes; }
+    public void setTableMegabytes(int megabytes)    { this.tableMegabytes = Math.max(0,megabytes); }
+
+    /**
+     * creates the control of one search of a move, with this engine's node and time limits
+     * @return newly-created search control
+     */
+    public SearchControl createSearchControl()
+    {
+        SearchControl searchControl = (nodes > 0) ? new SearchControl(nodes) : new SearchControl();
+        if (moveMillis > 0) searchControl.setDeadline(System.currentTimeMillis() + moveMillis);
+        return searchControl;
+    }
+
+    /**
+     * creates the transposition table this engine uses for one game
+     * @return newly-created table, or null if the engine plays without one
+     */
+    public TranspositionTable createTranspositionTable()
+    {
+        return (tableMegabytes > 0) ? new TranspositionTable(tableMegabytes) : null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name + " (depth " + depth + ((nodes > 0) ? ", nodes " + nodes : "")
+             + ((moveMillis > 0) ? ", movetime " + moveMillis : "") + ", hash " + tableMegabytes + ")";
+    }
+}
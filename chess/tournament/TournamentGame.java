@@ -0,0 +1,234 @@
+package chess.tournament;
+
+import chess.ChessGame;
+import chess.ChessGameListener;
+import chess.moves.ChessMove;
+import chess.notation.ChessNotation;
+import chess.notation.PgnGame;
+import chess.players.ChessPlayer;
+import chess.players.ai.IterativeDeepening;
+import chess.players.ai.TranspositionTable;
+import game.utility.Properties.PlayerColor;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * one game of a Tournament: a headless ChessGame between two engines, from an opening<br>
+ * - the opening's moves are made first, then each engine searches its moves in turn<br>
+ * - the game ends by the rules (checkmate, stalemate, repetition, fifty moves) or is adjudicated:
+ *   a win once both engines' scores agree that one side is winning for a few plies, a draw once
+ *   both scores stay near zero for a few plies after the draw move number, or a draw at the ply limit
+ *
+ * @author devang
+ */
+public class TournamentGame implements ChessGameListener {
+    public static final String TERMINATION_NORMAL       = "normal";
+    public static final String TERMINATION_ADJUDICATION = "adjudication";
+
+    /**
+     * an engine's side of the game: its moves are made by the game's loop (see play)
+     */
+    private static class EnginePlayer extends ChessPlayer {
+        private EnginePlayer(ChessGame game, PlayerColor color)
+        {
+            super(game,color);
+        }
+
+        @Override
+        public void persistMove(ChessMove move)
+        {
+            // the engines search the game's own board: nothing to update
+        }
+    }
+
+    private final int              round;
+    private final String           opening;
+    private final TournamentEngine whiteEngine;
+    private final TournamentEngine blackEngine;
+    private final Tournament       tournament;
+
+    private final List<String> sanMoves = new ArrayList<>();
+    private String  result      = PgnGame.RESULT_UNKNOWN;
+    private String  termination = TERMINATION_NORMAL;
+    private String  reason      = null;
+    private boolean over        = false;
+
+    /**
+     * creates a game (not yet played: see play)
+     * @param round number of the game in its tournament, from 1
+     * @param opening moves of the opening in long algebraic (UCI) notation, separated by spaces
+     * @param whiteEngine engine playing white
+     * @param blackEngine engine playing black
+     * @param tournament tournament of the game, for its adjudication settings
+     */
+    public TournamentGame(int round, String opening, TournamentEngine whiteEngine, TournamentEngine blackEngine, Tournament tournament)
+    {
+        this.round       = round;
+        this.opening     = opening.trim();
+        this.whiteEngine = whiteEngine;
+        this.blackEngine = blackEngine;
+        this.tournament  = tournament;
+    }
+
+    /**
+     * plays the game to its end, on the calling thread
+     */
+    public void play()
+    {
+        ChessGame game = ChessGame.createHeadless();
+        EnginePlayer white = new EnginePlayer(game,PlayerColor.WHITE);
+        EnginePlayer black = new EnginePlayer(game,PlayerColor.BLACK);
+        game.setPlayers(white,black);
+        game.addListener(this);
+        game.initializeGame();
+
+        for (String uci : opening.isEmpty() ? new String[0] : opening.split("\\s+"))
+        {
+            List<ChessMove> validMoves = new ArrayList<>();
+            game.getBoardState().addValidMoves(game.getCurrentPlayerColor(),game.getGameHistory(),validMoves);
+            ChessMove move = ChessNotation.findMove(uci,validMoves,game.getProperties());
+            if (move == null) throw new IllegalArgumentException("invalid opening move " + uci + " in: " + opening);
+            makeMove(game,move);
+            if (over) return;
+        }
+
+        TranspositionTable whiteTable = whiteEngine.createTranspositionTable();
+        TranspositionTable blackTable = blackEngine.createTranspositionTable();
+        int winPlies  = 0;
+        int winSign   = 0;
+        int drawPlies = 0;
+        while (!over)
+        {
+            if (sanMoves.size() >= tournament.getMaxPlies())
+            {
+                adjudicate(PgnGame.RESULT_DRAW,"ply limit");
+                return;
+            }
+
+            PlayerColor color = game.getCurrentPlayerColor();
+            TournamentEngine engine = (color == PlayerColor.WHITE) ? whiteEngine : blackEngine;
+            IterativeDeepening search = new IterativeDeepening(game.getBoardState(),game.getGameHistory(),color,1,
+                                                               (color == PlayerColor.WHITE) ? whiteTable : blackTable,
+                                                               engine.createSearchControl());
+            ChessMove move = search.search(engine.getDepth(),null);
+            if (move == null) throw new IllegalStateException("no move found in a game not over");
+            int whiteScore = (color == PlayerColor.WHITE) ? search.getBestScore() : -search.getBestScore();
+            makeMove(game,move);
+            if (over) return;
+
+            // both engines' scores, in turn, must agree for the plies counted
+            if (Math.abs(whiteScore) >= tournament.getWinScore())
+            {
+                winPlies = (Integer.signum(whiteScore) == winSign) ? winPlies + 1 : 1;
+                winSign  = Integer.signum(whiteScore);
+            }
+            else
+            {
+                winPlies = 0;
+            }
+            drawPlies = (Math.abs(whiteScore) <= tournament.getDrawScore()) ? drawPlies + 1 : 0;
+
+            if (winPlies >= tournament.getWinPlies())
+            {
+                adjudicate((whiteScore > 0) ? PgnGame.RESULT_WHITE_WINS : PgnGame.RESULT_BLACK_WINS,"score");
+            }
+            else if ((drawPlies >= tournament.getDrawPlies()) && (sanMoves.size() >= 2*tournament.getDrawMoveNumber()))
+            {
+                adjudicate(PgnGame.RESULT_DRAW,"score");
+            }
+        }
+    }
+
+    private void makeMove(ChessGame game, ChessMove move)
+    {
+        sanMoves.add(ChessNotation.toSan(move,game.getBoardState(),game.getCurrentPlayerColor(),game.getGameHistory(),game.getProperties()));
+        game.getCurrentPlayer().commitMove(move);
+    }
+
+    private void adjudicate(String result, String reason)
+    {
+        this.result = result;
+        this.reason = reason;
+        termination = TERMINATION_ADJUDICATION;
+        over        = true;
+    }
+
+    @Override
+    public void gameStarted(ChessGame game)
+    {
+    }
+
+    @Override
+    public void moveMade(ChessGame game, ChessPlayer player, ChessMove move)
+    {
+    }
+
+    @Override
+    public void playerToMove(ChessGame game, ChessPlayer player)
+    {
+    }
+
+    @Override
+    public void gameOver(ChessGame game, PlayerColor winnerColor)
+    {
+        if (winnerColor == null)                    result = PgnGame.RESULT_DRAW;
+        else if (winnerColor == PlayerColor.WHITE)  result = PgnGame.RESULT_WHITE_WINS;
+        else                                        result = PgnGame.RESULT_BLACK_WINS;
+        reason = (winnerColor != null) ? "checkmate" : game.getGameHistory().isDrawn() ? "repetition or fifty moves" : "stalemate";
+        over   = true;
+    }
+
+    public int getRound()                       { return round; }
+    public String getOpening()                  { return opening; }
+    public TournamentEngine getWhiteEngine()    { return whiteEngine; }
+    public TournamentEngine getBlackEngine()    { return blackEngine; }
+    public String getResult()                   { return result; }
+    public String getTermination()              { return termination; }
+    public String getReason()                   { return reason; }
+    public List<String> getSanMoves()           { return sanMoves; }
+
+    /**
+     * gets the score of an engine in this game
+     * @param engine one of the game's engines
+     * @return 1 for a win, 0.5 for a draw, 0 for a loss
+     */
+    public double getScore(TournamentEngine engine)
+    {
+        if (PgnGame.RESULT_DRAW.equals(result)) return 0.5;
+        boolean whiteWon = PgnGame.RESULT_WHITE_WINS.equals(result);
+        return (whiteWon == (engine == whiteEngine)) ? 1 : 0;
+    }
+
+    /**
+     * gets the game as a PGN game, with the seven standard tags and the opening and termination
+     * @param event name of the tournament
+     * @param date date of the tournament, as yyyy.mm.dd
+     * @return newly-created PGN game
+     */
+    public PgnGame toPgnGame(String event, String date)
+    {
+        Map<String,String> tags = new LinkedHashMap<>();
+        tags.put("Event",event);
+        tags.put("Site","?");
+        tags.put("Date",date);
+        tags.put("Round",String.valueOf(round));
+        tags.put("White",whiteEngine.getName());
+        tags.put("Black",blackEngine.getName());
+        tags.put("Result",result);
+        tags.put("Opening",opening);
+        tags.put("PlyCount",String.valueOf(sanMoves.size()));
+        tags.put("Termination",termination);
+
+        StringBuilder moveText = new StringBuilder();
+        for (int ply = 0; ply < sanMoves.size(); ply++)
+        {
+            if ((ply % 2) == 0) moveText.append(ply/2 + 1).append(". ");
+            moveText.append(sanMoves.get(ply)).append(' ');
+        }
+        if (reason != null) moveText.append('{').append(reason).append("} ");
+        moveText.append(result);
+        return new PgnGame(tags,moveText.toString());
+    }
+}
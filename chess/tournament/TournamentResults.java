@@ -0,0 +1,107 @@
+package chess.tournament;
+
+/**
+ * the results of a Tournament's games, for its first engine: wins, draws and losses, the Elo
+ * difference they show, and its 95% confidence interval<br>
+ * - the Elo difference is the logistic one: a score of 0.64 (of 1 per game) is about +100<br>
+ * - the interval comes from the variance of the games' scores (a normal approximation), so
+ *   draws narrow it
+ *
+ * @author devang
+ */
+public class TournamentResults {
+    private static final double Z_95 = 1.959964;
+
+    private int wins   = 0;
+    private int draws  = 0;
+    private int losses = 0;
+
+    /**
+     * adds a game's result
+     * @param score the first engine's score: 1 for a win, 0.5 for a draw, 0 for a loss
+     */
+    public void add(double score)
+    {
+        if (score > 0.5)      wins++;
+        else if (score < 0.5) losses++;
+        else                  draws++;
+    }
+
+    public int getWins()     { return wins; }
+    public int getDraws()    { return draws; }
+    public int getLosses()   { return losses; }
+    public int getNumGames() { return wins + draws + losses; }
+
+    /**
+     * gets the first engine's mean score per game
+     * @return score from 0 to 1 (0.5 if no game is finished)
+     */
+    public double getScore()
+    {
+        int numGames = getNumGames();
+        return (numGames == 0) ? 0.5 : (wins + 0.5*draws) / numGames;
+    }
+
+    /**
+     * gets the variance of the scores of the games
+     * @return variance of one game's score
+     */
+    public double getVariance()
+    {
+        int numGames = getNumGames();
+        if (numGames == 0) return 0;
+        double score = getScore();
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score) + losses * score * score) / numGames;
+    }
+
+    /**
+     * gets the Elo difference of the first engine over the second
+     * @return Elo difference (infinite if one engine scored every point)
+     */
+    public double getElo()
+    {
+        return toElo(getScore());
+    }
+
+    /**
+     * gets the half-width of the 95% confidence interval of the Elo difference
+     * @return Elo margin, to add to and take from getElo
+     */
+    public double getEloMargin()
+    {
+        int numGames = getNumGames();
+        if (numGames == 0) return Double.POSITIVE_INFINITY;
+        double margin = Z_95 * Math.sqrt(getVariance() / numGames);
+        double score  = getScore();
+        return (toElo(Math.min(1,score + margin)) - toElo(Math.max(0,score - margin))) / 2;
+    }
+
+    /**
+     * converts a mean score to an Elo difference
+     * @param score mean score per game, from 0 to 1
+     * @return Elo difference
+     */
+    public static double toElo(double score)
+    {
+        if (score <= 0) return Double.NEGATIVE_INFINITY;
+        if (score >= 1) return Double.POSITIVE_INFINITY;
+        return -400 * Math.log10(1/score - 1);
+    }
+
+    /**
+     * converts an Elo difference to the mean score it expects
+     * @param elo Elo difference
+     * @return mean score per game, from 0 to 1
+     */
+    public static double toScore(double elo)
+    {
+        return 1 / (1 + Math.pow(10,-elo/400));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%d games: +%d =%d -%d, score %.1f%%, Elo %+.1f +/- %.1f",
+                             getNumGames(),wins,draws,losses,100*getScore(),getElo(),getEloMargin());
+    }
+}
@@ -0,0 +1,200 @@
+package chess.training;
+
+import chess.ChessBitboards;
+import chess.ChessBoardState;
+import chess.ChessPosition;
+import chess.moves.ChessMove;
+import chess.moves.MovePromotion;
+import chess.players.ai.IterativeDeepening;
+import chess.players.ai.MiniMax;
+import chess.players.ai.SearchControl;
+import chess.players.ai.SearchLimits;
+import chess.players.ai.StaticExchange;
+import chess.players.ai.TranspositionTable;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import game.utility.Properties.PlayerColor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * plays self-play games with a fixed number of nodes per move, recording the positions with their
+ * search scores and the games' results (see TrainingRecord), to train evaluation weights<br>
+ * - each game starts with a few random moves (seeded by the game's number, so a run can be
+ *   repeated), so the games do not all follow the same lines<br>
+ * - only quiet positions are recorded: not in check, the best move not a capture or promotion,
+ *   and the score not a mate, so a position's score is its evaluation's target<br>
+ * - a game ends by the rules, or is adjudicated: a win once the scores agree that one side is
+ *   winning for a few plies, a draw at the ply limit<br>
+ * - games run in parallel, one per thread, each thread with its own transposition table (cleared
+ *   between games); a game's records are written when it ends, its result known
+ *
+ * @author devang
+ */
+public class TrainingDataGenerator {
+    public static final int  DEFAULT_NUM_GAMES    = 1000;
+    public static final long DEFAULT_NODES        = 5000;
+    public static final int  DEFAULT_RANDOM_PLIES = 8;
+    public static final int  DEFAULT_MAX_PLIES    = 400;
+    public static final int  DEFAULT_WIN_SCORE    = 1000;
+    public static final int  DEFAULT_WIN_PLIES    = 6;
+    public static final int  DEFAULT_MEGABYTES    = 4;
+
+    private static final int GAMES_PER_REPORT = 100;
+
+    private final Properties properties = Properties.init(Direction.UP,Direction.DOWN);
+
+    private int  numGames       = DEFAULT_NUM_GAMES;
+    private int  numThreads     = Runtime.getRuntime().availableProcessors();
+    private long nodes          = DEFAULT_NODES;
+    private int  randomPlies    = DEFAULT_RANDOM_PLIES;
+    private int  maxPlies       = DEFAULT_MAX_PLIES;
+    private int  winScore       = DEFAULT_WIN_SCORE;
+    private int  winPlies       = DEFAULT_WIN_PLIES;
+    private int  tableMegabytes = DEFAULT_MEGABYTES;
+    private long seed           = 0;
+
+    private final AtomicInteger gamesPlayed   = new AtomicInteger();
+    private final AtomicLong    positionsSeen = new AtomicLong();
+
+    public void setNumGames(int numGames)               { this.numGames = Math.max(1,numGames); }
+    public void setNumThreads(int numThreads)           { this.numThreads = Math.max(1,numThreads); }
+    public void setNodes(long nodes)                    { this.nodes = Math.max(1,nodes); }
+    public void setRandomPlies(int randomPlies)         { this.randomPlies = Math.max(0,randomPlies); }
+    public void setMaxPlies(int maxPlies)               { this.maxPlies = Math.max(1,maxPlies); }
+    public void setWinScore(int winScore)               { this.winScore = winScore; }
+    public void setWinPlies(int winPlies)               { this.winPlies = Math.max(1,winPlies); }
+    public void setTableMegabytes(int megabytes)        { this.tableMegabytes = Math.max(0,megabytes); }
+    public void setSeed(long seed)                      { this.seed = seed; }
+
+    public int getGamesPlayed()                         { return gamesPlayed.get(); }
+    public long getPositionsSeen()                      { return positionsSeen.get(); }
+
+    /**
+     * plays the games, writing their records
+     * @param writer writer of the records
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public void generate(TrainingDataWriter writer) throws InterruptedException
+    {
+        long startTime = System.currentTimeMillis();
+        AtomicInteger nextGame = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (int t = 0; t < numThreads; t++)
+            {
+                executor.execute(() -> playGames(writer,nextGame,startTime));
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE,TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void playGames(TrainingDataWriter writer, AtomicInteger nextGame, long startTime)
+    {
+        TranspositionTable table = (tableMegabytes > 0) ? new TranspositionTable(tableMegabytes) : null;
+        for (int game = nextGame.getAndIncrement(); game < numGames; game = nextGame.getAndIncrement())
+        {
+            try {
+                if (table != null) table.clear();
+                writer.write(playGame(game,table));
+            } catch (IOException | RuntimeException e) {
+                String loggerMsg = "training game " + game + " failed";
+                Logger.getLogger(TrainingDataGenerator.class.getName()).log(Level.WARNING,loggerMsg,e);
+                if (e instanceof IOException) return;
+            }
+
+            int played = gamesPlayed.incrementAndGet();
+            if ((played % GAMES_PER_REPORT) == 0)
+            {
+                long elapsedMillis = Math.max(1,System.currentTimeMillis() - startTime);
+                String loggerMsg = String.format("training games: %d, positions written: %d, %.0f positions per minute",
+                                                 played,writer.getNumRecords(),writer.getNumRecords() * 60000.0 / elapsedMillis);
+                Logger.getLogger(TrainingDataGenerator.class.getName()).log(Level.INFO,loggerMsg);
+            }
+        }
+    }
+
+    /**
+     * plays one game
+     * @param game number of the game, seeding its random moves
+     * @param table transposition table of the game's searches (may be null)
+     * @return records of the game's quiet positions, with the game's result
+     */
+    List<TrainingRecord> playGame(int game, TranspositionTable table)
+    {
+        Random random = new Random(seed + game);
+        ChessPosition position = ChessPosition.createStandard(properties);
+        for (int ply = 0; ply < randomPlies; ply++)
+        {
+            List<ChessMove> validMoves = position.getValidMoves();
+            if (validMoves.isEmpty() || position.isDrawn()) return Collections.emptyList();
+            position.makeMove(validMoves.get(random.nextInt(validMoves.size())));
+        }
+
+        List<TrainingRecord> records = new ArrayList<>();
+        int result  = -1;
+        int winRun  = 0;
+        int winSign = 0;
+        for (int ply = randomPlies; result < 0; ply++)
+        {
+            ChessBoardState boardState = position.getBoardState();
+            PlayerColor color = position.getColorToMove();
+            boolean inCheck = boardState.check(color);
+            if (position.getValidMoves().isEmpty())
+            {
+                if (!inCheck)                       result = TrainingRecord.RESULT_DRAW;
+                else if (color == PlayerColor.WHITE) result = TrainingRecord.RESULT_BLACK_WINS;
+                else                                 result = TrainingRecord.RESULT_WHITE_WINS;
+                break;
+            }
+            if (position.isDrawn() || (ply >= maxPlies))
+            {
+                result = TrainingRecord.RESULT_DRAW;
+                break;
+            }
+
+            IterativeDeepening search = new IterativeDeepening(boardState,position.getGameHistory(),color,1,table,new SearchControl(nodes));
+            ChessMove move = search.search(SearchLimits.MAX_DEPTH,null);
+            int whiteScore = (color == PlayerColor.WHITE) ? search.getBestScore() : -search.getBestScore();
+            positionsSeen.incrementAndGet();
+
+            ChessBitboards bitboards = boardState.getBitboards();
+            boolean mate  = Math.abs(whiteScore) >= MiniMax.MATE_SCORE - MiniMax.MAX_MATE_PLY;
+            boolean quiet = !inCheck && !(move instanceof MovePromotion) && !StaticExchange.isCapture(bitboards,move);
+            if (quiet && !mate) records.add(TrainingRecord.create(bitboards,color,whiteScore,ply));
+
+            // both sides' scores, in turn, must agree for the plies counted
+            if (Math.abs(whiteScore) >= winScore)
+            {
+                winRun  = (Integer.signum(whiteScore) == winSign) ? winRun + 1 : 1;
+                winSign = Integer.signum(whiteScore);
+            }
+            else
+            {
+                winRun = 0;
+            }
+            if (winRun >= winPlies)
+            {
+                result = (winSign > 0) ? TrainingRecord.RESULT_WHITE_WINS : TrainingRecord.RESULT_BLACK_WINS;
+                break;
+            }
+            position.makeMove(move);
+        }
+
+        for (TrainingRecord record : records) record.setResult(result);
+        return records;
+    }
+}
@@ -0,0 +1,118 @@
+package chess.training;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * writes training records (see TrainingRecord) to shard files of a directory<br>
+ * - shards are named prefix-00000.bin, prefix-00001.bin, ..., each holding up to a given number
+ *   of records, so the data can be read (and shuffled) a shard at a time<br>
+ * - records go through a direct buffer to the shard's file channel, written when the buffer
+ *   is full, so a shard is written in large blocks<br>
+ * - a game's records are written together, by one thread at a time: the records of a game are
+ *   never split between threads' writes
+ *
+ * @author devang
+ */
+public class TrainingDataWriter implements Closeable {
+    public static final int DEFAULT_RECORDS_PER_SHARD = 1 << 20;
+    public static final String SHARD_EXTENSION        = ".bin";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path       directory;
+    private final String     prefix;
+    private final int        recordsPerShard;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE - (BUFFER_SIZE % TrainingRecord.SIZE));
+
+    private FileChannel channel      = null;
+    private int         shardNumber  = 0;
+    private int         shardRecords = 0;
+    private long        numRecords   = 0;
+
+    /**
+     * creates a writer, which starts its first shard with its first record
+     * @param directory directory of the shards (created if needed)
+     * @param prefix name of the shards, before their numbers
+     * @param recordsPerShard number of records of a full shard
+     * @throws IOException if the directory cannot be created
+     */
+    public TrainingDataWriter(Path directory, String prefix, int recordsPerShard) throws IOException
+    {
+        this.directory       = directory;
+        this.prefix          = prefix;
+        this.recordsPerShard = Math.max(1,recordsPerShard);
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * writes the records of a game
+     * @param records records with their results set
+     * @throws IOException if a shard cannot be written
+     */
+    public synchronized void write(List<TrainingRecord> records) throws IOException
+    {
+        for (TrainingRecord record : records)
+        {
+            if (shardRecords == recordsPerShard) closeShard();
+            if (channel == null) openShard();
+            if (buffer.remaining() < TrainingRecord.SIZE) flushBuffer();
+            record.write(buffer);
+            shardRecords++;
+            numRecords++;
+        }
+    }
+
+    public synchronized long getNumRecords()
+    {
+        return numRecords;
+    }
+
+    public synchronized int getNumShards()
+    {
+        return shardNumber;
+    }
+
+    /**
+     * gets the file of a shard
+     * @param number number of the shard, from 0
+     * @return path of the shard
+     */
+    public Path getShard(int number)
+    {
+        return directory.resolve(String.format("%s-%05d%s",prefix,number,SHARD_EXTENSION));
+    }
+
+    private void openShard() throws IOException
+    {
+        channel = FileChannel.open(getShard(shardNumber++),StandardOpenOption.CREATE,StandardOpenOption.WRITE,
+                                   StandardOpenOption.TRUNCATE_EXISTING);
+        shardRecords = 0;
+    }
+
+    private void closeShard() throws IOException
+    {
+        flushBuffer();
+        channel.close();
+        channel = null;
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (channel != null) closeShard();
+    }
+}
@@ -0,0 +1,131 @@
+package chess.training;
+
+import chess.ChessBitboards;
+import chess.notation.PackedPosition;
+import game.utility.Properties.PlayerColor;
+import java.nio.ByteBuffer;
+
+/**
+ * a position of a self-play game with its search score and the game's result, packed into SIZE bytes<br>
+ * - occupancy and pieces (24 bytes), packed as in PackedPosition<br>
+ * - side to move (1 byte, 0 white), score (2 bytes, centipawns for white), result (1 byte:
+ *   0 black won, 1 draw, 2 white won), ply of the game (2 bytes), then 2 bytes reserved<br>
+ * - castling and en-passant rights are not kept: positions are recorded for their evaluation,
+ *   not to be searched again (see PackedPosition for positions kept whole)<br>
+ * - numbers are in the byte order of the buffer written to (big-endian unless set otherwise)
+ *
+ * @author devang
+ */
+public class TrainingRecord {
+    public static final int SIZE       = 32;
+    public static final int MAX_PIECES = PackedPosition.MAX_PIECES;
+    public static final int MAX_SCORE  = Short.MAX_VALUE;
+
+    public static final int RESULT_BLACK_WINS = 0;
+    public static final int RESULT_DRAW       = 1;
+    public static final int RESULT_WHITE_WINS = 2;
+
+    private final long   occupancy;
+    private final byte[] pieces = new byte[PackedPosition.PIECES_SIZE];
+    private final int    colorToMove;
+    private final int    score;
+    private final int    ply;
+    private int          result = RESULT_DRAW;
+
+    private TrainingRecord(long occupancy, int colorToMove, int score, int ply)
+    {
+        this.occupancy   = occupancy;
+        this.colorToMove = colorToMove;
+        this.score       = Math.max(-MAX_SCORE,Math.min(MAX_SCORE,score));
+        this.ply         = ply;
+    }
+
+    /**
+     * creates a record of a position, its result not yet known
+     * @param bitboards bitboards of the position's pieces
+     * @param colorToMove color of the player to move
+     * @param whiteScore score of the position's search, for white
+     * @param ply ply of the game at which the position was reached
+     * @return newly-created record
+     * @throws IllegalArgumentException if there are more than MAX_PIECES pieces
+     */
+    public static TrainingRecord create(ChessBitboards bitboards, PlayerColor colorToMove, int whiteScore, int ply)
+    {
+        byte[] pieces  = new byte[PackedPosition.PIECES_SIZE];
+        long occupancy = PackedPosition.packPieces(bitboards,pieces);
+
+        TrainingRecord record = new TrainingRecord(occupancy,ChessBitboards.getColorIndex(colorToMove),whiteScore,ply);
+        System.arraycopy(pieces,0,record.pieces,0,pieces.length);
+        return record;
+    }
+
+    /**
+     * reads a record at the buffer's position, and moves the position past it
+     * @param buffer buffer holding the record
+     * @return newly-created record
+     */
+    public static TrainingRecord read(ByteBuffer buffer)
+    {
+        long occupancy  = buffer.getLong();
+        byte[] pieces   = new byte[PackedPosition.PIECES_SIZE];
+        buffer.get(pieces);
+        int colorToMove = buffer.get();
+        int score       = buffer.getShort();
+        int result      = buffer.get();
+        int ply         = buffer.getShort() & 0xFFFF;
+        buffer.getShort();
+
+        TrainingRecord record = new TrainingRecord(occupancy,colorToMove,score,ply);
+        System.arraycopy(pieces,0,record.pieces,0,pieces.length);
+        record.result = result;
+        return record;
+    }
+
+    /**
+     * writes the record at the buffer's position, and moves the position past it
+     * @param buffer buffer with at least SIZE bytes remaining
+     */
+    public void write(ByteBuffer buffer)
+    {
+        buffer.putLong(occupancy);
+        buffer.put(pieces);
+        buffer.put((byte)colorToMove);
+        buffer.putShort((short)score);
+        buffer.put((byte)result);
+        buffer.putShort((short)ply);
+        buffer.putShort((short)0);
+    }
+
+    public void setResult(int result)   { this.result = result; }
+    public int getResult()              { return result; }
+    public int getScore()               { return score; }
+    public int getPly()                 { return ply; }
+    public long getOccupancy()          { return occupancy; }
+
+    public PlayerColor getColorToMove()
+    {
+        return (colorToMove == ChessBitboards.WHITE) ? PlayerColor.WHITE : PlayerColor.BLACK;
+    }
+
+    /**
+     * gets the piece on a square
+     * @param square square 0 (a1) through 63 (h8)
+     * @return color (bit 3) and type (bits 0-2) of the piece, or -1 if the square is empty
+     */
+    public int getPiece(int square)
+    {
+        return PackedPosition.getPiece(occupancy,pieces,square);
+    }
+
+    /**
+     * writes the position as the first two fields of a FEN (pieces and side to move), as read by
+     * EvaluationTuner
+     * @return pieces and side to move in FEN
+     */
+    public String toFen()
+    {
+        StringBuilder fen = new StringBuilder();
+        PackedPosition.appendPlacement(fen,occupancy,pieces);
+        return fen.append((colorToMove == ChessBitboards.WHITE) ? " w" : " b").toString();
+    }
+}
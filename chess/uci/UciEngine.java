@@ -0,0 +1,395 @@
+package chess.uci;
+
+import chess.ChessPosition;
+import chess.endgame.Tablebases;
+import chess.moves.ChessMove;
+import chess.notation.ChessNotation;
+import chess.notation.FenNotation;
+import chess.players.ai.AnalysisLine;
+import chess.players.ai.IterativeDeepening;
+import chess.players.ai.SearchControl;
+import chess.players.ai.SearchLimits;
+import chess.players.ai.SearchMetrics;
+import chess.players.ai.TranspositionTable;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A chess engine speaking the Universal Chess Interface (UCI) protocol over a pair of streams
+ * (stdin/stdout), so the CPU player can be run by GUIs and tournament managers without a window<br>
+ * - commands: uci, isready, ucinewgame, setoption (Hash, Threads, MultiPV), position, go, stop, ponderhit, quit<br>
+ * - searches run one at a time on the engine's search thread, so stop and ponderhit are read while one runs<br>
+ * - an infinite or ponder search holds its bestmove until stop (or ponderhit, which starts the clock)
+ *
+ * @author devang
+ */
+public class UciEngine {
+    public static final String ENGINE_NAME   = "Chess";
+    public static final String ENGINE_AUTHOR = "devang";
+    public static final int    MAX_HASH      = 1024;
+    public static final int    MAX_THREADS   = 64;
+    public static final int    MAX_MULTI_PV  = 256;
+
+    private final BufferedReader in;
+    private final PrintStream    out;
+    private final Properties     properties = Properties.init(Direction.UP,Direction.DOWN);
+
+    private ChessPosition      position;
+    private TranspositionTable transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES);
+    private int                numThreads = 1;
+    private int                multiPv    = 1;
+
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable,"uci-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // state of the running search, guarded by this
+    private Future<?>          searchFuture = null;
+    private SearchControl      searchControl = null;
+    private SearchLimits       searchLimits = null;
+    private boolean            holdBestMove = false;
+
+    /**
+     * creates an engine reading commands from one stream and writing replies to another
+     * @param in stream of commands, one per line
+     * @param out stream of replies
+     */
+    public UciEngine(BufferedReader in, PrintStream out)
+    {
+        this.in  = in;
+        this.out = out;
+        position = ChessPosition.createStandard(properties);
+    }
+
+    /**
+     * reads and runs commands until quit, or the end of the input<br>
+     * - at the end of the input (i.e. commands piped from a file) a timed or depth-limited
+     *   search is finished, but an infinite or ponder search is stopped
+     * @throws IOException if the input cannot be read
+     */
+    public void run() throws IOException
+    {
+        String line;
+        while ((line = in.readLine()) != null)
+        {
+            String[] tokens = line.trim().split("\\s+");
+            if (tokens[0].isEmpty()) continue;
+            try {
+                if (!runCommand(tokens))
+                {
+                    stopSearch();
+                    searchExecutor.shutdown();
+                    return;
+                }
+            } catch (RuntimeException e) {
+                String loggerMsg = "UCI command failed: " + line;
+                Logger.getLogger(UciEngine.class.getName()).log(Level.WARNING,loggerMsg,e);
+                send("info string error: " + e.getMessage());
+            }
+        }
+        synchronized (this)
+        {
+            if (holdBestMove && (searchControl != null)) searchControl.stop();
+            holdBestMove = false;
+            notifyAll();
+        }
+        Future<?> future;
+        synchronized (this)
+        {
+            future = searchFuture;
+        }
+        if (future != null) waitFor(future);
+        searchExecutor.shutdown();
+    }
+
+    /**
+     * runs a command
+     * @return false if the engine is to quit
+     */
+    private boolean runCommand(String[] tokens)
+    {
+        switch (tokens[0])
+        {
+            case "uci":
+                send("id name " + ENGINE_NAME);
+                send("id author " + ENGINE_AUTHOR);
+                send("option name Hash type spin default " + TranspositionTable.DEFAULT_MEGABYTES + " min 1 max " + MAX_HASH);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("option name MultiPV type spin default 1 min 1 max " + MAX_MULTI_PV);
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "ucinewgame":
+                stopSearch();
+                transpositionTable.clear();
+                position = ChessPosition.createStandard(properties);
+                break;
+            case "setoption":
+                setOption(tokens);
+                break;
+            case "position":
+                stopSearch();
+                setPosition(tokens);
+                break;
+            case "go":
+                stopSearch();
+                startSearch(parseLimits(tokens));
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "ponderhit":
+                ponderHit();
+                break;
+            case "quit":
+                return false;
+            default:
+                send("info string unknown command: " + tokens[0]);
+        }
+        return true;
+    }
+
+    /**
+     * sets an option: setoption name Hash value 64
+     */
+    private void setOption(String[] tokens)
+    {
+        String name  = "";
+        String value = "";
+        for (int t = 1; t < tokens.length; t++)
+        {
+            if (tokens[t].equals("name") && (t+1 < tokens.length))  name  = tokens[++t];
+            else if (tokens[t].equals("value") && (t+1 < tokens.length)) value = tokens[++t];
+        }
+        if (name.equalsIgnoreCase("Hash"))
+        {
+            stopSearch();
+            int megabytes = Math.max(1,Math.min(MAX_HASH,Integer.parseInt(value)));
+            transpositionTable = new TranspositionTable(megabytes);
+        }
+        else if (name.equalsIgnoreCase("Threads"))
+        {
+            numThreads = Math.max(1,Math.min(MAX_THREADS,Integer.parseInt(value)));
+        }
+        else if (name.equalsIgnoreCase("MultiPV"))
+        {
+            multiPv = Math.max(1,Math.min(MAX_MULTI_PV,Integer.parseInt(value)));
+        }
+        else
+        {
+            send("info string unknown option: " + name);
+        }
+    }
+
+    /**
+     * sets up a position: position startpos [moves e2e4 ...] or position fen ... [moves ...]
+     */
+    private void setPosition(String[] tokens)
+    {
+        int t = 1;
+        ChessPosition newPosition;
+        if ((tokens.length > 1) && tokens[1].equals("fen"))
+        {
+            StringBuilder fen = new StringBuilder();
+            for (t = 2; (t < tokens.length) && !tokens[t].equals("moves"); t++) fen.append(tokens[t]).append(' ');
+            newPosition = FenNotation.parse(fen.toString(),properties);
+        }
+        else
+        {
+            newPosition = ChessPosition.createStandard(properties);
+            t = 2;
+        }
+
+        if ((t < tokens.length) && tokens[t].equals("moves"))
+        {
+            for (t++; t < tokens.length; t++)
+            {
+                ChessMove move = newPosition.findMove(tokens[t]);
+                if (move == null) throw new IllegalArgumentException("invalid move " + tokens[t]);
+                newPosition.makeMove(move);
+            }
+        }
+        position = newPosition;
+    }
+
+    private SearchLimits parseLimits(String[] tokens)
+    {
+        SearchLimits limits = new SearchLimits();
+        for (int t = 1; t < tokens.length; t++)
+        {
+            String value = (t+1 < tokens.length) ? tokens[t+1] : "0";
+            switch (tokens[t])
+            {
+                case "wtime":     limits.setWhiteTime(Long.parseLong(value));      t++; break;
+                case "btime":     limits.setBlackTime(Long.parseLong(value));      t++; break;
+                case "winc":      limits.setWhiteIncrement(Long.parseLong(value)); t++; break;
+                case "binc":      limits.setBlackIncrement(Long.parseLong(value)); t++; break;
+                case "movestogo": limits.setMovesToGo(Integer.parseInt(value));    t++; break;
+                case "depth":     limits.setDepth(Integer.parseInt(value));        t++; break;
+                case "nodes":     limits.setNodes(Long.parseLong(value));          t++; break;
+                case "movetime":  limits.setMoveTime(Long.parseLong(value));       t++; break;
+                case "infinite":  limits.setInfinite(true); break;
+                case "ponder":    limits.setPonder(true);   break;
+                default:          break;
+            }
+        }
+        return limits;
+    }
+
+    private synchronized void startSearch(SearchLimits limits)
+    {
+        searchLimits  = limits;
+        searchControl = new SearchControl(limits.getNodes());
+        holdBestMove  = limits.isInfinite() || limits.isPonder();
+        if (!limits.isPonder()) setDeadline(limits);
+
+        ChessPosition searchPosition = position;
+        SearchControl control        = searchControl;
+        searchFuture = searchExecutor.submit(() -> search(searchPosition,limits,control));
+    }
+
+    /**
+     * the opponent played the expected move: the ponder search goes on as a normal search, on the clock
+     */
+    private synchronized void ponderHit()
+    {
+        if ((searchLimits == null) || !searchLimits.isPonder()) return;
+        searchLimits.setPonder(false);
+        holdBestMove = searchLimits.isInfinite();
+        setDeadline(searchLimits);
+        notifyAll();
+    }
+
+    private void setDeadline(SearchLimits limits)
+    {
+        long budget = limits.getTimeBudget(position.getColorToMove());
+        if ((budget > 0) && !limits.isInfinite()) searchControl.setDeadline(System.currentTimeMillis() + budget);
+    }
+
+    /**
+     * stops the running search, and waits for it to send its bestmove
+     */
+    private void stopSearch()
+    {
+        Future<?> future;
+        synchronized (this)
+        {
+            if (searchFuture == null) return;
+            future = searchFuture;
+            searchControl.stop();
+            holdBestMove = false;
+            notifyAll();
+        }
+        waitFor(future);
+        synchronized (this)
+        {
+            if (searchFuture == future) searchFuture = null;
+        }
+    }
+
+    /**
+     * waits for a search to send its bestmove
+     */
+    private void waitFor(Future<?> future)
+    {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            String loggerMsg = "UCI search failed";
+            Logger.getLogger(UciEngine.class.getName()).log(Level.WARNING,loggerMsg,e.getCause());
+        }
+    }
+
+    private void search(ChessPosition searchPosition, SearchLimits limits, SearchControl control)
+    {
+        IterativeDeepening search = new IterativeDeepening(searchPosition.getBoardState(),searchPosition.getGameHistory(),
+                                                           searchPosition.getColorToMove(),numThreads,transpositionTable,control);
+        ChessMove bestMove;
+        if (multiPv > 1)
+        {
+            bestMove = search.analyze(limits.getDepth(),multiPv,(depth,lines,nodes,elapsed) ->
+            {
+                for (AnalysisLine line : lines)
+                {
+                    send("info depth " + depth + " multipv " + line.getRank() + " score " + formatScore(line.getScore())
+                       + " nodes " + nodes + " nps " + (nodes*1000/Math.max(1,elapsed)) + " time " + elapsed
+                       + " pv " + formatLine(line.getMoves()));
+                }
+            });
+        }
+        else
+        {
+            bestMove = search.search(limits.getDepth(),(depth,move,score,nodes,elapsed) ->
+                send("info depth " + depth + " score " + formatScore(score) + " nodes " + nodes
+                   + " nps " + (nodes*1000/Math.max(1,elapsed)) + " time " + elapsed
+                   + " pv " + formatLine(search.getPrincipalVariation())));
+        }
+        SearchMetrics.getDefault().publish(search.getStatistics());
+        send("info string " + search.getStatistics());
+
+        // an infinite or ponder search may not send its bestmove before stop (or ponderhit)
+        synchronized (this)
+        {
+            while (holdBestMove && (control == searchControl))
+            {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        send("bestmove " + ((bestMove == null) ? "0000" : ChessNotation.toUci(bestMove,properties)));
+    }
+
+    /**
+     * formats a line of moves in long algebraic notation, separated by spaces
+     */
+    private String formatLine(List<ChessMove> moves)
+    {
+        StringBuilder line = new StringBuilder();
+        for (ChessMove move : moves)
+        {
+            if (line.length() > 0) line.append(' ');
+            line.append(ChessNotation.toUci(move,properties));
+        }
+        return line.toString();
+    }
+
+    /**
+     * formats a score as centipawns, or as moves to mate for a tablebase mate
+     */
+    private static String formatScore(int score)
+    {
+        int plies = Tablebases.MATE_SCORE - Math.abs(score);
+        if ((plies < 0) || (plies > 2*SearchLimits.MAX_DEPTH + 256)) return "cp " + score;
+        int moves = (plies + 1) / 2;
+        return "mate " + ((score > 0) ? moves : -moves);
+    }
+
+    private void send(String message)
+    {
+        synchronized (out)
+        {
+            out.println(message);
+            out.flush();
+        }
+    }
+}
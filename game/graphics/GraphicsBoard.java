@@ -80,8 +80,8 @@ public class GraphicsBoard extends Canvas {
         
         initializeSpaces();
         
-        setHoveredSpace(Location.of(7,7));
-        setSelectedSpace(Location.of(7,7));
+        setHoveredSpace(properties.getGeometry().getLocation(properties.get_NUM_COLS()-1,properties.get_NUM_ROWS()-1));
+        setSelectedSpace(properties.getGeometry().getLocation(properties.get_NUM_COLS()-1,properties.get_NUM_ROWS()-1));
         removeSelections();
         removeHovers();
         
@@ -112,9 +112,9 @@ public class GraphicsBoard extends Canvas {
      */
     public void removeHighlights()
     {
-        for (int c = 0; c < properties.NUM_COLS; c++)
+        for (int c = 0; c < properties.get_NUM_COLS(); c++)
         {
-            for (int r = 0; r < properties.NUM_ROWS; r++)
+            for (int r = 0; r < properties.get_NUM_ROWS(); r++)
             {
                 if (spaces != null && spaces[c][r] != null)
                     spaces[c][r].setHighlighted(false);
@@ -128,7 +128,7 @@ public class GraphicsBoard extends Canvas {
      */
     public void setHoveredSpace(Location newLocation)
     {
-        if (newLocation == null) newLocation = Location.of(7,7);
+        if (newLocation == null) newLocation = properties.getGeometry().getLocation(properties.get_NUM_COLS()-1,properties.get_NUM_ROWS()-1);
         removeHovers();
         hoveredSpace = newLocation;
         int x = Location.getCol(hoveredSpace);
@@ -143,9 +143,9 @@ public class GraphicsBoard extends Canvas {
     public void removeHovers()
     {
         hoveredSpace = null;
-        for (int c = 0; c < properties.NUM_COLS; c++)
+        for (int c = 0; c < properties.get_NUM_COLS(); c++)
         {
-            for (int r = 0; r < properties.NUM_ROWS; r++)
+            for (int r = 0; r < properties.get_NUM_ROWS(); r++)
             {
                 if (spaces != null && spaces[c][r] != null)
                     spaces[c][r].setHoveredOver(false);
@@ -174,9 +174,9 @@ public class GraphicsBoard extends Canvas {
     public void removeSelections()
     {
         selectedSpace = null;
-        for (int c = 0; c < properties.NUM_COLS; c++)
+        for (int c = 0; c < properties.get_NUM_COLS(); c++)
         {
-            for (int r = 0; r < properties.NUM_ROWS; r++)
+            for (int r = 0; r < properties.get_NUM_ROWS(); r++)
             {
                 if (spaces != null && spaces[c][r] != null)
                     spaces[c][r].setSelected(false);
@@ -204,13 +204,13 @@ public class GraphicsBoard extends Canvas {
     
     protected void initializeSpaces()
     {
-        spaces = new GraphicsSpace[Properties.NUM_COLS][Properties.NUM_ROWS];
+        spaces = new GraphicsSpace[properties.get_NUM_COLS()][properties.get_NUM_ROWS()];
         
-        int spaceWidth = properties.get_BOARD_WIDTH()/Properties.NUM_COLS;
-        int spaceHeight = properties.get_BOARD_HEIGHT()/Properties.NUM_ROWS;
-        for (int col = 0; col < properties.NUM_COLS; col++)
+        int spaceWidth = properties.get_BOARD_WIDTH()/properties.get_NUM_COLS();
+        int spaceHeight = properties.get_BOARD_HEIGHT()/properties.get_NUM_ROWS();
+        for (int col = 0; col < properties.get_NUM_COLS(); col++)
         {
-            for (int row = 0; row < properties.NUM_ROWS; row++)
+            for (int row = 0; row < properties.get_NUM_ROWS(); row++)
             {
                 Color spaceColor;
                 if ((((col % 2) == 0) && ((row % 2) == 0)) || (((col % 2) == 1) && ((row % 2) == 1)))
@@ -221,7 +221,7 @@ public class GraphicsBoard extends Canvas {
                 {
                     spaceColor = properties.get_DARK_SPACE_COLOR();
                 }
-                Location location = Location.of(col,row);
+                Location location = properties.getGeometry().getLocation(col,row);
                 spaces[col][row] = createSpace(properties,location,spaceWidth,spaceHeight,spaceColor);
             }
         }
@@ -240,11 +240,11 @@ public class GraphicsBoard extends Canvas {
     @Override
     public void paint(Graphics g)
     {
-        for (int c = 0; c < properties.NUM_COLS; c++)
+        for (int c = 0; c < properties.get_NUM_COLS(); c++)
         {
-            for (int r = 0; r < properties.NUM_ROWS; r++)
+            for (int r = 0; r < properties.get_NUM_ROWS(); r++)
             {
-                Location location = Location.at(c,r);
+                Location location = properties.getGeometry().getLocation(c,r);
                 GraphicsPiece graphicsPiece = getGraphicsPiece(location);
                 GraphicsSpace space = spaces[c][r];
                 space.setContents(graphicsPiece);
@@ -262,11 +262,11 @@ public class GraphicsBoard extends Canvas {
     public Location getLocationOfSpaceAt(int x, int y)
     {
         int boardMargin = properties.get_BOARD_MARGIN();
-        for (int c=0;c<properties.NUM_COLS;c++)
+        for (int c=0;c<properties.get_NUM_COLS();c++)
         {
-            for (int r=0;r<properties.NUM_ROWS;r++)
+            for (int r=0;r<properties.get_NUM_ROWS();r++)
             {
-                Location location = Location.of(c,r);
+                Location location = properties.getGeometry().getLocation(c,r);
                 
                 GraphicsSpace space = spaces[c][r];
                 
@@ -303,8 +303,8 @@ public class GraphicsBoard extends Canvas {
         {
             int c = Location.getCol(location);
             int r = Location.getRow(location);
-            int spaceWidth  = Properties.BOARD_WIDTH  / Properties.NUM_COLS;
-            int spaceHeight = Properties.BOARD_HEIGHT / Properties.NUM_ROWS;
+            int spaceWidth  = Properties.BOARD_WIDTH  / properties.get_NUM_COLS();
+            int spaceHeight = Properties.BOARD_HEIGHT / properties.get_NUM_ROWS();
             
             ChessPiece piece = boardState.getPiece(location);
             if ((piece != null) && (piece instanceof ChessPiece))
@@ -0,0 +1,81 @@
+package game.graphics;
+
+import chess.ChessGame;
+import chess.ChessGameListener;
+import chess.moves.ChessMove;
+import chess.moves.MovePromotion.PieceType;
+import chess.players.ChessPlayer;
+import chess.players.ChessPlayerCPU;
+import chess.players.ChessPlayerHuman;
+import game.utility.Properties.PlayerColor;
+import java.awt.Cursor;
+import javax.swing.JOptionPane;
+
+/**
+ * the GUI's side of a game: shows the board when the game starts, the wait cursor while the
+ * CPU player thinks, the pawn promotion menu and the game over message
+ *
+ * @author devang
+ */
+public class GraphicsGameListener implements ChessGameListener {
+    private final GraphicsBoard gui;
+
+    public GraphicsGameListener(GraphicsBoard gui)
+    {
+        this.gui = gui;
+    }
+
+    @Override
+    public void gameStarted(ChessGame game)
+    {
+        gui.init(game.getBoardState(),game.getProperties());
+    }
+
+    @Override
+    public void moveMade(ChessGame game, ChessPlayer player, ChessMove move)
+    {
+        // the players repaint the board when the move is persisted
+    }
+
+    @Override
+    public void playerToMove(ChessGame game, ChessPlayer player)
+    {
+        if (player instanceof ChessPlayerCPU)
+            gui.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        else
+            gui.setCursor(Cursor.getDefaultCursor());
+    }
+
+    @Override
+    public void gameOver(ChessGame game, PlayerColor winnerColor)
+    {
+        String gameOverText = (winnerColor == null) ? "game over: draw!"
+                            : "game over: " + ((winnerColor == PlayerColor.WHITE) ? "WHITE" : "BLACK") + " wins!";
+        JOptionPane.showMessageDialog(null,
+            gameOverText,
+            "game over",
+            JOptionPane.PLAIN_MESSAGE);
+        gui.dispose();
+    }
+
+    /**
+     * asks a human player for the piece to which the pawn is promoted
+     */
+    @Override
+    public PieceType choosePromotion(ChessGame game, ChessPlayer player)
+    {
+        if (!(player instanceof ChessPlayerHuman)) return null;
+
+        Object[] possibleValues = { "queen", "bishop", "knight", "rook" };
+        Object selectedValue = JOptionPane.showInputDialog(null,"pawn promotion", "pawn promotion",
+            JOptionPane.PLAIN_MESSAGE,null,possibleValues, possibleValues[0]);
+
+        if ("bishop".equals(selectedValue))
+            return PieceType.BISHOP;
+        if ("knight".equals(selectedValue))
+            return PieceType.KNIGHT;
+        if ("rook".equals(selectedValue))
+            return PieceType.ROOK;
+        return PieceType.QUEEN;
+    }
+}
@@ -0,0 +1,161 @@
+package game.utility;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * the dimensions of a board, with the shared locations of all of its spaces<br>
+ * - immutable, so any number of games (of any number of variants) can share one geometry
+ *   without locking<br>
+ * - one geometry is kept for each dimensions (see of), and each of its locations knows its
+ *   geometry, so stepping from a location (Location.up, Location.right ...) stays on that
+ *   location's board<br>
+ * - a location's neighbours in the eight directions are precomputed: a step off the board is
+ *   a table lookup (null) rather than a bounds check
+ *
+ * @author devang
+ */
+public final class BoardGeometry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final int UP         = 0;
+    public static final int DOWN       = 1;
+    public static final int LEFT       = 2;
+    public static final int RIGHT      = 3;
+    public static final int UP_LEFT    = 4;
+    public static final int UP_RIGHT   = 5;
+    public static final int DOWN_LEFT  = 6;
+    public static final int DOWN_RIGHT = 7;
+    public static final int NUM_DIRECTIONS = 8;
+
+    private static final int[] DIRECTION_COLS = {  0, 0, -1, 1, -1,  1, -1, 1 };
+    private static final int[] DIRECTION_ROWS = { -1, 1,  0, 0, -1, -1,  1, 1 };
+
+    private static final Map<Integer,BoardGeometry> geometries = new ConcurrentHashMap<>();
+
+    /** the standard 8x8 chess board */
+    public static final BoardGeometry STANDARD = of(8,8);
+
+    private final int numCols;
+    private final int numRows;
+    private final transient Location[][]   locations;
+    private final transient List<Location> allLocations;
+    private final transient Location[][]   neighbors;
+
+    private BoardGeometry(int numCols, int numRows)
+    {
+        this.numCols = numCols;
+        this.numRows = numRows;
+
+        locations = new Location[numCols][numRows];
+        List<Location> locationsList = new ArrayList<>();
+        for (int c = 0; c < numCols; c++)
+        {
+            for (int r = 0; r < numRows; r++)
+            {
+                locations[c][r] = new Location(this,c,r,locationsList.size());
+                locationsList.add(locations[c][r]);
+            }
+        }
+        allLocations = Collections.unmodifiableList(locationsList);
+
+        neighbors = new Location[NUM_DIRECTIONS][locationsList.size()];
+        for (int direction = 0; direction < NUM_DIRECTIONS; direction++)
+        {
+            for (Location location : allLocations)
+            {
+                neighbors[direction][location.getIndex()] = getLocation(Location.getCol(location) + DIRECTION_COLS[direction],
+                                                                        Location.getRow(location) + DIRECTION_ROWS[direction]);
+            }
+        }
+    }
+
+    /**
+     * gets the geometry of a board of the given dimensions, shared by every board of those dimensions
+     * @param numCols number of columns
+     * @param numRows number of rows
+     * @return the shared geometry
+     */
+    public static BoardGeometry of(int numCols, int numRows)
+    {
+        if ((numCols <= 0) || (numRows <= 0) || (numCols > 0xFFFF) || (numRows > 0xFFFF))
+            throw new IllegalArgumentException("invalid board dimensions: " + numCols + "x" + numRows);
+        return geometries.computeIfAbsent((numCols << 16) | numRows,key -> new BoardGeometry(numCols,numRows));
+    }
+
+    public int getNumCols()
+    {
+        return numCols;
+    }
+
+    public int getNumRows()
+    {
+        return numRows;
+    }
+
+    public int getNumSquares()
+    {
+        return numCols*numRows;
+    }
+
+    /**
+     * gets the shared location of a space
+     * @param col column of the space
+     * @param row row of the space
+     * @return the location, or null if the space is off the board
+     */
+    public Location getLocation(int col, int row)
+    {
+        if (!isValid(col,row)) return null;
+        return locations[col][row];
+    }
+
+    /**
+     * gets a location from its index (see Location.getIndex)
+     * @param index index of the location, in column-major order
+     * @return the location
+     */
+    public Location getLocation(int index)
+    {
+        return allLocations.get(index);
+    }
+
+    public boolean isValid(int col, int row)
+    {
+        return (col >= 0) && (col < numCols) && (row >= 0) && (row < numRows);
+    }
+
+    /**
+     * gets the neighbour of a location of this board
+     * @param location location of this board
+     * @param direction UP through DOWN_RIGHT
+     * @return the neighbouring location, or null if it is off the board
+     */
+    public Location getNeighbor(Location location, int direction)
+    {
+        return neighbors[direction][location.getIndex()];
+    }
+
+    /**
+     * gets every location on the board, in column-major order<br>
+     * - the list is shared and unmodifiable, so iterating it at every search node allocates nothing
+     * @return unmodifiable list of all locations on the board
+     */
+    public List<Location> allLocations()
+    {
+        return allLocations;
+    }
+
+    /**
+     * keeps one geometry for each dimensions when a geometry is read from a stream
+     */
+    private Object readResolve() throws ObjectStreamException
+    {
+        return of(numCols,numRows);
+    }
+}
@@ -1,28 +1,51 @@
 package game.utility;
 
-import static game.utility.Properties.NUM_COLS;
-import static game.utility.Properties.NUM_ROWS;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * a row,col-indexed location on a board<br>
+ * - locations are immutable, so one shared instance is kept for every space on a board
+ *   (see BoardGeometry) and Location.of(col,row) returns it rather than allocating a new
+ *   location on every call<br>
+ * - each location knows the geometry of its board, so stepping from it (up, right, ...) stays
+ *   on its own board; Location.of and allLocations are for the standard 8x8 board
  *
  * @author devang
  */
 public class Location implements Serializable {
+    private final BoardGeometry geometry;
     private final int x;
     private final int y;
+    private final int index;
     
-    private Location(int col, int row)
+    Location(BoardGeometry geometry, int col, int row, int index)
     {
+        this.geometry = geometry;
         x = col;
         y = row;
+        this.index = index;
+    }
+    
+    public BoardGeometry getGeometry()
+    {
+        return geometry;
+    }
+    
+    /**
+     * gets the index of this location on its board, in column-major order (as in allLocations)
+     * @return index from 0 to the number of spaces less one
+     */
+    public int getIndex()
+    {
+        return index;
     }
     
     public static Location rotate(Location location)
     {
-        return new Location(NUM_COLS-1-location.x,NUM_ROWS-1-location.y);
+        BoardGeometry geometry = location.geometry;
+        return geometry.getLocation(geometry.getNumCols()-1-location.x,geometry.getNumRows()-1-location.y);
     }
     
     @Override
@@ -36,7 +59,7 @@ public class Location implements Serializable {
 
     @Override
     public int hashCode() {
-        int result = NUM_ROWS*NUM_COLS + 1;
+        int result = geometry.getNumSquares() + 1;
         result = 31 * result + x;
         result = 31 * result + y;
         return result;
@@ -46,7 +69,7 @@ public class Location implements Serializable {
     {
         if (location == null) return false;
         
-        if ((Location.getRow(location) == 0) || (Location.getRow(location) == (NUM_ROWS-1)))
+        if ((Location.getRow(location) == 0) || (Location.getRow(location) == (location.geometry.getNumRows()-1)))
         {
             return true;
         }
@@ -66,10 +89,8 @@ public class Location implements Serializable {
 
     public static Location copy(Location location)
     {
-        if (location == null) return null;
-        int col = location.x;
-        int row = location.y;
-        return Location.of(col,row);
+        // locations are shared and immutable
+        return location;
     }
     
     public static Location at(int col,int row)
@@ -77,197 +98,187 @@ public class Location implements Serializable {
         return Location.of(col,row);
     }
     
+    /**
+     * gets the shared location of a space of the standard 8x8 board
+     * @param col column of the space
+     * @param row row of the space
+     * @return the location, or null if the space is off the board
+     */
     public static Location of(int col,int row)
     {
-        if ((col < 0) || (col >= NUM_COLS))
-        {
-            return null;
-        }
-        
-        if ((row < 0) || (row >= NUM_ROWS))
-        {
-            return null;
-        }
-        
-        return new Location(col,row);
+        return BoardGeometry.STANDARD.getLocation(col,row);
     }
     
     public static boolean isValid(int col,int row)
     {
-        if ((col < 0) || (col >= NUM_COLS))
-        {
-            return false;
-        }
-        
-        if ((row < 0) || (row >= NUM_ROWS))
-        {
-            return false;
-        }
-        
-        return true;
+        return BoardGeometry.STANDARD.isValid(col,row);
     }
     
     public static boolean isValid(Location location)
     {
         if (location == null) return false;
-        return isValid(location.x,location.y);
+        return location.geometry.isValid(location.x,location.y);
     }
     
     public static Location upLeftX(Location location, int x)
     {
         if (location == null) return null;
-        return Location.of(location.x-x,location.y-x);
+        return location.geometry.getLocation(location.x-x,location.y-x);
     }
     
     public static Location upRightX(Location location, int x)
     {
         if (location == null) return null;
-        return Location.of(location.x+x,location.y-x);
+        return location.geometry.getLocation(location.x+x,location.y-x);
     }
     
     public static Location downLeftX(Location location, int x)
     {
         if (location == null) return null;
-        return Location.of(location.x-x,location.y+x);
+        return location.geometry.getLocation(location.x-x,location.y+x);
     }
     
     public static Location downRightX(Location location, int x)
     {
         if (location == null) return null;
-        return Location.of(location.x+x,location.y+x);
+        return location.geometry.getLocation(location.x+x,location.y+x);
     }
     
     public static Location upX(Location location, int x)
     {
         if (location == null) return null;
-        return Location.of(location.x,location.y-x);
+        return location.geometry.getLocation(location.x,location.y-x);
     }
     
     public static Location downX(Location location, int x)
     {
         if (location == null) return null;
-        return Location.of(location.x,location.y+x);
+        return location.geometry.getLocation(location.x,location.y+x);
     }
         
     public static Location leftX(Location location, int x)
     {
         if (location == null) return null;
-        return Location.of(location.x-x,location.y);
+        return location.geometry.getLocation(location.x-x,location.y);
     }
             
     public static Location rightX(Location location, int x)
     {
         if (location == null) return null;
-        return Location.of(location.x+x,location.y);
+        return location.geometry.getLocation(location.x+x,location.y);
     }
     
     public static Location upLeft(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x-1,location.y-1);
+        return location.geometry.getNeighbor(location,BoardGeometry.UP_LEFT);
     }
     
     public static Location upLeft2(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x-2,location.y-2);
+        return location.geometry.getLocation(location.x-2,location.y-2);
     }
     
     public static Location upRight(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x+1,location.y-1);
+        return location.geometry.getNeighbor(location,BoardGeometry.UP_RIGHT);
     }
     
     public static Location upRight2(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x+2,location.y-2);
+        return location.geometry.getLocation(location.x+2,location.y-2);
     }
     
     public static Location downLeft(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x-1,location.y+1);
+        return location.geometry.getNeighbor(location,BoardGeometry.DOWN_LEFT);
     }
     
     public static Location downLeft2(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x-2,location.y+2);
+        return location.geometry.getLocation(location.x-2,location.y+2);
     }
     
     public static Location downRight(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x+1,location.y+1);
+        return location.geometry.getNeighbor(location,BoardGeometry.DOWN_RIGHT);
     }
     
     public static Location downRight2(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x+2,location.y+2);
+        return location.geometry.getLocation(location.x+2,location.y+2);
     }
     
     public static Location right(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x+1,location.y);
+        return location.geometry.getNeighbor(location,BoardGeometry.RIGHT);
     }
     
     public static Location left(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x-1,location.y);
+        return location.geometry.getNeighbor(location,BoardGeometry.LEFT);
     }
     
     public static Location down(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x,location.y+1);
+        return location.geometry.getNeighbor(location,BoardGeometry.DOWN);
     }
     
     public static Location up(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x,location.y-1);
+        return location.geometry.getNeighbor(location,BoardGeometry.UP);
     }
 
     public static Location up2(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x,location.y-2);
+        return location.geometry.getLocation(location.x,location.y-2);
     }
 
     public static Location down2(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x,location.y+2);
+        return location.geometry.getLocation(location.x,location.y+2);
     }
 
     public static Location left2(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x-2,location.y);
+        return location.geometry.getLocation(location.x-2,location.y);
     }
 
     public static Location right2(Location location)
     {
         if (location == null) return null;
-        return Location.of(location.x+2,location.y);
+        return location.geometry.getLocation(location.x+2,location.y);
     }
     
+    /**
+     * gets every location on the board, in column-major order<br>
+     * - the list is shared and unmodifiable, so iterating it at every search node allocates nothing
+     * @return unmodifiable list of all locations on the board
+     */
     public static List<Location> allLocations()
     {
-        List<Location> locationsList = new ArrayList<>();
-        for (int c = 0; c < NUM_COLS; c++)
-        {
-            for (int r = 0; r < NUM_ROWS; r++)
-            {
-                Location location = Location.of(c,r);
-                if (location != null) locationsList.add(location);
-            }
-        }
-        return locationsList;
+        return BoardGeometry.STANDARD.allLocations();
+    }
+    
+    /**
+     * keeps one shared location for each space when a location is read from a stream (i.e. a move)
+     */
+    private Object readResolve() throws ObjectStreamException
+    {
+        return geometry.getLocation(x,y);
     }
 }
@@ -11,14 +11,17 @@ import java.io.Serializable;
  * This class extends from Properties (which has only static members)<br>
  * This class (CheckersProperties, ChessProperties, OthelloProperties...)<br>
  * allows different graphics, sizes and colors for any extended game<br>
- * - also, adjusting num_rows, num_cols, an atypical game can be created<br>
- *   i.e.) 10x10 board with different chess pieces (4 knights instead of just 2)
+ * - also, with a BoardGeometry of other dimensions, an atypical game can be created<br>
+ *   i.e.) 10x10 board with different chess pieces (4 knights instead of just 2)<br>
+ * - the dimensions belong to each game's properties, so games of different variants
+ *   can run side by side
  * 
  * @author devang
  */
 public class Properties {
-    public static int NUM_ROWS = 8;
-    public static int NUM_COLS = 8;
+    /** dimensions of the standard board: a game's own dimensions are in its geometry */
+    public static final int NUM_ROWS = 8;
+    public static final int NUM_COLS = 8;
     
     public enum PlayerColor implements Serializable
     {
@@ -38,6 +41,7 @@ public class Properties {
     
     protected Direction WHITE_DIRECTION;
     protected Direction BLACK_DIRECTION;
+    protected BoardGeometry geometry = BoardGeometry.STANDARD;
     
     public static final PlayerColor INITIAL_PLAYER_COLOR = PlayerColor.WHITE;
     
@@ -50,8 +54,9 @@ public class Properties {
     public static final Color SELECTED_SPACE_COLOR            = ORANGE.brighter();
     public static final Color SELECTED_SPACE_BORDER_COLOR     = LIGHT_GRAY;
 
-    public int get_NUM_ROWS() { return NUM_ROWS; }
-    public int get_NUM_COLS() { return NUM_COLS; }
+    public int get_NUM_ROWS() { return geometry.getNumRows(); }
+    public int get_NUM_COLS() { return geometry.getNumCols(); }
+    public BoardGeometry getGeometry() { return geometry; }
     
     public int get_BOARD_WIDTH() { return BOARD_WIDTH; }
     public int get_BOARD_HEIGHT() { return BOARD_HEIGHT; }
@@ -84,9 +89,22 @@ public class Properties {
     }
     
     public static Properties init(Direction whiteDirection, Direction blackDirection)
+    {
+        return init(whiteDirection,blackDirection,BoardGeometry.STANDARD);
+    }
+    
+    /**
+     * creates the properties of a game played on a board of any dimensions
+     * @param whiteDirection direction in which white's pawns move
+     * @param blackDirection direction in which black's pawns move
+     * @param geometry dimensions of the board
+     * @return newly-created properties
+     */
+    public static Properties init(Direction whiteDirection, Direction blackDirection, BoardGeometry geometry)
     {
         Properties properties = new Properties();
         properties.setColorDirections(whiteDirection, blackDirection);
+        properties.geometry = geometry;
         return properties;
     }
     
@@ -0,0 +1,51 @@
+package launcher;
+
+import chess.openings.BookBuilder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * builds an opening book from PGN files<br>
+ * usage: BookBuilderLauncher [options] games.pgn [more.pgn.gz ...]<br>
+ * - -o book.bin (default openings/book.bin), -plies n, -min-games n, -min-score x,
+ *   -threads n, -run-records n, -tmp directory
+ *
+ * @author devang
+ */
+public class BookBuilderLauncher {
+
+    public static void main(String[] args) throws Exception
+    {
+        BookBuilder builder = new BookBuilder();
+        Path bookFile = Paths.get("openings","book.bin");
+        List<Path> pgnFiles = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-o":           bookFile = Paths.get(args[++i]); break;
+                case "-plies":       builder.setMaxPly(Integer.parseInt(args[++i])); break;
+                case "-min-games":   builder.setMinGames(Integer.parseInt(args[++i])); break;
+                case "-min-score":   builder.setMinScore(Double.parseDouble(args[++i])); break;
+                case "-threads":     builder.setNumThreads(Integer.parseInt(args[++i])); break;
+                case "-run-records": builder.setRecordsPerRun(Integer.parseInt(args[++i])); break;
+                case "-tmp":         builder.setTempDirectory(Paths.get(args[++i])); break;
+                default:             pgnFiles.add(Paths.get(args[i])); break;
+            }
+        }
+
+        if (pgnFiles.isEmpty())
+        {
+            System.err.println("usage: BookBuilderLauncher [-o book.bin] [-plies n] [-min-games n] [-min-score x]"
+                             + " [-threads n] [-run-records n] [-tmp dir] games.pgn ...");
+            System.exit(1);
+        }
+
+        if (bookFile.getParent() != null) Files.createDirectories(bookFile.getParent());
+        builder.build(pgnFiles,bookFile);
+    }
+}
@@ -0,0 +1,132 @@
+package launcher;
+
+import chess.ChessBoardState;
+import chess.ChessNetwork;
+import chess.ChessPosition;
+import chess.moves.ChessMove;
+import chess.notation.FenNotation;
+import chess.players.ai.ChessAI;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import game.utility.Properties.PlayerColor;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * measures the time to evaluate the positions after each move of a few positions, as a search
+ * does: copy the board state, make the move, evaluate<br>
+ * usage: EvaluationBenchmarkLauncher [-network file] [-hidden n] [-seconds n]<br>
+ * - without a network file, a network of random weights is measured (its hidden size from -hidden)<br>
+ * - measured: ChessAI.evaluate, the network with its accumulator updated by the move, the network
+ *   with its accumulator rebuilt, and the copy and move alone
+ *
+ * @author devang
+ */
+public class EvaluationBenchmarkLauncher {
+    private static final String[] POSITIONS = {
+        FenNotation.STANDARD_START,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r1bq1rk1/pp2bppp/2n1pn2/2pp4/3P4/2PBPN2/PP1N1PPP/R1BQ1RK1 w - - 0 8",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r2q1rk1/1b1nbppp/p2ppn2/1p6/3NP3/1BN1BP2/PPPQ2PP/2KR3R b - - 0 11" };
+
+    private static final int DEFAULT_HIDDEN_SIZE = 256;
+    private static final int DEFAULT_SECONDS     = 2;
+
+    private interface Evaluation {
+        int evaluate(ChessBoardState boardState, PlayerColor colorToMove);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        ChessNetwork network = null;
+        int hiddenSize = DEFAULT_HIDDEN_SIZE;
+        int seconds    = DEFAULT_SECONDS;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-network": network = ChessNetwork.open(Paths.get(args[++i])); break;
+                case "-hidden":  hiddenSize = Integer.parseInt(args[++i]); break;
+                case "-seconds": seconds = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("usage: EvaluationBenchmarkLauncher [-network file] [-hidden n] [-seconds n]");
+                    System.exit(1);
+            }
+        }
+        if (network == null) network = createRandomNetwork(hiddenSize,new Random(1));
+        final ChessNetwork net = network;
+
+        Properties properties = Properties.init(Direction.UP,Direction.DOWN);
+        List<ChessPosition> positions = new ArrayList<>();
+        for (String fen : POSITIONS) positions.add(FenNotation.parse(fen,properties));
+
+        System.out.println("network: hidden size " + network.getHiddenSize() + ", " + positions.size() + " positions");
+        // run every measurement once to warm up, then again to measure
+        for (int run = 0; run < 2; run++)
+        {
+            boolean warmUp = (run == 0);
+            measure("copy and move only",positions,false,(boardState,color) -> 0,warmUp ? 1 : seconds);
+            measure("ChessAI.evaluate",positions,false,(boardState,color) -> ChessAI.evaluate(boardState,color),warmUp ? 1 : seconds);
+            measure("network, updated",positions,true,(boardState,color) -> net.evaluate(boardState,color),warmUp ? 1 : seconds);
+            measure("network, rebuilt",positions,false,(boardState,color) -> net.evaluate(boardState,color),warmUp ? 1 : seconds);
+        }
+    }
+
+    /**
+     * evaluates the positions after every move of the positions, over and over for the given time
+     * @param withAccumulator whether the positions have the network's accumulator before the moves
+     */
+    private static void measure(String name, List<ChessPosition> positions, boolean withAccumulator, Evaluation evaluation, int seconds)
+    {
+        List<ChessBoardState> boardStates = new ArrayList<>();
+        List<List<ChessMove>> moves = new ArrayList<>();
+        for (ChessPosition position : positions)
+        {
+            ChessBoardState boardState = ChessBoardState.copy(position.getBoardState());
+            if (withAccumulator) evaluation.evaluate(boardState,position.getColorToMove());
+            boardStates.add(boardState);
+            moves.add(position.getValidMoves());
+        }
+
+        long evaluations = 0;
+        long checksum    = 0;
+        long start = System.nanoTime();
+        long end   = start + seconds * 1000000000L;
+        long now   = start;
+        while (now < end)
+        {
+            for (int p = 0; p < positions.size(); p++)
+            {
+                PlayerColor opponentColor = Properties.oppositeColor(positions.get(p).getColorToMove());
+                for (ChessMove move : moves.get(p))
+                {
+                    ChessBoardState boardState = ChessBoardState.copy(boardStates.get(p));
+                    move.commitMove(boardState);
+                    checksum += evaluation.evaluate(boardState,opponentColor);
+                    evaluations++;
+                }
+            }
+            now = System.nanoTime();
+        }
+        System.out.printf("%-20s %10.0f ns per move and evaluation (%d evaluations, checksum %d)%n",
+                          name,(double)(now - start) / evaluations,evaluations,checksum);
+    }
+
+    /**
+     * creates a network of small random weights, to measure without a trained network
+     */
+    private static ChessNetwork createRandomNetwork(int hiddenSize, Random random)
+    {
+        short[] inputWeights  = new short[ChessNetwork.NUM_INPUTS*hiddenSize];
+        short[] hiddenBiases  = new short[hiddenSize];
+        short[] outputWeights = new short[2*hiddenSize];
+        for (int i = 0; i < inputWeights.length; i++)  inputWeights[i]  = (short)(random.nextInt(129) - 64);
+        for (int i = 0; i < hiddenBiases.length; i++)  hiddenBiases[i]  = (short)random.nextInt(65);
+        for (int i = 0; i < outputWeights.length; i++) outputWeights[i] = (short)(random.nextInt(65) - 32);
+        return new ChessNetwork(hiddenSize,inputWeights,hiddenBiases,outputWeights,0);
+    }
+}
@@ -0,0 +1,152 @@
+package launcher;
+
+import chess.ChessPosition;
+import chess.database.GameDatabase;
+import chess.database.PositionHit;
+import chess.database.StoredGame;
+import chess.moves.ChessMove;
+import chess.notation.ChessNotation;
+import chess.notation.FenNotation;
+import chess.notation.PgnGame;
+import chess.notation.PgnReader;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * adds games to a game database, and finds the games that reached a position<br>
+ * usage: GameDatabaseLauncher add dir games.pgn [more.pgn.gz ...]<br>
+ *        GameDatabaseLauncher find dir [-games n] [-max n] fen<br>
+ *        GameDatabaseLauncher game dir number<br>
+ *        GameDatabaseLauncher compact dir<br>
+ * - find: the moves played next in the position, with their games and scores for white, then
+ *   the first games that reached it
+ *
+ * @author devang
+ */
+public class GameDatabaseLauncher {
+    private static final String USAGE = "usage: GameDatabaseLauncher add dir games.pgn ...\n"
+                                      + "       GameDatabaseLauncher find dir [-games n] [-max n] fen\n"
+                                      + "       GameDatabaseLauncher game dir number\n"
+                                      + "       GameDatabaseLauncher compact dir";
+
+    private static final int DEFAULT_GAMES_LISTED = 10;
+    private static final int GAMES_PER_REPORT     = 100000;
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 2) usage();
+
+        int gamesListed = DEFAULT_GAMES_LISTED;
+        int maxHits     = GameDatabase.DEFAULT_MAX_HITS;
+        List<String> operands = new ArrayList<>();
+        for (int i = 2; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-games": gamesListed = Integer.parseInt(args[++i]); break;
+                case "-max":   maxHits = Integer.parseInt(args[++i]); break;
+                default:       operands.add(args[i]); break;
+            }
+        }
+
+        Properties properties = Properties.init(Direction.UP,Direction.DOWN);
+        try (GameDatabase database = GameDatabase.open(Paths.get(args[1])))
+        {
+            switch (args[0])
+            {
+                case "add":
+                    if (operands.isEmpty()) usage();
+                    for (String pgnFile : operands) add(database,Paths.get(pgnFile),properties);
+                    break;
+                case "find":
+                    if (operands.isEmpty()) usage();
+                    find(database,FenNotation.parse(String.join(" ",operands),properties),gamesListed,maxHits);
+                    break;
+                case "game":
+                    if (operands.size() != 1) usage();
+                    PrintWriter out = new PrintWriter(System.out);
+                    database.getGame(Integer.parseInt(operands.get(0))).toPgnGame(properties).write(out);
+                    out.flush();
+                    break;
+                case "compact":
+                    long start = System.currentTimeMillis();
+                    database.compact();
+                    System.out.println(database.getNumRuns() + " runs after compacting, in "
+                                       + (System.currentTimeMillis() - start) + " ms");
+                    break;
+                default:
+                    usage();
+            }
+        }
+    }
+
+    private static void usage()
+    {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+
+    private static void add(GameDatabase database, Path pgnFile, Properties properties) throws Exception
+    {
+        long start = System.currentTimeMillis();
+        int added  = 0;
+        try (PgnReader reader = PgnReader.open(pgnFile))
+        {
+            for (PgnGame game = reader.next(); game != null; game = reader.next())
+            {
+                database.add(StoredGame.create(game,properties));
+                if ((++added % GAMES_PER_REPORT) == 0) System.out.println(added + " games added");
+            }
+        }
+        database.flush();
+        System.out.println(added + " games added from " + pgnFile + " in " + (System.currentTimeMillis() - start)
+                           + " ms, " + database.getNumGames() + " games in the database");
+    }
+
+    private static void find(GameDatabase database, ChessPosition position, int gamesListed, int maxHits) throws Exception
+    {
+        long start = System.nanoTime();
+        List<PositionHit> hits = database.find(position,maxHits);
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%d games (%d runs searched in %.2f ms)%n",hits.size(),database.getNumRuns(),millis);
+
+        // games and points for white (2 a win, 1 a draw) of each move played next
+        Map<Integer,int[]> moves = new LinkedHashMap<>();
+        for (PositionHit hit : hits)
+        {
+            int[] totals = moves.computeIfAbsent(hit.getMove(),move -> new int[2]);
+            totals[0]++;
+            if (hit.getResult() == StoredGame.RESULT_WHITE_WINS) totals[1] += 2;
+            else if (hit.getResult() == StoredGame.RESULT_DRAW)  totals[1] += 1;
+        }
+        List<Map.Entry<Integer,int[]>> sorted = new ArrayList<>(moves.entrySet());
+        sorted.sort((entry1,entry2) -> Integer.compare(entry2.getValue()[0],entry1.getValue()[0]));
+        for (Map.Entry<Integer,int[]> entry : sorted)
+        {
+            String name = "(end)";
+            if (entry.getKey() != PositionHit.NO_MOVE)
+            {
+                ChessMove move = StoredGame.findMove(position,entry.getKey());
+                name = (move != null) ? ChessNotation.toSan(move,position.getBoardState(),position.getColorToMove(),
+                                                            position.getGameHistory(),position.getProperties()) : "?";
+            }
+            int[] totals = entry.getValue();
+            System.out.printf("  %-8s %8d games  %5.1f%% for white%n",name,totals[0],50.0 * totals[1] / totals[0]);
+        }
+
+        for (int i = 0; i < Math.min(gamesListed,hits.size()); i++)
+        {
+            PositionHit hit = hits.get(i);
+            StoredGame game = database.getGame(hit.getGameNumber());
+            System.out.printf("  #%-8d %s - %s  %s  (ply %d of %d)%n",hit.getGameNumber(),game.getTag("White"),
+                              game.getTag("Black"),game.getResult(),hit.getPly(),game.getNumPlies());
+        }
+    }
+}
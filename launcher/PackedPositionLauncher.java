@@ -0,0 +1,174 @@
+package launcher;
+
+import chess.ChessPosition;
+import chess.moves.ChessMove;
+import chess.notation.ChessNotation;
+import chess.notation.FenNotation;
+import chess.notation.PackedPosition;
+import chess.notation.PackedPositionReader;
+import chess.notation.PackedPositionWriter;
+import chess.notation.PgnGame;
+import chess.notation.PgnReader;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * packs positions into a file of packed positions (see PackedPosition), and reads them back<br>
+ * usage: PackedPositionLauncher pack [-append] positions.bin (games.pgn | positions.fen) ...<br>
+ *        PackedPositionLauncher unpack [-from n] [-count n] positions.bin<br>
+ *        PackedPositionLauncher scan positions.bin<br>
+ *        PackedPositionLauncher verify positions.bin<br>
+ * - pack: every position of every game of a PGN file, or one FEN per line of any other file<br>
+ * - unpack: writes positions in FEN; scan: reads every position, timing the scan; verify:
+ *   unpacks and repacks every position, counting those that differ
+ *
+ * @author devang
+ */
+public class PackedPositionLauncher {
+    private static final String USAGE = "usage: PackedPositionLauncher pack [-append] positions.bin (games.pgn | positions.fen) ...\n"
+                                      + "       PackedPositionLauncher unpack [-from n] [-count n] positions.bin\n"
+                                      + "       PackedPositionLauncher (scan | verify) positions.bin";
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 2) usage();
+
+        boolean append = false;
+        long from  = 0;
+        long count = Long.MAX_VALUE;
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-append": append = true; break;
+                case "-from":   from = Long.parseLong(args[++i]); break;
+                case "-count":  count = Long.parseLong(args[++i]); break;
+                default:        files.add(Paths.get(args[i])); break;
+            }
+        }
+        if (files.isEmpty()) usage();
+
+        Properties properties = Properties.init(Direction.UP,Direction.DOWN);
+        switch (args[0])
+        {
+            case "pack":
+                if (files.size() < 2) usage();
+                pack(files.get(0),files.subList(1,files.size()),append,properties);
+                break;
+            case "unpack": unpack(files.get(0),from,count); break;
+            case "scan":   scan(files.get(0)); break;
+            case "verify": verify(files.get(0),properties); break;
+            default:       usage();
+        }
+    }
+
+    private static void usage()
+    {
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+
+    private static void pack(Path packedFile, List<Path> inputFiles, boolean append, Properties properties) throws Exception
+    {
+        try (PackedPositionWriter writer = new PackedPositionWriter(packedFile,append))
+        {
+            long start = writer.getNumPositions();
+            for (Path inputFile : inputFiles)
+            {
+                if (inputFile.toString().toLowerCase().endsWith(".pgn")) packGames(writer,inputFile,properties);
+                else                                                     packFens(writer,inputFile,properties);
+            }
+            System.out.println((writer.getNumPositions() - start) + " positions packed, "
+                               + writer.getNumPositions() + " in " + packedFile);
+        }
+    }
+
+    private static void packGames(PackedPositionWriter writer, Path pgnFile, Properties properties) throws Exception
+    {
+        try (PgnReader reader = PgnReader.open(pgnFile))
+        {
+            for (PgnGame game = reader.next(); game != null; game = reader.next())
+            {
+                String fen = game.getTag("FEN");
+                ChessPosition position = (fen != null) ? FenNotation.parse(fen,properties) : ChessPosition.createStandard(properties);
+                writer.write(PackedPosition.create(position));
+                for (String san : game.getSanMoves())
+                {
+                    ChessMove move = ChessNotation.findSanMove(san,position.getBoardState(),position.getColorToMove(),
+                                                               position.getGameHistory(),properties);
+                    if (move == null) break;
+                    position.makeMove(move);
+                    writer.write(PackedPosition.create(position));
+                }
+            }
+        }
+    }
+
+    private static void packFens(PackedPositionWriter writer, Path fenFile, Properties properties) throws Exception
+    {
+        try (BufferedReader reader = Files.newBufferedReader(fenFile,StandardCharsets.UTF_8))
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                if (line.trim().isEmpty() || line.startsWith("#")) continue;
+                writer.write(PackedPosition.create(FenNotation.parse(line,properties)));
+            }
+        }
+    }
+
+    private static void unpack(Path packedFile, long from, long count) throws Exception
+    {
+        try (PackedPositionReader reader = new PackedPositionReader(packedFile))
+        {
+            reader.seek(from);
+            PackedPosition position = new PackedPosition();
+            for (long n = 0; (n < count) && reader.next(position); n++) System.out.println(position.toFen());
+        }
+    }
+
+    private static void scan(Path packedFile) throws Exception
+    {
+        try (PackedPositionReader reader = new PackedPositionReader(packedFile))
+        {
+            PackedPosition position = new PackedPosition();
+            long positions = 0;
+            long pieces    = 0;
+            long start = System.nanoTime();
+            while (reader.next(position))
+            {
+                pieces += Long.bitCount(position.getOccupancy());
+                positions++;
+            }
+            double seconds = Math.max(1,System.nanoTime() - start) / 1e9;
+            System.out.printf("%d positions (%.1f pieces each) in %.3f s, %.0f positions per second%n",
+                              positions,(double)pieces / Math.max(1,positions),seconds,positions / seconds);
+        }
+    }
+
+    private static void verify(Path packedFile, Properties properties) throws Exception
+    {
+        try (PackedPositionReader reader = new PackedPositionReader(packedFile))
+        {
+            PackedPosition position = new PackedPosition();
+            long positions = 0;
+            long different = 0;
+            while (reader.next(position))
+            {
+                if (!PackedPosition.create(position.toPosition(properties)).equals(position))
+                {
+                    if (different++ < 10) System.out.println("differs: " + position.toFen());
+                }
+                positions++;
+            }
+            System.out.println(positions + " positions, " + different + " differ when unpacked and repacked");
+        }
+    }
+}
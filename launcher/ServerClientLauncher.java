@@ -0,0 +1,118 @@
+package launcher;
+
+import chess.ChessPosition;
+import chess.moves.ChessMove;
+import chess.notation.ChessNotation;
+import chess.notation.FenNotation;
+import game.utility.Properties;
+import game.utility.Properties.Direction;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * a stand-in client of the game server: plays games of random moves against the server's CPU player,
+ * several at once, to load the server<br>
+ * usage: ServerClientLauncher [-url http://localhost:8080] [-games 4] [-moves 20] [-think 200]
+ *
+ * @author devang
+ */
+public class ServerClientLauncher {
+    private static final Pattern FIELD = Pattern.compile("\"(\\w+)\":\"([^\"]*)\"");
+
+    public static void main(String[] args) throws Exception
+    {
+        System.setProperty("java.awt.headless","true");
+
+        String url      = "http://localhost:" + 8080;
+        int numGames    = 4;
+        int numMoves    = 20;
+        long thinkMillis = 200;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-url"))        url         = args[++i];
+            else if (args[i].equals("-games")) numGames    = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-moves")) numMoves    = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-think")) thinkMillis = Long.parseLong(args[++i]);
+        }
+
+        List<Thread> clients = new ArrayList<>();
+        for (int g = 0; g < numGames; g++)
+        {
+            String serverUrl = url;
+            int moves        = numMoves;
+            long think       = thinkMillis;
+            String color     = (g % 2 == 0) ? "white" : "black";
+            Thread client = new Thread(() -> playGame(serverUrl,color,moves,think),"client-" + g);
+            clients.add(client);
+            client.start();
+        }
+        for (Thread client : clients) client.join();
+        System.out.println(request(url + "/stats","GET"));
+    }
+
+    private static void playGame(String url, String color, int numMoves, long thinkMillis)
+    {
+        Properties properties = Properties.init(Direction.UP,Direction.DOWN);
+        Random random = new Random();
+        try {
+            String game = request(url + "/games?color=" + color + "&think=" + thinkMillis,"POST");
+            String id   = getField(game,"id");
+            long startTime = System.currentTimeMillis();
+            int moves = 0;
+            while (moves < numMoves)
+            {
+                String status = getField(game,"status");
+                if (status.equals("thinking"))
+                {
+                    Thread.sleep(20);
+                    game = request(url + "/games/" + id,"GET");
+                    continue;
+                }
+                if (!status.equals("playing")) break;
+
+                ChessPosition position = FenNotation.parse(getField(game,"fen"),properties);
+                List<ChessMove> validMoves = position.getValidMoves();
+                if (validMoves.isEmpty()) break;
+                String uci = ChessNotation.toUci(validMoves.get(random.nextInt(validMoves.size())),properties);
+                game = request(url + "/games/" + id + "/move?uci=" + uci,"POST");
+                moves++;
+            }
+            request(url + "/games/" + id,"DELETE");
+            System.out.println("game " + id + ": " + moves + " moves in " + (System.currentTimeMillis() - startTime) + " ms");
+        } catch (IOException | InterruptedException e) {
+            System.err.println("client failed: " + e);
+        }
+    }
+
+    private static String getField(String json, String name)
+    {
+        Matcher matcher = FIELD.matcher(json);
+        while (matcher.find())
+        {
+            if (matcher.group(1).equals(name)) return matcher.group(2);
+        }
+        return "";
+    }
+
+    private static String request(String url, String method) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection)new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        InputStream in = (connection.getResponseCode() < 400) ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream stream = in)
+        {
+            stream.transferTo(body);
+        }
+        return body.toString(StandardCharsets.UTF_8);
+    }
+}
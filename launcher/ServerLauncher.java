@@ -0,0 +1,92 @@
+package launcher;
+
+import chess.database.GameDatabase;
+import chess.players.ai.SearchScheduler;
+import chess.server.GameServer;
+import chess.server.HttpGameServer;
+import chess.server.JournalDirectory;
+import chess.players.ai.TranspositionTable;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * runs a GameServer behind its HTTP front end, without a window<br>
+ * usage: ServerLauncher [-port 8080] [-threads cores] [-queue 1024] [-depth 6] [-games 1000] [-hash 16]
+ *        [-database dir] [-journal dir] [-sync-millis 20]<br>
+ * - with a database directory, the games played to their end are recorded (see GameDatabase)<br>
+ * - with a journal directory, the moves of the games are journaled, and the games left by the
+ *   last run are restored before the server listens (see JournalDirectory)
+ *
+ * @author devang
+ */
+public class ServerLauncher {
+
+    public static void main(String[] args) throws Exception
+    {
+        System.setProperty("java.awt.headless","true");
+
+        int port       = HttpGameServer.DEFAULT_PORT;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        int maxQueued  = SearchScheduler.DEFAULT_MAX_QUEUED;
+        int maxDepth   = GameServer.DEFAULT_MAX_DEPTH;
+        int maxGames   = GameServer.DEFAULT_MAX_GAMES;
+        int megabytes  = TranspositionTable.DEFAULT_MEGABYTES;
+        String databaseDirectory = null;
+        String journalDirectory  = null;
+        long   syncMillis        = JournalDirectory.DEFAULT_SYNC_MILLIS;
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-port":    port       = Integer.parseInt(args[++i]); break;
+                case "-threads": numThreads = Integer.parseInt(args[++i]); break;
+                case "-queue":   maxQueued  = Integer.parseInt(args[++i]); break;
+                case "-depth":   maxDepth   = Integer.parseInt(args[++i]); break;
+                case "-games":   maxGames   = Integer.parseInt(args[++i]); break;
+                case "-hash":    megabytes  = Integer.parseInt(args[++i]); break;
+                case "-database": databaseDirectory = args[++i]; break;
+                case "-journal":  journalDirectory  = args[++i]; break;
+                case "-sync-millis": syncMillis = Long.parseLong(args[++i]); break;
+                default:
+                    System.err.println("unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        GameServer gameServer = new GameServer(new SearchScheduler(numThreads,maxQueued),megabytes);
+        gameServer.setMaxDepth(maxDepth);
+        gameServer.setMaxGames(maxGames);
+        if (databaseDirectory != null)
+        {
+            GameDatabase database = GameDatabase.open(Paths.get(databaseDirectory));
+            gameServer.setDatabase(database);
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+            {
+                try {
+                    database.close();
+                } catch (IOException e) {
+                    System.err.println("game database not closed: " + e);
+                }
+            }));
+        }
+        if (journalDirectory != null)
+        {
+            JournalDirectory journals = new JournalDirectory(Paths.get(journalDirectory),syncMillis);
+            gameServer.setJournals(journals);
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+            {
+                try {
+                    journals.close();
+                } catch (IOException e) {
+                    System.err.println("game journals not closed: " + e);
+                }
+            }));
+            long start = System.currentTimeMillis();
+            int restored = gameServer.restoreGames();
+            System.out.println("restored " + restored + " games in " + (System.currentTimeMillis() - start) + " ms");
+        }
+        HttpGameServer httpServer = new HttpGameServer(gameServer,port);
+        httpServer.start();
+        System.out.println("chess server listening on port " + httpServer.getPort());
+    }
+}
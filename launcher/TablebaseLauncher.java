@@ -0,0 +1,46 @@
+package launcher;
+
+import chess.endgame.TablebaseGenerator;
+import chess.endgame.TablebaseMaterial;
+import chess.endgame.Tablebases;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * generates endgame tablebases, with the smaller tables they need<br>
+ * usage: TablebaseLauncher [-dir endgame] [KQvK KRvK KPvK ...]<br>
+ * - tables already in the directory are not generated again
+ *
+ * @author devang
+ */
+public class TablebaseLauncher {
+
+    public static void main(String[] args) throws Exception
+    {
+        Path directory = Paths.get(Tablebases.DEFAULT_DIRECTORY);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-dir")) directory = Paths.get(args[++i]);
+            else                        names.add(args[i]);
+        }
+        if (names.isEmpty())
+        {
+            names.add("KQvK");
+            names.add("KRvK");
+            names.add("KPvK");
+        }
+
+        Files.createDirectories(directory);
+        Tablebases tablebases = new Tablebases(directory);
+        TablebaseGenerator generator = new TablebaseGenerator(tablebases);
+        for (String name : names)
+        {
+            TablebaseMaterial material = TablebaseMaterial.parse(name).getCanonical();
+            if (tablebases.getTable(material) == null) generator.generate(material);
+        }
+    }
+}
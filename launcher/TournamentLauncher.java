@@ -0,0 +1,98 @@
+package launcher;
+
+import chess.tournament.Sprt;
+import chess.tournament.Tournament;
+import chess.tournament.TournamentEngine;
+import chess.tournament.TournamentResults;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * plays a self-play match between two engine configurations<br>
+ * usage: TournamentLauncher [options] engine opponent<br>
+ * - an engine is written as name=test,depth=4,nodes=20000,movetime=100,hash=4 (see TournamentEngine)<br>
+ * - -games n, -threads n, -openings file, -pgn games.pgn, -sprt elo0 elo1 [alpha beta],
+ *   -max-plies n, -win score plies, -draw score plies move-number
+ *
+ * @author devang
+ */
+public class TournamentLauncher {
+
+    public static void main(String[] args) throws Exception
+    {
+        TournamentEngine[] engines = new TournamentEngine[2];
+        int numEngines = 0;
+        Tournament tournament = null;
+        Path pgnFile  = null;
+        Path openings = null;
+        Sprt sprt     = null;
+        Integer numGames = null, numThreads = null, maxPlies = null;
+        int[] win  = null;
+        int[] draw = null;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-games":     numGames   = Integer.parseInt(args[++i]); break;
+                case "-threads":   numThreads = Integer.parseInt(args[++i]); break;
+                case "-openings":  openings   = Paths.get(args[++i]); break;
+                case "-pgn":       pgnFile    = Paths.get(args[++i]); break;
+                case "-max-plies": maxPlies   = Integer.parseInt(args[++i]); break;
+                case "-win":       win  = new int[] { Integer.parseInt(args[++i]), Integer.parseInt(args[++i]) }; break;
+                case "-draw":      draw = new int[] { Integer.parseInt(args[++i]), Integer.parseInt(args[++i]), Integer.parseInt(args[++i]) }; break;
+                case "-sprt":
+                    double elo0 = Double.parseDouble(args[++i]);
+                    double elo1 = Double.parseDouble(args[++i]);
+                    double alpha = Sprt.DEFAULT_ALPHA;
+                    double beta  = Sprt.DEFAULT_BETA;
+                    if ((i+2 < args.length) && !args[i+1].startsWith("-") && !args[i+1].contains("="))
+                    {
+                        alpha = Double.parseDouble(args[++i]);
+                        beta  = Double.parseDouble(args[++i]);
+                    }
+                    sprt = new Sprt(elo0,elo1,alpha,beta);
+                    break;
+                default:
+                    if (numEngines < 2) engines[numEngines++] = TournamentEngine.parse(args[i]);
+                    break;
+            }
+        }
+
+        if (numEngines < 2)
+        {
+            System.err.println("usage: TournamentLauncher [-games n] [-threads n] [-openings file] [-pgn games.pgn]"
+                             + " [-sprt elo0 elo1 [alpha beta]] [-max-plies n] [-win score plies] [-draw score plies move]"
+                             + " name=a,depth=4 name=b,depth=3,nodes=20000,movetime=100,hash=4");
+            System.exit(1);
+        }
+
+        tournament = new Tournament(engines[0],engines[1]);
+        if (numGames != null)   tournament.setNumGames(numGames);
+        if (numThreads != null) tournament.setNumThreads(numThreads);
+        if (maxPlies != null)   tournament.setMaxPlies(maxPlies);
+        if (openings != null)   tournament.setOpenings(Tournament.readOpenings(openings));
+        if (sprt != null)       tournament.setSprt(sprt);
+        if (win != null)
+        {
+            tournament.setWinScore(win[0]);
+            tournament.setWinPlies(win[1]);
+        }
+        if (draw != null)
+        {
+            tournament.setDrawScore(draw[0]);
+            tournament.setDrawPlies(draw[1]);
+            tournament.setDrawMoveNumber(draw[2]);
+        }
+
+        System.out.println(engines[0] + " vs " + engines[1] + ((sprt != null) ? ", " + sprt : ""));
+        final Sprt test = sprt;
+        TournamentResults results = tournament.run(pgnFile,(game,gameResults) ->
+            System.out.println("game " + game.getRound() + " " + game.getWhiteEngine().getName() + "-" + game.getBlackEngine().getName()
+                             + " " + game.getResult() + " (" + game.getReason() + "): " + gameResults
+                             + ((test != null) ? String.format(", LLR %.2f",test.getLogLikelihoodRatio(gameResults)) : "")));
+
+        System.out.println(results);
+        if (sprt != null) System.out.println("SPRT: " + tournament.getDecision());
+    }
+}
@@ -0,0 +1,56 @@
+package launcher;
+
+import chess.training.TrainingDataGenerator;
+import chess.training.TrainingDataWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * plays self-play games and writes their quiet positions, scores and results as training data<br>
+ * usage: TrainingDataLauncher [options]<br>
+ * - -o directory (default training), -prefix name (default selfplay), -games n, -threads n,
+ *   -nodes n, -random-plies n, -max-plies n, -hash megabytes, -seed n, -shard-records n
+ *
+ * @author devang
+ */
+public class TrainingDataLauncher {
+
+    public static void main(String[] args) throws Exception
+    {
+        TrainingDataGenerator generator = new TrainingDataGenerator();
+        Path directory = Paths.get("training");
+        String prefix = "selfplay";
+        int recordsPerShard = TrainingDataWriter.DEFAULT_RECORDS_PER_SHARD;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-o":             directory = Paths.get(args[++i]); break;
+                case "-prefix":        prefix = args[++i]; break;
+                case "-games":         generator.setNumGames(Integer.parseInt(args[++i])); break;
+                case "-threads":       generator.setNumThreads(Integer.parseInt(args[++i])); break;
+                case "-nodes":         generator.setNodes(Long.parseLong(args[++i])); break;
+                case "-random-plies":  generator.setRandomPlies(Integer.parseInt(args[++i])); break;
+                case "-max-plies":     generator.setMaxPlies(Integer.parseInt(args[++i])); break;
+                case "-hash":          generator.setTableMegabytes(Integer.parseInt(args[++i])); break;
+                case "-seed":          generator.setSeed(Long.parseLong(args[++i])); break;
+                case "-shard-records": recordsPerShard = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("usage: TrainingDataLauncher [-o directory] [-prefix name] [-games n] [-threads n] [-nodes n]"
+                                     + " [-random-plies n] [-max-plies n] [-hash megabytes] [-seed n] [-shard-records n]");
+                    System.exit(1);
+            }
+        }
+
+        long startTime = System.currentTimeMillis();
+        try (TrainingDataWriter writer = new TrainingDataWriter(directory,prefix,recordsPerShard))
+        {
+            generator.generate(writer);
+            long elapsedMillis = Math.max(1,System.currentTimeMillis() - startTime);
+            System.out.printf("%d games, %d positions searched, %d written to %d shards in %s, %.0f positions per minute%n",
+                              generator.getGamesPlayed(),generator.getPositionsSeen(),writer.getNumRecords(),writer.getNumShards(),
+                              directory,writer.getNumRecords() * 60000.0 / elapsedMillis);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package launcher;
+
+import chess.players.ai.EvaluationParameters;
+import chess.players.ai.EvaluationTuner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * tunes the evaluation's weights on positions labeled with their games' results<br>
+ * usage: TunerLauncher [options] positions.epd [more.epd.gz ...]<br>
+ * - -o parameters.txt (default evaluation/parameters.txt), -init parameters.txt, -threads n,
+ *   -positions n, -k x (fitted if not given), -step n, -passes n, -params pawn,knight,...
+ *
+ * @author devang
+ */
+public class TunerLauncher {
+
+    public static void main(String[] args) throws Exception
+    {
+        EvaluationTuner tuner = new EvaluationTuner();
+        Path parametersFile = Paths.get(EvaluationParameters.DEFAULT_PARAMETERS_FILE);
+        EvaluationParameters initial = new EvaluationParameters();
+        List<Path> positionsFiles = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-o":         parametersFile = Paths.get(args[++i]); break;
+                case "-init":      initial = EvaluationParameters.read(Paths.get(args[++i])); break;
+                case "-threads":   tuner.setNumThreads(Integer.parseInt(args[++i])); break;
+                case "-positions": tuner.setMaxPositions(Integer.parseInt(args[++i])); break;
+                case "-k":         tuner.setK(Double.parseDouble(args[++i])); break;
+                case "-step":      tuner.setStep(Integer.parseInt(args[++i])); break;
+                case "-passes":    tuner.setMaxPasses(Integer.parseInt(args[++i])); break;
+                case "-params":
+                    String[] names = args[++i].split(",");
+                    int[] indices = new int[names.length];
+                    for (int n = 0; n < names.length; n++)
+                    {
+                        indices[n] = EvaluationParameters.indexOf(names[n]);
+                        if (indices[n] < 0) throw new IllegalArgumentException("not an evaluation parameter: " + names[n]);
+                    }
+                    tuner.setTunedIndices(indices);
+                    break;
+                default:           positionsFiles.add(Paths.get(args[i])); break;
+            }
+        }
+
+        if (positionsFiles.isEmpty())
+        {
+            System.err.println("usage: TunerLauncher [-o parameters.txt] [-init parameters.txt] [-threads n] [-positions n]"
+                             + " [-k x] [-step n] [-passes n] [-params pawn,knight,...] positions.epd ...");
+            System.exit(1);
+        }
+
+        for (Path positionsFile : positionsFiles) tuner.read(positionsFile);
+        System.out.println("positions: " + tuner.getNumPositions());
+        EvaluationParameters tuned = tuner.tune(initial);
+
+        if (parametersFile.getParent() != null) Files.createDirectories(parametersFile.getParent());
+        tuned.write(parametersFile,String.format("tuned on %d positions, k %.4f, error %.6f",
+                                                 tuner.getNumPositions(),tuner.getK(),tuner.getError(tuned)));
+        System.out.println(tuned);
+    }
+}
@@ -0,0 +1,23 @@
+package launcher;
+
+import chess.uci.UciEngine;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+
+/**
+ * runs the CPU player as a UCI engine on stdin/stdout, without a window<br>
+ * usage: UciLauncher
+ *
+ * @author devang
+ */
+public class UciLauncher {
+
+    public static void main(String[] args) throws Exception
+    {
+        // the pieces' properties hold AWT colors: no display is needed for them
+        System.setProperty("java.awt.headless","true");
+
+        UciEngine engine = new UciEngine(new BufferedReader(new InputStreamReader(System.in)),System.out);
+        engine.run();
+    }
+}